@@ -33,10 +33,10 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TimeZone;
@@ -45,20 +45,21 @@ import javax.annotation.Nullable;
 
 /**
  * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Field values are stored by the position of the field in the schema.
  */
 @Beta
 public class StructuredRecord implements Serializable {
   private static final SimpleDateFormat DEFAULT_FORMAT = new SimpleDateFormat("YYYY-MM-DD'T'HH:mm:ss z");
   private final Schema schema;
-  private final Map<String, Object> fields;
+  private final Object[] fields;
 
-  private static final long serialVersionUID = -6547770456592865613L;
+  private static final long serialVersionUID = 2542106431734796087L;
 
   {
     DEFAULT_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
   }
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] fields) {
     this.schema = schema;
     this.fields = fields;
   }
@@ -82,7 +83,8 @@ public class StructuredRecord implements Serializable {
   @SuppressWarnings("unchecked")
   @Nullable
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) fields[idx];
   }
 
   /**
@@ -96,7 +98,7 @@ public class StructuredRecord implements Serializable {
   public LocalDate getDate(String fieldName) {
     Schema logicalTypeSchema = validateAndGetLogicalTypeSchema(schema.getField(fieldName),
                                                                EnumSet.of(LogicalType.DATE));
-    Integer value = (Integer) fields.get(fieldName);
+    Integer value = get(fieldName);
     return (value == null || logicalTypeSchema == null) ? null : LocalDate.ofEpochDay(value.longValue());
   }
 
@@ -114,7 +116,7 @@ public class StructuredRecord implements Serializable {
     Schema logicalTypeSchema = validateAndGetLogicalTypeSchema(schema.getField(fieldName),
                                                                EnumSet.of(LogicalType.TIME_MILLIS,
                                                                           LogicalType.TIME_MICROS));
-    Object value = fields.get(fieldName);
+    Object value = get(fieldName);
     if (value == null || logicalTypeSchema == null) {
       return null;
     }
@@ -157,7 +159,7 @@ public class StructuredRecord implements Serializable {
     Schema logicalTypeSchema = validateAndGetLogicalTypeSchema(schema.getField(fieldName),
                                                                EnumSet.of(LogicalType.TIMESTAMP_MILLIS,
                                                                           LogicalType.TIMESTAMP_MICROS));
-    Object value = fields.get(fieldName);
+    Object value = get(fieldName);
     if (value == null || logicalTypeSchema == null) {
       return null;
     }
@@ -180,7 +182,7 @@ public class StructuredRecord implements Serializable {
   public BigDecimal getDecimal(String fieldName) {
     Schema logicalTypeSchema = validateAndGetLogicalTypeSchema(schema.getField(fieldName),
                                                                EnumSet.of(LogicalType.DECIMAL));
-    Object value = fields.get(fieldName);
+    Object value = get(fieldName);
     if (value == null || logicalTypeSchema == null) {
       return null;
     }
@@ -288,12 +290,16 @@ public class StructuredRecord implements Serializable {
    * TODO: enforce schema correctness?
    */
   public static class Builder {
+    // marker for fields that are not set in the builder
+    private static final Object UNSET = new Object();
+
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final Object[] fields;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.fields = new Object[schema.getFields().size()];
+      Arrays.fill(fields, UNSET);
     }
 
     /**
@@ -307,7 +313,7 @@ public class StructuredRecord implements Serializable {
      */
     public Builder set(String fieldName, @Nullable Object value) {
       validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      setValue(fieldName, value);
       return this;
     }
 
@@ -323,11 +329,11 @@ public class StructuredRecord implements Serializable {
     public Builder setDate(String fieldName, @Nullable LocalDate localDate) {
       validateAndGetLogicalTypeSchema(validateAndGetField(fieldName, localDate), EnumSet.of(LogicalType.DATE));
       if (localDate == null) {
-        fields.put(fieldName, null);
+        setValue(fieldName, null);
         return this;
       }
       try {
-        fields.put(fieldName, Math.toIntExact(localDate.toEpochDay()));
+        setValue(fieldName, Math.toIntExact(localDate.toEpochDay()));
       } catch (ArithmeticException e) {
         // Highest integer is 2,147,483,647 which is Jan 1 2038.
         throw new UnexpectedFormatException(String.format("Field %s was set to a date that is too large." +
@@ -351,7 +357,7 @@ public class StructuredRecord implements Serializable {
                                                                             LogicalType.TIME_MICROS));
 
       if (localTime == null) {
-        fields.put(fieldName, null);
+        setValue(fieldName, null);
         return this;
       }
 
@@ -360,7 +366,7 @@ public class StructuredRecord implements Serializable {
       if (logicalTypeSchema.getLogicalType() == LogicalType.TIME_MILLIS) {
         try {
           int millis = Math.toIntExact(TimeUnit.NANOSECONDS.toMillis(nanos));
-          fields.put(fieldName, millis);
+          setValue(fieldName, millis);
         } catch (ArithmeticException e) {
           throw new UnexpectedFormatException(String.format("Field %s was set to a time that is too large.",
                                                             fieldName));
@@ -369,7 +375,7 @@ public class StructuredRecord implements Serializable {
       }
 
       long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
-      fields.put(fieldName, micros);
+      setValue(fieldName, micros);
       return this;
     }
 
@@ -389,7 +395,7 @@ public class StructuredRecord implements Serializable {
                                                                             LogicalType.TIMESTAMP_MICROS));
 
       if (zonedDateTime == null) {
-        fields.put(fieldName, null);
+        setValue(fieldName, null);
         return this;
       }
 
@@ -398,13 +404,13 @@ public class StructuredRecord implements Serializable {
         if (logicalTypeSchema.getLogicalType() == LogicalType.TIMESTAMP_MILLIS) {
           long millis = TimeUnit.SECONDS.toMillis(instant.getEpochSecond());
           long tsMillis = Math.addExact(millis, TimeUnit.NANOSECONDS.toMillis(instant.getNano()));
-          fields.put(fieldName, tsMillis);
+          setValue(fieldName, tsMillis);
           return this;
         }
 
         long micros = TimeUnit.SECONDS.toMicros(instant.getEpochSecond());
         long tsMicros = Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(instant.getNano()));
-        fields.put(fieldName, tsMicros);
+        setValue(fieldName, tsMicros);
         return this;
       } catch (ArithmeticException e) {
         throw new UnexpectedFormatException(String.format("Field %s was set to a timestamp that is too large.",
@@ -426,7 +432,7 @@ public class StructuredRecord implements Serializable {
       Schema logicalSchema = validateAndGetLogicalTypeSchema(validateAndGetField(fieldName, decimal),
                                                              EnumSet.of(LogicalType.DECIMAL));
       if (decimal == null) {
-        fields.put(fieldName, null);
+        setValue(fieldName, null);
         return this;
       }
 
@@ -442,7 +448,7 @@ public class StructuredRecord implements Serializable {
                         fieldName, decimal.scale(), logicalSchema.getScale()));
       }
 
-      fields.put(fieldName, decimal.unscaledValue().toByteArray());
+      setValue(fieldName, decimal.unscaledValue().toByteArray());
       return this;
     }
 
@@ -486,16 +492,16 @@ public class StructuredRecord implements Serializable {
       Schema.Field field = validateAndGetField(fieldName, date);
       boolean isNullable = field.getSchema().isNullable();
       if (isNullable && date == null) {
-        fields.put(fieldName, null);
+        setValue(fieldName, null);
         return this;
       }
 
       Schema.Type fieldType = isNullable ? field.getSchema().getNonNullable().getType() : field.getSchema().getType();
       if (fieldType == Schema.Type.LONG) {
-        fields.put(fieldName, date.getTime());
+        setValue(fieldName, date.getTime());
       } else if (fieldType == Schema.Type.STRING) {
         DateFormat format = dateFormat == null ? DEFAULT_FORMAT : dateFormat;
-        fields.put(fieldName, format.format(date));
+        setValue(fieldName, format.format(date));
       } else {
         throw new UnexpectedFormatException("Date must be either a long or a string, not a " + fieldType);
       }
@@ -514,7 +520,7 @@ public class StructuredRecord implements Serializable {
      */
     public Builder convertAndSet(String fieldName, @Nullable String strVal) throws UnexpectedFormatException {
       Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      setValue(fieldName, convertString(field.getSchema(), strVal));
       return this;
     }
 
@@ -526,15 +532,16 @@ public class StructuredRecord implements Serializable {
      */
     public StructuredRecord build() throws UnexpectedFormatException {
       // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
+      List<Schema.Field> schemaFields = schema.getFields();
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i] == UNSET) {
+          Schema.Field field = schemaFields.get(i);
           // if the field is not nullable and there is no value set for the field, this is invalid.
           if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
+            throw new UnexpectedFormatException("Field " + field.getName() + " must contain a value.");
           } else {
             // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
+            fields[i] = null;
           }
         }
       }
@@ -580,6 +587,14 @@ public class StructuredRecord implements Serializable {
       }
     }
 
+    private void setValue(String fieldName, @Nullable Object value) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
+        throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
+      }
+      fields[idx] = value;
+    }
+
     private Schema.Field validateAndGetField(String fieldName, Object val) {
       Schema.Field field = schema.getField(fieldName);
       if (field == null) {
@@ -615,12 +630,12 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(fields, that.fields);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return 31 * Objects.hashCode(schema) + Arrays.hashCode(fields);
   }
 }
@@ -487,6 +487,14 @@ public interface Store {
    */
   Set<RunId> getRunningInRange(long startTimeInSecs, long endTimeInSecs);
 
+  /**
+   * Adds the run records that completed before the run records stop time index existed to the index. Until this is
+   * done, queries for completed runs by time scan all run records instead of the index.
+   *
+   * @param txBatchSize the maximum number of run records to go through in one transaction
+   */
+  void backfillRunRecordsStopTimeIndex(int txBatchSize);
+
   /**
    * Get the run count of the given program.
    *
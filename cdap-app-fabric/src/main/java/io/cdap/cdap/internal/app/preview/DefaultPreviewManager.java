@@ -21,6 +21,8 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -31,6 +33,8 @@ import com.google.inject.Scopes;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import com.google.inject.util.Modules;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.security.store.SecureStore;
 import io.cdap.cdap.app.guice.AppFabricServiceRuntimeModule;
 import io.cdap.cdap.app.guice.ProgramRunnerRuntimeModule;
@@ -38,7 +42,9 @@ import io.cdap.cdap.app.preview.PreviewManager;
 import io.cdap.cdap.app.preview.PreviewRequest;
 import io.cdap.cdap.app.preview.PreviewRunner;
 import io.cdap.cdap.app.preview.PreviewRunnerModule;
+import io.cdap.cdap.app.preview.PreviewStatus;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.ConflictException;
 import io.cdap.cdap.common.NotFoundException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -81,6 +87,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
 import org.apache.twill.discovery.DiscoveryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -91,14 +98,28 @@ import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
  * Class responsible for creating the injector for preview and starting it.
+ *
+ * Since starting the runtime of a preview takes time, a pool of started runtimes is maintained, such that a new
+ * preview can use one right away. A runtime can only be used by one preview, hence the pool is refilled in the
+ * background after a runtime is taken. Runtimes that stay idle in the pool are stopped after a timeout.
+ * The pool is filled when this service starts, and all the runtimes, including the ones used by previews,
+ * are stopped when it stops.
  */
-public class DefaultPreviewManager implements PreviewManager {
+public class DefaultPreviewManager extends AbstractIdleService implements PreviewManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultPreviewManager.class);
   private static final String PREFIX = "preview-";
@@ -118,6 +139,20 @@ public class DefaultPreviewManager implements PreviewManager {
   private final Cache<ApplicationId, Injector> appInjectors;
   private final Path previewDataDir;
   private final ProgramRuntimeProviderLoader programRuntimeProviderLoader;
+  private final MetricsContext metricsContext;
+  private final int maxConcurrentPreviews;
+  private final int runtimePoolSize;
+  private final long runtimeIdleTimeoutMillis;
+  // Started runtimes that are not used by any preview yet, guarded by itself
+  private final Deque<PreviewRuntime> runtimePool;
+  private final ScheduledExecutorService runtimePoolExecutor;
+  // Number of runtimes being started for the pool, guarded by runtimePool
+  private int pendingRuntimes;
+  // Whether the pool is shut down, guarded by runtimePool
+  private boolean runtimePoolStopped;
+  // Number of previews being started, guarded by this
+  private int startingPreviews;
+  private long lastPreviewTime;
 
   @Inject
   DefaultPreviewManager(final CConfiguration cConf, Configuration hConf, DiscoveryService discoveryService,
@@ -126,7 +161,8 @@ public class DefaultPreviewManager implements PreviewManager {
                         TransactionSystemClient transactionSystemClient, ArtifactRepository artifactRepository,
                         ArtifactStore artifactStore, AuthorizerInstantiator authorizerInstantiator,
                         PrivilegesManager privilegesManager, AuthorizationEnforcer authorizationEnforcer,
-                        ProgramRuntimeProviderLoader programRuntimeProviderLoader) {
+                        ProgramRuntimeProviderLoader programRuntimeProviderLoader,
+                        MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.hConf = hConf;
     this.datasetFramework = datasetFramework;
@@ -141,6 +177,16 @@ public class DefaultPreviewManager implements PreviewManager {
     this.authorizationEnforcer = authorizationEnforcer;
     this.previewDataDir = Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), "preview").toAbsolutePath();
     this.programRuntimeProviderLoader = programRuntimeProviderLoader;
+    this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.PREVIEW_HTTP));
+    this.maxConcurrentPreviews = cConf.getInt(Constants.Preview.MAX_CONCURRENT_PREVIEWS);
+    this.runtimePoolSize = cConf.getInt(Constants.Preview.RUNTIME_POOL_SIZE);
+    this.runtimeIdleTimeoutMillis = TimeUnit.SECONDS.toMillis(
+      cConf.getLong(Constants.Preview.RUNTIME_POOL_IDLE_TIMEOUT_SECONDS));
+    this.runtimePool = new ArrayDeque<>();
+    this.runtimePoolExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("preview-runtime-pool"));
 
     this.appInjectors = CacheBuilder.newBuilder()
       .maximumSize(cConf.getInt(Constants.Preview.PREVIEW_CACHE_SIZE, 10))
@@ -165,25 +211,45 @@ public class DefaultPreviewManager implements PreviewManager {
       .build();
   }
 
+  @Override
+  protected void startUp() throws Exception {
+    fillRuntimePool();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    List<PreviewRuntime> runtimes;
+    synchronized (runtimePool) {
+      runtimePoolStopped = true;
+      runtimes = new ArrayList<>(runtimePool);
+      runtimePool.clear();
+    }
+    // Runtimes that are being started are stopped by the pool thread once they are started
+    runtimePoolExecutor.shutdownNow();
+    for (PreviewRuntime runtime : runtimes) {
+      stopRuntime(runtime);
+    }
+    // Stop the runtimes used by previews
+    appInjectors.invalidateAll();
+  }
+
   @Override
   public ApplicationId start(NamespaceId namespace, AppRequest<?> appRequest) throws Exception {
-    ApplicationId previewApp = namespace.app(PREFIX + System.currentTimeMillis());
-    Injector injector = createPreviewInjector(previewApp);
-    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
-    if (runner instanceof Service) {
-      ((Service) runner).startAndWait();
+    synchronized (this) {
+      if (maxConcurrentPreviews > 0 && maxConcurrentPreviews <= countRunningPreviews() + startingPreviews) {
+        throw new ConflictException(
+          String.format("Preview cannot start because the maximum of %d concurrent previews is exceeded",
+                        maxConcurrentPreviews));
+      }
+      startingPreviews++;
     }
     try {
-      runner.startPreview(new PreviewRequest<>(getProgramIdFromRequest(previewApp, appRequest), appRequest));
-    } catch (Exception e) {
-      if (runner instanceof Service) {
-        stopQuietly((Service) runner);
+      return startPreview(namespace, appRequest);
+    } finally {
+      synchronized (this) {
+        startingPreviews--;
       }
-      removePreviewDir(previewApp);
-      throw e;
     }
-    appInjectors.put(previewApp, injector);
-    return previewApp;
   }
 
   @Override
@@ -206,11 +272,158 @@ public class DefaultPreviewManager implements PreviewManager {
     return injector.getInstance(LogReader.class);
   }
 
+  private ApplicationId startPreview(NamespaceId namespace, AppRequest<?> appRequest) throws Exception {
+    PreviewRuntime runtime = takeRuntime();
+    if (runtime == null) {
+      metricsContext.increment("preview.runtime.pool.miss", 1);
+      runtime = startRuntime(nextPreviewName());
+    } else {
+      metricsContext.increment("preview.runtime.pool.hit", 1);
+    }
+    fillRuntimePool();
+
+    ApplicationId previewApp = namespace.app(runtime.name);
+    Injector injector = runtime.injector;
+    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
+    try {
+      runner.startPreview(new PreviewRequest<>(getProgramIdFromRequest(previewApp, appRequest), appRequest));
+    } catch (Exception e) {
+      if (runner instanceof Service) {
+        stopQuietly((Service) runner);
+      }
+      removePreviewDir(previewApp);
+      throw e;
+    }
+    appInjectors.put(previewApp, injector);
+    return previewApp;
+  }
+
+  /**
+   * Returns the number of previews that are still running.
+   */
+  private int countRunningPreviews() {
+    int count = 0;
+    for (Injector injector : appInjectors.asMap().values()) {
+      PreviewStatus status = injector.getInstance(PreviewRunner.class).getStatus();
+      if (status != null && status.getStatus() == PreviewStatus.Status.RUNNING) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the names of the runtimes in the pool.
+   */
+  @VisibleForTesting
+  List<String> getPooledRuntimes() {
+    List<String> names = new ArrayList<>();
+    synchronized (runtimePool) {
+      for (PreviewRuntime runtime : runtimePool) {
+        names.add(runtime.name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Takes a started runtime from the pool.
+   *
+   * @return the {@link PreviewRuntime} or {@code null} if the pool is empty
+   */
+  @Nullable
+  private PreviewRuntime takeRuntime() {
+    synchronized (runtimePool) {
+      return runtimePool.pollFirst();
+    }
+  }
+
+  /**
+   * Starts new runtimes in the background until the pool is full.
+   */
+  private void fillRuntimePool() {
+    synchronized (runtimePool) {
+      while (!runtimePoolStopped && runtimePool.size() + pendingRuntimes < runtimePoolSize) {
+        pendingRuntimes++;
+        runtimePoolExecutor.execute(this::addPoolRuntime);
+      }
+    }
+  }
+
+  /**
+   * Starts a new runtime and adds it to the pool. It is stopped if it is not used before the idle timeout.
+   */
+  private void addPoolRuntime() {
+    PreviewRuntime runtime;
+    try {
+      runtime = startRuntime(nextPreviewName());
+    } catch (Exception e) {
+      LOG.warn("Failed to start preview runtime for the pool", e);
+      synchronized (runtimePool) {
+        pendingRuntimes--;
+      }
+      return;
+    }
+    synchronized (runtimePool) {
+      pendingRuntimes--;
+      if (!runtimePoolStopped) {
+        runtimePool.addLast(runtime);
+        runtimePoolExecutor.schedule(() -> {
+          boolean removed;
+          synchronized (runtimePool) {
+            removed = runtimePool.remove(runtime);
+          }
+          if (removed) {
+            LOG.debug("Stopping idle preview runtime {}", runtime.name);
+            stopRuntime(runtime);
+          }
+        }, runtimeIdleTimeoutMillis, TimeUnit.MILLISECONDS);
+        return;
+      }
+    }
+    stopRuntime(runtime);
+  }
+
   /**
-   * Create injector for the given application id.
+   * Creates and starts a new runtime for the preview of the given name.
+   */
+  private PreviewRuntime startRuntime(String name) throws IOException {
+    long startTime = System.currentTimeMillis();
+    Injector injector = createPreviewInjector(name);
+    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
+    if (runner instanceof Service) {
+      try {
+        ((Service) runner).startAndWait();
+      } catch (Exception e) {
+        removePreviewDir(name);
+        throw e;
+      }
+    }
+    metricsContext.gauge("preview.runtime.startup.ms", System.currentTimeMillis() - startTime);
+    return new PreviewRuntime(name, injector);
+  }
+
+  private void stopRuntime(PreviewRuntime runtime) {
+    PreviewRunner runner = runtime.injector.getInstance(PreviewRunner.class);
+    if (runner instanceof Service) {
+      stopQuietly((Service) runner);
+    }
+    removePreviewDir(runtime.name);
+  }
+
+  /**
+   * Returns a unique name for a new preview.
+   */
+  private synchronized String nextPreviewName() {
+    lastPreviewTime = Math.max(System.currentTimeMillis(), lastPreviewTime + 1);
+    return PREFIX + lastPreviewTime;
+  }
+
+  /**
+   * Create injector for the preview of the given name.
    */
   @VisibleForTesting
-  Injector createPreviewInjector(ApplicationId applicationId) throws IOException {
+  Injector createPreviewInjector(String previewName) throws IOException {
     CConfiguration previewCConf = CConfiguration.copy(cConf);
 
     // Change all services bind address to local host
@@ -220,7 +433,7 @@ public class DefaultPreviewManager implements PreviewManager {
       .filter(s -> s.endsWith(".bind.address"))
       .forEach(key -> previewCConf.set(key, localhost));
 
-    Path previewDir = Files.createDirectories(previewDataDir.resolve(applicationId.getApplication()));
+    Path previewDir = Files.createDirectories(previewDataDir.resolve(previewName));
 
     previewCConf.set(Constants.CFG_LOCAL_DATA_DIR, previewDir.toString());
     previewCConf.setIfUnset(Constants.CFG_DATA_LEVELDB_DIR, previewDir.toString());
@@ -306,13 +519,30 @@ public class DefaultPreviewManager implements PreviewManager {
   }
 
   private void removePreviewDir(ApplicationId applicationId) {
-    Path previewDirPath = previewDataDir.resolve(applicationId.getApplication());
+    DataTracerFactoryProvider.removeDataTracerFactory(applicationId);
+    removePreviewDir(applicationId.getApplication());
+  }
+
+  private void removePreviewDir(String previewName) {
+    Path previewDirPath = previewDataDir.resolve(previewName);
 
     try {
-      DataTracerFactoryProvider.removeDataTracerFactory(applicationId);
       DirUtils.deleteDirectoryContents(previewDirPath.toFile());
     } catch (IOException e) {
       LOG.debug("Error deleting the preview directory {}", previewDirPath, e);
     }
   }
+
+  /**
+   * A started preview runtime that can be used by one preview.
+   */
+  private static final class PreviewRuntime {
+    private final String name;
+    private final Injector injector;
+
+    PreviewRuntime(String name, Injector injector) {
+      this.name = name;
+      this.injector = injector;
+    }
+  }
 }
@@ -43,7 +43,8 @@ import java.util.concurrent.Callable;
 
 /**
  * Given an artifact, creates a {@link CloseableClassLoader} from it. Takes care of unpacking the artifact and
- * cleaning up the directory when the classloader is closed.
+ * cleaning up the directory when the classloader is closed. Unpacked artifacts are shared through the
+ * {@link ArtifactUnpackCache} if it is enabled.
  */
 final class ArtifactClassLoaderFactory {
   private static final Logger LOG = LoggerFactory.getLogger(ArtifactClassLoaderFactory.class);
@@ -118,25 +119,20 @@ final class ArtifactClassLoaderFactory {
   private CloseableClassLoader createClassLoader(final Location artifactLocation,
                                                  EntityImpersonator entityImpersonator) throws IOException {
     try {
-      final File unpackDir = entityImpersonator.impersonate(new Callable<File>() {
-        @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
-        }
-      });
+      final UnpackedArtifact unpacked = unpack(artifactLocation, entityImpersonator);
 
-      final CloseableClassLoader classLoader = createClassLoader(unpackDir);
+      final CloseableClassLoader classLoader;
+      try {
+        classLoader = createClassLoader(unpacked.dir);
+      } catch (Exception e) {
+        unpacked.close();
+        throw e;
+      }
       return new CloseableClassLoader(classLoader, new Closeable() {
         @Override
         public void close() throws IOException {
-          try {
-            Closeables.closeQuietly(classLoader);
-            if (unpackDir.exists()) {
-              DirUtils.deleteDirectoryContents(unpackDir);
-            }
-          } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
-          }
+          Closeables.closeQuietly(classLoader);
+          unpacked.close();
         }
       });
     } catch (Exception e) {
@@ -166,29 +162,75 @@ final class ArtifactClassLoaderFactory {
     }
 
     try {
-      final File unpackDir = entityImpersonator.impersonate(new Callable<File>() {
+      final UnpackedArtifact unpacked = unpack(artifactLocation, entityImpersonator);
+
+      final CloseableClassLoader parentClassLoader;
+      try {
+        parentClassLoader = createClassLoader(artifactLocations, entityImpersonator);
+      } catch (Exception e) {
+        unpacked.close();
+        throw e;
+      }
+      return new CloseableClassLoader(new DirectoryClassLoader(unpacked.dir, parentClassLoader, "lib"),
+                                      new Closeable() {
         @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
+        public void close() throws IOException {
+          Closeables.closeQuietly(parentClassLoader);
+          unpacked.close();
         }
       });
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
 
-      final CloseableClassLoader parentClassLoader = createClassLoader(artifactLocations, entityImpersonator);
-      return new CloseableClassLoader(new DirectoryClassLoader(unpackDir, parentClassLoader, "lib"), new Closeable() {
-        @Override
-        public void close() throws IOException {
-          try {
-            Closeables.closeQuietly(parentClassLoader);
+  /**
+   * Unpacks the given artifact, through the {@link ArtifactUnpackCache} if it is enabled, or otherwise to a new
+   * temporary directory that will be deleted when the returned {@link UnpackedArtifact} is closed.
+   */
+  private UnpackedArtifact unpack(final Location artifactLocation,
+                                  EntityImpersonator entityImpersonator) throws Exception {
+    // The artifact is always read with impersonation, even if it is already in the cache
+    final ArtifactUnpackCache unpackCache = ArtifactUnpackCache.get(cConf);
+    return entityImpersonator.impersonate(new Callable<UnpackedArtifact>() {
+      @Override
+      public UnpackedArtifact call() throws IOException {
+        if (unpackCache != null) {
+          ArtifactUnpackCache.Unpacked unpacked = unpackCache.unpack(artifactLocation);
+          return new UnpackedArtifact(unpacked.getDir(), unpacked);
+        }
+        final File unpackDir = BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
+        return new UnpackedArtifact(unpackDir, new Closeable() {
+          @Override
+          public void close() throws IOException {
             if (unpackDir.exists()) {
               DirUtils.deleteDirectoryContents(unpackDir);
             }
-          } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
           }
-        }
-      });
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
+        });
+      }
+    });
+  }
+
+  /**
+   * A directory containing an unpacked artifact, which is released on closing.
+   */
+  private static final class UnpackedArtifact implements Closeable {
+    private final File dir;
+    private final Closeable releaser;
+
+    UnpackedArtifact(File dir, Closeable releaser) {
+      this.dir = dir;
+      this.releaser = releaser;
+    }
+
+    @Override
+    public void close() {
+      try {
+        releaser.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to release unpacked artifact directory {}", dir, e);
+      }
     }
   }
 }
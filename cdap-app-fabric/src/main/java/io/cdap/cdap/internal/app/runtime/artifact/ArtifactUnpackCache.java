@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.lang.jar.BundleJarUtil;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of unpacked artifact jars that is shared within the same JVM. Artifacts are identified by a fingerprint
+ * of their content, so that the same artifact is only unpacked once, even if it is copied to different local
+ * directories by different users, such as the {@link ClassLoader} creation in the artifact repository and the
+ * plugin instantiators.
+ *
+ * Each call to {@link #unpack(Location)} returns an {@link Unpacked} that holds a reference to the unpacked
+ * directory until it is closed. Directories without reference are kept until the total size of the cache exceeds
+ * the configured maximum, in which case the least recently used ones are removed. The unpacked directories are shared,
+ * hence must not be modified by the users.
+ */
+public final class ArtifactUnpackCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactUnpackCache.class);
+  private static final ConcurrentMap<File, ArtifactUnpackCache> INSTANCES = new ConcurrentHashMap<>();
+
+  private final File cacheDir;
+  private final long maxSize;
+  // Entries in access order, guarded by this
+  private final Map<String, Entry> entries;
+  private long totalSize;
+
+  /**
+   * Returns the {@link ArtifactUnpackCache} for the temporary directory configured in the given configuration.
+   *
+   * @return the {@link ArtifactUnpackCache} or {@code null} if the cache is disabled
+   */
+  @Nullable
+  public static ArtifactUnpackCache get(CConfiguration cConf) {
+    long maxSizeMB = cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB, 0L);
+    if (maxSizeMB <= 0L) {
+      return null;
+    }
+    File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    return INSTANCES.computeIfAbsent(tmpDir, dir -> new ArtifactUnpackCache(dir, maxSizeMB * 1024 * 1024));
+  }
+
+  private ArtifactUnpackCache(File tmpDir, long maxSize) {
+    // Each process has its own cache directory, since references are only tracked within the process
+    DirUtils.mkdirs(tmpDir);
+    this.cacheDir = DirUtils.createTempDir(tmpDir);
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        DirUtils.deleteDirectoryContents(cacheDir);
+      } catch (IOException e) {
+        // It's the cleanup step. Nothing much can be done if cleanup failed.
+        LOG.warn("Failed to delete artifact unpack cache directory {}", cacheDir, e);
+      }
+    }));
+  }
+
+  /**
+   * Returns a directory that contains the unpacked content of the given artifact jar. The artifact is unpacked
+   * only if the same artifact is not already in the cache.
+   *
+   * @param artifactLocation the location of the artifact jar
+   * @return an {@link Unpacked} that must be closed when the unpacked directory is no longer used
+   * @throws IOException if failed to read or unpack the artifact
+   */
+  public Unpacked unpack(Location artifactLocation) throws IOException {
+    String key = getKey(artifactLocation);
+    Entry entry;
+    synchronized (this) {
+      entry = entries.computeIfAbsent(key, k -> new Entry(k, new File(cacheDir, k)));
+      entry.refCount++;
+    }
+
+    try {
+      synchronized (entry) {
+        if (entry.size < 0 || !entry.dir.isDirectory()) {
+          long size = unpack(artifactLocation, entry.dir);
+          synchronized (this) {
+            totalSize += size - Math.max(entry.size, 0L);
+            entry.size = size;
+          }
+        }
+      }
+    } catch (IOException e) {
+      release(entry);
+      throw e;
+    }
+
+    evict();
+    return new Unpacked(entry);
+  }
+
+  /**
+   * Unpacks the artifact to a temporary directory and atomically moves it to the given target directory.
+   *
+   * @return the size of the unpacked content in bytes
+   */
+  private long unpack(Location artifactLocation, File targetDir) throws IOException {
+    DirUtils.mkdirs(cacheDir);
+    File tmpDir = DirUtils.createTempDir(cacheDir);
+    try {
+      BundleJarUtil.unJar(artifactLocation, tmpDir);
+      long size;
+      try (Stream<Path> paths = Files.walk(tmpDir.toPath())) {
+        size = paths.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+      }
+      if (targetDir.exists()) {
+        DirUtils.deleteDirectoryContents(targetDir);
+      }
+      Files.move(tmpDir.toPath(), targetDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      return size;
+    } catch (IOException e) {
+      deleteQuietly(tmpDir);
+      throw e;
+    }
+  }
+
+  /**
+   * Releases a reference to the given entry.
+   */
+  private void release(Entry entry) {
+    synchronized (this) {
+      entry.refCount--;
+      if (entry.refCount == 0 && entry.size < 0) {
+        // Failed to unpack
+        entries.remove(entry.key, entry);
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Removes the least recently used entries that are not referenced until the cache size is within the limit.
+   */
+  private void evict() {
+    List<File> evicted = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (totalSize > maxSize && iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.refCount > 0 || entry.size < 0) {
+          continue;
+        }
+        iterator.remove();
+        totalSize -= entry.size;
+
+        // Rename the directory so that the same artifact can be unpacked again while the deletion is in progress
+        File deleteDir = new File(cacheDir, entry.key + "." + System.nanoTime());
+        if (entry.dir.renameTo(deleteDir)) {
+          evicted.add(deleteDir);
+        } else {
+          deleteQuietly(entry.dir);
+        }
+      }
+    }
+    for (File dir : evicted) {
+      deleteQuietly(dir);
+    }
+  }
+
+  /**
+   * Computes the key of the given artifact. For local artifacts, it is the checksum of the jar entries, which is
+   * read from the central directory of the jar without reading the whole file. For remote artifacts, it is computed
+   * from the location, size and modification time of the artifact.
+   */
+  private static String getKey(Location artifactLocation) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    URI uri = artifactLocation.toURI();
+    if ("file".equals(uri.getScheme())) {
+      try (ZipFile zipFile = new ZipFile(new File(uri))) {
+        Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+          ZipEntry zipEntry = zipEntries.nextElement();
+          hasher.putString(zipEntry.getName(), Charsets.UTF_8)
+            .putLong(zipEntry.getCrc())
+            .putLong(zipEntry.getSize());
+        }
+      }
+    } else {
+      hasher.putString(uri.toString(), Charsets.UTF_8)
+        .putLong(artifactLocation.length())
+        .putLong(artifactLocation.lastModified());
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void deleteQuietly(File dir) {
+    try {
+      if (dir.exists()) {
+        DirUtils.deleteDirectoryContents(dir);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to delete directory {}", dir, e);
+    }
+  }
+
+  /**
+   * A reference to an unpacked artifact directory in the cache.
+   */
+  public final class Unpacked implements Closeable {
+
+    private final Entry entry;
+    private final AtomicBoolean closed;
+
+    private Unpacked(Entry entry) {
+      this.entry = entry;
+      this.closed = new AtomicBoolean();
+    }
+
+    /**
+     * Returns the directory that contains the unpacked artifact. The content of the directory must not be modified.
+     */
+    public File getDir() {
+      return entry.dir;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        release(entry);
+      }
+    }
+  }
+
+  /**
+   * An unpacked artifact in the cache.
+   */
+  private static final class Entry {
+    private final String key;
+    private final File dir;
+    private int refCount;
+    // Size of the unpacked content in bytes, or -1 if it is not unpacked yet
+    private long size = -1L;
+
+    Entry(String key, File dir) {
+      this.key = key;
+      this.dir = dir;
+    }
+  }
+}
@@ -47,6 +47,7 @@ import io.cdap.cdap.common.lang.CombineClassLoader;
 import io.cdap.cdap.common.lang.InstantiatorFactory;
 import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.internal.app.runtime.artifact.ArtifactUnpackCache;
 import io.cdap.cdap.internal.app.runtime.artifact.Artifacts;
 import io.cdap.cdap.internal.lang.FieldVisitor;
 import io.cdap.cdap.internal.lang.Fields;
@@ -103,6 +104,9 @@ public class PluginInstantiator implements Closeable {
   private final File pluginDir;
   private final ClassLoader parentClassLoader;
   private final boolean ownedParentClassLoader;
+  @Nullable
+  private final ArtifactUnpackCache unpackCache;
+  private final List<ArtifactUnpackCache.Unpacked> unpackedArtifacts;
 
   public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir) {
     this(cConf, parentClassLoader, pluginDir, true);
@@ -121,6 +125,8 @@ public class PluginInstantiator implements Closeable {
       .build(new ClassLoaderCacheLoader());
     this.parentClassLoader = filterClassloader ? PluginClassLoader.createParent(parentClassLoader) : parentClassLoader;
     this.ownedParentClassLoader = filterClassloader;
+    this.unpackCache = ArtifactUnpackCache.get(cConf);
+    this.unpackedArtifacts = Collections.synchronizedList(new ArrayList<>());
   }
 
   /**
@@ -394,6 +400,10 @@ public class PluginInstantiator implements Closeable {
     if (ownedParentClassLoader) {
       Closeables.closeQuietly((Closeable) parentClassLoader);
     }
+    synchronized (unpackedArtifacts) {
+      unpackedArtifacts.forEach(ArtifactUnpackCache.Unpacked::close);
+      unpackedArtifacts.clear();
+    }
     try {
       DirUtils.deleteDirectoryContents(tmpDir);
     } catch (IOException e) {
@@ -445,9 +455,17 @@ public class PluginInstantiator implements Closeable {
 
     @Override
     public PluginClassLoader load(ClassLoaderKey key) throws Exception {
-      File unpackedDir = DirUtils.createTempDir(tmpDir);
       File artifact = new File(pluginDir, Artifacts.getFileName(key.artifact));
-      BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
+      File unpackedDir;
+      if (unpackCache == null) {
+        unpackedDir = DirUtils.createTempDir(tmpDir);
+        BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
+      } else {
+        // The unpacked directory is shared, and is released when this instantiator is closed
+        ArtifactUnpackCache.Unpacked unpacked = unpackCache.unpack(Locations.toLocation(artifact));
+        unpackedArtifacts.add(unpacked);
+        unpackedDir = unpacked.getDir();
+      }
 
       Iterator<ArtifactId> parentIter = key.parents.iterator();
       if (!parentIter.hasNext()) {
@@ -142,19 +142,30 @@ public class ProgramScheduleStoreDataset {
     if (existing.isPresent() && existing.get().getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null) {
       throw new AlreadyExistsException(schedule.getScheduleId());
     }
-    
-    Collection<Field<?>> scheduleFields = new ArrayList<>(scheduleKeys);
+
+    scheduleStore.upsert(getScheduleFields(schedule, status, currentTime));
+    triggerStore.multiUpsert(getTriggerFields(schedule));
+  }
+
+  private static Collection<Field<?>> getScheduleFields(ProgramSchedule schedule, ProgramScheduleStatus status,
+                                                        long currentTime) {
+    Collection<Field<?>> scheduleFields = getScheduleKeys(schedule.getScheduleId());
     scheduleFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.SCHEDULE, GSON.toJson(schedule)));
     scheduleFields.add(Fields.longField(StoreDefinition.ProgramScheduleStore.UPDATE_TIME, currentTime));
     scheduleFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.STATUS, status.toString()));
-    scheduleStore.upsert(scheduleFields);
+    return scheduleFields;
+  }
 
+  private static List<Collection<Field<?>>> getTriggerFields(ProgramSchedule schedule) {
+    Collection<Field<?>> scheduleKeys = getScheduleKeys(schedule.getScheduleId());
+    List<Collection<Field<?>>> result = new ArrayList<>();
     int count = 0;
     for (String triggerKey : extractTriggerKeys(schedule)) {
       Collection<Field<?>> triggerFields = getTriggerKeys(scheduleKeys, count++);
       triggerFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.TRIGGER_KEY, triggerKey));
-      triggerStore.upsert(triggerFields);
+      result.add(triggerFields);
     }
+    return result;
   }
 
   /**
@@ -166,9 +177,30 @@ public class ProgramScheduleStoreDataset {
    */
   public long addSchedules(Iterable<? extends ProgramSchedule> schedules) throws AlreadyExistsException, IOException {
     long currentTime = System.currentTimeMillis();
+    // check that none of the schedules exist with one batch read
+    Set<ScheduleId> scheduleIds = new HashSet<>();
+    List<Collection<Field<?>>> scheduleKeys = new ArrayList<>();
+    for (ProgramSchedule schedule : schedules) {
+      if (!scheduleIds.add(schedule.getScheduleId())) {
+        throw new AlreadyExistsException(schedule.getScheduleId());
+      }
+      scheduleKeys.add(getScheduleKeys(schedule.getScheduleId()));
+    }
+    for (StructuredRow existing : scheduleStore.multiRead(scheduleKeys)) {
+      if (existing.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null) {
+        throw new AlreadyExistsException(rowToScheduleId(existing));
+      }
+    }
+
+    List<Collection<Field<?>>> scheduleFields = new ArrayList<>();
+    List<Collection<Field<?>>> triggerFields = new ArrayList<>();
     for (ProgramSchedule schedule : schedules) {
-      addScheduleWithStatus(schedule, ProgramScheduleStatus.SUSPENDED, currentTime); // initially suspended
+      // initially suspended
+      scheduleFields.add(getScheduleFields(schedule, ProgramScheduleStatus.SUSPENDED, currentTime));
+      triggerFields.addAll(getTriggerFields(schedule));
     }
+    scheduleStore.multiUpsert(scheduleFields);
+    triggerStore.multiUpsert(triggerFields);
     return currentTime;
   }
 
@@ -17,11 +17,13 @@
 package io.cdap.cdap.internal.app.services;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.messaging.MessagingContext;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.app.program.ProgramDescriptor;
 import io.cdap.cdap.app.runtime.ProgramOptions;
@@ -42,10 +44,12 @@ import io.cdap.cdap.internal.provision.ProvisionRequest;
 import io.cdap.cdap.internal.provision.ProvisionerNotifier;
 import io.cdap.cdap.internal.provision.ProvisioningService;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.context.MultiThreadMessagingContext;
 import io.cdap.cdap.proto.BasicThrowable;
 import io.cdap.cdap.proto.Notification;
 import io.cdap.cdap.proto.ProgramRunClusterStatus;
 import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProfileId;
 import io.cdap.cdap.proto.id.ProgramId;
@@ -64,35 +68,54 @@ import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * Service that receives program status notifications and persists to the store.
- * No transactions should be started in any of the overrided methods since they are already wrapped in a transaction.
+ *
+ * The notifications can be processed by multiple shards, as configured by
+ * {@link Constants.AppFabric#STATUS_EVENT_NUM_SHARDS}. Each shard consumes the whole topic, but only processes the
+ * notifications of the program runs of the applications assigned to it. Notifications of the same application are
+ * always processed in order by the same shard, since a program run inside a workflow also updates the run record
+ * of the workflow run. Each shard keeps track of its own position in the topic.
+ *
+ * The number of shards whose positions are in use is stored together with the positions. When the number of shards
+ * is changed, the new shards start from the earliest position of the shards of that previous configuration. Once
+ * every new shard has stored its own position, the new number of shards is stored and the positions of any other
+ * configuration are deleted.
  */
-public class ProgramNotificationSubscriberService extends AbstractNotificationSubscriberService {
+public class ProgramNotificationSubscriberService extends AbstractIdleService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProgramNotificationSubscriberService.class);
 
   private static final Gson GSON = ApplicationSpecificationAdapter.addTypeAdapters(new GsonBuilder()).create();
   private static final Type STRING_STRING_MAP = new TypeToken<Map<String, String>>() { }.getType();
   private static final String CDAP_VERSION = "cdap.version";
+  private static final String SHARD_SUBSCRIBER_PREFIX = "shard.";
+  // subscriber under which the number of shards of the stored positions is kept
+  private static final String NUM_SHARDS_SUBSCRIBER = "num.shards";
 
   private final String recordedProgramStatusPublishTopic;
   private final ProvisionerNotifier provisionerNotifier;
   private final ProgramLifecycleService programLifecycleService;
   private final ProvisioningService provisioningService;
   private final ProgramStateWriter programStateWriter;
-  private final Queue<Runnable> tasks;
   private final MetricsCollectionService metricsCollectionService;
+  private final MessagingContext messagingContext;
+  private final int numShards;
+  private final List<ShardSubscriber> shards;
 
   @Inject
   ProgramNotificationSubscriberService(MessagingService messagingService, CConfiguration cConf,
@@ -101,55 +124,225 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
                                        ProgramLifecycleService programLifecycleService,
                                        ProvisioningService provisioningService,
                                        ProgramStateWriter programStateWriter, TransactionRunner transactionRunner) {
-    super("program.status", cConf, cConf.get(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC),
-          cConf.getInt(Constants.AppFabric.STATUS_EVENT_FETCH_SIZE),
-          cConf.getLong(Constants.AppFabric.STATUS_EVENT_POLL_DELAY_MILLIS),
-          messagingService, metricsCollectionService, transactionRunner);
     this.recordedProgramStatusPublishTopic = cConf.get(Constants.AppFabric.PROGRAM_STATUS_RECORD_EVENT_TOPIC);
     this.provisionerNotifier = provisionerNotifier;
     this.programLifecycleService = programLifecycleService;
     this.provisioningService = provisioningService;
     this.programStateWriter = programStateWriter;
-    this.tasks = new LinkedList<>();
     this.metricsCollectionService = metricsCollectionService;
+    this.messagingContext = new MultiThreadMessagingContext(messagingService);
+    this.numShards = cConf.getInt(Constants.AppFabric.STATUS_EVENT_NUM_SHARDS, 1);
+    if (numShards <= 0) {
+      throw new IllegalArgumentException("The number of program status event shards must be positive, but got "
+                                           + numShards + " from " + Constants.AppFabric.STATUS_EVENT_NUM_SHARDS);
+    }
+    this.shards = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      shards.add(new ShardSubscriber(i, messagingService, cConf, metricsCollectionService, transactionRunner));
+    }
   }
 
-  @Nullable
   @Override
-  protected String loadMessageId(StructuredTableContext context) throws IOException, TableNotFoundException {
-    return getAppMetadataStore(context).retrieveSubscriberState(getTopicId().getTopic(), "");
+  protected void startUp() throws Exception {
+    List<ShardSubscriber> started = new ArrayList<>();
+    try {
+      for (ShardSubscriber shard : shards) {
+        shard.startAndWait();
+        started.add(shard);
+      }
+    } catch (Exception e) {
+      for (ShardSubscriber shard : started) {
+        stopQuietly(shard);
+      }
+      throw e;
+    }
+    LOG.debug("Started program notification subscriber with {} shards", numShards);
   }
 
   @Override
-  protected void storeMessageId(StructuredTableContext context, String messageId)
-    throws IOException, TableNotFoundException {
-    getAppMetadataStore(context).persistSubscriberState(getTopicId().getTopic(), "", messageId);
+  protected void shutDown() {
+    for (ShardSubscriber shard : shards) {
+      stopQuietly(shard);
+    }
   }
 
-  @Override
-  protected void processMessages(StructuredTableContext structuredTableContext,
-                                 Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
-    ProgramHeartbeatTable heartbeatDataset = new ProgramHeartbeatTable(structuredTableContext);
-    List<Runnable> tasks = new LinkedList<>();
-    while (messages.hasNext()) {
-      ImmutablePair<String, Notification> messagePair = messages.next();
-      List<Runnable> runnables = processNotification(heartbeatDataset,
-                                                     messagePair.getFirst().getBytes(StandardCharsets.UTF_8),
-                                                     messagePair.getSecond(), structuredTableContext);
-      tasks.addAll(runnables);
+  private void stopQuietly(ShardSubscriber shard) {
+    try {
+      shard.stopAndWait();
+    } catch (Exception e) {
+      LOG.warn("Exception raised when stopping program notification subscriber {}", shard.getServiceName(), e);
     }
+  }
 
-    // Only add post processing tasks if all messages are processed. If there is exception in the processNotifiation,
-    // messages will be replayed.
-    this.tasks.addAll(tasks);
+  /**
+   * Returns the shard that processes notifications of the given program run. Notifications without a program run
+   * are assigned to the first shard. The assignment must not change between processes, hence the hash is computed
+   * from the id parts instead of using {@link ApplicationId#hashCode()}.
+   */
+  private int getShard(@Nullable ProgramRunId programRunId) {
+    if (programRunId == null || numShards == 1) {
+      return 0;
+    }
+    int hash = Objects.hash(programRunId.getNamespace(), programRunId.getApplication(), programRunId.getVersion());
+    return (hash & Integer.MAX_VALUE) % numShards;
   }
 
-  @Override
-  protected void postProcess() {
-    Runnable task = tasks.poll();
-    while (task != null) {
-      task.run();
-      task = tasks.poll();
+  /**
+   * Returns the subscriber names under which the shards store their positions for the given number of shards.
+   * Without sharding, the subscriber state is stored under the same name as before sharding was added.
+   * The number of shards is part of the name since the assignment of applications to shards depends on it.
+   */
+  private static List<String> getSubscribers(int numShards) {
+    if (numShards == 1) {
+      return Collections.singletonList("");
+    }
+    List<String> subscribers = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      subscribers.add(SHARD_SUBSCRIBER_PREFIX + i + ".of." + numShards);
+    }
+    return subscribers;
+  }
+
+  /**
+   * Returns the {@link ProgramRunId} in the given notification or {@code null} if the notification doesn't have one.
+   */
+  @Nullable
+  private ProgramRunId getProgramRunId(Notification notification) {
+    String programRun = notification.getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
+    return programRun == null ? null : GSON.fromJson(programRun, ProgramRunId.class);
+  }
+
+  /**
+   * Subscriber that processes the notifications of one shard.
+   * No transactions should be started in any of the overrided methods since they are already wrapped in a
+   * transaction.
+   */
+  private final class ShardSubscriber extends AbstractNotificationSubscriberService {
+
+    private final int shard;
+    private final String subscriber;
+    private final Queue<Runnable> tasks;
+    // true once the number of shards stored with the positions is the current one, only used by the first shard
+    private boolean shardsPersisted;
+
+    ShardSubscriber(int shard, MessagingService messagingService, CConfiguration cConf,
+                    MetricsCollectionService metricsCollectionService, TransactionRunner transactionRunner) {
+      super(numShards == 1 ? "program.status" : "program.status." + shard, cConf,
+            cConf.get(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC),
+            cConf.getInt(Constants.AppFabric.STATUS_EVENT_FETCH_SIZE),
+            cConf.getLong(Constants.AppFabric.STATUS_EVENT_POLL_DELAY_MILLIS),
+            messagingService, metricsCollectionService, transactionRunner);
+      this.shard = shard;
+      this.subscriber = getSubscribers(numShards).get(shard);
+      this.tasks = new LinkedList<>();
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId(StructuredTableContext context) throws IOException, TableNotFoundException {
+      AppMetadataStore appMetadataStore = getAppMetadataStore(context);
+      String topic = getTopicId().getTopic();
+      String messageId = appMetadataStore.retrieveSubscriberState(topic, subscriber);
+      if (messageId != null) {
+        return messageId;
+      }
+      // If there is no state for this shard, which happens when the number of shards is changed, start from the
+      // earliest position of the shards of the previous configuration, such that no notification is missed.
+      // Notifications already processed by the previous shards are replayed, which is handled the same way as
+      // replay after failure. Without a stored number of shards, the previous state is the one without sharding.
+      String previousShards = appMetadataStore.retrieveSubscriberState(topic, NUM_SHARDS_SUBSCRIBER);
+      List<String> previousSubscribers = getSubscribers(previousShards == null ? 1 : Integer.parseInt(previousShards));
+      Map<String, String> states = appMetadataStore.retrieveSubscriberStates(topic);
+      return previousSubscribers.stream()
+        .map(states::get)
+        .filter(Objects::nonNull)
+        .min(Comparator.naturalOrder())
+        .orElse(null);
+    }
+
+    @Override
+    protected void storeMessageId(StructuredTableContext context, String messageId)
+      throws IOException, TableNotFoundException {
+      AppMetadataStore appMetadataStore = getAppMetadataStore(context);
+      String topic = getTopicId().getTopic();
+      appMetadataStore.persistSubscriberState(topic, subscriber, messageId);
+      // Only the first shard updates the rows of other shards, such that the transactions of the shards never
+      // conflict with each other
+      if (shard == 0 && !shardsPersisted) {
+        shardsPersisted = persistNumShards(appMetadataStore, topic);
+      }
+    }
+
+    /**
+     * Stores the current number of shards once every shard has stored its own position, and deletes the positions
+     * stored by any other configuration of shards.
+     *
+     * @return {@code true} if the current number of shards was already stored before
+     */
+    private boolean persistNumShards(AppMetadataStore appMetadataStore, String topic) throws IOException {
+      String storedShards = appMetadataStore.retrieveSubscriberState(topic, NUM_SHARDS_SUBSCRIBER);
+      if (Integer.toString(numShards).equals(storedShards)) {
+        return true;
+      }
+      List<String> subscribers = getSubscribers(numShards);
+      Map<String, String> states = appMetadataStore.retrieveSubscriberStates(topic);
+      if (!states.keySet().containsAll(subscribers)) {
+        return false;
+      }
+      for (String obsolete : states.keySet()) {
+        if ((obsolete.isEmpty() || obsolete.startsWith(SHARD_SUBSCRIBER_PREFIX)) && !subscribers.contains(obsolete)) {
+          appMetadataStore.deleteSubscriberState(topic, obsolete);
+        }
+      }
+      appMetadataStore.persistSubscriberState(topic, NUM_SHARDS_SUBSCRIBER, Integer.toString(numShards));
+      LOG.debug("All {} program notification subscriber shards have stored their positions", numShards);
+      return false;
+    }
+
+    @Override
+    protected void processMessages(StructuredTableContext structuredTableContext,
+                                   Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
+      // Collect the notifications of this shard, so that the run records they update are read in one batch
+      List<ImmutablePair<String, Notification>> notifications = new ArrayList<>();
+      Set<ProgramRunId> programRunIds = new HashSet<>();
+      while (messages.hasNext()) {
+        ImmutablePair<String, Notification> messagePair = messages.next();
+        ProgramRunId programRunId = getProgramRunId(messagePair.getSecond());
+        if (getShard(programRunId) != shard) {
+          continue;
+        }
+        notifications.add(messagePair);
+        if (programRunId != null) {
+          programRunIds.add(programRunId);
+        }
+      }
+      if (notifications.isEmpty()) {
+        return;
+      }
+
+      AppMetadataStore appMetadataStore = getAppMetadataStore(structuredTableContext);
+      appMetadataStore.prefetchRuns(programRunIds);
+      ProgramHeartbeatTable heartbeatDataset = new ProgramHeartbeatTable(structuredTableContext);
+      List<Runnable> tasks = new LinkedList<>();
+      for (ImmutablePair<String, Notification> messagePair : notifications) {
+        List<Runnable> runnables = processNotification(heartbeatDataset, appMetadataStore,
+                                                       messagePair.getFirst().getBytes(StandardCharsets.UTF_8),
+                                                       messagePair.getSecond(), structuredTableContext);
+        tasks.addAll(runnables);
+      }
+
+      // Only add post processing tasks if all messages are processed. If there is exception in the
+      // processNotifiation, messages will be replayed.
+      this.tasks.addAll(tasks);
+    }
+
+    @Override
+    protected void postProcess() {
+      Runnable task = tasks.poll();
+      while (task != null) {
+        task.run();
+        task = tasks.poll();
+      }
     }
   }
 
@@ -157,6 +350,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
    * Process a {@link Notification} received from TMS.
    *
    * @param programHeartbeatTable the {@link ProgramHeartbeatTable} for writing heart beats and program status
+   * @param appMetadataStore the {@link AppMetadataStore} for reading and writing run records
    * @param messageIdBytes the raw message id in the TMS for the notification
    * @param notification the {@link Notification} to process
    * @param context context to get the table for operations
@@ -165,9 +359,9 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
    * @throws Exception if failed to process the given notification
    */
   private List<Runnable> processNotification(ProgramHeartbeatTable programHeartbeatTable,
+                                             AppMetadataStore appMetadataStore,
                                              byte[] messageIdBytes, Notification notification,
                                              StructuredTableContext context) throws Exception {
-    AppMetadataStore appMetadataStore = AppMetadataStore.create(context);
     Map<String, String> properties = notification.getProperties();
     // Required parameters
     String programRun = properties.get(ProgramOptionConstants.PROGRAM_RUN_ID);
@@ -490,7 +684,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     notificationProperties.put(CDAP_VERSION, ProjectInfo.getVersion().toString());
     Notification programStatusNotification =
       new Notification(Notification.Type.PROGRAM_STATUS, notificationProperties);
-    getMessagingContext().getMessagePublisher().publish(NamespaceId.SYSTEM.getNamespace(),
+    messagingContext.getMessagePublisher().publish(NamespaceId.SYSTEM.getNamespace(),
                                                         recordedProgramStatusPublishTopic,
                                                         GSON.toJson(programStatusNotification));
   }
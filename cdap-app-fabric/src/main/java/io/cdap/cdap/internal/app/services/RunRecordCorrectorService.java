@@ -151,6 +151,14 @@ public abstract class RunRecordCorrectorService extends AbstractIdleService {
     return fixedPrograms;
   }
 
+  private void backfillStopTimeIndex() {
+    try {
+      store.backfillRunRecordsStopTimeIndex(txBatchSize);
+    } catch (Exception e) {
+      LOG.warn("Failed to add completed run records to the stop time index. It will be retried on the next start.", e);
+    }
+  }
+
   @Override
   protected void startUp() throws Exception {
     LOG.info("Starting RunRecordCorrectorService");
@@ -172,6 +180,9 @@ public abstract class RunRecordCorrectorService extends AbstractIdleService {
 
     Runnable runnable = new LocalDatasetDeleterRunnable(namespaceAdmin, store, datasetFramework);
     localDatasetDeleterService.scheduleWithFixedDelay(runnable, initialDelay, interval, TimeUnit.SECONDS);
+
+    // Completed run records from before the stop time index existed are added to it in the background
+    localDatasetDeleterService.execute(this::backfillStopTimeIndex);
   }
 
   @Override
@@ -64,7 +64,9 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +113,8 @@ public class AppMetadataStore {
 
   private static final String TYPE_COUNT = "runRecordCount";
   private static final String TYPE_RUN_RECORD_UPGRADE_COUNT = "runRecordUpgradeCount";
+  // Type of the program count row that marks the stop time index as containing all completed run records
+  private static final String TYPE_STOP_TIME_INDEX_COMPLETE = "stopTimeIndexComplete";
   private static final String SMALLEST_POSSIBLE_STRING = "";
 
   private static final Map<ProgramRunStatus, String> STATUS_TYPE_MAP = ImmutableMap.<ProgramRunStatus, String>builder()
@@ -129,9 +133,14 @@ public class AppMetadataStore {
   private StructuredTable applicationSpecificationTable;
   private StructuredTable workflowNodeStateTable;
   private StructuredTable runRecordsTable;
+  private StructuredTable runRecordsStopTimeIndexTable;
   private StructuredTable workflowsTable;
   private StructuredTable programCountsTable;
   private StructuredTable subscriberStateTable;
+  // Run records read through prefetchRuns, kept up to date by the writes and deletes done through this instance.
+  // A null value means the run has no run record.
+  private final Map<ProgramRunId, RunRecordMeta> prefetchedRuns = new HashMap<>();
+  private Boolean stopTimeIndexComplete;
 
   /**
    * Static method for creating an instance of {@link AppMetadataStore}.
@@ -177,6 +186,17 @@ public class AppMetadataStore {
     return runRecordsTable;
   }
 
+  private StructuredTable getRunRecordsStopTimeIndexTable() {
+    try {
+      if (runRecordsStopTimeIndexTable == null) {
+        runRecordsStopTimeIndexTable = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_STOP_TIME_INDEX);
+      }
+    } catch (TableNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return runRecordsStopTimeIndexTable;
+  }
+
   private StructuredTable getWorkflowsTable() {
     try {
       if (workflowsTable == null) {
@@ -362,9 +382,8 @@ public class AppMetadataStore {
       // Update the parent Workflow run record by adding node id and program run id in the properties
       Map<String, String> properties = new HashMap<>(record.getProperties());
       properties.put(workflowNodeId, programRunId.getRun());
-      writeToStructuredTableWithPrimaryKeys(
-        runRecordFields, RunRecordMeta.builder(record).setProperties(properties).setSourceId(sourceId).build(),
-        getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+      writeRunRecord(runRecordFields,
+                     RunRecordMeta.builder(record).setProperties(properties).setSourceId(sourceId).build());
     }
   }
 
@@ -425,8 +444,7 @@ public class AppMetadataStore {
       .setPrincipal(systemArgs.get(ProgramOptionConstants.PRINCIPAL))
       .build();
     List<Field<?>> fields = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, startTs);
-    writeToStructuredTableWithPrimaryKeys(
-      fields, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(fields, meta);
     List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, programRunId.getParent());
     getProgramCountsTable().increment(countKey, StoreDefinition.AppMetadataStore.COUNTS, 1L);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.PROVISIONING, programRunId);
@@ -480,8 +498,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.PROVISIONED, programRunId);
     return meta;
   }
@@ -520,8 +537,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONING, programRunId);
     return meta;
   }
@@ -561,8 +577,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONED, programRunId);
     return meta;
   }
@@ -601,8 +616,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.ORPHANED, programRunId);
     return meta;
   }
@@ -643,8 +657,7 @@ public class AppMetadataStore {
       .build();
 
     List<Field<?>> fields = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, startTs);
-    writeToStructuredTableWithPrimaryKeys(
-      fields, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(fields, meta);
     List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, programRunId.getParent());
     getProgramCountsTable().increment(countKey, StoreDefinition.AppMetadataStore.COUNTS, 1L);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.REJECTED, programRunId);
@@ -690,8 +703,7 @@ public class AppMetadataStore {
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.STARTING, programRunId);
     return meta;
   }
@@ -737,8 +749,7 @@ public class AppMetadataStore {
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.RUNNING, programRunId);
     return meta;
   }
@@ -813,8 +824,7 @@ public class AppMetadataStore {
       }
     }
     RunRecordMeta meta = builder.build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", toStatus, programRunId);
     return meta;
   }
@@ -860,8 +870,7 @@ public class AppMetadataStore {
       .setStatus(runStatus)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", runStatus, programRunId);
     return meta;
   }
@@ -913,9 +922,28 @@ public class AppMetadataStore {
 
   public Map<ProgramRunId, RunRecordMeta> getRuns(Set<ProgramRunId> programRunIds)
     throws IOException {
-    Map<ProgramRunId, RunRecordMeta> result = new HashMap();
+    // read both the active and the completed run record of all runs in one batch
+    List<Collection<Field<?>>> keys = new ArrayList<>(programRunIds.size() * 2);
+    for (ProgramRunId runId : programRunIds) {
+      long startTs = RunIds.getTime(runId.getRun(), TimeUnit.SECONDS);
+      keys.add(getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, runId, startTs));
+      keys.add(getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, runId, startTs));
+    }
+
+    Map<ProgramRunId, RunRecordMeta> records = new HashMap<>();
+    for (StructuredRow row : getRunRecordsTable().multiRead(keys)) {
+      RunRecordMeta record = deserializeRunRecordMeta(row);
+      // same as getRun, the active run record takes precedence over the completed one
+      if (TYPE_RUN_RECORD_ACTIVE.equals(row.getString(StoreDefinition.AppMetadataStore.RUN_STATUS))) {
+        records.put(record.getProgramRunId(), record);
+      } else {
+        records.putIfAbsent(record.getProgramRunId(), record);
+      }
+    }
+
+    Map<ProgramRunId, RunRecordMeta> result = new HashMap<>();
     for (ProgramRunId runId : programRunIds) {
-      result.put(runId, getRun(runId));
+      result.put(runId, records.get(runId));
     }
     return result;
   }
@@ -977,8 +1005,8 @@ public class AppMetadataStore {
     throws IOException {
     // TODO CDAP-12361 should consolidate these methods and get rid of duplicate / unnecessary methods.
     List<Field<?>> prefix = getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, namespaceId);
-    Predicate<RunRecordMeta> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
-    return getProgramRunIdMap(Range.singleton(prefix), timePredicate);
+    Predicate<StructuredRow> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
+    return getProgramRunIdMap(Range.singleton(prefix), null, timePredicate, Integer.MAX_VALUE);
   }
 
   /**
@@ -990,9 +1018,9 @@ public class AppMetadataStore {
    */
   public Map<ProgramRunId, RunRecordMeta> getActiveRuns(ApplicationId applicationId)
     throws IOException {
-    Predicate<RunRecordMeta> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
+    Predicate<StructuredRow> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
     List<Field<?>> prefix = getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId);
-    return getProgramRunIdMap(Range.singleton(prefix), timePredicate);
+    return getProgramRunIdMap(Range.singleton(prefix), null, timePredicate, Integer.MAX_VALUE);
   }
 
   /**
@@ -1004,9 +1032,9 @@ public class AppMetadataStore {
    */
   public Map<ProgramRunId, RunRecordMeta> getActiveRuns(ProgramId programId)
     throws IOException {
-    Predicate<RunRecordMeta> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
+    Predicate<StructuredRow> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
     List<Field<?>> prefix = getRunRecordProgramPrefix(TYPE_RUN_RECORD_ACTIVE, programId);
-    return getProgramRunIdMap(Range.singleton(prefix), timePredicate);
+    return getProgramRunIdMap(Range.singleton(prefix), null, timePredicate, Integer.MAX_VALUE);
   }
 
   public Map<ProgramRunId, RunRecordMeta> getRuns(@Nullable ProgramId programId, final ProgramRunStatus status,
@@ -1017,18 +1045,15 @@ public class AppMetadataStore {
       case ALL:
         Map<ProgramRunId, RunRecordMeta> runRecords = new LinkedHashMap<>();
         runRecords.putAll(getNonCompleteRuns(programId, TYPE_RUN_RECORD_ACTIVE, startTime, endTime,
-                                             limit - runRecords.size(), filter));
+                                             limit - runRecords.size(), null, filter));
         runRecords.putAll(getHistoricalRuns(programId, status, startTime, endTime, limit - runRecords.size(), filter));
         return runRecords;
       case PENDING:
       case STARTING:
       case RUNNING:
       case SUSPENDED:
-        Predicate<RunRecordMeta> stateFilter = record -> record.getStatus() == status;
-        if (filter != null) {
-          stateFilter = stateFilter.and(filter);
-        }
-        return getNonCompleteRuns(programId, TYPE_RUN_RECORD_ACTIVE, startTime, endTime, limit, stateFilter);
+        return getNonCompleteRuns(programId, TYPE_RUN_RECORD_ACTIVE, startTime, endTime, limit,
+                                  getStatusPredicate(status), filter);
       default:
         return getHistoricalRuns(programId, status, startTime, endTime, limit, filter);
     }
@@ -1050,18 +1075,14 @@ public class AppMetadataStore {
       case ALL:
         Map<ProgramRunId, RunRecordMeta> runRecords = new LinkedHashMap<>();
         runRecords.putAll(getNonCompleteRuns(applicationId, TYPE_RUN_RECORD_ACTIVE, limit - runRecords.size(),
-                                             filter));
+                                             null, filter));
         runRecords.putAll(getHistoricalRuns(applicationId, status, limit - runRecords.size(), filter));
         return runRecords;
       case PENDING:
       case STARTING:
       case RUNNING:
       case SUSPENDED:
-        Predicate<RunRecordMeta> stateFilter = record -> record.getStatus() == status;
-        if (filter != null) {
-          stateFilter = stateFilter.and(filter);
-        }
-        return getNonCompleteRuns(applicationId, TYPE_RUN_RECORD_ACTIVE, limit, stateFilter);
+        return getNonCompleteRuns(applicationId, TYPE_RUN_RECORD_ACTIVE, limit, getStatusPredicate(status), filter);
       default:
         return getHistoricalRuns(applicationId, status, limit, filter);
     }
@@ -1072,6 +1093,9 @@ public class AppMetadataStore {
   // JIRA https://issues.cask.co/browse/CDAP-2172
   @Nullable
   public RunRecordMeta getRun(ProgramRunId programRun) throws IOException {
+    if (prefetchedRuns.containsKey(programRun)) {
+      return prefetchedRuns.get(programRun);
+    }
     // Query active run record first
     RunRecordMeta running = getUnfinishedRun(programRun);
     // If program is running, this will be non-null
@@ -1082,11 +1106,33 @@ public class AppMetadataStore {
     return getCompletedRun(programRun);
   }
 
+  /**
+   * Reads the run records of the given program runs in one batch. Subsequent {@link #getRun(ProgramRunId)} calls
+   * on this instance for these runs are served without reading the table. This is for processing a batch of
+   * changes to the same set of runs within one transaction.
+   *
+   * @param programRunIds the program runs to read
+   */
+  public void prefetchRuns(Set<ProgramRunId> programRunIds) throws IOException {
+    Set<ProgramRunId> missing = programRunIds.stream()
+      .filter(runId -> !prefetchedRuns.containsKey(runId))
+      .collect(Collectors.toSet());
+    if (!missing.isEmpty()) {
+      prefetchedRuns.putAll(getRuns(missing));
+    }
+  }
+
   private void delete(RunRecordMeta record) throws IOException {
     ProgramRunId programRunId = record.getProgramRunId();
+    if (prefetchedRuns.containsKey(programRunId)) {
+      prefetchedRuns.put(programRunId, null);
+    }
     List<Field<?>> key = getProgramRunInvertedTimeKey(STATUS_TYPE_MAP.get(record.getStatus()), programRunId,
                                               record.getStartTs());
     getRunRecordsTable().delete(key);
+    if (record.getStopTs() != null) {
+      getRunRecordsStopTimeIndexTable().delete(getStopTimeIndexKey(programRunId, record.getStopTs()));
+    }
   }
 
   /**
@@ -1115,18 +1161,20 @@ public class AppMetadataStore {
 
   private Map<ProgramRunId, RunRecordMeta> getNonCompleteRuns(@Nullable ProgramId programId, String recordType,
                                                               final long startTime, final long endTime, int limit,
-                                                              Predicate<RunRecordMeta> filter)
+                                                              @Nullable Predicate<StructuredRow> rowFilter,
+                                                              @Nullable Predicate<RunRecordMeta> filter)
     throws IOException {
-    Predicate<RunRecordMeta> valuePredicate = andPredicate(getTimeRangePredicate(startTime, endTime), filter);
+    Predicate<StructuredRow> rowPredicate = andPredicate(getTimeRangePredicate(startTime, endTime), rowFilter);
     List<Field<?>> prefix = getRunRecordProgramPrefix(recordType, programId);
-    return getProgramRunIdMap(Range.singleton(prefix), valuePredicate, null, limit);
+    return getProgramRunIdMap(Range.singleton(prefix), filter, rowPredicate, limit);
   }
 
   private Map<ProgramRunId, RunRecordMeta> getNonCompleteRuns(ApplicationId applicationId, String recordType,
-                                                              int limit, Predicate<RunRecordMeta> filter)
+                                                              int limit, @Nullable Predicate<StructuredRow> rowFilter,
+                                                              @Nullable Predicate<RunRecordMeta> filter)
     throws IOException {
     List<Field<?>> prefix = getRunRecordApplicationPrefix(recordType, applicationId);
-    return getProgramRunIdMap(Range.singleton(prefix), filter, null, limit);
+    return getProgramRunIdMap(Range.singleton(prefix), filter, rowFilter, limit);
   }
 
   /**
@@ -1134,16 +1182,16 @@ public class AppMetadataStore {
    *
    * @param range to scan runRecordsTable with
    * @param predicate to filter the runRecordMetas by. If null, then does not filter.
-   * @param keyPredicate to filter the row keys by. If null, then does not filter.
+   * @param rowPredicate to filter the rows by before deserializing the run records. If null, then does not filter.
    * @param limit the maximum number of entries to return
    * @return map with keys as program run IDs
    */
   private Map<ProgramRunId, RunRecordMeta> getProgramRunIdMap(Range range,
                                                               @Nullable Predicate<RunRecordMeta> predicate,
-                                                              @Nullable Predicate<StructuredRow> keyPredicate,
+                                                              @Nullable Predicate<StructuredRow> rowPredicate,
                                                               int limit) throws IOException {
     Map<ProgramRunId, RunRecordMeta> map = new LinkedHashMap<>();
-    enumerateProgramRuns(range, predicate, keyPredicate, limit, meta -> map.put(meta.getProgramRunId(), meta));
+    enumerateProgramRuns(range, predicate, rowPredicate, limit, meta -> map.put(meta.getProgramRunId(), meta));
     return map;
   }
 
@@ -1152,19 +1200,19 @@ public class AppMetadataStore {
    *
    * @param range to scan runRecordsTable with
    * @param predicate to filter the runRecordMetas by. If null, then does not filter.
-   * @param keyPredicate to filter the row keys by. If null, then does not filter.
+   * @param rowPredicate to filter the rows by before deserializing the run records. If null, then does not filter.
    * @param limit the maximum number of entries to return
    */
   private void enumerateProgramRuns(Range range, @Nullable Predicate<RunRecordMeta> predicate,
-                                    @Nullable Predicate<StructuredRow> keyPredicate, int limit,
+                                    @Nullable Predicate<StructuredRow> rowPredicate, int limit,
                                     Consumer<RunRecordMeta> consumer)
     throws IOException {
     // Only pass in limit if predicates are null, or else we may return fewer than limit items
     try (CloseableIterator<StructuredRow> iterator =
-           getRunRecordsTable().scan(range, predicate == null && keyPredicate == null ? limit : Integer.MAX_VALUE)) {
+           getRunRecordsTable().scan(range, predicate == null && rowPredicate == null ? limit : Integer.MAX_VALUE)) {
       while (iterator.hasNext() && limit > 0) {
         StructuredRow row = iterator.next();
-        if (keyPredicate != null && !keyPredicate.test(row)) {
+        if (rowPredicate != null && !rowPredicate.test(row)) {
           continue;
         }
         RunRecordMeta meta = deserializeRunRecordMeta(row);
@@ -1216,14 +1264,159 @@ public class AppMetadataStore {
       // which excludes program run records that stopped before earliestStopTime and
       // program run records that started after latestStartTime, all remaining records are active
       // at some point within the time window and will be returned
-      result.putAll(getProgramRunIdMap(Range.singleton(
-        getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId)),
-                                       meta -> meta.getStopTs() != null && meta.getStopTs() >= earliestStopTime
-                                         && meta.getStartTs() < latestStartTime, null, limit));
+      if (!isStopTimeIndexComplete()) {
+        // scan the run records until the completed runs from before the index existed are added to it
+        Predicate<StructuredRow> timePredicate = row -> {
+          Long stopTs = getStopTs(row);
+          return stopTs != null && stopTs >= earliestStopTime && getStartTs(row) < latestStartTime;
+        };
+        result.putAll(getProgramRunIdMap(Range.singleton(
+          getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId)), null, timePredicate, limit));
+        continue;
+      }
+      List<Collection<Field<?>>> keys = new ArrayList<>();
+      for (ProgramRunId runId : getCompletedRunsByStopTime(namespaceId.getNamespace(), earliestStopTime,
+                                                           latestStartTime, limit)) {
+        keys.add(getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, runId,
+                                              RunIds.getTime(runId.getRun(), TimeUnit.SECONDS)));
+      }
+      for (StructuredRow row : getRunRecordsTable().multiRead(keys)) {
+        RunRecordMeta meta = deserializeRunRecordMeta(row);
+        result.put(meta.getProgramRunId(), meta);
+      }
     }
     return result;
   }
 
+  /**
+   * Returns the completed runs in the given namespace that stopped at or after the earliest stop time and started
+   * before the latest start time, by scanning the stop time index of the namespace from the earliest stop time.
+   *
+   * @param namespace the namespace of the runs
+   * @param earliestStopTime the earliest stop time in seconds, inclusive
+   * @param latestStartTime the latest start time in seconds, exclusive
+   * @param limit the maximum number of runs to return
+   * @return the list of runs ordered by stop time
+   */
+  private List<ProgramRunId> getCompletedRunsByStopTime(String namespace, long earliestStopTime,
+                                                        long latestStartTime, int limit) throws IOException {
+    List<Field<?>> begin = new ArrayList<>();
+    begin.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, namespace));
+    List<Field<?>> end = new ArrayList<>(begin);
+    begin.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, earliestStopTime));
+
+    List<ProgramRunId> runIds = new ArrayList<>();
+    Range range = Range.create(begin, Range.Bound.INCLUSIVE, end, Range.Bound.INCLUSIVE);
+    try (CloseableIterator<StructuredRow> iterator =
+           getRunRecordsStopTimeIndexTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext() && runIds.size() < limit) {
+        StructuredRow row = iterator.next();
+        // rows deleted in the current transaction are returned without the value column
+        if (row.getString(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS) == null
+          || row.getLong(StoreDefinition.AppMetadataStore.RUN_START_TIME) >= latestStartTime) {
+          continue;
+        }
+        runIds.add(new ApplicationId(namespace, row.getString(StoreDefinition.AppMetadataStore.APPLICATION_FIELD),
+                                     row.getString(StoreDefinition.AppMetadataStore.VERSION_FIELD))
+                     .program(ProgramType.valueOf(row.getString(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD)),
+                              row.getString(StoreDefinition.AppMetadataStore.PROGRAM_FIELD))
+                     .run(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD)));
+      }
+    }
+    return runIds;
+  }
+
+  /**
+   * Returns whether the stop time index contains all completed run records. Run records that completed before the
+   * index was created are only in the index once {@link #backfillStopTimeIndex} has gone through all run records.
+   */
+  public boolean isStopTimeIndexComplete() throws IOException {
+    if (stopTimeIndexComplete == null) {
+      stopTimeIndexComplete = getProgramCountsTable().read(getStopTimeIndexCompleteKey()).isPresent();
+    }
+    return stopTimeIndexComplete;
+  }
+
+  /**
+   * Adds completed run records to the stop time index, in the order of the run records table. Once there are no more
+   * run records to add, the index is marked as complete.
+   *
+   * @param afterRun the last run returned by the previous call, or {@code null} to start from the first run record
+   * @param limit the maximum number of run records to add
+   * @return the last run added, or {@code null} if there were no more run records to add
+   */
+  @Nullable
+  public ProgramRunId backfillStopTimeIndex(@Nullable ProgramRunId afterRun, int limit) throws IOException {
+    List<Field<?>> prefix = getRunRecordStatusPrefix(TYPE_RUN_RECORD_COMPLETED);
+    Range range = afterRun == null
+      ? Range.singleton(prefix)
+      : Range.create(getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, afterRun,
+                                                  RunIds.getTime(afterRun.getRun(), TimeUnit.SECONDS)),
+                     Range.Bound.EXCLUSIVE, prefix, Range.Bound.INCLUSIVE);
+    ProgramRunId lastRun = null;
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(range, limit)) {
+      while (iterator.hasNext()) {
+        RunRecordMeta meta = deserializeRunRecordMeta(iterator.next());
+        if (meta.getStopTs() != null) {
+          List<Field<?>> indexKey = getStopTimeIndexKey(meta.getProgramRunId(), meta.getStopTs());
+          indexKey.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS,
+                                          meta.getStatus().name()));
+          getRunRecordsStopTimeIndexTable().upsert(indexKey);
+        }
+        lastRun = meta.getProgramRunId();
+      }
+    }
+    if (lastRun == null) {
+      markStopTimeIndexComplete();
+    }
+    return lastRun;
+  }
+
+  private void markStopTimeIndexComplete() throws IOException {
+    List<Field<?>> key = getStopTimeIndexCompleteKey();
+    key.add(Fields.longField(StoreDefinition.AppMetadataStore.COUNTS, 1L));
+    getProgramCountsTable().upsert(key);
+    stopTimeIndexComplete = true;
+  }
+
+  private List<Field<?>> getStopTimeIndexCompleteKey() {
+    List<Field<?>> fields = getCountTypePrefix(TYPE_STOP_TIME_INDEX_COMPLETE);
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, SMALLEST_POSSIBLE_STRING));
+    return fields;
+  }
+
+  /**
+   * Returns all namespaces that have entries in the stop time index. Rather than scanning the whole index, this seeks
+   * to the first entry after each namespace found.
+   */
+  private List<String> getStopTimeIndexNamespaces() throws IOException {
+    List<String> namespaces = new ArrayList<>();
+    Range range = Range.all();
+    while (true) {
+      String namespace = null;
+      try (CloseableIterator<StructuredRow> iterator =
+             getRunRecordsStopTimeIndexTable().scan(range, Integer.MAX_VALUE)) {
+        while (namespace == null && iterator.hasNext()) {
+          StructuredRow row = iterator.next();
+          // rows deleted in the current transaction are returned without the value column
+          if (row.getString(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS) != null) {
+            namespace = row.getString(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
+          }
+        }
+      }
+      if (namespace == null) {
+        return namespaces;
+      }
+      namespaces.add(namespace);
+      range = Range.from(ImmutableList.of(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD,
+                                                             namespace)), Range.Bound.EXCLUSIVE);
+    }
+  }
+
   private Map<ProgramRunId, RunRecordMeta> getHistoricalRuns(List<Field<?>> historyKey, ProgramRunStatus status,
                                                              final long startTime, final long endTime, int limit,
                                                              @Nullable Predicate<RunRecordMeta> valueFilter)
@@ -1249,30 +1442,33 @@ public class AppMetadataStore {
     }
 
     if (status.equals(ProgramRunStatus.COMPLETED)) {
-      return getProgramRunIdMap(Range.singleton(historyKey),
-                                andPredicate(getPredicate(ProgramController.State.COMPLETED), valueFilter),
-                                keyFilter, limit);
+      return getProgramRunIdMap(Range.singleton(historyKey), valueFilter,
+                                andPredicate(getPredicate(ProgramController.State.COMPLETED), keyFilter), limit);
     }
     if (status.equals(ProgramRunStatus.KILLED)) {
-      return getProgramRunIdMap(Range.singleton(historyKey),
-                                andPredicate(getPredicate(ProgramController.State.KILLED), valueFilter),
-                                keyFilter, limit);
+      return getProgramRunIdMap(Range.singleton(historyKey), valueFilter,
+                                andPredicate(getPredicate(ProgramController.State.KILLED), keyFilter), limit);
     }
-    return getProgramRunIdMap(Range.singleton(historyKey),
-                              andPredicate(getPredicate(ProgramController.State.ERROR), valueFilter),
-                              keyFilter, limit);
+    return getProgramRunIdMap(Range.singleton(historyKey), valueFilter,
+                              andPredicate(getPredicate(ProgramController.State.ERROR), keyFilter), limit);
+  }
+
+  private Predicate<StructuredRow> getPredicate(final ProgramController.State state) {
+    return getStatusPredicate(state.getRunStatus());
   }
 
-  private Predicate<RunRecordMeta> getPredicate(final ProgramController.State state) {
-    return (record) -> record.getStatus().equals(state.getRunStatus());
+  private Predicate<StructuredRow> getStatusPredicate(final ProgramRunStatus status) {
+    return row -> getProgramRunStatus(row) == status;
   }
 
-  private Predicate<RunRecordMeta> getTimeRangePredicate(final long startTime, final long endTime) {
-    return (record) -> record.getStartTs() >= startTime && record.getStartTs() < endTime;
+  private Predicate<StructuredRow> getTimeRangePredicate(final long startTime, final long endTime) {
+    return row -> {
+      long startTs = getStartTs(row);
+      return startTs >= startTime && startTs < endTime;
+    };
   }
 
-  private Predicate<RunRecordMeta> andPredicate(Predicate<RunRecordMeta> first,
-                                                @Nullable Predicate<RunRecordMeta> second) {
+  private <T> Predicate<T> andPredicate(Predicate<T> first, @Nullable Predicate<T> second) {
     if (second != null) {
       return first.and(second);
     }
@@ -1295,7 +1491,22 @@ public class AppMetadataStore {
 
   public void deleteProgramHistory(String namespaceId, String appId, String versionId)
     throws IOException {
+    prefetchedRuns.clear();
     ApplicationId applicationId = new ApplicationId(namespaceId, appId, versionId);
+    // the stop time index is ordered by time within the namespace, hence delete the entries of each completed run
+    List<Field<?>> completedPrefix = getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED, applicationId);
+    try (CloseableIterator<StructuredRow> iterator =
+           getRunRecordsTable().scan(Range.singleton(completedPrefix), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        Long stopTs = getStopTs(row);
+        if (stopTs != null) {
+          ProgramRunId runId = getProgramIdFromRunRecordsPrimaryKeys(new ArrayList<>(row.getPrimaryKeys()))
+            .run(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD));
+          getRunRecordsStopTimeIndexTable().delete(getStopTimeIndexKey(runId, stopTs));
+        }
+      }
+    }
     getRunRecordsTable()
       .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
     getRunRecordsTable()
@@ -1306,10 +1517,13 @@ public class AppMetadataStore {
   }
 
   public void deleteProgramHistory(String namespaceId) throws IOException {
+    prefetchedRuns.clear();
     getRunRecordsTable().deleteAll(
       Range.singleton(getRunRecordNamespacePrefixWithString(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
     getRunRecordsTable().deleteAll(Range.singleton(
       getRunRecordNamespacePrefixWithString(TYPE_RUN_RECORD_COMPLETED, namespaceId)));
+    getRunRecordsStopTimeIndexTable().deleteAll(Range.singleton(
+      ImmutableList.of(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, namespaceId))));
     getProgramCountsTable().deleteAll(Range.singleton(getCountNamespacePrefix(TYPE_COUNT, namespaceId)));
     getProgramCountsTable().deleteAll(Range.singleton(
       getCountNamespacePrefix(TYPE_RUN_RECORD_UPGRADE_COUNT, namespaceId)));
@@ -1396,10 +1610,19 @@ public class AppMetadataStore {
       throw new BadRequestException(String.format("%d programs found, the maximum number supported is 100",
                                                   programIds.size()));
     }
+    List<Collection<Field<?>>> countKeys = new ArrayList<>(programIds.size());
+    for (ProgramId programId : programIds) {
+      countKeys.add(getProgramCountPrimaryKeys(TYPE_COUNT, programId));
+    }
+
+    Map<ProgramId, Long> counts = new HashMap<>();
+    for (StructuredRow row : getProgramCountsTable().multiRead(countKeys)) {
+      // program count keys have the same layout as the run record keys, with the count type as the first field
+      counts.put(getProgramIdFromRunRecordsPrimaryKeys(new ArrayList<>(row.getPrimaryKeys())),
+                 row.getLong(StoreDefinition.AppMetadataStore.COUNTS));
+    }
     for (ProgramId programId : programIds) {
-      List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, programId);
-      Optional<StructuredRow> row = getProgramCountsTable().read(countKey);
-      result.put(programId, row.isPresent() ? row.get().getLong(StoreDefinition.AppMetadataStore.COUNTS) : 0);
+      result.put(programId, counts.getOrDefault(programId, 0L));
     }
     return result;
   }
@@ -1420,6 +1643,30 @@ public class AppMetadataStore {
     return row.isPresent() ? row.get().getString(StoreDefinition.AppMetadataStore.SUBSCRIBER_MESSAGE) : null;
   }
 
+  /**
+   * Gets the ids of the last fetched message of all subscribers of the given TMS topic.
+   *
+   * @param topic the topic to lookup the last message ids
+   * @return a {@link Map} from subscriber name to the id of the last fetched message of that subscriber
+   */
+  public Map<String, String> retrieveSubscriberStates(String topic) throws IOException {
+    Map<String, String> states = new HashMap<>();
+    List<Field<?>> prefix =
+      Collections.singletonList(Fields.stringField(StoreDefinition.AppMetadataStore.SUBSCRIBER_TOPIC, topic));
+    try (CloseableIterator<StructuredRow> iterator =
+           getSubscriberStateTable().scan(Range.singleton(prefix), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        String messageId = row.getString(StoreDefinition.AppMetadataStore.SUBSCRIBER_MESSAGE);
+        // Rows deleted in the current transaction have no message id
+        if (messageId != null) {
+          states.put(row.getString(StoreDefinition.AppMetadataStore.SUBSCRIBER), messageId);
+        }
+      }
+    }
+    return states;
+  }
+
   /**
    * Updates the given topic's last fetched message id with the given message id for the given subscriber.
    *
@@ -1449,14 +1696,28 @@ public class AppMetadataStore {
   @VisibleForTesting
   Set<RunId> getRunningInRangeForStatus(String statusKey, final long startTimeInSecs,
                                         final long endTimeInSecs) throws IOException {
+    if (TYPE_RUN_RECORD_COMPLETED.equals(statusKey) && isStopTimeIndexComplete()) {
+      // Completed runs are looked up from the stop time index, which only contains the runs that stopped
+      // after the start time
+      Set<RunId> runIds = new HashSet<>();
+      for (String namespace : getStopTimeIndexNamespaces()) {
+        for (ProgramRunId runId : getCompletedRunsByStopTime(namespace, startTimeInSecs, endTimeInSecs,
+                                                             Integer.MAX_VALUE)) {
+          runIds.add(RunIds.fromString(runId.getRun()));
+        }
+      }
+      return runIds;
+    }
+
     // Create time filter to get running programs between start and end time
-    Predicate<RunRecordMeta> timeFilter = (runRecordMeta) ->
-      runRecordMeta.getStartTs() < endTimeInSecs &&
-        (runRecordMeta.getStopTs() == null || runRecordMeta.getStopTs() >= startTimeInSecs);
+    Predicate<StructuredRow> timeFilter = row -> {
+      Long stopTs = getStopTs(row);
+      return getStartTs(row) < endTimeInSecs && (stopTs == null || stopTs >= startTimeInSecs);
+    };
 
     List<Field<?>> prefix = getRunRecordStatusPrefix(statusKey);
     return
-      getProgramRunIdMap(Range.singleton(prefix), timeFilter, null, Integer.MAX_VALUE).entrySet()
+      getProgramRunIdMap(Range.singleton(prefix), null, timeFilter, Integer.MAX_VALUE).entrySet()
         .stream()
         .map(entry -> RunIds.fromString(entry.getValue().getPid()))
         .collect(Collectors.toSet());
@@ -1465,12 +1726,16 @@ public class AppMetadataStore {
   @VisibleForTesting
   // USE ONLY IN TESTS: WILL DELETE ALL METADATA STORE INFO
   public void deleteAllAppMetadataTables() throws IOException {
+    prefetchedRuns.clear();
     deleteTable(getApplicationSpecificationTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getWorkflowNodeStateTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
+    deleteTable(getRunRecordsStopTimeIndexTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getWorkflowsTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getProgramCountsTable(), StoreDefinition.AppMetadataStore.COUNT_TYPE);
     deleteTable(getSubscriberStateTable(), StoreDefinition.AppMetadataStore.SUBSCRIBER_TOPIC);
+    // there are no run records, hence all of them are in the stop time index
+    markStopTimeIndexComplete();
   }
 
   private void deleteTable(StructuredTable table, String firstKey) throws IOException {
@@ -1582,6 +1847,54 @@ public class AppMetadataStore {
     table.upsert(keys);
   }
 
+  /**
+   * Writes the given run record to the row with the given keys. Besides the serialized run record, fields that are
+   * commonly filtered on are written to their own columns if the table has them, which are read by
+   * {@link #getProgramRunStatus} and {@link #getStopTs} without deserializing the run record. Run records with a stop
+   * time are also added to the stop time index.
+   */
+  private void writeRunRecord(List<Field<?>> keys, RunRecordMeta meta) throws IOException {
+    keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA, GSON.toJson(meta)));
+    if (hasProjectedColumns()) {
+      keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS, meta.getStatus().name()));
+      // Only write the optional fields that are set. They never go back to null within the same row.
+      if (meta.getStopTs() != null) {
+        keys.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, meta.getStopTs()));
+      }
+      if (meta.getProfileId() != null) {
+        keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROFILE_FIELD,
+                                    meta.getProfileId().getScopedName()));
+      }
+      if (meta.getTwillRunId() != null) {
+        keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.TWILL_RUN_ID, meta.getTwillRunId()));
+      }
+    }
+    getRunRecordsTable().upsert(keys);
+    if (prefetchedRuns.containsKey(meta.getProgramRunId())) {
+      prefetchedRuns.put(meta.getProgramRunId(), meta);
+    }
+
+    if (meta.getStopTs() != null) {
+      List<Field<?>> indexKey = getStopTimeIndexKey(meta.getProgramRunId(), meta.getStopTs());
+      indexKey.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS, meta.getStatus().name()));
+      getRunRecordsStopTimeIndexTable().upsert(indexKey);
+    }
+  }
+
+  private List<Field<?>> getStopTimeIndexKey(ProgramRunId runId, long stopTs) {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, runId.getNamespace()));
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, stopTs));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD, runId.getApplication()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD, runId.getVersion()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD, runId.getType().name()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, runId.getProgram()));
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME,
+                                RunIds.getTime(runId.getRun(), TimeUnit.SECONDS)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_FIELD, runId.getRun()));
+    return fields;
+  }
+
   private List<Field<?>> getRunRecordStatusPrefix(String status) {
     List<Field<?>> fields = new ArrayList<>();
     fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, status));
@@ -1644,6 +1957,43 @@ public class AppMetadataStore {
     return newMeta;
   }
 
+  /**
+   * Returns the start time in seconds of the run record in the given row, which is part of the row key.
+   */
+  private static long getStartTs(StructuredRow row) {
+    return Long.MAX_VALUE - row.getLong(StoreDefinition.AppMetadataStore.RUN_START_TIME);
+  }
+
+  /**
+   * Returns whether the run records table has the columns that run record fields are projected into. A table that
+   * was created before the columns existed doesn't have them until it is upgraded by
+   * {@link StoreDefinition.AppMetadataStore#createTables}.
+   */
+  private boolean hasProjectedColumns() {
+    return getRunRecordsTable().getSchema().getType(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS) != null;
+  }
+
+  /**
+   * Returns the {@link ProgramRunStatus} of the run record in the given row. Rows written before the status was
+   * projected into its own column fall back to the serialized run record.
+   */
+  private ProgramRunStatus getProgramRunStatus(StructuredRow row) {
+    String status = hasProjectedColumns() ? row.getString(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS) : null;
+    return status == null ? deserializeRunRecordMeta(row).getStatus() : ProgramRunStatus.valueOf(status);
+  }
+
+  /**
+   * Returns the stop time in seconds of the run record in the given row, or {@code null} if the run is not stopped.
+   * Rows written before the stop time was projected into its own column fall back to the serialized run record.
+   */
+  @Nullable
+  private Long getStopTs(StructuredRow row) {
+    if (!hasProjectedColumns() || row.getString(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS) == null) {
+      return deserializeRunRecordMeta(row).getStopTs();
+    }
+    return row.getLong(StoreDefinition.AppMetadataStore.RUN_STOP_TIME);
+  }
+
   private static ProgramId getProgramIdFromRunRecordsPrimaryKeys(List<Field<?>> primaryKeys) {
     // Assume keys are in correct ordering - skip first field since it's run_status
     return new ApplicationId(getStringFromField(primaryKeys.get(1)), getStringFromField(primaryKeys.get(2)),
@@ -731,6 +731,24 @@ public class DefaultStore implements Store {
     return runs;
   }
 
+  @Override
+  public void backfillRunRecordsStopTimeIndex(int txBatchSize) {
+    if (TransactionRunners.run(transactionRunner, context -> {
+      return getAppMetadataStore(context).isStopTimeIndexComplete();
+    })) {
+      return;
+    }
+    LOG.info("Adding completed run records to the run records stop time index");
+    ProgramRunId lastRun = null;
+    do {
+      ProgramRunId afterRun = lastRun;
+      lastRun = TransactionRunners.run(transactionRunner, context -> {
+        return getAppMetadataStore(context).backfillStopTimeIndex(afterRun, txBatchSize);
+      });
+    } while (lastRun != null);
+    LOG.info("Completed adding run records to the run records stop time index");
+  }
+
   @Override
   public long getProgramRunCount(ProgramId programId) throws NotFoundException {
     return TransactionRunners.run(transactionRunner, context -> {
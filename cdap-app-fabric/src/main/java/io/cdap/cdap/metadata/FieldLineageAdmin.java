@@ -156,14 +156,23 @@ public class FieldLineageAdmin {
     Set<String> lineageFields = fieldLineageReader.getFields(endPoint, start, end);
     Map<DatasetId, Set<FieldRelation>> incomingRelations = new HashMap<>();
     Map<DatasetId, Set<FieldRelation>> outgoingRelations = new HashMap<>();
-    for (String field : lineageFields) {
-      EndPointField endPointField = new EndPointField(endPoint, field);
 
+    // read the summaries of all fields at once, instead of once for every field
+    Map<String, Set<EndPointField>> incomingSummaries = Collections.emptyMap();
+    Map<String, Set<EndPointField>> outgoingSummaries = Collections.emptyMap();
+    if (direction == Constants.FieldLineage.Direction.INCOMING || direction == Constants.FieldLineage.Direction.BOTH) {
+      incomingSummaries = fieldLineageReader.getIncomingSummaries(endPoint, start, end);
+    }
+    if (direction == Constants.FieldLineage.Direction.OUTGOING || direction == Constants.FieldLineage.Direction.BOTH) {
+      outgoingSummaries = fieldLineageReader.getOutgoingSummaries(endPoint, start, end);
+    }
+
+    for (String field : lineageFields) {
       // compute the incoming field level lineage
       if (direction == Constants.FieldLineage.Direction.INCOMING ||
         direction == Constants.FieldLineage.Direction.BOTH) {
         Map<DatasetId, Set<String>> incomingSummary =
-          convertSummaryToDatasetMap(fieldLineageReader.getIncomingSummary(endPointField, start, end));
+          convertSummaryToDatasetMap(incomingSummaries.getOrDefault(field, Collections.emptySet()));
         // here the field itself will be the destination
         computeAndAddRelations(incomingRelations, field, true, incomingSummary);
       }
@@ -172,7 +181,7 @@ public class FieldLineageAdmin {
       if (direction == Constants.FieldLineage.Direction.OUTGOING ||
         direction == Constants.FieldLineage.Direction.BOTH) {
         Map<DatasetId, Set<String>> outgoingSummary =
-          convertSummaryToDatasetMap(fieldLineageReader.getOutgoingSummary(endPointField, start, end));
+          convertSummaryToDatasetMap(outgoingSummaries.getOrDefault(field, Collections.emptySet()));
         // here the field itself will be the source
         computeAndAddRelations(outgoingRelations, field, false, outgoingSummary);
       }
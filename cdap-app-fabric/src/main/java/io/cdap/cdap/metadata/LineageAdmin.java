@@ -26,13 +26,17 @@ import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import io.cdap.cdap.app.store.Store;
 import io.cdap.cdap.common.app.RunIds;
+import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.data2.metadata.lineage.AccessType;
 import io.cdap.cdap.data2.metadata.lineage.DefaultLineageStoreReader;
 import io.cdap.cdap.data2.metadata.lineage.Lineage;
+import io.cdap.cdap.data2.metadata.lineage.LineageGraph;
 import io.cdap.cdap.data2.metadata.lineage.LineageStoreReader;
 import io.cdap.cdap.data2.metadata.lineage.Relation;
+import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
 import io.cdap.cdap.internal.app.store.RunRecordMeta;
 import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.ProgramType;
 import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.proto.id.NamespacedEntityId;
 import io.cdap.cdap.proto.id.ProgramId;
@@ -58,10 +62,6 @@ public class LineageAdmin {
 
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
 
-  private static final Function<Relation, ProgramId> RELATION_TO_PROGRAM_FUNCTION = Relation::getProgram;
-
-  private static final Function<Relation, NamespacedEntityId> RELATION_TO_DATA_FUNCTION = Relation::getData;
-
   private static final Function<Collection<Relation>, Collection<Relation>> COLLAPSE_UNKNOWN_TYPE_FUNCTION =
     relations -> {
       if (relations.size() <= 1) {
@@ -71,12 +71,17 @@ public class LineageAdmin {
       return Collections2.filter(relations, relation -> relation.getAccess() != AccessType.UNKNOWN);
     };
 
-  private final LineageStoreReader lineageStoreReader;
+  private final LineageGraph lineageGraph;
   private final Store store;
 
-  @Inject
+  @VisibleForTesting
   LineageAdmin(LineageStoreReader lineageStoreReader, Store store) {
-    this.lineageStoreReader = lineageStoreReader;
+    this(new LineageGraph(CConfiguration.create(), lineageStoreReader), store);
+  }
+
+  @Inject
+  LineageAdmin(LineageGraph lineageGraph, Store store) {
+    this.lineageGraph = lineageGraph;
     this.store = store;
   }
 
@@ -174,6 +179,26 @@ public class LineageAdmin {
     return workflowIDs;
   }
 
+  private Set<ProgramRunId> getWorkflowRunIds(Map<ProgramRunId, RunRecordMeta> runRecordMap) {
+    Set<ProgramRunId> workflowRunIds = new HashSet<>();
+    for (Map.Entry<ProgramRunId, RunRecordMeta> entry : runRecordMap.entrySet()) {
+      RunRecordMeta runRecord = entry.getValue();
+      if (runRecord == null) {
+        continue;
+      }
+      String workflowRunId = runRecord.getProperties().get("workflowrunid");
+      Map<String, String> systemArgs = runRecord.getSystemArgs();
+      if (workflowRunId != null && systemArgs != null
+        && systemArgs.containsKey(ProgramOptionConstants.WORKFLOW_NAME)) {
+        ProgramId programId = entry.getKey().getParent();
+        workflowRunIds.add(new ProgramRunId(programId.getNamespace(), programId.getApplication(),
+                                            ProgramType.WORKFLOW, systemArgs.get(ProgramOptionConstants.WORKFLOW_NAME),
+                                            workflowRunId));
+      }
+    }
+    return workflowRunIds;
+  }
+
   private Multimap<RelationKey, Relation> doComputeRollupLineage(Multimap<RelationKey, Relation> relations) {
 
     // Make a set of all ProgramIDs in the relations
@@ -190,16 +215,26 @@ public class LineageAdmin {
     // Get workflow Run IDs for all the programs in the relations
     final Set<String> workflowIDs = getWorkflowIds(relations, runRecordMap);
 
-    // Get Program IDs for workflow Run IDs
-    // TODO: These scans could be expensive. CDAP-7571.
-    Map<ProgramRunId, RunRecordMeta> workflowRunRecordMap =
-      store.getRuns(ProgramRunStatus.ALL,
-                    input ->  workflowIDs.contains(input.getPid()));
-
-    // Create a map from RunId to ProgramId for all workflows
+    // Get Program IDs for workflow Run IDs. Programs started by a workflow have the workflow name in their system
+    // arguments, which is used to look up the workflow runs directly. Only the workflow runs that cannot be found
+    // this way are looked up by scanning the run records.
     Map<String, ProgramRunId> workflowIdMap = new HashMap<>();
-    for (Map.Entry<ProgramRunId, RunRecordMeta> entry : workflowRunRecordMap.entrySet()) {
-      workflowIdMap.put(entry.getValue().getPid(), entry.getKey());
+    for (Map.Entry<ProgramRunId, RunRecordMeta> entry : store.getRuns(getWorkflowRunIds(runRecordMap)).entrySet()) {
+      // the run record is null if the workflow run does not exist
+      if (entry.getValue() != null) {
+        workflowIdMap.put(entry.getValue().getPid(), entry.getKey());
+      }
+    }
+    Set<String> remainingWorkflowIDs = new HashSet<>(workflowIDs);
+    remainingWorkflowIDs.removeAll(workflowIdMap.keySet());
+    if (!remainingWorkflowIDs.isEmpty()) {
+      // TODO: These scans could be expensive. CDAP-7571.
+      Map<ProgramRunId, RunRecordMeta> workflowRunRecordMap =
+        store.getRuns(ProgramRunStatus.ALL,
+                      input -> remainingWorkflowIDs.contains(input.getPid()));
+      for (Map.Entry<ProgramRunId, RunRecordMeta> entry : workflowRunRecordMap.entrySet()) {
+        workflowIdMap.put(entry.getValue().getPid(), entry.getKey());
+      }
     }
 
     // For all relations, replace ProgramIds with workflow ProgramIds
@@ -231,36 +266,30 @@ public class LineageAdmin {
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
+      // Fetch related programs of all datasets of this level
+      toVisitDatasets.removeAll(visitedDatasets);
+      visitedDatasets.addAll(toVisitDatasets);
+      LOG.trace("Visiting datasets {}", toVisitDatasets);
+      Set<Relation> programRelations = lineageGraph.getRelations(toVisitDatasets, scanRange.getStart(),
+                                                                 scanRange.getEnd(), scanRange.getFilter());
+      LOG.trace("Got program relations {}", programRelations);
       toVisitPrograms.clear();
-      for (NamespacedEntityId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
-        }
+      for (Relation relation : programRelations) {
+        relations.put(new RelationKey(relation), relation);
+        toVisitPrograms.add(relation.getProgram());
       }
 
+      // Fetch related datasets of all programs of this level
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      LOG.trace("Visiting programs {}", toVisitPrograms);
+      Set<Relation> datasetRelations = lineageGraph.getRelations(toVisitPrograms, scanRange.getStart(),
+                                                                 scanRange.getEnd(), scanRange.getFilter());
+      LOG.trace("Got data relations {}", datasetRelations);
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
-        }
+      for (Relation relation : datasetRelations) {
+        relations.put(new RelationKey(relation), relation);
+        toVisitDatasets.add(relation.getData());
       }
     }
 
@@ -274,14 +303,6 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(NamespacedEntityId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (!(data instanceof DatasetId)) {
-      throw new IllegalStateException("Unknown data type " + data);
-    }
-    return lineageStoreReader.getRelations((DatasetId) data, start, end, filter);
-  }
-
   /**
    * Convert a set of runIds into a scan range based on earliest runtime and latest runtime of runIds.
    * Also, add a scan filter to include only runIds in the given set.
@@ -32,6 +32,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.service.RetryStrategies;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.data2.metadata.lineage.LineageGraph;
 import io.cdap.cdap.data2.metadata.lineage.LineageTable;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageInfo;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageTable;
@@ -71,10 +72,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -107,7 +110,10 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
   private final MetadataStorage metadataStorage;
   private final MultiThreadMessagingContext messagingContext;
   private final TransactionRunner transactionRunner;
+  private final LineageGraph lineageGraph;
   private final int maxRetriesOnConflict;
+  // accesses processed in the current transaction, to be added to the lineage graph once they are committed
+  private final List<ImmutablePair<ProgramRunId, DataAccessLineage>> pendingAccesses = new ArrayList<>();
 
   private String conflictMessageId = null;
   private int conflictCount = 0;
@@ -116,7 +122,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
   MetadataSubscriberService(CConfiguration cConf, MessagingService messagingService,
                             MetricsCollectionService metricsCollectionService,
                             MetadataStorage metadataStorage,
-                            TransactionRunner transactionRunner) {
+                            TransactionRunner transactionRunner, LineageGraph lineageGraph) {
     super(
       NamespaceId.SYSTEM.topic(cConf.get(Constants.Metadata.MESSAGING_TOPIC)),
       cConf.getInt(Constants.Metadata.MESSAGING_FETCH_SIZE),
@@ -135,6 +141,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
     this.messagingContext = new MultiThreadMessagingContext(messagingService);
     this.metadataStorage = metadataStorage;
     this.transactionRunner = transactionRunner;
+    this.lineageGraph = lineageGraph;
     this.maxRetriesOnConflict = cConf.getInt(Constants.Metadata.MESSAGING_RETRIES_ON_CONFLICT);
   }
 
@@ -183,6 +190,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
                                  Iterator<ImmutablePair<String, MetadataMessage>> messages)
     throws IOException, ConflictException {
     Map<MetadataMessage.Type, MetadataMessageProcessor> processors = new HashMap<>();
+    pendingAccesses.clear();
 
     // Loop over all fetched messages and process them with corresponding MetadataMessageProcessor
     while (messages.hasNext()) {
@@ -240,6 +248,17 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
     }
   }
 
+  @Override
+  protected void postProcess() {
+    // the accesses are only added to the lineage graph after the transaction that wrote them is committed,
+    // so that the graph never contains accesses that are not in the lineage store
+    for (ImmutablePair<ProgramRunId, DataAccessLineage> access : pendingAccesses) {
+      DataAccessLineage lineage = access.getSecond();
+      lineageGraph.addAccess(access.getFirst(), lineage.getDatasetId(), lineage.getAccessType());
+    }
+    pendingAccesses.clear();
+  }
+
   /**
    * The {@link MetadataMessageProcessor} for processing {@link DataAccessLineage}.
    */
@@ -258,6 +277,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
       ProgramRunId programRunId = (ProgramRunId) message.getEntityId();
       LineageTable lineageTable = LineageTable.create(context);
       lineageTable.addAccess(programRunId, lineage.getDatasetId(), lineage.getAccessType(), lineage.getAccessTime());
+      pendingAccesses.add(new ImmutablePair<>(programRunId, lineage));
     }
   }
 
@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.app.store.Store;
 import io.cdap.cdap.common.ConflictException;
@@ -31,15 +32,20 @@ import io.cdap.cdap.common.namespace.NamespaceQueryAdmin;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.internal.app.runtime.schedule.ScheduleTaskRunner;
 import io.cdap.cdap.internal.app.runtime.schedule.constraint.CheckableConstraint;
+import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConcurrencyConstraint;
 import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConstraintContext;
 import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConstraintResult;
+import io.cdap.cdap.internal.app.runtime.schedule.constraint.LastRunConstraint;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.JobKey;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueue;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
 import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
 import io.cdap.cdap.internal.app.services.ProgramLifecycleService;
 import io.cdap.cdap.internal.app.services.PropertiesResolver;
 import io.cdap.cdap.internal.schedule.constraint.Constraint;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ScheduleId;
 import io.cdap.cdap.spi.data.transaction.TransactionException;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
@@ -48,14 +54,29 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Polls the JobQueue, checks the jobs for constraint satisfaction, and launches them.
+ *
+ * Each partition of the JobQueue is handled by one thread. A job with constraints not satisfied is not checked again
+ * before the next check time given by its constraints. After going through all jobs of a partition, the thread
+ * waits until the earliest next check time of the jobs in the partition, until jobs in the partition are updated
+ * (see {@link #jobsUpdated(Collection)}), or until the status of a program that jobs with run based constraints are
+ * waiting for changed (see {@link #programStatusChanged(Collection)}), whichever comes first.
  */
+@Singleton
 class ConstraintCheckerService extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(ConstraintCheckerService.class);
 
@@ -65,6 +86,9 @@ class ConstraintCheckerService extends AbstractIdleService {
   private final NamespaceQueryAdmin namespaceQueryAdmin;
   private final CConfiguration cConf;
   private final TransactionRunner transactionRunner;
+  private final int numPartitions;
+  private final long maxIdleMillis;
+  private final List<ConstraintCheckerThread> checkerThreads;
   private ScheduleTaskRunner taskRunner;
   private ListeningExecutorService taskExecutorService;
   private volatile boolean stopping = false;
@@ -81,6 +105,37 @@ class ConstraintCheckerService extends AbstractIdleService {
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.cConf = cConf;
     this.transactionRunner = transactionRunner;
+    this.numPartitions = cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS);
+    this.maxIdleMillis = cConf.getLong(Constants.Scheduler.CONSTRAINT_CHECK_MAX_IDLE_MILLIS);
+    List<ConstraintCheckerThread> checkerThreads = new ArrayList<>(numPartitions);
+    for (int partition = 0; partition < numPartitions; partition++) {
+      checkerThreads.add(new ConstraintCheckerThread(partition));
+    }
+    this.checkerThreads = Collections.unmodifiableList(checkerThreads);
+  }
+
+  /**
+   * Notifies that jobs of the given schedules were added or updated, such that the partitions containing them are
+   * checked without waiting. This should be called after the transaction that updated the jobs is committed.
+   */
+  void jobsUpdated(Collection<ScheduleId> scheduleIds) {
+    Set<Integer> partitions = new HashSet<>();
+    for (ScheduleId scheduleId : scheduleIds) {
+      partitions.add(JobQueueTable.getPartition(scheduleId, numPartitions));
+    }
+    for (int partition : partitions) {
+      checkerThreads.get(partition).wakeUp(Collections.emptySet());
+    }
+  }
+
+  /**
+   * Notifies that the status of runs of the given programs changed, such that jobs waiting for constraints that
+   * depend on the runs of these programs are checked without waiting.
+   */
+  void programStatusChanged(Collection<ProgramId> programIds) {
+    for (ConstraintCheckerThread checkerThread : checkerThreads) {
+      checkerThread.wakeUp(programIds);
+    }
   }
 
   @Override
@@ -90,9 +145,8 @@ class ConstraintCheckerService extends AbstractIdleService {
       Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("constraint-checker-task-%d").build()));
     taskRunner = new ScheduleTaskRunner(store, lifecycleService, propertiesResolver, namespaceQueryAdmin, cConf);
 
-    int numPartitions = cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS);
-    for (int partition = 0; partition < numPartitions; partition++) {
-      taskExecutorService.submit(new ConstraintCheckerThread(partition));
+    for (ConstraintCheckerThread checkerThread : checkerThreads) {
+      taskExecutorService.submit(checkerThread);
     }
     LOG.info("Started ConstraintCheckerService. state: " + state());
   }
@@ -101,6 +155,9 @@ class ConstraintCheckerService extends AbstractIdleService {
   protected void shutDown() throws Exception {
     stopping = true;
     LOG.info("Stopping ConstraintCheckerService.");
+    for (ConstraintCheckerThread checkerThread : checkerThreads) {
+      checkerThread.wakeUp(Collections.emptySet());
+    }
     try {
       // Shutdown the executor and wait for all pending task to be completed for max of 5 seconds
       taskExecutorService.shutdown();
@@ -119,6 +176,14 @@ class ConstraintCheckerService extends AbstractIdleService {
     private final RetryStrategy scheduleStrategy;
     private final int partition;
     private final Deque<Job> readyJobs = new ArrayDeque<>();
+    // Jobs in PENDING_CONSTRAINT state that didn't satisfy their constraints when last checked
+    private final Map<JobKey, WaitingJob> waitingJobs = new HashMap<>();
+    // Jobs seen in the current pass through the partition
+    private final Set<JobKey> scannedJobs = new HashSet<>();
+    // Programs with status changed since the last wait, guarded by this
+    private final Set<ProgramId> changedPrograms = new HashSet<>();
+    // Whether the thread should not wait for the next check, guarded by this
+    private boolean wakeUp;
     private Job lastConsumed;
     private int failureCount;
 
@@ -138,7 +203,7 @@ class ConstraintCheckerService extends AbstractIdleService {
           long sleepTime = checkJobQueue();
           // Don't sleep if sleepTime returned is 0
           if (sleepTime > 0) {
-            TimeUnit.MILLISECONDS.sleep(sleepTime);
+            await(sleepTime);
           }
         } catch (InterruptedException e) {
           // sleep is interrupted, just exit without doing anything
@@ -146,15 +211,56 @@ class ConstraintCheckerService extends AbstractIdleService {
       }
     }
 
+    /**
+     * Wakes up this thread if it is waiting for the next check.
+     *
+     * @param programIds programs with status changed. This thread only wakes up for these programs if it has jobs
+     *                   waiting for constraints that depend on runs of these programs. If empty, always wakes up.
+     */
+    synchronized void wakeUp(Collection<ProgramId> programIds) {
+      if (programIds.isEmpty()) {
+        wakeUp = true;
+      } else {
+        changedPrograms.addAll(programIds);
+      }
+      notifyAll();
+    }
+
+    /**
+     * Waits for the given amount of time, or until this thread is woken up.
+     */
+    private synchronized void await(long millis) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + millis;
+      long waitMillis = millis;
+      while (!stopping && !wakeUp && waitMillis > 0) {
+        if (!changedPrograms.isEmpty()) {
+          boolean affected = false;
+          for (WaitingJob waitingJob : waitingJobs.values()) {
+            if (waitingJob.dependsOnRuns && changedPrograms.contains(waitingJob.programId)) {
+              waitingJob.nextCheckTime = 0L;
+              affected = true;
+            }
+          }
+          changedPrograms.clear();
+          if (affected) {
+            break;
+          }
+        }
+        wait(waitMillis);
+        waitMillis = deadline - System.currentTimeMillis();
+      }
+      wakeUp = false;
+    }
+
     /**
      * Check jobs in job queue for constraint satisfaction.
      *
      * @return sleep time in milliseconds before next fetch
      */
     private long checkJobQueue() {
-      boolean emptyFetch = false;
+      boolean scanCompleted = false;
       try {
-        emptyFetch = TransactionRunners.run(transactionRunner, context -> {
+        scanCompleted = TransactionRunners.run(transactionRunner, context -> {
           return checkJobConstraints(JobQueueTable.getJobQueue(context, cConf));
         });
 
@@ -172,28 +278,43 @@ class ConstraintCheckerService extends AbstractIdleService {
         return scheduleStrategy.nextRetry(failureCount, 0);
       }
 
-      // Sleep for 2 seconds if there's no jobs in the queue
-      return emptyFetch && readyJobs.isEmpty() ? 2000L : 0L;
+      if (!scanCompleted || !readyJobs.isEmpty()) {
+        return 0L;
+      }
+      // Sleep until the earliest time that a job needs to be checked. Jobs in the partition can also time out or
+      // be marked for deletion, which only get handled by scanning the partition, hence the sleep time is bounded.
+      long now = System.currentTimeMillis();
+      long nextCheckTime = now + maxIdleMillis;
+      for (WaitingJob waitingJob : waitingJobs.values()) {
+        nextCheckTime = Math.min(nextCheckTime, waitingJob.nextCheckTime);
+      }
+      return Math.max(0L, nextCheckTime - now);
     }
 
+    /**
+     * Checks the jobs in the partition, continuing from the last job checked.
+     *
+     * @return {@code true} if all jobs until the end of the partition are checked
+     */
     private boolean checkJobConstraints(JobQueue jobQueue) throws IOException {
-      boolean emptyScan = true;
-
       try (CloseableIterator<Job> jobQueueIter = jobQueue.getJobs(partition, lastConsumed)) {
         Stopwatch stopWatch = new Stopwatch().start();
         // limit the batches of the scan to 1000ms
         while (!stopping && stopWatch.elapsedMillis() < 1000) {
           if (!jobQueueIter.hasNext()) {
             lastConsumed = null;
-            return emptyScan;
+            // Forget about jobs that are no longer in the partition
+            waitingJobs.keySet().retainAll(scannedJobs);
+            scannedJobs.clear();
+            return true;
           }
           Job job = jobQueueIter.next();
           lastConsumed = job;
-          emptyScan = false;
+          scannedJobs.add(job.getJobKey());
           checkAndUpdateJob(jobQueue, job);
         }
       }
-      return emptyScan;
+      return false;
     }
 
     private void checkAndUpdateJob(JobQueue jobQueue, Job job) throws IOException {
@@ -221,10 +342,18 @@ class ConstraintCheckerService extends AbstractIdleService {
       if (job.getState() != Job.State.PENDING_CONSTRAINT) {
         return;
       }
-      ConstraintResult.SatisfiedState satisfiedState = constraintsSatisfied(job, now);
+      WaitingJob waitingJob = waitingJobs.get(job.getJobKey());
+      if (waitingJob != null && waitingJob.nextCheckTime > now) {
+        // The constraints won't be satisfied before the next check time
+        return;
+      }
+      ConstraintResult result = constraintsSatisfied(job, now);
+      ConstraintResult.SatisfiedState satisfiedState = result.getSatisfiedState();
       if (satisfiedState == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
+        waitingJobs.put(job.getJobKey(), new WaitingJob(job, result.getNextCheckTime()));
         return;
       }
+      waitingJobs.remove(job.getJobKey());
       if (satisfiedState == ConstraintResult.SatisfiedState.NEVER_SATISFIED) {
         jobQueue.deleteJob(job);
         return;
@@ -283,8 +412,12 @@ class ConstraintCheckerService extends AbstractIdleService {
       return true;
     }
 
-    private ConstraintResult.SatisfiedState constraintsSatisfied(Job job, long now) {
-      ConstraintResult.SatisfiedState satisfiedState = ConstraintResult.SatisfiedState.SATISFIED;
+    /**
+     * Checks the constraints of the given job. If any of the constraints is not satisfied, the returned result
+     * has the earliest next check time of those constraints.
+     */
+    private ConstraintResult constraintsSatisfied(Job job, long now) {
+      ConstraintResult notSatisfied = null;
 
       ConstraintContext constraintContext = new ConstraintContext(job, now, store);
       for (Constraint constraint : job.getSchedule().getConstraints()) {
@@ -299,14 +432,31 @@ class ConstraintCheckerService extends AbstractIdleService {
         ConstraintResult result = abstractConstraint.check(job.getSchedule(), constraintContext);
         if (result.getSatisfiedState() == ConstraintResult.NEVER_SATISFIED.getSatisfiedState()) {
           // if any of the constraints are NEVER_SATISFIED, return NEVER_SATISFIED
-          return ConstraintResult.NEVER_SATISFIED.getSatisfiedState();
+          return ConstraintResult.NEVER_SATISFIED;
         }
-        if (result.getSatisfiedState() == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
-          satisfiedState = ConstraintResult.SatisfiedState.NOT_SATISFIED;
+        if (result.getSatisfiedState() == ConstraintResult.SatisfiedState.NOT_SATISFIED
+          && (notSatisfied == null || result.getNextCheckTime() < notSatisfied.getNextCheckTime())) {
+          notSatisfied = result;
         }
       }
-      return satisfiedState;
+      return notSatisfied == null ? ConstraintResult.SATISFIED : notSatisfied;
     }
+  }
 
+  /**
+   * A job with constraints not satisfied, together with the time that its constraints need to be checked again.
+   */
+  private static final class WaitingJob {
+    private final ProgramId programId;
+    // Whether the job has constraints that depend on the runs of the program
+    private final boolean dependsOnRuns;
+    private long nextCheckTime;
+
+    WaitingJob(Job job, long nextCheckTime) {
+      this.programId = job.getSchedule().getProgramId();
+      this.dependsOnRuns = job.getSchedule().getConstraints().stream()
+        .anyMatch(c -> c instanceof ConcurrencyConstraint || c instanceof LastRunConstraint);
+      this.nextCheckTime = nextCheckTime;
+    }
   }
 }
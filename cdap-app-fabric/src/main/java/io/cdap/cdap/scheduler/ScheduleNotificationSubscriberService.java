@@ -49,9 +49,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -68,16 +70,19 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
   private final CConfiguration cConf;
   private final MessagingService messagingService;
   private final MetricsCollectionService metricsCollectionService;
+  private final ConstraintCheckerService constraintCheckerService;
   private final List<Service> subscriberServices;
   private ScheduledExecutorService subscriberExecutor;
 
   @Inject
   ScheduleNotificationSubscriberService(CConfiguration cConf, MessagingService messagingService,
                                         MetricsCollectionService metricsCollectionService,
+                                        ConstraintCheckerService constraintCheckerService,
                                         TransactionRunner transactionRunner) {
     this.cConf = cConf;
     this.messagingService = messagingService;
     this.metricsCollectionService = metricsCollectionService;
+    this.constraintCheckerService = constraintCheckerService;
     this.subscriberServices = Arrays.asList(new SchedulerEventSubscriberService(transactionRunner),
                                             new DataEventSubscriberService(transactionRunner),
                                             new ProgramStatusEventSubscriberService(transactionRunner));
@@ -120,6 +125,9 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
    */
   private abstract class AbstractSchedulerSubscriberService extends AbstractNotificationSubscriberService {
 
+    // Schedules with jobs updated by the last batch of notifications
+    private final Set<ScheduleId> updatedSchedules = new HashSet<>();
+
     AbstractSchedulerSubscriberService(String name, String topic, int fetchSize,
                                        TransactionRunner transactionRunner) {
       super(name, cConf, topic, fetchSize, cConf.getLong(Constants.Scheduler.EVENT_POLL_DELAY_MILLIS),
@@ -143,11 +151,21 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       ProgramScheduleStoreDataset scheduleStore = getScheduleStore(structuredTableContext);
       JobQueueTable jobQueue = getJobQueue(structuredTableContext);
 
+      updatedSchedules.clear();
       while (messages.hasNext()) {
         processNotification(scheduleStore, jobQueue, messages.next().getSecond());
       }
     }
 
+    @Override
+    protected void postProcess() {
+      // The jobs are committed, let the constraint checker check them without waiting for its next scan
+      if (!updatedSchedules.isEmpty()) {
+        constraintCheckerService.jobsUpdated(updatedSchedules);
+        updatedSchedules.clear();
+      }
+    }
+
     @Override
     protected ScheduledExecutorService executor() {
       return subscriberExecutor;
@@ -159,6 +177,15 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
     protected abstract void processNotification(ProgramScheduleStoreDataset scheduleStore,
                                                 JobQueueTable jobQueue, Notification notification) throws IOException;
 
+    /**
+     * Adds the given {@link Notification} to the jobs of the given schedule.
+     */
+    protected void addNotification(JobQueueTable jobQueue, ProgramScheduleRecord schedule,
+                                   Notification notification) throws IOException {
+      jobQueue.addNotification(schedule, notification);
+      updatedSchedules.add(schedule.getSchedule().getScheduleId());
+    }
+
     private JobQueueTable getJobQueue(StructuredTableContext context) {
       return JobQueueTable.getJobQueue(context, cConf);
     }
@@ -206,7 +233,7 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
         LOG.warn("Ignore notification that doesn't have a schedule {} associated with, {}", scheduleId, notification);
         return;
       }
-      jobQueue.addNotification(record, notification);
+      addNotification(jobQueue, record, notification);
     }
   }
 
@@ -231,7 +258,7 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       DatasetId datasetId = DatasetId.fromString(datasetIdString);
       for (ProgramScheduleRecord schedule :
         scheduleStore.findSchedules(Schedulers.triggerKeyForPartition(datasetId))) {
-        jobQueue.addNotification(schedule, notification);
+        addNotification(jobQueue, schedule, notification);
       }
     }
   }
@@ -241,6 +268,9 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
    */
   private final class ProgramStatusEventSubscriberService extends AbstractSchedulerSubscriberService {
 
+    // Programs with status changed in the last batch of notifications
+    private final Set<ProgramId> changedPrograms = new HashSet<>();
+
     ProgramStatusEventSubscriberService(TransactionRunner transactionRunner) {
       // Fetch transactionally since publishing from AppMetadataStore is transactional.
       super("scheduler.program.event", cConf.get(Constants.AppFabric.PROGRAM_STATUS_RECORD_EVENT_TOPIC),
@@ -268,10 +298,21 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
 
       ProgramRunId programRunId = GSON.fromJson(programRunIdString, ProgramRunId.class);
       ProgramId programId = programRunId.getParent();
+      changedPrograms.add(programId);
       String triggerKeyForProgramStatus = Schedulers.triggerKeyForProgramStatus(programId, programStatus);
 
       for (ProgramScheduleRecord schedule : scheduleStore.findSchedules(triggerKeyForProgramStatus)) {
-        jobQueue.addNotification(schedule, notification);
+        addNotification(jobQueue, schedule, notification);
+      }
+    }
+
+    @Override
+    protected void postProcess() {
+      super.postProcess();
+      // Jobs waiting for the runs of these programs can have their constraints satisfied now
+      if (!changedPrograms.isEmpty()) {
+        constraintCheckerService.programStatusChanged(changedPrograms);
+        changedPrograms.clear();
       }
     }
   }
@@ -19,18 +19,28 @@ package io.cdap.cdap.internal.app.preview;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Module;
+import io.cdap.cdap.api.artifact.ArtifactSummary;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsSystemClient;
 import io.cdap.cdap.app.guice.AppFabricServiceRuntimeModule;
 import io.cdap.cdap.app.guice.AuthorizationModule;
 import io.cdap.cdap.app.guice.ProgramRunnerRuntimeModule;
 import io.cdap.cdap.app.preview.PreviewHttpModule;
 import io.cdap.cdap.app.preview.PreviewManager;
 import io.cdap.cdap.app.preview.PreviewRunner;
+import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.IOModule;
 import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.guice.NonCustomLocationUnitTestModule;
+import io.cdap.cdap.common.metrics.NoOpMetricsSystemClient;
+import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.config.guice.ConfigStoreModule;
 import io.cdap.cdap.data.runtime.DataFabricModules;
 import io.cdap.cdap.data.runtime.DataSetServiceModules;
@@ -44,8 +54,10 @@ import io.cdap.cdap.logging.read.LogReader;
 import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
 import io.cdap.cdap.metadata.MetadataReaderWriterModules;
 import io.cdap.cdap.metadata.MetadataServiceModule;
+import io.cdap.cdap.metrics.collect.AggregatedMetricsCollectionService;
 import io.cdap.cdap.metrics.guice.MetricsClientRuntimeModule;
-import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.proto.artifact.AppRequest;
+import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.guice.SecureStoreServerModule;
 import io.cdap.cdap.security.impersonation.DefaultOwnerAdmin;
@@ -53,6 +65,7 @@ import io.cdap.cdap.security.impersonation.OwnerAdmin;
 import io.cdap.cdap.security.impersonation.UGIProvider;
 import io.cdap.cdap.security.impersonation.UnsupportedUGIProvider;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.tephra.TransactionManager;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -60,6 +73,14 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link DefaultPreviewManager}.
@@ -73,10 +94,17 @@ public class DefaultPreviewManagerTest {
 
   @BeforeClass
   public static void beforeClass() throws IOException {
+    injector = createInjector(createCConf(), new MetricsClientRuntimeModule().getInMemoryModules());
+  }
+
+  private static CConfiguration createCConf() throws IOException {
     CConfiguration cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    return cConf;
+  }
 
-    injector = Guice.createInjector(
+  private static Injector createInjector(CConfiguration cConf, Module metricsModule) {
+    return Guice.createInjector(
       new ConfigModule(cConf, new Configuration()),
       new IOModule(),
       new DataFabricModules().getInMemoryModules(),
@@ -89,7 +117,7 @@ public class DefaultPreviewManagerTest {
       new NonCustomLocationUnitTestModule(),
       new LocalLogAppenderModule(),
       new LogReaderRuntimeModules().getInMemoryModules(),
-      new MetricsClientRuntimeModule().getInMemoryModules(),
+      metricsModule,
       new ExploreClientModule(),
       new ConfigStoreModule(),
       new MetadataServiceModule(),
@@ -120,7 +148,7 @@ public class DefaultPreviewManagerTest {
     PreviewManager previewManager = getInjector().getInstance(PreviewManager.class);
     DefaultPreviewManager defaultPreviewManager = (DefaultPreviewManager) previewManager;
 
-    Injector previewInjector = defaultPreviewManager.createPreviewInjector(new ApplicationId("ns1", "app1"));
+    Injector previewInjector = defaultPreviewManager.createPreviewInjector("app1");
 
     // Make sure same PreviewManager instance is returned for a same preview
     Assert.assertEquals(previewInjector.getInstance(PreviewRunner.class),
@@ -130,9 +158,160 @@ public class DefaultPreviewManagerTest {
     previewInjector.getInstance(LogReader.class);
 
     Injector anotherPreviewInjector
-      = defaultPreviewManager.createPreviewInjector(new ApplicationId("ns2", "app2"));
+      = defaultPreviewManager.createPreviewInjector("app2");
 
     Assert.assertNotEquals(previewInjector.getInstance(PreviewRunner.class),
                            anotherPreviewInjector.getInstance(PreviewRunner.class));
   }
+
+  @Test
+  public void testRuntimePool() throws Exception {
+    CConfiguration cConf = createCConf();
+    cConf.setInt(Constants.Preview.RUNTIME_POOL_SIZE, 1);
+    cConf.setLong(Constants.Preview.RUNTIME_POOL_IDLE_TIMEOUT_SECONDS, 600L);
+    TestMetricsCollectionService metricsCollectionService = new TestMetricsCollectionService();
+    Injector injector = createPoolInjector(cConf, metricsCollectionService);
+    TransactionManager txManager = injector.getInstance(TransactionManager.class);
+    DefaultPreviewManager previewManager = (DefaultPreviewManager) injector.getInstance(PreviewManager.class);
+    Path previewDataDir = getPreviewDataDir(cConf);
+
+    txManager.startAndWait();
+    metricsCollectionService.startAndWait();
+    previewManager.startAndWait();
+    String refilledRuntime;
+    try {
+      // The pool is filled when the manager starts
+      Tasks.waitFor(1, () -> previewManager.getPooledRuntimes().size(), 1, TimeUnit.MINUTES);
+      String pooledRuntime = previewManager.getPooledRuntimes().get(0);
+      Assert.assertTrue(Files.isDirectory(previewDataDir.resolve(pooledRuntime)));
+
+      // The preview takes the runtime from the pool. Since the request is invalid, the runtime is removed right away.
+      startInvalidPreview(previewManager);
+      Assert.assertFalse(Files.exists(previewDataDir.resolve(pooledRuntime)));
+      Tasks.waitFor(1L, () -> metricsCollectionService.getCount("preview.runtime.pool.hit"), 10, TimeUnit.SECONDS);
+      Assert.assertEquals(0L, metricsCollectionService.getCount("preview.runtime.pool.miss"));
+
+      // The pool is refilled in the background
+      Tasks.waitFor(true, () -> {
+        List<String> runtimes = previewManager.getPooledRuntimes();
+        return runtimes.size() == 1 && !runtimes.contains(pooledRuntime);
+      }, 1, TimeUnit.MINUTES);
+      refilledRuntime = previewManager.getPooledRuntimes().get(0);
+    } finally {
+      previewManager.stopAndWait();
+      metricsCollectionService.stopAndWait();
+      txManager.stopAndWait();
+    }
+
+    // Stopping the manager stops the runtimes in the pool
+    Assert.assertTrue(previewManager.getPooledRuntimes().isEmpty());
+    Assert.assertFalse(Files.exists(previewDataDir.resolve(refilledRuntime)));
+  }
+
+  @Test
+  public void testRuntimePoolMiss() throws Exception {
+    CConfiguration cConf = createCConf();
+    cConf.setInt(Constants.Preview.RUNTIME_POOL_SIZE, 0);
+    TestMetricsCollectionService metricsCollectionService = new TestMetricsCollectionService();
+    Injector injector = createPoolInjector(cConf, metricsCollectionService);
+    TransactionManager txManager = injector.getInstance(TransactionManager.class);
+    DefaultPreviewManager previewManager = (DefaultPreviewManager) injector.getInstance(PreviewManager.class);
+
+    txManager.startAndWait();
+    metricsCollectionService.startAndWait();
+    previewManager.startAndWait();
+    try {
+      // Without a pool, the preview starts its own runtime
+      startInvalidPreview(previewManager);
+      Tasks.waitFor(1L, () -> metricsCollectionService.getCount("preview.runtime.pool.miss"), 10, TimeUnit.SECONDS);
+      Assert.assertEquals(0L, metricsCollectionService.getCount("preview.runtime.pool.hit"));
+      Assert.assertTrue(previewManager.getPooledRuntimes().isEmpty());
+    } finally {
+      previewManager.stopAndWait();
+      metricsCollectionService.stopAndWait();
+      txManager.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testRuntimePoolIdleEviction() throws Exception {
+    CConfiguration cConf = createCConf();
+    cConf.setInt(Constants.Preview.RUNTIME_POOL_SIZE, 1);
+    cConf.setLong(Constants.Preview.RUNTIME_POOL_IDLE_TIMEOUT_SECONDS, 1L);
+    Injector injector = createPoolInjector(cConf, new TestMetricsCollectionService());
+    TransactionManager txManager = injector.getInstance(TransactionManager.class);
+    DefaultPreviewManager previewManager = (DefaultPreviewManager) injector.getInstance(PreviewManager.class);
+    Path previewDataDir = getPreviewDataDir(cConf);
+
+    txManager.startAndWait();
+    previewManager.startAndWait();
+    try {
+      // Wait for the pool to be filled, then for the runtime to be stopped after being idle
+      Tasks.waitFor(1, () -> previewManager.getPooledRuntimes().size(), 1, TimeUnit.MINUTES,
+                    10, TimeUnit.MILLISECONDS);
+      String pooledRuntime = previewManager.getPooledRuntimes().get(0);
+      Tasks.waitFor(true, () -> previewManager.getPooledRuntimes().isEmpty()
+        && !Files.exists(previewDataDir.resolve(pooledRuntime)), 10, TimeUnit.SECONDS);
+    } finally {
+      previewManager.stopAndWait();
+      txManager.stopAndWait();
+    }
+  }
+
+  /**
+   * Creates an injector with the given {@link MetricsCollectionService} for testing the runtime pool.
+   * The preview runtimes use the {@link TransactionManager} of this injector, which has to be started by the caller.
+   */
+  private Injector createPoolInjector(CConfiguration cConf, MetricsCollectionService metricsCollectionService) {
+    return createInjector(cConf, new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MetricsCollectionService.class).toInstance(metricsCollectionService);
+        bind(MetricsSystemClient.class).to(NoOpMetricsSystemClient.class);
+      }
+    });
+  }
+
+  private Path getPreviewDataDir(CConfiguration cConf) {
+    return Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), "preview");
+  }
+
+  /**
+   * Starts a preview with a request that doesn't have the preview config, which fails after taking a runtime.
+   */
+  private void startInvalidPreview(PreviewManager previewManager) throws Exception {
+    try {
+      previewManager.start(NamespaceId.DEFAULT, new AppRequest<>(new ArtifactSummary("test", "1.0")));
+      Assert.fail("Expected BadRequestException");
+    } catch (BadRequestException e) {
+      // expected
+    }
+  }
+
+  /**
+   * A {@link MetricsCollectionService} that keeps the total of the counters emitted.
+   */
+  private static final class TestMetricsCollectionService extends AggregatedMetricsCollectionService {
+
+    private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+    TestMetricsCollectionService() {
+      super(100L);
+    }
+
+    @Override
+    protected void publish(Iterator<MetricValues> metrics) {
+      while (metrics.hasNext()) {
+        for (MetricValue metricValue : metrics.next().getMetrics()) {
+          if (metricValue.getType() == MetricType.COUNTER) {
+            counts.merge(metricValue.getName(), metricValue.getValue(), Long::sum);
+          }
+        }
+      }
+    }
+
+    long getCount(String metricName) {
+      return counts.getOrDefault(metricName, 0L);
+    }
+  }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.io.Locations;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Unit tests for {@link ArtifactUnpackCache}.
+ */
+public class ArtifactUnpackCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedUnpack() throws IOException {
+    ArtifactUnpackCache cache = createCache(10);
+
+    File jarFile = createJar(TMP_FOLDER.newFile("test-1.0.0.jar"), 1024);
+    File copyFile = TMP_FOLDER.newFile("copy-1.0.0.jar");
+    Files.copy(jarFile, copyFile);
+
+    // Unpacking the same artifact from different files should share the same directory
+    ArtifactUnpackCache.Unpacked unpacked1 = cache.unpack(Locations.toLocation(jarFile));
+    ArtifactUnpackCache.Unpacked unpacked2 = cache.unpack(Locations.toLocation(copyFile));
+    Assert.assertEquals(unpacked1.getDir(), unpacked2.getDir());
+    Assert.assertTrue(new File(unpacked1.getDir(), "data").isFile());
+
+    // A different artifact should be unpacked to a different directory
+    ArtifactUnpackCache.Unpacked unpacked3 = cache.unpack(
+      Locations.toLocation(createJar(TMP_FOLDER.newFile("test-2.0.0.jar"), 1024)));
+    Assert.assertNotEquals(unpacked1.getDir(), unpacked3.getDir());
+
+    unpacked1.close();
+    unpacked2.close();
+    unpacked3.close();
+
+    // The directory is kept after closing since the cache is below the size limit
+    Assert.assertTrue(unpacked1.getDir().isDirectory());
+    try (ArtifactUnpackCache.Unpacked unpacked = cache.unpack(Locations.toLocation(jarFile))) {
+      Assert.assertEquals(unpacked1.getDir(), unpacked.getDir());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    ArtifactUnpackCache cache = createCache(1);
+
+    File jarFile1 = createJar(TMP_FOLDER.newFile("evict1.jar"), 600 * 1024);
+    File jarFile2 = createJar(TMP_FOLDER.newFile("evict2.jar"), 600 * 1024);
+
+    ArtifactUnpackCache.Unpacked unpacked1 = cache.unpack(Locations.toLocation(jarFile1));
+    ArtifactUnpackCache.Unpacked unpacked2 = cache.unpack(Locations.toLocation(jarFile2));
+
+    // Directories that are in use are not removed, even though the cache is over the limit
+    Assert.assertTrue(unpacked1.getDir().isDirectory());
+    Assert.assertTrue(unpacked2.getDir().isDirectory());
+
+    // Releasing the first one should remove it
+    unpacked1.close();
+    Assert.assertFalse(unpacked1.getDir().exists());
+    Assert.assertTrue(unpacked2.getDir().isDirectory());
+
+    // Unpacking the first one again should evict the second one as it is no longer in use
+    unpacked2.close();
+    try (ArtifactUnpackCache.Unpacked unpacked = cache.unpack(Locations.toLocation(jarFile1))) {
+      Assert.assertTrue(new File(unpacked.getDir(), "data").isFile());
+      Assert.assertFalse(unpacked2.getDir().exists());
+    }
+  }
+
+  private ArtifactUnpackCache createCache(int maxSizeMB) throws IOException {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
+    cConf.setInt(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB, maxSizeMB);
+    ArtifactUnpackCache cache = ArtifactUnpackCache.get(cConf);
+    Assert.assertNotNull(cache);
+    return cache;
+  }
+
+  private File createJar(File file, int dataSize) throws IOException {
+    byte[] data = new byte[dataSize];
+    new Random().nextBytes(data);
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      output.putNextEntry(new JarEntry("data"));
+      output.write(data);
+      output.closeEntry();
+    }
+    return file;
+  }
+}
@@ -18,14 +18,17 @@ package io.cdap.cdap.internal.app.services;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.app.ApplicationSpecification;
 import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.app.program.ProgramDescriptor;
 import io.cdap.cdap.app.runtime.ProgramOptions;
 import io.cdap.cdap.app.runtime.ProgramStateWriter;
@@ -35,6 +38,7 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.internal.AppFabricTestHelper;
 import io.cdap.cdap.internal.app.DefaultApplicationSpecification;
+import io.cdap.cdap.internal.app.program.MessagingProgramStateWriter;
 import io.cdap.cdap.internal.app.runtime.BasicArguments;
 import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
 import io.cdap.cdap.internal.app.runtime.SimpleProgramOptions;
@@ -42,12 +46,19 @@ import io.cdap.cdap.internal.app.runtime.SystemArguments;
 import io.cdap.cdap.internal.app.store.AppMetadataStore;
 import io.cdap.cdap.internal.app.store.RunRecordMeta;
 import io.cdap.cdap.internal.profile.ProfileService;
+import io.cdap.cdap.internal.provision.ProvisionerNotifier;
+import io.cdap.cdap.internal.provision.ProvisioningService;
+import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.proto.Notification;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.ProgramType;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProfileId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
+import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.cdap.proto.profile.Profile;
 import io.cdap.cdap.reporting.ProgramHeartbeatTable;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
@@ -59,12 +70,17 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -74,6 +90,7 @@ import java.util.concurrent.TimeoutException;
  */
 public class ProgramNotificationSubscriberServiceTest {
   private static final String SYSTEM_METRIC_PREFIX = "system.";
+  private static final Gson GSON = new Gson();
 
   private static Injector injector;
   private static ProgramStateWriter programStateWriter;
@@ -257,6 +274,120 @@ public class ProgramNotificationSubscriberServiceTest {
     heartbeatDatasetStatusCheck(stopTime, ProgramRunStatus.COMPLETED);
   }
 
+  @Test
+  public void testShards() throws Exception {
+    // use separate topics, such that the notifications are only processed by the services created in this test
+    CConfiguration cConf = CConfiguration.copy(injector.getInstance(CConfiguration.class));
+    cConf.set(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC, "shardedProgramStatus");
+    cConf.set(Constants.AppFabric.PROGRAM_STATUS_RECORD_EVENT_TOPIC, "shardedProgramStatusRecord");
+    MessagingService messagingService = injector.getInstance(MessagingService.class);
+    TopicId statusTopic = NamespaceId.SYSTEM.topic(cConf.get(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC));
+    TopicId recordTopic = NamespaceId.SYSTEM.topic(cConf.get(Constants.AppFabric.PROGRAM_STATUS_RECORD_EVENT_TOPIC));
+    messagingService.createTopic(new TopicMetadata(statusTopic));
+    messagingService.createTopic(new TopicMetadata(recordTopic));
+
+    try {
+      // change the number of shards between runs of the same applications
+      List<ProgramRunId> runs = new ArrayList<>();
+      for (int numShards : Arrays.asList(1, 3, 2, 1)) {
+        runs.addAll(runWithShards(cConf, numShards, 10));
+      }
+
+      // every notification must be processed exactly once and in order, hence every status is recorded once
+      Map<ProgramRunId, List<ProgramRunStatus>> recorded = new LinkedHashMap<>();
+      try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(recordTopic).fetch()) {
+        while (iterator.hasNext()) {
+          Notification notification = GSON.fromJson(new String(iterator.next().getPayload(), StandardCharsets.UTF_8),
+                                                     Notification.class);
+          Map<String, String> properties = notification.getProperties();
+          ProgramRunId runId = GSON.fromJson(properties.get(ProgramOptionConstants.PROGRAM_RUN_ID),
+                                             ProgramRunId.class);
+          recorded.computeIfAbsent(runId, k -> new ArrayList<>())
+            .add(ProgramRunStatus.valueOf(properties.get(ProgramOptionConstants.PROGRAM_STATUS)));
+        }
+      }
+      Assert.assertEquals(runs.size(), recorded.size());
+      for (ProgramRunId runId : runs) {
+        Assert.assertEquals(Arrays.asList(ProgramRunStatus.STARTING, ProgramRunStatus.RUNNING,
+                                          ProgramRunStatus.COMPLETED), recorded.get(runId));
+      }
+    } finally {
+      messagingService.deleteTopic(statusTopic);
+      messagingService.deleteTopic(recordTopic);
+    }
+  }
+
+  /**
+   * Starts a {@link ProgramNotificationSubscriberService} with the given number of shards and runs one program
+   * of each of the given number of applications through it.
+   *
+   * @return the ids of the program runs
+   */
+  private List<ProgramRunId> runWithShards(CConfiguration cConf, int numShards, int numApps) throws Exception {
+    cConf.setInt(Constants.AppFabric.STATUS_EVENT_NUM_SHARDS, numShards);
+    MessagingService messagingService = injector.getInstance(MessagingService.class);
+    ProgramStateWriter stateWriter = new MessagingProgramStateWriter(cConf, messagingService);
+    ProgramNotificationSubscriberService service = new ProgramNotificationSubscriberService(
+      messagingService, cConf, injector.getInstance(MetricsCollectionService.class),
+      injector.getInstance(ProvisionerNotifier.class), injector.getInstance(ProgramLifecycleService.class),
+      injector.getInstance(ProvisioningService.class), programStateWriter, transactionRunner);
+    service.startAndWait();
+    try {
+      Map<String, String> systemArguments = new HashMap<>();
+      systemArguments.put(ProgramOptionConstants.SKIP_PROVISIONING, Boolean.TRUE.toString());
+      systemArguments.put(SystemArguments.PROFILE_NAME, ProfileId.NATIVE.getScopedName());
+      ArtifactId artifactId = NamespaceId.DEFAULT.artifact("testArtifact", "1.0").toApiArtifactId();
+      ApplicationSpecification appSpec = new DefaultApplicationSpecification(
+        "name", "1.0.0", "desc", null, artifactId,
+        Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+        Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+        Collections.emptyMap());
+
+      // interleave the notifications of the different applications, which get processed by different shards
+      List<ProgramRunId> runs = new ArrayList<>();
+      for (int i = 0; i < numApps; i++) {
+        ProgramId programId = NamespaceId.DEFAULT.app("app" + i).program(ProgramType.SERVICE, "s");
+        ProgramRunId runId = programId.run(RunIds.generate());
+        ProgramOptions programOptions = new SimpleProgramOptions(programId, new BasicArguments(systemArguments),
+                                                                 new BasicArguments());
+        stateWriter.start(runId, programOptions, null, new ProgramDescriptor(programId, appSpec));
+        runs.add(runId);
+      }
+      runs.forEach(runId -> stateWriter.running(runId, null));
+      runs.forEach(stateWriter::completed);
+
+      for (ProgramRunId runId : runs) {
+        checkProgramStatus(artifactId, runId, ProgramRunStatus.COMPLETED);
+      }
+
+      // once every shard has stored its position, only the positions of the current shards are kept
+      Set<String> expected = new HashSet<>();
+      for (int i = 0; i < numShards; i++) {
+        expected.add(numShards == 1 ? "" : "shard." + i + ".of." + numShards);
+      }
+      expected.add("num.shards");
+      String topic = cConf.get(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC);
+      Tasks.waitFor(expected, () -> {
+        Set<String> subscribers = getSubscriberStates(topic).keySet();
+        if (!subscribers.equals(expected)) {
+          // the obsolete positions are deleted by the first shard, once it stores a position after all other shards
+          stateWriter.running(runs.get(0), null);
+        }
+        return subscribers;
+      }, 10, TimeUnit.SECONDS);
+      Assert.assertEquals(Integer.toString(numShards), getSubscriberStates(topic).get("num.shards"));
+      return runs;
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  private Map<String, String> getSubscriberStates(String topic) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      return AppMetadataStore.create(context).retrieveSubscriberStates(topic);
+    });
+  }
+
   private void checkProgramStatus(ArtifactId artifactId, ProgramRunId runId, ProgramRunStatus expectedStatus)
     throws InterruptedException, ExecutionException, TimeoutException {
     Tasks.waitFor(expectedStatus, () -> TransactionRunners.run(transactionRunner, context -> {
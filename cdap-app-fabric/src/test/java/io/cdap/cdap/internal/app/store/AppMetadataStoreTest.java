@@ -18,9 +18,12 @@ package io.cdap.cdap.internal.app.store;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.internal.AppFabricTestHelper;
 import io.cdap.cdap.internal.app.runtime.SystemArguments;
@@ -31,8 +34,17 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProfileId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
+import io.cdap.cdap.spi.data.StructuredRow;
+import io.cdap.cdap.spi.data.StructuredTable;
+import io.cdap.cdap.spi.data.StructuredTableAdmin;
+import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
+import io.cdap.cdap.spi.data.table.field.Field;
+import io.cdap.cdap.spi.data.table.field.FieldType;
+import io.cdap.cdap.spi.data.table.field.Fields;
+import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.store.StoreDefinition;
 import org.apache.twill.api.RunId;
 import org.junit.Assert;
 import org.junit.Before;
@@ -63,6 +75,7 @@ import java.util.stream.Stream;
  */
 public abstract class AppMetadataStoreTest {
   protected static TransactionRunner transactionRunner;
+  protected static StructuredTableAdmin structuredTableAdmin;
   private static final List<ProgramRunStatus> STOP_STATUSES =
     ImmutableList.of(ProgramRunStatus.COMPLETED, ProgramRunStatus.FAILED, ProgramRunStatus.KILLED);
   private static final ArtifactId ARTIFACT_ID = NamespaceId.DEFAULT.artifact("testArtifact", "1.0").toApiArtifactId();
@@ -623,6 +636,315 @@ public abstract class AppMetadataStoreTest {
     });
   }
 
+  @Test
+  public void testRunRecordsWithoutProjectedFields() throws Exception {
+    ProgramId programId = NamespaceId.DEFAULT.app("legacy").workflow("legacy");
+    ProgramRunId activeRun = programId.run(RunIds.generate(runIdTime.incrementAndGet()));
+    ProgramRunId failedRun = programId.run(RunIds.generate(runIdTime.incrementAndGet()));
+    long stopTs = RunIds.getTime(failedRun.getRun(), TimeUnit.SECONDS);
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(activeRun, store);
+      recordProvisionAndStart(failedRun, store);
+      store.recordProgramStop(failedRun, stopTs, ProgramRunStatus.FAILED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    });
+
+    // Rewrite the run records with the serialized run record data only, which is how rows written before
+    // the fields were projected into their own columns look like
+    TransactionRunners.run(transactionRunner, context -> {
+      StructuredTable table = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS);
+      List<List<Field<?>>> rows = new ArrayList<>();
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), Integer.MAX_VALUE)) {
+        while (iterator.hasNext()) {
+          StructuredRow row = iterator.next();
+          List<Field<?>> fields = new ArrayList<>(row.getPrimaryKeys());
+          fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA,
+                                        row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA)));
+          rows.add(fields);
+        }
+      }
+      Assert.assertEquals(2, rows.size());
+      for (List<Field<?>> fields : rows) {
+        table.delete(fields.subList(0, fields.size() - 1));
+        table.upsert(fields);
+      }
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertEquals(Collections.singleton(activeRun),
+                          store.getRuns(programId, ProgramRunStatus.STARTING, 0, Long.MAX_VALUE,
+                                        Integer.MAX_VALUE, null).keySet());
+      Assert.assertEquals(Collections.singleton(failedRun),
+                          store.getRuns(programId, ProgramRunStatus.FAILED, 0, Long.MAX_VALUE,
+                                        Integer.MAX_VALUE, null).keySet());
+      Assert.assertTrue(store.getRuns(programId, ProgramRunStatus.COMPLETED, 0, Long.MAX_VALUE,
+                                      Integer.MAX_VALUE, null).isEmpty());
+      Assert.assertEquals(Collections.singleton(failedRun),
+                          store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT), stopTs, Long.MAX_VALUE,
+                                                  Integer.MAX_VALUE).keySet());
+      Assert.assertTrue(store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT), stopTs + 1,
+                                                Long.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+
+      // once a run record is updated, it is written with the projected fields again
+      store.recordProgramStop(activeRun, stopTs + 1, ProgramRunStatus.COMPLETED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      Assert.assertEquals(Collections.singleton(activeRun),
+                          store.getRuns(programId, ProgramRunStatus.COMPLETED, 0, Long.MAX_VALUE,
+                                        Integer.MAX_VALUE, null).keySet());
+    });
+  }
+
+  @Test
+  public void testHistoricalRunsByStopTime() throws Exception {
+    ProgramId programId1 = NamespaceId.DEFAULT.app("app1").workflow("program");
+    ProgramId programId2 = NamespaceId.DEFAULT.app("app2").workflow("program");
+    // runs with start and stop time in seconds of (100, 200), (150, 400) and (500, 600)
+    ProgramRunId run1 = programId1.run(RunIds.generate(TimeUnit.SECONDS.toMillis(100)));
+    ProgramRunId run2 = programId2.run(RunIds.generate(TimeUnit.SECONDS.toMillis(150)));
+    ProgramRunId run3 = programId1.run(RunIds.generate(TimeUnit.SECONDS.toMillis(500)));
+    // a run in another namespace, which should only be returned when querying all namespaces
+    ProgramRunId otherRun = new NamespaceId("other").app("app1").workflow("program")
+      .run(RunIds.generate(TimeUnit.SECONDS.toMillis(150)));
+    Map<ProgramRunId, Long> stopTimes = ImmutableMap.of(run1, 200L, run2, 400L, run3, 600L, otherRun, 400L);
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      for (Map.Entry<ProgramRunId, Long> entry : stopTimes.entrySet()) {
+        recordProvisionAndStart(entry.getKey(), store);
+        store.recordProgramStop(entry.getKey(), entry.getValue(), ProgramRunStatus.COMPLETED, null,
+                                AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      }
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Set<NamespaceId> namespaces = Collections.singleton(NamespaceId.DEFAULT);
+      Assert.assertEquals(ImmutableSet.of(run2, run3), store.getHistoricalRuns(namespaces, 300, 550, 10).keySet());
+      Assert.assertEquals(ImmutableSet.of(run2), store.getHistoricalRuns(namespaces, 300, 450, 10).keySet());
+      Assert.assertEquals(1, store.getHistoricalRuns(namespaces, 0, Long.MAX_VALUE, 1).size());
+
+      Assert.assertEquals(ImmutableSet.of(RunIds.fromString(run2.getRun()), RunIds.fromString(otherRun.getRun())),
+                          store.getRunningInRangeCompleted(300, 450));
+
+      // deleting the history of an application should remove it from the index as well
+      store.deleteProgramHistory(programId2.getNamespace(), programId2.getApplication(), programId2.getVersion());
+      Assert.assertEquals(ImmutableSet.of(run1, run3),
+                          store.getHistoricalRuns(namespaces, 0, Long.MAX_VALUE, 10).keySet());
+      store.deleteProgramHistory("other");
+      Assert.assertEquals(ImmutableSet.of(RunIds.fromString(run3.getRun())),
+                          store.getRunningInRangeCompleted(550, 560));
+      Assert.assertTrue(store.getRunningInRangeCompleted(300, 450).isEmpty());
+    });
+  }
+
+  @Test
+  public void testPrefetchRuns() throws Exception {
+    ProgramId programId = NamespaceId.DEFAULT.app("app").workflow("program");
+    ProgramRunId startedRun = programId.run(RunIds.generate());
+    ProgramRunId newRun = programId.run(RunIds.generate());
+
+    TransactionRunners.run(transactionRunner, context -> {
+      recordProvisionAndStart(startedRun, AppMetadataStore.create(context));
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      store.prefetchRuns(ImmutableSet.of(startedRun, newRun));
+      Assert.assertEquals(ProgramRunStatus.STARTING, store.getRun(startedRun).getStatus());
+      Assert.assertNull(store.getRun(newRun));
+
+      // the prefetched runs should reflect the changes made through the same store
+      store.recordProgramStop(startedRun, System.currentTimeMillis(), ProgramRunStatus.COMPLETED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      Assert.assertEquals(ProgramRunStatus.COMPLETED, store.getRun(startedRun).getStatus());
+      recordProvisionAndStart(newRun, store);
+      Assert.assertEquals(ProgramRunStatus.STARTING, store.getRun(newRun).getStatus());
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertEquals(ProgramRunStatus.COMPLETED, store.getRun(startedRun).getStatus());
+      Assert.assertEquals(ProgramRunStatus.STARTING, store.getRun(newRun).getStatus());
+    });
+  }
+
+  @Test
+  public void testSubscriberStates() throws Exception {
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      store.persistSubscriberState("topic", "", "0001");
+      store.persistSubscriberState("topic", "shard.0.of.2", "0002");
+      store.persistSubscriberState("topic2", "", "0003");
+      Assert.assertEquals(ImmutableMap.of("", "0001", "shard.0.of.2", "0002"), store.retrieveSubscriberStates("topic"));
+
+      store.deleteSubscriberState("topic", "");
+      Assert.assertEquals(ImmutableMap.of("shard.0.of.2", "0002"), store.retrieveSubscriberStates("topic"));
+      Assert.assertTrue(store.retrieveSubscriberStates("topic3").isEmpty());
+    });
+  }
+
+  @Test
+  public void testUpgradeRunRecordsTable() throws Exception {
+    // Recreate the run records table with the specification it had before the run record fields were projected
+    // into their own columns
+    Set<String> projectedFields = ImmutableSet.of(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS,
+                                                  StoreDefinition.AppMetadataStore.RUN_STOP_TIME,
+                                                  StoreDefinition.AppMetadataStore.PROFILE_FIELD,
+                                                  StoreDefinition.AppMetadataStore.TWILL_RUN_ID);
+    StructuredTableSpecification newSpec = StoreDefinition.AppMetadataStore.RUN_RECORDS_SPEC;
+    StructuredTableSpecification oldSpec = new StructuredTableSpecification.Builder(newSpec)
+      .withFields(newSpec.getFieldTypes().stream()
+                    .filter(field -> !projectedFields.contains(field.getName()))
+                    .toArray(FieldType[]::new))
+      .build();
+    structuredTableAdmin.drop(StoreDefinition.AppMetadataStore.RUN_RECORDS);
+    structuredTableAdmin.create(oldSpec);
+
+    try {
+      ProgramId programId = NamespaceId.DEFAULT.app("upgrade").workflow("upgrade");
+      ProgramRunId activeRun = programId.run(RunIds.generate(runIdTime.incrementAndGet()));
+      ProgramRunId failedRun = programId.run(RunIds.generate(runIdTime.incrementAndGet()));
+      long stopTs = RunIds.getTime(failedRun.getRun(), TimeUnit.SECONDS);
+
+      // Run records can be written and read before the table is upgraded
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        recordProvisionAndStart(activeRun, store);
+        recordProvisionAndStart(failedRun, store);
+        store.recordProgramStop(failedRun, stopTs, ProgramRunStatus.FAILED, null,
+                                AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      });
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        Assert.assertEquals(ProgramRunStatus.STARTING, store.getRun(activeRun).getStatus());
+        Assert.assertEquals(Collections.singleton(activeRun),
+                            store.getRuns(programId, ProgramRunStatus.STARTING, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+        Assert.assertEquals(Collections.singleton(failedRun),
+                            store.getRuns(programId, ProgramRunStatus.FAILED, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+      });
+
+      StoreDefinition.AppMetadataStore.createTables(structuredTableAdmin, false);
+      Assert.assertEquals(newSpec, structuredTableAdmin.getSpecification(StoreDefinition.AppMetadataStore.RUN_RECORDS));
+
+      // The run records written before the upgrade are still read, and new writes fill in the projected columns
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        Assert.assertEquals(Collections.singleton(activeRun),
+                            store.getRuns(programId, ProgramRunStatus.STARTING, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+        Assert.assertEquals(Collections.singleton(failedRun),
+                            store.getRuns(programId, ProgramRunStatus.FAILED, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+
+        store.recordProgramStop(activeRun, stopTs + 1, ProgramRunStatus.COMPLETED, null,
+                                AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      });
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        Assert.assertEquals(Collections.singleton(activeRun),
+                            store.getRuns(programId, ProgramRunStatus.COMPLETED, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+        Assert.assertEquals(ImmutableSet.of(activeRun, failedRun),
+                            store.getRuns(programId, ProgramRunStatus.ALL, 0, Long.MAX_VALUE,
+                                          Integer.MAX_VALUE, null).keySet());
+      });
+
+      // Only the run record written after the upgrade has the projected columns
+      TransactionRunners.run(transactionRunner, context -> {
+        StructuredTable table = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS);
+        Map<String, String> statuses = new HashMap<>();
+        try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), Integer.MAX_VALUE)) {
+          while (iterator.hasNext()) {
+            StructuredRow row = iterator.next();
+            statuses.put(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD),
+                         row.getString(StoreDefinition.AppMetadataStore.PROGRAM_RUN_STATUS));
+          }
+        }
+        Map<String, String> expected = new HashMap<>();
+        expected.put(activeRun.getRun(), ProgramRunStatus.COMPLETED.name());
+        expected.put(failedRun.getRun(), null);
+        Assert.assertEquals(expected, statuses);
+      });
+    } finally {
+      if (!newSpec.equals(structuredTableAdmin.getSpecification(StoreDefinition.AppMetadataStore.RUN_RECORDS))) {
+        structuredTableAdmin.drop(StoreDefinition.AppMetadataStore.RUN_RECORDS);
+        structuredTableAdmin.create(newSpec);
+      }
+    }
+  }
+
+  @Test
+  public void testStopTimeIndexBackfill() throws Exception {
+    ProgramId programId = NamespaceId.DEFAULT.app("backfill").workflow("backfill");
+    List<ProgramRunId> completedRuns = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      completedRuns.add(programId.run(RunIds.generate(runIdTime.incrementAndGet())));
+    }
+    ProgramRunId activeRun = programId.run(RunIds.generate(runIdTime.incrementAndGet()));
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(activeRun, store);
+      for (int i = 0; i < completedRuns.size(); i++) {
+        recordProvisionAndStart(completedRuns.get(i), store);
+        store.recordProgramStop(completedRuns.get(i), 10L * (i + 1), ProgramRunStatus.COMPLETED, null,
+                                AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      }
+    });
+
+    // Remove the index entries and the completion marker, which is the state of run records that were completed
+    // before the stop time index existed
+    TransactionRunners.run(transactionRunner, context -> {
+      context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_STOP_TIME_INDEX).deleteAll(Range.all());
+      context.getTable(StoreDefinition.AppMetadataStore.PROGRAM_COUNTS).deleteAll(Range.singleton(
+        ImmutableList.of(Fields.stringField(StoreDefinition.AppMetadataStore.COUNT_TYPE, "stopTimeIndexComplete"))));
+    });
+
+    Map<ProgramRunId, RunRecordMeta> expectedHistory = new HashMap<>();
+    Set<RunId> expectedInRange = new HashSet<>();
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertFalse(store.isStopTimeIndexComplete());
+      // completed runs are still found through the run records before the backfill
+      expectedHistory.putAll(store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT), 20L, Long.MAX_VALUE,
+                                                     Integer.MAX_VALUE));
+      Assert.assertEquals(new HashSet<>(completedRuns.subList(1, 3)), expectedHistory.keySet());
+      expectedInRange.addAll(store.getRunningInRangeCompleted(15L, Long.MAX_VALUE));
+      Assert.assertEquals(completedRuns.subList(1, 3).stream()
+                            .map(runId -> RunIds.fromString(runId.getRun())).collect(Collectors.toSet()),
+                          expectedInRange);
+    });
+
+    // Backfill two run records per transaction
+    AtomicReference<ProgramRunId> lastRun = new AtomicReference<>();
+    int batches = 0;
+    do {
+      TransactionRunners.run(transactionRunner, context -> {
+        lastRun.set(AppMetadataStore.create(context).backfillStopTimeIndex(lastRun.get(), 2));
+      });
+      batches++;
+    } while (lastRun.get() != null);
+    Assert.assertEquals(3, batches);
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertTrue(store.isStopTimeIndexComplete());
+      try (CloseableIterator<StructuredRow> iterator =
+             context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_STOP_TIME_INDEX).scan(Range.all(),
+                                                                                                 Integer.MAX_VALUE)) {
+        Assert.assertEquals(completedRuns.size(), Iterators.size(iterator));
+      }
+      Assert.assertEquals(expectedHistory, store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT), 20L,
+                                                                   Long.MAX_VALUE, Integer.MAX_VALUE));
+      Assert.assertEquals(expectedInRange, store.getRunningInRangeCompleted(15L, Long.MAX_VALUE));
+    });
+  }
+
   @Test
   public void testOrderedActiveRuns() throws Exception {
     ProgramId programId = NamespaceId.DEFAULT.app("test").workflow("test");
@@ -19,6 +19,7 @@ package io.cdap.cdap.internal.app.store;
 import com.google.inject.Injector;
 import io.cdap.cdap.internal.AppFabricTestHelper;
 import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -33,6 +34,7 @@ public class NoSqlAppMetadataStoreTest extends AppMetadataStoreTest {
     Injector injector = AppFabricTestHelper.getInjector();
     AppFabricTestHelper.ensureNamespaceExists(NamespaceId.DEFAULT);
     transactionRunner = injector.getInstance(TransactionRunner.class);
+    structuredTableAdmin = injector.getInstance(StructuredTableAdmin.class);
   }
 
   @AfterClass
@@ -17,7 +17,6 @@
 package io.cdap.cdap.internal.app.store;
 
 import com.opentable.db.postgres.embedded.EmbeddedPostgres;
-import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
 import io.cdap.cdap.spi.data.sql.PostgresInstantiator;
 import io.cdap.cdap.spi.data.sql.PostgresSqlStructuredTableAdmin;
@@ -48,8 +47,7 @@ public class SqlAppMetadataStoreTest extends AppMetadataStoreTest {
     DataSource dataSource = pg.getPostgresDatabase();
     SqlStructuredTableRegistry structuredTableRegistry = new SqlStructuredTableRegistry(dataSource);
     structuredTableRegistry.initialize();
-    StructuredTableAdmin structuredTableAdmin =
-      new PostgresSqlStructuredTableAdmin(structuredTableRegistry, dataSource);
+    structuredTableAdmin = new PostgresSqlStructuredTableAdmin(structuredTableRegistry, dataSource);
     transactionRunner = new SqlTransactionRunner(structuredTableAdmin, dataSource);
     StoreDefinition.AppMetadataStore.createTables(structuredTableAdmin, false);
   }
@@ -0,0 +1,266 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.scheduler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.dataset.lib.PartitionKey;
+import io.cdap.cdap.app.store.Store;
+import io.cdap.cdap.common.app.RunIds;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.internal.AppFabricTestHelper;
+import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
+import io.cdap.cdap.internal.app.runtime.SystemArguments;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
+import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConcurrencyConstraint;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
+import io.cdap.cdap.internal.app.runtime.schedule.trigger.PartitionTrigger;
+import io.cdap.cdap.internal.app.services.http.AppFabricTestBase;
+import io.cdap.cdap.internal.schedule.constraint.Constraint;
+import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.client.StoreRequestBuilder;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.proto.Notification;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.proto.id.DatasetId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.ProfileId;
+import io.cdap.cdap.proto.id.ProgramRunId;
+import io.cdap.cdap.proto.id.ScheduleId;
+import io.cdap.cdap.proto.id.TopicId;
+import io.cdap.cdap.proto.id.WorkflowId;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for the wake ups of the {@link ConstraintCheckerService}. The constraint checker is configured with a max idle
+ * time that is much longer than the tests, such that jobs only get checked when the checker is woken up, or when
+ * the next check time of their constraints is reached.
+ */
+public class ConstraintCheckerServiceTest extends AppFabricTestBase {
+
+  private static final Gson GSON = new Gson();
+  private static final ApplicationId APP_ID = NamespaceId.DEFAULT.app("ConstraintCheckerApp");
+  private static final WorkflowId WORKFLOW_ID = APP_ID.workflow("wf");
+  private static final DatasetId DATASET_ID = NamespaceId.DEFAULT.dataset("pfs");
+  // Triggers a job without constraints, used to find out when the constraint checker went through the partition
+  private static final DatasetId MARKER_DATASET_ID = NamespaceId.DEFAULT.dataset("marker");
+  private static final ArtifactId ARTIFACT_ID = NamespaceId.DEFAULT.artifact("test", "1.0").toApiArtifactId();
+  // The ConcurrencyConstraint asks for its next check 10 seconds after a check that is not satisfied
+  private static final long CONCURRENCY_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private static CConfiguration cConf;
+  private static Scheduler scheduler;
+  private static Store store;
+  private static MessagingService messagingService;
+  private static TransactionRunner transactionRunner;
+  private static TopicId dataEventTopic;
+
+  private int sourceId;
+
+  @BeforeClass
+  public static void beforeClass() throws Throwable {
+    CConfiguration conf = createBasicCConf();
+    conf.setLong(Constants.Scheduler.CONSTRAINT_CHECK_MAX_IDLE_MILLIS, TimeUnit.HOURS.toMillis(1));
+    // use a single partition, such that all jobs are checked by the same thread
+    conf.setInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS, 1);
+    initializeAndStartServices(conf, null);
+
+    cConf = getInjector().getInstance(CConfiguration.class);
+    scheduler = getInjector().getInstance(Scheduler.class);
+    store = getInjector().getInstance(Store.class);
+    messagingService = getInjector().getInstance(MessagingService.class);
+    transactionRunner = getInjector().getInstance(TransactionRunner.class);
+    dataEventTopic = NamespaceId.SYSTEM.topic(cConf.get(Constants.Dataset.DATA_EVENT_TOPIC));
+  }
+
+  @After
+  public void cleanup() {
+    scheduler.deleteSchedules(APP_ID);
+  }
+
+  @Test
+  public void testNewJobChecked() throws Exception {
+    ScheduleId scheduleId = addSchedule("newjob", DATASET_ID, Collections.emptyList());
+
+    // The subscriber creates the job and wakes up the constraint checker, which launches the job.
+    // The program doesn't exist, hence the job is simply removed once it is launched.
+    long publishTime = publishNotification(DATASET_ID);
+    waitUntilProcessed(dataEventTopic, publishTime);
+    Tasks.waitFor(true, () -> getJobs(scheduleId).isEmpty(), 5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testJobSkippedUntilNextCheckTime() throws Exception {
+    ScheduleId markerId = addSchedule("marker", MARKER_DATASET_ID, Collections.emptyList());
+    ScheduleId scheduleId = addSchedule("skipped", DATASET_ID, ImmutableList.of(waitingConcurrencyConstraint()));
+
+    ProgramRunId runId = WORKFLOW_ID.run(RunIds.generate());
+    setStartAndRunning(runId);
+
+    // The marker job is created after the waiting job, hence the waiting job was checked once the marker job is gone
+    long publishTime = publishNotification(DATASET_ID);
+    waitUntilProcessed(dataEventTopic, publishNotification(MARKER_DATASET_ID));
+    Tasks.waitFor(true, () -> getJobs(markerId).isEmpty(), 5, TimeUnit.SECONDS);
+    assertPendingConstraint(scheduleId);
+
+    // Stop the run in the store directly, without a program status event to wake up the constraint checker
+    store.setStop(runId, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()), ProgramRunStatus.COMPLETED,
+                  AppFabricTestHelper.createSourceId(++sourceId));
+
+    // Wake up the constraint checker with a new job in the same partition. The waiting job is not checked again
+    // before its next check time, even though its constraint is now satisfied.
+    waitUntilProcessed(dataEventTopic, publishNotification(MARKER_DATASET_ID));
+    Tasks.waitFor(true, () -> getJobs(markerId).isEmpty(), 5, TimeUnit.SECONDS);
+    assertPendingConstraint(scheduleId);
+
+    // The job gets launched once its next check time is reached, well before the max idle time
+    Tasks.waitFor(true, () -> getJobs(scheduleId).isEmpty(), 2 * CONCURRENCY_CHECK_INTERVAL_MILLIS,
+                  TimeUnit.MILLISECONDS, 100, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(System.currentTimeMillis() >= publishTime + CONCURRENCY_CHECK_INTERVAL_MILLIS);
+  }
+
+  @Test
+  public void testProgramStatusWakesUpChecker() throws Exception {
+    ScheduleId markerId = addSchedule("marker", MARKER_DATASET_ID, Collections.emptyList());
+    ScheduleId scheduleId = addSchedule("waiting", DATASET_ID, ImmutableList.of(waitingConcurrencyConstraint()));
+
+    ProgramRunId runId = WORKFLOW_ID.run(RunIds.generate());
+    setStartAndRunning(runId);
+
+    // The marker job is created after the waiting job, hence the waiting job was checked once the marker job is gone
+    long publishTime = publishNotification(DATASET_ID);
+    waitUntilProcessed(dataEventTopic, publishNotification(MARKER_DATASET_ID));
+    Tasks.waitFor(true, () -> getJobs(markerId).isEmpty(), 5, TimeUnit.SECONDS);
+    assertPendingConstraint(scheduleId);
+
+    // Stop the run and emit the program status event recorded for it, which wakes up the constraint checker for
+    // the waiting job before the next check time of its constraint
+    store.setStop(runId, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()), ProgramRunStatus.COMPLETED,
+                  AppFabricTestHelper.createSourceId(++sourceId));
+    publishProgramStatus(runId, ProgramRunStatus.COMPLETED);
+    Tasks.waitFor(true, () -> getJobs(scheduleId).isEmpty(), 5, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(System.currentTimeMillis() < publishTime + CONCURRENCY_CHECK_INTERVAL_MILLIS);
+  }
+
+  private ScheduleId addSchedule(String name, DatasetId datasetId,
+                                 List<? extends Constraint> constraints) throws Exception {
+    ProgramSchedule schedule = new ProgramSchedule(name, "partition schedule", WORKFLOW_ID, ImmutableMap.of(),
+                                                   new PartitionTrigger(datasetId, 1), constraints);
+    scheduler.addSchedule(schedule);
+    scheduler.enableSchedule(schedule.getScheduleId());
+    return schedule.getScheduleId();
+  }
+
+  private Constraint waitingConcurrencyConstraint() {
+    ConcurrencyConstraint constraint = new ConcurrencyConstraint(1);
+    constraint.setWaitUntilMet(true);
+    return constraint;
+  }
+
+  private void setStartAndRunning(ProgramRunId runId) {
+    ImmutableMap<String, String> systemArgs =
+      ImmutableMap.of(SystemArguments.PROFILE_NAME, ProfileId.NATIVE.getScopedName());
+    store.setProvisioning(runId, Collections.emptyMap(), systemArgs,
+                          AppFabricTestHelper.createSourceId(++sourceId), ARTIFACT_ID);
+    store.setProvisioned(runId, 0, AppFabricTestHelper.createSourceId(++sourceId));
+    store.setStart(runId, null, systemArgs, AppFabricTestHelper.createSourceId(++sourceId));
+    store.setRunning(runId, RunIds.getTime(runId.getRun(), TimeUnit.SECONDS) + 1, null,
+                     AppFabricTestHelper.createSourceId(++sourceId));
+  }
+
+  private void assertPendingConstraint(ScheduleId scheduleId) {
+    List<Job> jobs = getJobs(scheduleId);
+    Assert.assertEquals(1, jobs.size());
+    Assert.assertEquals(Job.State.PENDING_CONSTRAINT, jobs.get(0).getState());
+  }
+
+  /**
+   * Publishes a new partition notification for the given dataset.
+   *
+   * @return the time before the notification was published
+   */
+  private long publishNotification(DatasetId datasetId) throws Exception {
+    long publishTime = System.currentTimeMillis();
+    PartitionKey partitionKey = PartitionKey.builder().addIntField("part1", 1).build();
+    Notification notification = Notification.forPartitions(datasetId, ImmutableList.of(partitionKey));
+    messagingService.publish(StoreRequestBuilder.of(dataEventTopic).addPayload(GSON.toJson(notification)).build());
+    return publishTime;
+  }
+
+  /**
+   * Publishes a program status event as it is published once the status of the run is recorded.
+   */
+  private void publishProgramStatus(ProgramRunId runId, ProgramRunStatus status) throws Exception {
+    Notification notification = new Notification(Notification.Type.PROGRAM_STATUS,
+                                                 ImmutableMap.of(ProgramOptionConstants.PROGRAM_RUN_ID,
+                                                                 GSON.toJson(runId),
+                                                                 ProgramOptionConstants.PROGRAM_STATUS,
+                                                                 status.name()));
+    TopicId topic = NamespaceId.SYSTEM.topic(cConf.get(Constants.AppFabric.PROGRAM_STATUS_RECORD_EVENT_TOPIC));
+    messagingService.publish(StoreRequestBuilder.of(topic).addPayload(GSON.toJson(notification)).build());
+  }
+
+  @Nullable
+  private MessageId getLastMessageId(TopicId topic) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      JobQueueTable jobQueue = JobQueueTable.getJobQueue(context, cConf);
+      String id = jobQueue.retrieveSubscriberState(topic.getTopic());
+      if (id == null) {
+        return null;
+      }
+      return new MessageId(Bytes.fromHexString(id));
+    });
+  }
+
+  /**
+   * Wait until the scheduler process a message published on or after the given time.
+   */
+  private void waitUntilProcessed(TopicId topic, long minPublishTime) throws Exception {
+    Tasks.waitFor(true, () -> {
+      MessageId messageId = getLastMessageId(topic);
+      return messageId != null && messageId.getPublishTimestamp() >= minPublishTime;
+    }, 5, TimeUnit.SECONDS);
+  }
+
+  private List<Job> getJobs(ScheduleId scheduleId) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      JobQueueTable jobQueue = JobQueueTable.getJobQueue(context, cConf);
+      try (CloseableIterator<Job> iterator = jobQueue.getJobsForSchedule(scheduleId)) {
+        return Lists.newArrayList(iterator);
+      }
+    });
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,30 +16,82 @@
 
 package io.cdap.cdap.etl.batch;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
 import io.cdap.cdap.etl.common.record.StructuredRecordComparator;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.io.SchemaTypeAdapter;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * The record is serialized as a one byte schema marker, followed by the 16 bytes {@link SchemaHash} of the
+ * record schema and the record fields in binary format. Schemas registered through {@link #registerSchema(Schema)}
+ * are identified by the hash only. Records with any other schema carry the schema json right after the hash.
+ * Both sides of the shuffle need to register the same set of schemas. The schemas are set in the job configuration
+ * with {@link #setShuffleSchemas(Configuration, Collection)} and registered whenever Hadoop configures an instance
+ * of this class or of the {@link RawComparator}, which happens before any record is serialized or compared.
+ *
+ * A raw comparator is registered for this class so that sorting in the shuffle can compare the serialized bytes
+ * without deserializing the record. The ordering it produces is only meant for grouping, it is not the same as the
+ * one produced by {@link #compareTo(StructuredRecordWritable)}.
  */
-public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable>, Configurable {
+
+  private static final String SHUFFLE_SCHEMAS = "cdap.etl.shuffle.schemas";
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMA_LIST_TYPE = new TypeToken<List<Schema>>() { }.getType();
+
+  private static final byte SCHEMA_REGISTERED = 0;
+  private static final byte SCHEMA_INLINE = 1;
+  private static final int SCHEMA_HASH_LENGTH = 16;
+
   // schema cache so that we do not parse schema string for each incoming record
-  private static final Map<byte[], Schema> schemaCache = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private static final ConcurrentMap<SchemaHash, SchemaEntry> SCHEMA_CACHE = new ConcurrentHashMap<>();
   private static final Comparator<StructuredRecord> COMPARATOR = new StructuredRecordComparator();
+  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+  private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+
+  // the value of the shuffle schemas configuration that was last registered
+  private static volatile String registeredSchemas;
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new RawComparator());
+  }
+
   private StructuredRecord record;
+  private Configuration conf;
 
   // required by Hadoop
   @SuppressWarnings("unused")
@@ -50,6 +102,53 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
     this.record = record;
   }
 
+  /**
+   * Registers the given {@link Schema} so that records of that schema are serialized with the schema hash only.
+   * The same schema must be registered before records are deserialized.
+   */
+  public static void registerSchema(Schema schema) {
+    SCHEMA_CACHE.put(schema.getSchemaHash(), new SchemaEntry(schema, true));
+  }
+
+  /**
+   * Sets the schemas of records going through the shuffle in the given configuration, in addition to the ones
+   * that are already set. The schemas get registered on both sides of the shuffle when the job runs.
+   */
+  public static void setShuffleSchemas(Configuration conf, Collection<Schema> schemas) {
+    Set<Schema> shuffleSchemas = new LinkedHashSet<>(getShuffleSchemas(conf.get(SHUFFLE_SCHEMAS)));
+    for (Schema schema : schemas) {
+      if (schema != null) {
+        shuffleSchemas.add(schema);
+      }
+    }
+    conf.set(SHUFFLE_SCHEMAS, GSON.toJson(shuffleSchemas, SCHEMA_LIST_TYPE));
+  }
+
+  /**
+   * Registers the shuffle schemas that were set in the given configuration.
+   */
+  public static void registerSchemas(Configuration conf) {
+    String schemas = conf.get(SHUFFLE_SCHEMAS);
+    // this is called for every configured instance, hence only parse the schemas if they changed
+    if (schemas == null || schemas.equals(registeredSchemas)) {
+      return;
+    }
+    for (Schema schema : getShuffleSchemas(schemas)) {
+      registerSchema(schema);
+    }
+    registeredSchemas = schemas;
+  }
+
+  @VisibleForTesting
+  static void clearSchemas() {
+    SCHEMA_CACHE.clear();
+    registeredSchemas = null;
+  }
+
+  private static List<Schema> getShuffleSchemas(String schemas) {
+    return schemas == null ? Collections.<Schema>emptyList() : GSON.<List<Schema>>fromJson(schemas, SCHEMA_LIST_TYPE);
+  }
+
   public void set(StructuredRecord record) {
     this.record = record;
   }
@@ -58,38 +157,58 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
     return record;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    SchemaEntry entry = SCHEMA_CACHE.get(schemaHash);
+    if (entry == null) {
+      entry = new SchemaEntry(schema, false);
+      SchemaEntry existing = SCHEMA_CACHE.putIfAbsent(schemaHash, entry);
+      entry = existing == null ? entry : existing;
+    }
+
+    if (entry.isRegistered()) {
+      out.writeByte(SCHEMA_REGISTERED);
+      out.write(schemaHash.toByteArray());
+    } else {
+      out.writeByte(SCHEMA_INLINE);
+      out.write(schemaHash.toByteArray());
+      byte[] schemaBytes = Bytes.toBytes(schema.toString());
+      WritableUtils.writeVInt(out, schemaBytes.length);
+      out.write(schemaBytes);
+    }
 
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    DATUM_WRITER.encode(record, new DataOutputEncoder(out));
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
+    byte marker = in.readByte();
+    byte[] hashBytes = new byte[SCHEMA_HASH_LENGTH];
+    in.readFully(hashBytes);
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hashBytes));
 
-    Schema schema;
-    if (schemaCache.containsKey(schemaBytes)) {
-      schema = schemaCache.get(schemaBytes);
-    } else {
-      String schemaStr = Bytes.toString(schemaBytes);
-      schema = Schema.parseJson(schemaStr);
-      schemaCache.put(schemaBytes, schema);
+    byte[] schemaBytes = null;
+    if (marker == SCHEMA_INLINE) {
+      schemaBytes = new byte[WritableUtils.readVInt(in)];
+      in.readFully(schemaBytes);
     }
+    Schema schema = getSchemaEntry(marker, schemaHash, schemaBytes, 0, schemaBytes == null ? 0 : schemaBytes.length)
+      .getSchema();
+
+    this.record = DATUM_READER.read(new DataInputDecoder(in), schema);
+  }
 
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    registerSchemas(conf);
+  }
+
+  @Override
+  public Configuration getConf() {
+    return conf;
   }
 
   @Override
@@ -115,4 +234,156 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * Returns the {@link SchemaEntry} for the given schema hash. If the schema is not yet known and
+   * the schema json bytes are provided, the schema will be parsed and cached.
+   */
+  private static SchemaEntry getSchemaEntry(byte marker, SchemaHash schemaHash,
+                                            byte[] schemaBytes, int offset, int length) throws IOException {
+    SchemaEntry entry = SCHEMA_CACHE.get(schemaHash);
+    if (entry != null) {
+      return entry;
+    }
+    if (marker != SCHEMA_INLINE) {
+      throw new IOException("Schema with hash " + schemaHash + " is not registered");
+    }
+    entry = new SchemaEntry(Schema.parseJson(Bytes.toString(schemaBytes, offset, length)), false);
+    SchemaEntry existing = SCHEMA_CACHE.putIfAbsent(schemaHash, entry);
+    return existing == null ? entry : existing;
+  }
+
+  /**
+   * A cached {@link Schema} together with information about how records of that schema are serialized.
+   */
+  private static final class SchemaEntry {
+    private final Schema schema;
+    private final boolean registered;
+    private final boolean byteComparable;
+
+    SchemaEntry(Schema schema, boolean registered) {
+      this.schema = schema;
+      this.registered = registered;
+      this.byteComparable = isByteComparable(schema, new HashSet<>());
+    }
+
+    Schema getSchema() {
+      return schema;
+    }
+
+    boolean isRegistered() {
+      return registered;
+    }
+
+    /**
+     * Returns {@code true} if two records of the schema are equal if and only if their binary encodings are equal.
+     */
+    boolean isByteComparable() {
+      return byteComparable;
+    }
+
+    private static boolean isByteComparable(Schema schema, Set<String> knownRecords) {
+      switch (schema.getType()) {
+        case MAP:
+          // map entries are encoded in iteration order, which is different for equal maps
+          return false;
+        case ARRAY:
+          return isByteComparable(schema.getComponentSchema(), knownRecords);
+        case RECORD:
+          if (!knownRecords.add(schema.getRecordName())) {
+            return true;
+          }
+          for (Schema.Field field : schema.getFields()) {
+            if (!isByteComparable(field.getSchema(), knownRecords)) {
+              return false;
+            }
+          }
+          return true;
+        case UNION:
+          for (Schema unionSchema : schema.getUnionSchemas()) {
+            if (!isByteComparable(unionSchema, knownRecords)) {
+              return false;
+            }
+          }
+          return true;
+        default:
+          return true;
+      }
+    }
+  }
+
+  /**
+   * A {@link WritableComparator} that compares serialized {@link StructuredRecordWritable}. Records of different
+   * schemas are ordered by the schema hash. Records of the same schema are compared by the encoded field bytes,
+   * unless the schema contains a map, in which case the records are deserialized and compared.
+   *
+   * The shuffle creates the comparator from the job configuration before reading any record, which registers the
+   * shuffle schemas even if no record was deserialized in the task yet.
+   */
+  public static final class RawComparator extends WritableComparator implements Configurable {
+
+    private final DataInputBuffer buffer1 = new DataInputBuffer();
+    private final DataInputBuffer buffer2 = new DataInputBuffer();
+    private Configuration conf;
+
+    public RawComparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+      this.conf = conf;
+      registerSchemas(conf);
+    }
+
+    @Override
+    public Configuration getConf() {
+      return conf;
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      int comp = compareBytes(b1, s1 + 1, SCHEMA_HASH_LENGTH, b2, s2 + 1, SCHEMA_HASH_LENGTH);
+      if (comp != 0) {
+        return comp;
+      }
+
+      try {
+        int schemaStart1 = s1 + 1 + SCHEMA_HASH_LENGTH;
+        int schemaStart2 = s2 + 1 + SCHEMA_HASH_LENGTH;
+        SchemaEntry entry = getSchemaEntry(b1, s1, schemaStart1);
+        int body1 = getBodyOffset(b1, s1, schemaStart1);
+        int body2 = getBodyOffset(b2, s2, schemaStart2);
+
+        if (entry.isByteComparable()) {
+          return compareBytes(b1, body1, l1 - (body1 - s1), b2, body2, l2 - (body2 - s2));
+        }
+        buffer1.reset(b1, body1, l1 - (body1 - s1));
+        buffer2.reset(b2, body2, l2 - (body2 - s2));
+        StructuredRecord r1 = DATUM_READER.read(new DataInputDecoder(buffer1), entry.getSchema());
+        StructuredRecord r2 = DATUM_READER.read(new DataInputDecoder(buffer2), entry.getSchema());
+        return COMPARATOR.compare(r1, r2);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    private SchemaEntry getSchemaEntry(byte[] bytes, int start, int schemaStart) throws IOException {
+      SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(bytes, start + 1, SCHEMA_HASH_LENGTH));
+      if (bytes[start] != SCHEMA_INLINE) {
+        return StructuredRecordWritable.getSchemaEntry(bytes[start], schemaHash, null, 0, 0);
+      }
+      int schemaLength = readVInt(bytes, schemaStart);
+      return StructuredRecordWritable.getSchemaEntry(bytes[start], schemaHash, bytes,
+                                                     schemaStart + WritableUtils.decodeVIntSize(bytes[schemaStart]),
+                                                     schemaLength);
+    }
+
+    private int getBodyOffset(byte[] bytes, int start, int schemaStart) throws IOException {
+      if (bytes[start] != SCHEMA_INLINE) {
+        return schemaStart;
+      }
+      return schemaStart + WritableUtils.decodeVIntSize(bytes[schemaStart]) + readVInt(bytes, schemaStart);
+    }
+  }
 }
@@ -34,6 +34,7 @@ import io.cdap.cdap.etl.batch.DefaultAggregatorContext;
 import io.cdap.cdap.etl.batch.DefaultJoinerContext;
 import io.cdap.cdap.etl.batch.PipelinePhasePreparer;
 import io.cdap.cdap.etl.batch.PipelinePluginInstantiator;
+import io.cdap.cdap.etl.batch.StructuredRecordWritable;
 import io.cdap.cdap.etl.batch.conversion.WritableConversion;
 import io.cdap.cdap.etl.batch.conversion.WritableConversions;
 import io.cdap.cdap.etl.common.Constants;
@@ -175,6 +176,7 @@ public class MapReducePreparer extends PipelinePhasePreparer {
       hConf.set(ETLMapReduce.MAP_VAL_CLASS, outputValClass.getName());
       job.setMapOutputKeyClass(getOutputKeyClass(stageName, outputKeyClass));
       job.setMapOutputValueClass(getOutputValClass(stageName, outputValClass));
+      setShuffleSchemas(stageSpec);
       stageOperations.put(stageName, aggregatorContext.getFieldOperations());
     });
   }
@@ -203,10 +205,24 @@ public class MapReducePreparer extends PipelinePhasePreparer {
       getOutputValClass(stageName, inputRecordClass);
       // for joiner plugin map output is tagged with stageName
       job.setMapOutputValueClass(TaggedWritable.class);
+      setShuffleSchemas(stageSpec);
       stageOperations.put(stageName, joinerContext.getFieldOperations());
     });
   }
 
+  /**
+   * Sets the input schemas of the given reducer stage as the schemas of records going through the shuffle.
+   * If the records are sorted as {@link StructuredRecordWritable}, the raw comparator is used as the sort comparator
+   * so that it gets created from the job configuration, which registers those schemas before the shuffle reads
+   * any record.
+   */
+  private void setShuffleSchemas(StageSpec stageSpec) {
+    StructuredRecordWritable.setShuffleSchemas(hConf, stageSpec.getInputSchemas().values());
+    if (StructuredRecordWritable.class.equals(job.getMapOutputKeyClass())) {
+      job.setSortComparatorClass(StructuredRecordWritable.RawComparator.class);
+    }
+  }
+
   private Class<?> getOutputKeyClass(String reducerName, Class<?> outputKeyClass) {
     // in case the classes are not a WritableComparable, but is some common type we support
     // for example, a String or a StructuredRecord
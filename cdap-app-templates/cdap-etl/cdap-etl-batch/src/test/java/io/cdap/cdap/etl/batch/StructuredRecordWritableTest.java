@@ -16,8 +16,12 @@
 
 package io.cdap.cdap.etl.batch;
 
+import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -28,6 +32,8 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 
 /**
  */
@@ -62,4 +68,98 @@ public class StructuredRecordWritableTest {
     Assert.assertNotEquals(0, writable1.compareTo(writable2));
     Assert.assertNotEquals(writable1, writable2);
   }
+
+  @Test
+  public void testRegisteredSchema() throws IOException {
+    Schema schema = Schema.recordOf("registered",
+                                    Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("y", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+                                    Schema.Field.of("z", Schema.arrayOf(Schema.of(Schema.Type.LONG))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("x", "abc").set("y", 1.5d).set("z", Arrays.asList(1L, -2L, 3L)).build();
+
+    int inlineSize = serialize(record).length;
+    StructuredRecordWritable.registerSchema(schema);
+    byte[] bytes = serialize(record);
+    // registered schema should only be identified by the schema hash
+    Assert.assertTrue(bytes.length < inlineSize);
+    Assert.assertEquals(record, deserialize(bytes));
+  }
+
+  @Test
+  public void testRawComparison() throws IOException {
+    Schema schema = Schema.recordOf("raw",
+                                    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+    Schema mapSchema = Schema.recordOf("rawmap",
+                                       Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                         Schema.of(Schema.Type.INT))));
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+
+    byte[] r1 = serialize(StructuredRecord.builder(schema).set("s", "a").set("l", 5L).build());
+    byte[] r2 = serialize(StructuredRecord.builder(schema).set("s", "a").set("l", 5L).build());
+    byte[] r3 = serialize(StructuredRecord.builder(schema).set("s", "a").build());
+    Assert.assertEquals(0, comparator.compare(r1, 0, r1.length, r2, 0, r2.length));
+    Assert.assertNotEquals(0, comparator.compare(r1, 0, r1.length, r3, 0, r3.length));
+
+    // maps with the same entries in different order should still be equal
+    byte[] m1 = serialize(StructuredRecord.builder(mapSchema).set("m", ImmutableMap.of("a", 1, "b", 2)).build());
+    byte[] m2 = serialize(StructuredRecord.builder(mapSchema).set("m", ImmutableMap.of("b", 2, "a", 1)).build());
+    byte[] m3 = serialize(StructuredRecord.builder(mapSchema).set("m", ImmutableMap.of("b", 2)).build());
+    Assert.assertEquals(0, comparator.compare(m1, 0, m1.length, m2, 0, m2.length));
+    Assert.assertNotEquals(0, comparator.compare(m1, 0, m1.length, m3, 0, m3.length));
+
+    // records of different schemas are never equal
+    Assert.assertNotEquals(0, comparator.compare(r1, 0, r1.length, m1, 0, m1.length));
+  }
+
+  @Test
+  public void testSchemasFromConfiguration() throws IOException {
+    Schema schema = Schema.recordOf("shuffle",
+                                    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+    Configuration conf = new Configuration(false);
+    StructuredRecordWritable.setShuffleSchemas(conf, Collections.singleton(schema));
+
+    // the map side registers the schemas when the sort comparator is created, before writing any record
+    StructuredRecordWritable.clearSchemas();
+    ReflectionUtils.newInstance(StructuredRecordWritable.RawComparator.class, conf);
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("s", "a").set("i", 1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("s", "a").set("i", 2).build();
+    byte[] r1 = serialize(record1);
+    byte[] r2 = serialize(record2);
+
+    // the reduce side runs in a different process, where nothing is registered before the merge compares records
+    StructuredRecordWritable.clearSchemas();
+    WritableComparator comparator = ReflectionUtils.newInstance(StructuredRecordWritable.RawComparator.class, conf);
+    Assert.assertEquals(0, comparator.compare(r1, 0, r1.length, r1, 0, r1.length));
+    Assert.assertNotEquals(0, comparator.compare(r1, 0, r1.length, r2, 0, r2.length));
+
+    // records are deserialized by instances created from the configuration as well
+    StructuredRecordWritable.clearSchemas();
+    StructuredRecordWritable writable = ReflectionUtils.newInstance(StructuredRecordWritable.class, conf);
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(r2)));
+    Assert.assertEquals(record2, writable.get());
+
+    // without the configuration the records cannot be read
+    StructuredRecordWritable.clearSchemas();
+    try {
+      deserialize(r1);
+      Assert.fail("Expected reading a record of an unregistered schema to fail");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private byte[] serialize(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new StructuredRecordWritable(record).write(new DataOutputStream(os));
+    return os.toByteArray();
+  }
+
+  private StructuredRecord deserialize(byte[] bytes) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+    return writable.get();
+  }
 }
@@ -181,6 +181,7 @@ public final class Constants {
     public static final String SERVER_SSL_PORT = "app.ssl.bind.port";
     public static final String OUTPUT_DIR = "app.output.dir";
     public static final String TEMP_DIR = "app.temp.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB = "app.artifact.unpack.cache.max.size.mb";
     public static final String REST_PORT = "app.rest.port";
     public static final String PROGRAM_JVM_OPTS = "app.program.jvm.opts";
     public static final String BACKLOG_CONNECTIONS = "app.connection.backlog";
@@ -190,6 +191,7 @@ public final class Constants {
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String STATUS_EVENT_FETCH_SIZE = "app.program.status.event.fetch.size";
     public static final String STATUS_EVENT_POLL_DELAY_MILLIS = "app.program.status.event.poll.delay.millis";
+    public static final String STATUS_EVENT_NUM_SHARDS = "app.program.status.event.num.shards";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
@@ -340,6 +342,9 @@ public final class Constants {
     public static final String WORKER_THREADS = "preview.worker.threads";
 
     public static final String PREVIEW_CACHE_SIZE = "preview.cache.size";
+    public static final String MAX_CONCURRENT_PREVIEWS = "preview.max.concurrent.previews";
+    public static final String RUNTIME_POOL_SIZE = "preview.runtime.pool.size";
+    public static final String RUNTIME_POOL_IDLE_TIMEOUT_SECONDS = "preview.runtime.pool.idle.timeout.seconds";
   }
 
   /**
@@ -360,6 +365,7 @@ public final class Constants {
     public static final String PROGRAM_STATUS_EVENT_FETCH_SIZE = "scheduler.program.status.event.fetch.size";
 
     public static final String JOB_QUEUE_NUM_PARTITIONS = "scheduler.job.queue.num.partitions";
+    public static final String CONSTRAINT_CHECK_MAX_IDLE_MILLIS = "scheduler.constraint.check.max.idle.millis";
   }
 
   /**
@@ -556,6 +562,7 @@ public final class Constants {
     public static final String SERVER_BOSS_THREADS = "router.server.boss.threads";
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String UPSTREAM_POOL_MAX_IDLE_CONNECTIONS = "router.upstream.pool.max.idle.connections";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
     public static final String ROUTER_AUDIT_LOG_ENABLED = "router.audit.log.enabled";
 
@@ -587,6 +594,7 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_PIPELINES = "metrics.processor.pipelines";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -1290,9 +1298,17 @@ public final class Constants {
     public static final String MESSAGING_POLL_DELAY_MILLIS = "metadata.messaging.poll.delay.millis";
     public static final String MESSAGING_RETRIES_ON_CONFLICT = "metadata.messaging.retries.on.conflict";
 
+    public static final String LINEAGE_GRAPH_MAX_NODES = "metadata.lineage.graph.max.nodes";
+    public static final String LINEAGE_GRAPH_EXPIRY_SECONDS = "metadata.lineage.graph.expiry.seconds";
+    public static final String LINEAGE_GRAPH_BUCKET_SECONDS = "metadata.lineage.graph.bucket.seconds";
+    public static final String LINEAGE_GRAPH_PARALLELISM = "metadata.lineage.graph.parallelism";
+    public static final String FIELD_LINEAGE_SUMMARY_CACHE_SIZE = "metadata.field.lineage.summary.cache.size";
+
     public static final String STORAGE_PROVIDER_IMPLEMENTATION = "metadata.storage.implementation";
     public static final String STORAGE_PROVIDER_NOSQL = "nosql";
     public static final String STORAGE_PROVIDER_ELASTICSEARCH = "elastic";
+    public static final String STORAGE_PROVIDER_LUCENE = "lucene";
+    public static final String STORAGE_LUCENE_INDEX_DIR = "metadata.storage.lucene.index.dir";
   }
 
   /**
@@ -1324,6 +1340,9 @@ public final class Constants {
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
+    public static final String STORE_MAX_BATCH_SIZE = "messaging.store.max.batch.size";
+    public static final String STORE_MAX_LINGER_MILLIS = "messaging.store.max.linger.millis";
+    public static final String STORE_MAX_QUEUE_SIZE = "messaging.store.max.queue.size";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
       "messaging.coprocessor.metadata.cache.update.frequency.seconds";
 
@@ -1331,6 +1350,9 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_CONSUME_MAX_POLL_TIMEOUT_MS =
+      "messaging.http.server.consume.max.poll.timeout.ms";
+    public static final String HTTP_SERVER_CONSUME_POLL_THREADS = "messaging.http.server.consume.poll.threads";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.discovery;
+
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link EndpointStrategy} that prefers endpoints that respond faster. Callers report the start and completion
+ * of each request through {@link #start(Discoverable)}, from which an exponentially weighted moving average (EWMA)
+ * of the latency and the number of in-flight requests are tracked for each endpoint.
+ *
+ * Endpoints are picked with the power of two choices: two random endpoints are sampled and the one with the lower
+ * cost, which is the average latency multiplied by the number of outstanding requests, is picked. Sampling instead
+ * of always picking the best endpoint avoids all callers herding to the same endpoint based on stale statistics.
+ * The latency average follows increases immediately and decays over time, so that an endpoint that was slow gets
+ * probed again eventually. Endpoints without statistics, such as newly added ones, have the lowest cost.
+ */
+public final class LatencyAwareEndpointStrategy extends AbstractEndpointStrategy {
+
+  // Time constant of the latency average
+  private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+  // Minimum latency used for the cost, such that the number of in-flight requests counts for endpoints without stats
+  private static final long MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  // Latency recorded for a failed request if it failed faster than that, so that failing endpoints are avoided
+  private static final long FAILURE_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final ConcurrentMap<String, EndpointStats> endpointStats;
+
+  public LatencyAwareEndpointStrategy(Supplier<ServiceDiscovered> serviceDiscoveredSupplier) {
+    super(serviceDiscoveredSupplier);
+    this.endpointStats = new ConcurrentHashMap<>();
+  }
+
+  @Nullable
+  @Override
+  protected Discoverable pick(ServiceDiscovered serviceDiscovered) {
+    List<Discoverable> candidates = new ArrayList<>();
+    serviceDiscovered.forEach(candidates::add);
+    if (!endpointStats.isEmpty()) {
+      removeStaleStats(candidates);
+    }
+
+    int size = candidates.size();
+    if (size <= 1) {
+      return size == 0 ? null : candidates.get(0);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+
+    long now = System.nanoTime();
+    Discoverable firstCandidate = candidates.get(first);
+    Discoverable secondCandidate = candidates.get(second);
+    return getCost(firstCandidate, now) <= getCost(secondCandidate, now) ? firstCandidate : secondCandidate;
+  }
+
+  /**
+   * Records the start of a request to the given endpoint.
+   *
+   * @param discoverable the endpoint that the request is sent to
+   * @return a {@link Request} that must be completed when the request is done
+   */
+  public Request start(Discoverable discoverable) {
+    return start(discoverable.getSocketAddress());
+  }
+
+  /**
+   * Records the start of a request to the endpoint of the given address.
+   *
+   * @param address the address of the endpoint that the request is sent to
+   * @return a {@link Request} that must be completed when the request is done
+   */
+  public Request start(InetSocketAddress address) {
+    EndpointStats stats = endpointStats.computeIfAbsent(getKey(address), k -> new EndpointStats());
+    stats.requestStarted();
+    return new Request(stats);
+  }
+
+  /**
+   * Returns a snapshot of the statistics of each endpoint, keyed by the {@code host:port} of the endpoint.
+   */
+  public Map<String, Stats> getStats() {
+    long now = System.nanoTime();
+    Map<String, Stats> result = new HashMap<>();
+    endpointStats.forEach((key, stats) -> result.put(key, stats.snapshot(now)));
+    return Collections.unmodifiableMap(result);
+  }
+
+  private double getCost(Discoverable discoverable, long now) {
+    EndpointStats stats = endpointStats.get(getKey(discoverable.getSocketAddress()));
+    if (stats == null) {
+      return MIN_LATENCY_NANOS;
+    }
+    return stats.getCost(now);
+  }
+
+  /**
+   * Removes statistics of endpoints that are no longer discovered and have no request in flight.
+   */
+  private void removeStaleStats(List<Discoverable> candidates) {
+    Set<String> keys = new HashSet<>();
+    for (Discoverable discoverable : candidates) {
+      keys.add(getKey(discoverable.getSocketAddress()));
+    }
+    endpointStats.entrySet().removeIf(entry -> !keys.contains(entry.getKey()) && entry.getValue().isIdle());
+  }
+
+  private static String getKey(InetSocketAddress address) {
+    return address.getHostName() + ":" + address.getPort();
+  }
+
+  /**
+   * Represents a request that is being sent to an endpoint. Only the first call to {@link #completed()} or
+   * {@link #failed()} is recorded.
+   */
+  public static final class Request {
+
+    private final EndpointStats stats;
+    private final long startTime;
+    private final AtomicBoolean done;
+
+    private Request(EndpointStats stats) {
+      this.stats = stats;
+      this.startTime = System.nanoTime();
+      this.done = new AtomicBoolean();
+    }
+
+    /**
+     * Marks the request as completed, which records the time elapsed since the request started.
+     */
+    public void completed() {
+      if (done.compareAndSet(false, true)) {
+        stats.requestCompleted(System.nanoTime() - startTime, false);
+      }
+    }
+
+    /**
+     * Marks the request as failed. It is recorded as a slow request, such that the endpoint will be picked less
+     * frequently.
+     */
+    public void failed() {
+      if (done.compareAndSet(false, true)) {
+        stats.requestCompleted(Math.max(System.nanoTime() - startTime, FAILURE_LATENCY_NANOS), true);
+      }
+    }
+  }
+
+  /**
+   * Snapshot of the statistics of an endpoint.
+   */
+  public static final class Stats {
+
+    private final double latencyMillis;
+    private final int inflight;
+    private final long requests;
+    private final long failures;
+
+    private Stats(double latencyMillis, int inflight, long requests, long failures) {
+      this.latencyMillis = latencyMillis;
+      this.inflight = inflight;
+      this.requests = requests;
+      this.failures = failures;
+    }
+
+    /**
+     * Returns the moving average of the request latency in milliseconds.
+     */
+    public double getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    /**
+     * Returns the number of requests that are in flight.
+     */
+    public int getInflight() {
+      return inflight;
+    }
+
+    /**
+     * Returns the number of requests that were completed, including the failed ones.
+     */
+    public long getRequests() {
+      return requests;
+    }
+
+    /**
+     * Returns the number of requests that were failed.
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return "Stats{" +
+        "latencyMillis=" + latencyMillis +
+        ", inflight=" + inflight +
+        ", requests=" + requests +
+        ", failures=" + failures +
+        '}';
+    }
+  }
+
+  /**
+   * Statistics of an endpoint.
+   */
+  private static final class EndpointStats {
+
+    private double latencyNanos;
+    private long lastUpdate;
+    private int inflight;
+    private long requests;
+    private long failures;
+
+    synchronized void requestStarted() {
+      inflight++;
+    }
+
+    synchronized void requestCompleted(long latencyNanos, boolean failed) {
+      long now = System.nanoTime();
+      double weight = getWeight(now);
+      double current = requests == 0 ? 0d : this.latencyNanos * weight;
+      // Jump to the new latency if it is higher than the average, so that a slow down of the endpoint is reflected
+      // immediately
+      this.latencyNanos = latencyNanos > current ? latencyNanos : current + latencyNanos * (1.0d - weight);
+      lastUpdate = now;
+      inflight--;
+      requests++;
+      if (failed) {
+        failures++;
+      }
+    }
+
+    synchronized double getCost(long now) {
+      return Math.max(getLatency(now), MIN_LATENCY_NANOS) * (inflight + 1);
+    }
+
+    synchronized boolean isIdle() {
+      return inflight <= 0;
+    }
+
+    synchronized Stats snapshot(long now) {
+      return new Stats(getLatency(now) / TimeUnit.MILLISECONDS.toNanos(1), inflight, requests, failures);
+    }
+
+    /**
+     * Returns the latency average decayed by the time elapsed since the last update.
+     */
+    private double getLatency(long now) {
+      if (requests == 0) {
+        return 0d;
+      }
+      return latencyNanos * getWeight(now);
+    }
+
+    private double getWeight(long now) {
+      return Math.exp(-(double) Math.max(now - lastUpdate, 0L) / DECAY_NANOS);
+    }
+  }
+}
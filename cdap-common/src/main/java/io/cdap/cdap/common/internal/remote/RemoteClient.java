@@ -21,8 +21,7 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import io.cdap.cdap.common.ServiceUnavailableException;
 import io.cdap.cdap.common.conf.Constants;
-import io.cdap.cdap.common.discovery.EndpointStrategy;
-import io.cdap.cdap.common.discovery.RandomEndpointStrategy;
+import io.cdap.cdap.common.discovery.LatencyAwareEndpointStrategy;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpRequest;
@@ -46,7 +45,7 @@ import javax.annotation.Nullable;
  * Discovers a remote service and resolves URLs to that service.
  */
 public class RemoteClient {
-  private final Supplier<EndpointStrategy> endpointStrategySupplier;
+  private final Supplier<LatencyAwareEndpointStrategy> endpointStrategySupplier;
   private final HttpRequestConfig httpRequestConfig;
   private final String discoverableServiceName;
   private final String basePath;
@@ -57,7 +56,7 @@ public class RemoteClient {
     this.httpRequestConfig = httpRequestConfig;
     // Use a supplier to delay the discovery until the first time it is being used.
     this.endpointStrategySupplier = Suppliers.memoize(
-      () -> new RandomEndpointStrategy(() -> discoveryClient.discover(discoverableServiceName)));
+      () -> new LatencyAwareEndpointStrategy(() -> discoveryClient.discover(discoverableServiceName)));
     String cleanBasePath = basePath.startsWith("/") ? basePath : "/" + basePath;
     this.basePath = cleanBasePath.endsWith("/") ? cleanBasePath : cleanBasePath + "/";
   }
@@ -85,18 +84,29 @@ public class RemoteClient {
    *                                     was a 503
    */
   public HttpResponse execute(HttpRequest request) throws IOException {
+    // Track the request latency of the endpoint, so that faster endpoints are preferred by the endpoint strategy
+    URL url = request.getURL();
+    InetSocketAddress address = InetSocketAddress.createUnresolved(
+      url.getHost(), url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+    LatencyAwareEndpointStrategy.Request endpointRequest = endpointStrategySupplier.get().start(address);
     try {
       HttpResponse response = HttpRequests.execute(request, httpRequestConfig);
       switch (response.getResponseCode()) {
         case HttpURLConnection.HTTP_UNAVAILABLE:
+          endpointRequest.failed();
           throw new ServiceUnavailableException(discoverableServiceName, response.getResponseBodyAsString());
         case HttpURLConnection.HTTP_FORBIDDEN:
+          endpointRequest.completed();
           throw new UnauthorizedException(response.getResponseBodyAsString());
         default:
+          endpointRequest.completed();
           return response;
       }
     } catch (ConnectException e) {
       throw new ServiceUnavailableException(discoverableServiceName, e);
+    } finally {
+      // No-op if the request was already completed
+      endpointRequest.failed();
     }
   }
 
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.discovery;
+
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link LatencyAwareEndpointStrategy}.
+ */
+public class LatencyAwareEndpointStrategyTest {
+
+  @Test
+  public void testAvoidFailedEndpoint() {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    Discoverable good = new Discoverable("test", new InetSocketAddress("localhost", 10001));
+    Discoverable bad = new Discoverable("test", new InetSocketAddress("localhost", 10002));
+    discoveryService.register(good);
+    discoveryService.register(bad);
+
+    LatencyAwareEndpointStrategy strategy = new LatencyAwareEndpointStrategy(() -> discoveryService.discover("test"));
+    Assert.assertNotNull(strategy.pick(5, TimeUnit.SECONDS));
+
+    strategy.start(good).completed();
+    strategy.start(bad).failed();
+
+    // With two endpoints, both are always sampled, hence the endpoint that failed should never be picked
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(good.getSocketAddress(), strategy.pick().getSocketAddress());
+    }
+
+    LatencyAwareEndpointStrategy.Stats stats = strategy.getStats().get("localhost:10002");
+    Assert.assertNotNull(stats);
+    Assert.assertEquals(1L, stats.getRequests());
+    Assert.assertEquals(1L, stats.getFailures());
+    Assert.assertEquals(0, stats.getInflight());
+    Assert.assertTrue(stats.getLatencyMillis() > 0d);
+  }
+
+  @Test
+  public void testOutstandingRequests() {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    Discoverable first = new Discoverable("test", new InetSocketAddress("localhost", 10001));
+    Discoverable second = new Discoverable("test", new InetSocketAddress("localhost", 10002));
+    Cancellable cancelFirst = discoveryService.register(first);
+    discoveryService.register(second);
+
+    LatencyAwareEndpointStrategy strategy = new LatencyAwareEndpointStrategy(() -> discoveryService.discover("test"));
+    Assert.assertNotNull(strategy.pick(5, TimeUnit.SECONDS));
+
+    // Endpoints without latency stats are picked based on the number of in-flight requests
+    LatencyAwareEndpointStrategy.Request request = strategy.start(first);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(second.getSocketAddress(), strategy.pick().getSocketAddress());
+    }
+    request.completed();
+    Assert.assertEquals(0, strategy.getStats().get("localhost:10001").getInflight());
+
+    // Stats of endpoints that are gone should be removed
+    cancelFirst.cancel();
+    Assert.assertEquals(second.getSocketAddress(), strategy.pick().getSocketAddress());
+    Assert.assertFalse(strategy.getStats().containsKey("localhost:10001"));
+  }
+}
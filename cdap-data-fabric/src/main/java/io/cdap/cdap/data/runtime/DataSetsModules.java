@@ -47,6 +47,7 @@ import io.cdap.cdap.metadata.elastic.ElasticsearchMetadataStorage;
 import io.cdap.cdap.security.impersonation.OwnerStore;
 import io.cdap.cdap.spi.metadata.MetadataStorage;
 import io.cdap.cdap.spi.metadata.dataset.DatasetMetadataStorage;
+import io.cdap.cdap.spi.metadata.lucene.LuceneMetadataStorage;
 import io.cdap.cdap.spi.metadata.noop.NoopMetadataStorage;
 import io.cdap.cdap.store.DefaultOwnerStore;
 
@@ -181,8 +182,12 @@ class MetadataStorageProvider implements Provider<MetadataStorage> {
     if (Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH.equalsIgnoreCase(config)) {
       return injector.getInstance(ElasticsearchMetadataStorage.class);
     }
+    if (Constants.Metadata.STORAGE_PROVIDER_LUCENE.equalsIgnoreCase(config)) {
+      return injector.getInstance(LuceneMetadataStorage.class);
+    }
     throw new IllegalArgumentException("Unsupported MetadataStorage '" + config + "'. Only '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "' and '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' are allowed.");
+                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "', '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' and '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_LUCENE + "' are allowed.");
   }
 }
@@ -62,14 +62,17 @@ import io.cdap.cdap.api.dataset.lib.Partitioning.FieldType;
 import io.cdap.cdap.api.dataset.lib.partitioned.PartitionKeyCodec;
 import io.cdap.cdap.api.dataset.table.Put;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
+import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data.RuntimeProgramContext;
 import io.cdap.cdap.data.RuntimeProgramContextAware;
 import io.cdap.cdap.data2.dataset2.lib.file.FileSetDataset;
+import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.explore.client.ExploreFacade;
 import io.cdap.cdap.proto.id.DatasetId;
 import org.apache.tephra.Transaction;
@@ -81,6 +84,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -765,7 +769,8 @@ public class PartitionedFileSetDataset extends AbstractDataset
   private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
                              @Nullable byte[] startKey, @Nullable byte[] endKey, long limit) {
     long count = 0L;
-    try (Scanner scanner = partitionsTable.scan(startKey, endKey)) {
+    try (Scanner scanner = partitionsTable.scan(new Scan(startKey, endKey,
+                                                         generateFuzzyFilter(filter, partitioning)))) {
       while (count < limit) {
         Row row = scanner.next();
         if (row == null) {
@@ -1306,6 +1311,75 @@ public class PartitionedFileSetDataset extends AbstractDataset
     return stopKey;
   }
 
+  /**
+   * Generates a fuzzy row filter that lets the scan skip over the partitions that do not match the single-value
+   * conditions on fields that come after the leading fields of the row key, which are already bounded by the start
+   * and stop key. This is only possible for the fields at a fixed offset in the row key, that is, for fields that
+   * are only preceded by int or long fields, or by string fields with a single-value condition. All other conditions
+   * are still evaluated by matching the filter against each partition key returned by the scan.
+   *
+   * @return the fuzzy row filter, or null if it would not exclude more rows than the start and stop key
+   */
+  @VisibleForTesting
+  @Nullable
+  static FuzzyRowFilter generateFuzzyFilter(@Nullable PartitionFilter filter, Partitioning partitioning) {
+    if (filter == null) {
+      return null;
+    }
+    List<byte[]> values = new ArrayList<>();
+    List<Boolean> fixed = new ArrayList<>();
+    int fixedFields = 0;
+    boolean leading = true;
+    boolean skipping = false;
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      FieldType fieldType = entry.getValue();
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(entry.getKey());
+      if (condition != null && condition.isSingleValue()) {
+        try {
+          fieldType.validate(condition.getValue());
+        } catch (IllegalArgumentException e) {
+          // this filter does not match any partition, which is detected when matching the partition keys
+          return null;
+        }
+        values.add(FieldTypes.toBytes(condition.getValue(), fieldType));
+        fixed.add(true);
+        fixedFields = values.size();
+        skipping |= !leading;
+      } else if (fieldType == FieldType.STRING) {
+        // the offset of all following fields depends on the length of this field's value
+        break;
+      } else {
+        values.add(new byte[fieldType == FieldType.INT ? Bytes.SIZEOF_INT : Bytes.SIZEOF_LONG]);
+        fixed.add(false);
+        leading = false;
+      }
+    }
+    if (!skipping) {
+      return null;
+    }
+
+    // the fuzzy key ends with the last fixed field, including the \0 separator if another field follows it
+    int length = 0;
+    for (int i = 0; i < fixedFields; i++) {
+      length += values.get(i).length + 1;
+    }
+    if (fixedFields == partitioning.getFields().size()) {
+      length--;
+    }
+    byte[] fuzzyKey = new byte[length];
+    byte[] fuzzyMask = new byte[length];
+    int offset = 0;
+    for (int i = 0; i < fixedFields; i++) {
+      byte[] bytes = values.get(i);
+      System.arraycopy(bytes, 0, fuzzyKey, offset, bytes.length);
+      if (!fixed.get(i)) {
+        Arrays.fill(fuzzyMask, offset, offset + bytes.length, (byte) 1);
+      }
+      offset += bytes.length + 1; // this leaves a \0 byte after the value, which must match the separator
+    }
+    return new FuzzyRowFilter(Collections.singletonList(ImmutablePair.of(fuzzyKey, fuzzyMask)));
+  }
+
   @VisibleForTesting
   static PartitionKey parseRowKey(byte[] rowKey, Partitioning partitioning) {
     PartitionKey.Builder builder = PartitionKey.builder();
@@ -45,14 +45,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
@@ -69,12 +74,15 @@ import javax.annotation.Nullable;
  * <p>
  * This implementation assumes that the table has name and conflicts are resolved on row level.
  * <p>
- * NOTE: this implementation doesn't cache any data in-memory besides changes. I.e. if you do get of same data that is
- *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
- *       Given the snapshot isolation tx model, this can be improved in future implementations.
+ * Since transactions see a snapshot of the persistent store, rows fetched by point gets can be cached for the duration
+ * of the transaction by setting the {@link #READ_CACHE_MAX_ROWS} property, so repeated gets of the same row do not go
+ * to the persistent store again. The cache is disabled by default, because changes that bypass transactions, such as
+ * truncating the table, are not seen by the cached rows.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * By default changes are persisted only at the end of transaction. If the {@link #WRITE_BUFFER_MAX_BYTES} property
+ * is set, the in-memory buffer is persisted with the transaction write pointer whenever it grows beyond that size,
+ * and the persisted changes are undone if the transaction rolls back. This is not done when readless increments are
+ * enabled, since persisting increments of the same column twice in one transaction would lose one of them.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -86,6 +94,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Property for the maximum number of rows read from the persistent store that are cached within a transaction.
+   * Setting it to zero, which is the default, disables the cache.
+   */
+  public static final String READ_CACHE_MAX_ROWS = "dataset.table.tx.read.cache.max.rows";
+
+  /**
+   * Property for the approximate size in bytes of the in-memory buffer above which buffered changes are persisted
+   * before the transaction commits. Setting it to zero, which is the default, keeps all changes in memory until commit.
+   */
+  public static final String WRITE_BUFFER_MAX_BYTES = "dataset.table.tx.write.buffer.max.bytes";
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -101,6 +121,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
+  // Approximate size in bytes of the changes in the in-memory buffer
+  private long buffSize;
+  // Size of the in-memory buffer above which it is persisted before commit, or 0 for no limit
+  private final long writeBufferMaxBytes;
+
+  // Rows fetched from the persistent store in the current transaction, in access order for LRU eviction
+  private final Map<ByteBuffer, CachedRow> readCache;
+  private final int readCacheMaxRows;
 
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
@@ -151,6 +179,28 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.writeBufferMaxBytes = enableReadlessIncrements ? 0L : getLongProperty(properties, WRITE_BUFFER_MAX_BYTES, 0L);
+    this.readCacheMaxRows = (int) getLongProperty(properties, READ_CACHE_MAX_ROWS, 0L);
+    this.readCache = new LinkedHashMap<ByteBuffer, CachedRow>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CachedRow> eldest) {
+        return size() > readCacheMaxRows;
+      }
+    };
+  }
+
+  private static long getLongProperty(Map<String, String> properties, String key, long defaultValue) {
+    String value = properties.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      long result = Long.parseLong(value.trim());
+      Preconditions.checkArgument(result >= 0, "Property '%s' must not be negative: %s", key, value);
+      return result;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for property '" + key + "': " + value, e);
+    }
   }
 
   /**
@@ -262,6 +312,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    clearReadCache();
   }
 
   @Override
@@ -273,7 +324,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    buffSize = 0L;
     toUndo = null;
+    clearReadCache();
     this.tx = tx;
   }
 
@@ -306,10 +359,36 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  /**
+   * Returns all changes made in the current transaction, including those already persisted before commit.
+   */
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> getAllChanges() {
+    if (toUndo == null) {
+      return buff;
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    mergeChanges(changes, toUndo);
+    mergeChanges(changes, buff);
+    return changes;
+  }
+
+  private static void mergeChanges(NavigableMap<byte[], NavigableMap<byte[], Update>> target,
+                                   NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : changes.entrySet()) {
+      NavigableMap<byte[], Update> targetCols = target.get(rowChange.getKey());
+      if (targetCols == null) {
+        targetCols = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        target.put(rowChange.getKey(), targetCols);
+      }
+      targetCols.putAll(rowChange.getValue());
+    }
+  }
+
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> allChanges = getAllChanges();
+    List<byte[]> changes = new ArrayList<>(allChanges.size());
+    for (byte[] changedRow : allChanges.keySet()) {
       changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
     }
     return changes;
@@ -317,8 +396,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> allChanges = getAllChanges();
+    List<byte[]> changes = new ArrayList<>(allChanges.size());
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : allChanges.entrySet()) {
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
         //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
@@ -339,31 +419,65 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public boolean commitTx() throws Exception {
     if (!buff.isEmpty()) {
-      // We first assume that all data will be persisted. So that if exception happen during persist we try to
-      // rollback everything we had in in-memory buffer.
-      toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
-      // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
-      //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
-      persist(toUndo);
+      persistBuffer();
     }
     return true;
   }
 
+  /**
+   * Persists the in-memory buffer and adds the persisted changes to the ones to undo on rollback.
+   */
+  private void persistBuffer() throws Exception {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes = buff;
+    // clearing up in-memory buffer by initializing new map.
+    // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
+    // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
+    buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    buffSize = 0L;
+    // We first assume that all data will be persisted. So that if exception happen during persist we try to
+    // rollback everything we had in in-memory buffer.
+    if (toUndo == null) {
+      toUndo = changes;
+    } else {
+      mergeChanges(toUndo, changes);
+    }
+    // persisted rows now include changes of this transaction, which are not reflected in the read cache
+    clearReadCache();
+    // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
+    //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
+    persist(changes);
+  }
+
+  /**
+   * Persists the in-memory buffer before commit if it has grown beyond {@link #WRITE_BUFFER_MAX_BYTES}.
+   */
+  private void persistBufferIfFull() {
+    if (writeBufferMaxBytes <= 0 || buffSize < writeBufferMaxBytes) {
+      return;
+    }
+    try {
+      persistBuffer();
+    } catch (Exception e) {
+      LOG.debug("persisting buffer failed for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("persisting buffer failed", e);
+    }
+  }
+
   @Override
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    buffSize = 0L;
     toUndo = null;
+    clearReadCache();
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    buffSize = 0L;
+    clearReadCache();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
@@ -495,6 +609,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void put(byte[] row, byte[][] columns, byte[][] values) {
     ensureTransactionIsStarted();
     putInternal(row, columns, values);
+    addToBufferSize(getSize(row) + getSize(columns) + getSize(values));
     // report metrics _after_ write was performed
     reportWrite(1, getSize(row) + getSize(columns) + getSize(values));
   }
@@ -520,6 +635,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  /**
+   * Adds the size of a change that was added to the in-memory buffer, and persists the buffer if it is full.
+   * Every kind of write has to be counted, including deletes and increments, since they are buffered the same way.
+   */
+  private void addToBufferSize(long size) {
+    buffSize += size;
+    persistBufferIfFull();
+  }
+
   /**
    * NOTE: Depending on the use-case, calling this method may be much less efficient than calling same method
    *       with columns as parameters because it will require a round trip to persistent store.
@@ -557,6 +681,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // same as writing null for every column
     // ANDREAS: shouldn't this be DELETE_MARKER?
     putInternal(row, columns, new byte[columns.length][]);
+    // a delete marker is buffered for every column
+    addToBufferSize(getSize(row) + getSize(columns));
     // "0" because we don't know what gets deleted
     reportWrite(1, 0);
   }
@@ -610,6 +736,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
 
     putInternal(row, columns, updatedValues);
+    addToBufferSize(getSize(row) + getSize(columns) + getSize(updatedValues));
     reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
 
     return new Result(row, result);
@@ -628,6 +755,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       for (int i = 0; i < columns.length; i++) {
         colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
       }
+      addToBufferSize(getSize(row) + getSize(columns) + getSize(amounts));
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
       internalIncrementAndGet(row, columns, amounts);
@@ -649,6 +777,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       reportRead(1);
       if (Arrays.equals(expectedValue, currentValue)) {
         putInternal(row, columns, new byte[][]{newValue});
+        addToBufferSize(getSize(row) + getSize(column) + getSize(newValue));
         reportWrite(1, getSize(row) + getSize(column) + getSize(newValue));
         return true;
       }
@@ -752,10 +881,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       return Collections.emptyMap();
     }
 
-    Map<byte[], byte[]> persisted = getPersisted(row, null);
-
-
-    result.putAll(persisted);
+    result.putAll(getPersistedCached(row, null));
     if (buffCols != null) {
       // buffered should override those returned from persistent store
       mergeToPersisted(result, buffCols, null);
@@ -771,7 +897,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
     // if nothing locally, return all from server
     if (buffCols == null) {
-      return getPersisted(row, columns);
+      return getPersistedCached(row, columns);
     }
 
     // otherwise try to fetch data from in-memory buffer. If not all present - fetch leftover from persisted
@@ -792,11 +918,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
     // fetching from server those that were not found in in-mem buffer
     if (colsToFetchFromPersisted.size() > 0) {
-      Map<byte[], byte[]> persistedCols =
-        getPersisted(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
-      if (persistedCols != null) {
-        result.putAll(persistedCols);
-      }
+      result.putAll(getPersistedCached(
+        row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][])));
     }
 
     // overlay buffered values on persisted, applying increments where necessary
@@ -805,6 +928,53 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Fetches column->value pairs from the persistent store, using the rows cached in the current transaction if
+   * possible. Only the columns that are not cached are fetched from the persistent store.
+   *
+   * @param row row key defines the row to fetch columns from
+   * @param columns set of columns to fetch. null means fetch everything
+   * @return a new map of column->value pairs that can be modified by the caller
+   */
+  private NavigableMap<byte[], byte[]> getPersistedCached(byte[] row, @Nullable byte[][] columns) throws Exception {
+    if (readCacheMaxRows <= 0) {
+      NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      Map<byte[], byte[]> persisted = getPersisted(row, columns);
+      if (persisted != null) {
+        result.putAll(persisted);
+      }
+      return result;
+    }
+
+    ByteBuffer key = ByteBuffer.wrap(row);
+    CachedRow cachedRow;
+    synchronized (readCache) {
+      cachedRow = readCache.get(key);
+    }
+
+    byte[][] missingColumns = columns;
+    if (cachedRow != null) {
+      missingColumns = cachedRow.getMissingColumns(columns);
+    }
+    if (missingColumns == null || missingColumns.length > 0) {
+      Map<byte[], byte[]> persisted = getPersisted(row, missingColumns);
+      if (cachedRow == null) {
+        cachedRow = new CachedRow();
+        synchronized (readCache) {
+          readCache.put(ByteBuffer.wrap(copy(row)), cachedRow);
+        }
+      }
+      cachedRow.add(missingColumns, persisted);
+    }
+    return cachedRow.get(columns);
+  }
+
+  private void clearReadCache() {
+    synchronized (readCache) {
+      readCache.clear();
+    }
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
@@ -1057,6 +1227,69 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  /**
+   * Columns of a row fetched from the persistent store in the current transaction. Absence of a fetched column
+   * from the values means the column does not exist in the persistent store.
+   */
+  private static final class CachedRow {
+    private final NavigableMap<byte[], byte[]> values = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    private final Set<byte[]> fetchedColumns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    private boolean complete;
+
+    /**
+     * Returns the columns that have not been fetched yet, or {@code null} if the whole row needs to be fetched.
+     */
+    @Nullable
+    synchronized byte[][] getMissingColumns(@Nullable byte[][] columns) {
+      if (complete) {
+        return new byte[0][];
+      }
+      if (columns == null) {
+        return null;
+      }
+      List<byte[]> missing = new ArrayList<>();
+      for (byte[] column : columns) {
+        if (!fetchedColumns.contains(column)) {
+          missing.add(column);
+        }
+      }
+      return missing.toArray(new byte[missing.size()][]);
+    }
+
+    synchronized void add(@Nullable byte[][] columns, @Nullable Map<byte[], byte[]> persisted) {
+      if (columns == null) {
+        complete = true;
+        fetchedColumns.clear();
+      } else if (!complete) {
+        for (byte[] column : columns) {
+          fetchedColumns.add(copy(column));
+        }
+      }
+      if (persisted != null) {
+        for (Map.Entry<byte[], byte[]> entry : persisted.entrySet()) {
+          values.put(copy(entry.getKey()), copy(entry.getValue()));
+        }
+      }
+    }
+
+    synchronized NavigableMap<byte[], byte[]> get(@Nullable byte[][] columns) {
+      NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      if (columns == null) {
+        for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+          result.put(copy(entry.getKey()), copy(entry.getValue()));
+        }
+      } else {
+        for (byte[] column : columns) {
+          byte[] value = values.get(column);
+          if (value != null) {
+            result.put(column, copy(value));
+          }
+        }
+      }
+      return result;
+    }
+  }
+
   private long warnedCount = 0L;
   private long skippedCount = 0L;
   private long warnFrequency = 1L;
@@ -23,8 +23,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.util.TableId;
@@ -40,9 +42,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -53,6 +58,7 @@ import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
+  private static final int ROW_LOCK_STRIPES = 1024;
 
   private int blockSize;
   private long cacheSize;
@@ -61,6 +67,9 @@ public class LevelDBTableService implements AutoCloseable {
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  // Locks for read-modify-write operations on rows. They are kept here so that they are shared by all
+  // LevelDBTableCore instances of the same table.
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -92,6 +101,19 @@ public class LevelDBTableService implements AutoCloseable {
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
   }
 
+  /**
+   * Returns the locks that guard read-modify-write operations on the given rows of a table. The locks are returned
+   * in a consistent order, hence acquiring them in iteration order cannot deadlock with other callers.
+   * The same lock can appear more than once if multiple rows map to the same lock.
+   */
+  List<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    List<Integer> keys = new ArrayList<>(rows.size());
+    for (byte[] row : rows) {
+      keys.add(31 * tableName.hashCode() + Bytes.hashCode(row));
+    }
+    return ImmutableList.copyOf(rowLocks.bulkGet(keys));
+  }
+
   /**
    * only use in unit test since the singleton may be reused for multiple tests.
    */
@@ -219,6 +219,13 @@ public class FactCodec {
     return mask;
   }
 
+  /**
+   * Returns the time base of the row that stores the value of the given timestamp.
+   */
+  int getRowTimeBase(long ts) {
+    return getTimeBase(roundToResolution(ts));
+  }
+
   public byte[] createColumn(long ts) {
     long timestamp = roundToResolution(ts);
     int timeBase = getTimeBase(timestamp);
@@ -114,6 +114,26 @@ public final class FactTable implements Closeable {
   }
 
   public void add(List<Fact> facts) {
+    // Pre-aggregates measurements of the same series (dimension values and measure name) at the same resolution
+    // timestamp, so that row keys are encoded and the counter cache is consulted once per distinct series
+    // instead of once per measurement.
+    Map<FactCacheKey, NavigableMap<Long, Long>> counters = new HashMap<>();
+    Map<FactCacheKey, NavigableMap<Long, Long>> gauges = new HashMap<>();
+    for (Fact fact : facts) {
+      // round to the resolution timestamp
+      long tsToResolution = fact.getTimestamp() / resolution * resolution;
+      for (Measurement measurement : fact.getMeasurements()) {
+        FactCacheKey seriesKey = new FactCacheKey(fact.getDimensionValues(), measurement.getName());
+        if (MeasureType.COUNTER == measurement.getType()) {
+          counters.computeIfAbsent(seriesKey, k -> new TreeMap<>()).merge(tsToResolution, measurement.getValue(),
+                                                                           Long::sum);
+        } else {
+          // for gauge, the last value wins
+          gauges.computeIfAbsent(seriesKey, k -> new TreeMap<>()).put(tsToResolution, measurement.getValue());
+        }
+      }
+    }
+
     // Simply collecting all rows/cols/values that need to be put to the underlying table.
     NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -123,43 +143,43 @@ public final class FactTable implements Closeable {
     NavigableMap<byte[], NavigableMap<byte[], Long>> incGaugeTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // this map is used to store the updated timestamp for the cache
     Map<FactCacheKey, Long> cacheUpdates = new HashMap<>();
-    for (Fact fact : facts) {
-      for (Measurement measurement : fact.getMeasurements()) {
-        byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
-        byte[] column = codec.createColumn(fact.getTimestamp());
 
-        if (MeasureType.COUNTER == measurement.getType()) {
-          if (factCounterCache != null) {
-            // round to the resolution timestamp
-            long tsToResolution = fact.getTimestamp() / resolution * resolution;
-            FactCacheKey cacheKey = new FactCacheKey(fact.getDimensionValues(), measurement.getName());
-            Long existingTs = factCounterCache.getIfPresent(cacheKey);
-
-            // if there is no existing ts or existing ts is greater than or equal to the current ts, this metric value
-            // cannot be considered as a gauge, and we should update the incrementsTable
-            if (existingTs == null || existingTs >= tsToResolution) {
-              inc(incrementsTable, rowKey, column, measurement.getValue());
-              // if the current ts is greater than existing ts, then we can consider this metric as a newly seen metric
-              // and perform gauge on this metric
-            } else {
-              inc(incGaugeTable, rowKey, column, measurement.getValue());
-            }
-
-            // if there is no existing value or the current ts is greater than the existing ts, the value in the cache
-            // should be updated
-            if (existingTs == null || existingTs < tsToResolution) {
-              cacheUpdates.compute(
-                cacheKey, (key, oldValue) -> oldValue == null || tsToResolution > oldValue ? tsToResolution : oldValue);
-            }
-          } else {
-            inc(incrementsTable, rowKey, column, measurement.getValue());
-          }
+    for (Map.Entry<FactCacheKey, NavigableMap<Long, Long>> series : counters.entrySet()) {
+      FactCacheKey cacheKey = series.getKey();
+      RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(cacheKey);
+      Long existingTs = factCounterCache == null ? null : factCounterCache.getIfPresent(cacheKey);
+
+      for (Map.Entry<Long, Long> entry : series.getValue().entrySet()) {
+        long tsToResolution = entry.getKey();
+        byte[] rowKey = rowKeyEncoder.getRowKey(tsToResolution);
+        byte[] column = codec.createColumn(tsToResolution);
+
+        // if there is no existing ts or existing ts is greater than or equal to the current ts, this metric value
+        // cannot be considered as a gauge, and we should update the incrementsTable
+        if (factCounterCache == null || existingTs == null || existingTs >= tsToResolution) {
+          inc(incrementsTable, rowKey, column, entry.getValue());
+          // if the current ts is greater than existing ts, then we can consider this metric as a newly seen metric
+          // and perform gauge on this metric
         } else {
-          gaugesTable
-            .computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
-            .put(column, measurement.getValue());
+          inc(incGaugeTable, rowKey, column, entry.getValue());
         }
       }
+
+      // if there is no existing value or the latest ts is greater than the existing ts, the value in the cache
+      // should be updated
+      long latestTs = series.getValue().lastKey();
+      if (factCounterCache != null && (existingTs == null || existingTs < latestTs)) {
+        cacheUpdates.put(cacheKey, latestTs);
+      }
+    }
+
+    for (Map.Entry<FactCacheKey, NavigableMap<Long, Long>> series : gauges.entrySet()) {
+      RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(series.getKey());
+      for (Map.Entry<Long, Long> entry : series.getValue().entrySet()) {
+        gaugesTable
+          .computeIfAbsent(rowKeyEncoder.getRowKey(entry.getKey()), k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
+          .put(codec.createColumn(entry.getKey()), entry.getValue());
+      }
     }
 
     if (factCounterCache != null) {
@@ -492,6 +512,29 @@ public final class FactTable implements Closeable {
     values.put(column, newValue);
   }
 
+  /**
+   * Encodes row keys of a series. Consecutive timestamps of the same time base share the same row key,
+   * hence the last encoded row key is reused.
+   */
+  private final class RowKeyEncoder {
+    private final FactCacheKey series;
+    private int timeBase;
+    private byte[] rowKey;
+
+    RowKeyEncoder(FactCacheKey series) {
+      this.series = series;
+    }
+
+    byte[] getRowKey(long ts) {
+      int rowTimeBase = codec.getRowTimeBase(ts);
+      if (rowKey == null || rowTimeBase != timeBase) {
+        rowKey = codec.createRowKey(series.dimensionValues, series.metricName, ts);
+        timeBase = rowTimeBase;
+      }
+      return rowKey;
+    }
+  }
+
   class FactCacheKey {
     private final List<DimensionValue> dimensionValues;
     private final String metricName;
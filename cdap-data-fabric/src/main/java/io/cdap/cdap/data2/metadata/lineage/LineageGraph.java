@@ -0,0 +1,393 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.metadata.lineage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.common.app.RunIds;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.proto.id.DatasetId;
+import io.cdap.cdap.proto.id.NamespacedEntityId;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ProgramRunId;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * An in-memory adjacency graph of the dataset accesses of programs, which serves the {@link Relation}s of
+ * datasets and programs for computing lineage. The relations of each dataset and program are kept by program run
+ * start time. A time range, aligned to a configurable bucket size, is loaded from the {@link LineageStoreReader}
+ * the first time it is needed, and is then kept up-to-date through
+ * {@link #addAccess(ProgramRunId, DatasetId, AccessType)} with the accesses that get written to the
+ * {@link LineageTable}. Because accesses can also be written by other processes, the relations of a dataset or
+ * program are discarded and reloaded after a configurable time.
+ */
+@Singleton
+public class LineageGraph {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LineageGraph.class);
+
+  private final LineageStoreReader lineageStoreReader;
+  private final long bucketMillis;
+  private final LoadingCache<NamespacedEntityId, Node> nodes;
+  private final ThreadPoolExecutor executor;
+
+  @Inject
+  @VisibleForTesting
+  public LineageGraph(CConfiguration cConf, LineageStoreReader lineageStoreReader) {
+    this.lineageStoreReader = lineageStoreReader;
+    this.bucketMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Metadata.LINEAGE_GRAPH_BUCKET_SECONDS));
+    this.nodes = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getLong(Constants.Metadata.LINEAGE_GRAPH_MAX_NODES))
+      .expireAfterWrite(cConf.getLong(Constants.Metadata.LINEAGE_GRAPH_EXPIRY_SECONDS), TimeUnit.SECONDS)
+      .build(new CacheLoader<NamespacedEntityId, Node>() {
+        @Override
+        public Node load(NamespacedEntityId entity) {
+          return new Node(entity);
+        }
+      });
+    int parallelism = cConf.getInt(Constants.Metadata.LINEAGE_GRAPH_PARALLELISM);
+    this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<>(),
+                                           Threads.createDaemonThreadFactory("lineage-graph-%d"));
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Returns the program-dataset accesses of a dataset, for the program runs started in the given period.
+   *
+   * @param datasetInstance dataset for which to fetch access information
+   * @param start start time period, inclusive
+   * @param end end time period, exclusive
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information
+   */
+  public Set<Relation> getRelations(DatasetId datasetInstance, long start, long end, Predicate<Relation> filter) {
+    return nodes.getUnchecked(datasetInstance).getRelations(start, end, filter);
+  }
+
+  /**
+   * Returns the program-dataset accesses of a program, for the program runs started in the given period.
+   *
+   * @param program program for which to fetch access information
+   * @param start start time period, inclusive
+   * @param end end time period, exclusive
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information
+   */
+  public Set<Relation> getRelations(ProgramId program, long start, long end, Predicate<Relation> filter) {
+    return nodes.getUnchecked(program).getRelations(start, end, filter);
+  }
+
+  /**
+   * Returns the program-dataset accesses of a set of datasets and programs, for the program runs started in the
+   * given period. The datasets and programs are expanded in parallel.
+   *
+   * @param entities datasets and programs for which to fetch access information
+   * @param start start time period, inclusive
+   * @param end end time period, exclusive
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information of all the given entities
+   */
+  public Set<Relation> getRelations(Collection<? extends NamespacedEntityId> entities, long start, long end,
+                                    Predicate<Relation> filter) {
+    if (entities.size() == 1) {
+      return getRelations(entities.iterator().next(), start, end, filter);
+    }
+    List<Future<Set<Relation>>> futures = new ArrayList<>(entities.size());
+    for (NamespacedEntityId entity : entities) {
+      futures.add(executor.submit(() -> getRelations(entity, start, end, filter)));
+    }
+    Set<Relation> relations = new HashSet<>();
+    try {
+      for (Future<Set<Relation>> future : futures) {
+        relations.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+    return relations;
+  }
+
+  /**
+   * Adds an access of a dataset by a program run, after it has been written to the {@link LineageTable}.
+   *
+   * @param run program run that accessed the dataset
+   * @param datasetInstance dataset that was accessed
+   * @param accessType the type of the access
+   */
+  public void addAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType) {
+    Relation relation = new Relation(datasetInstance, run.getParent(), accessType, RunIds.fromString(run.getRun()));
+    // only the entities that are in memory need to be updated, all others load the access when they are needed
+    for (NamespacedEntityId entity : new NamespacedEntityId[] { datasetInstance, run.getParent() }) {
+      Node node = nodes.getIfPresent(entity);
+      if (node != null) {
+        node.add(relation);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of objects kept in memory for a dataset or program, which is the number of loaded time
+   * ranges plus the number of distinct program run start times, or zero if the entity is not in memory.
+   */
+  @VisibleForTesting
+  int getNodeSize(NamespacedEntityId entity) {
+    Node node = nodes.getIfPresent(entity);
+    return node == null ? 0 : node.size();
+  }
+
+  private Set<Relation> getRelations(NamespacedEntityId entity, long start, long end, Predicate<Relation> filter) {
+    if (entity instanceof DatasetId) {
+      return getRelations((DatasetId) entity, start, end, filter);
+    }
+    if (entity instanceof ProgramId) {
+      return getRelations((ProgramId) entity, start, end, filter);
+    }
+    throw new IllegalStateException("Unknown entity type " + entity);
+  }
+
+  /**
+   * Aligns the start of a time range down to the bucket boundary.
+   */
+  private long alignStart(long time) {
+    return time - Math.floorMod(time, bucketMillis);
+  }
+
+  /**
+   * Aligns the exclusive end of a time range up to the bucket boundary.
+   */
+  private long alignEnd(long time) {
+    long remainder = Math.floorMod(time, bucketMillis);
+    if (remainder == 0L || time > Long.MAX_VALUE - bucketMillis) {
+      return time;
+    }
+    return time - remainder + bucketMillis;
+  }
+
+  private static long getRunStartTime(Relation relation) {
+    return RunIds.getTime(relation.getRun(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * The relations of a dataset or a program, keyed by program run start time. The time ranges that are loaded,
+   * or are being loaded, from the lineage store are kept as disjoint intervals, so that the memory used by a node
+   * only depends on the number of relations, and not on the length of the time ranges that were queried.
+   */
+  private final class Node {
+
+    private final NamespacedEntityId entity;
+    // serializes the loading of time ranges, but not the updates and reads of loaded ranges
+    private final Lock loadLock;
+    // disjoint and non-adjacent loaded time ranges, from start (inclusive) to end (exclusive); guarded by this
+    private final NavigableMap<Long, Long> loadedRanges;
+    // guarded by this
+    private final NavigableMap<Long, Set<Relation>> relations;
+
+    Node(NamespacedEntityId entity) {
+      this.entity = entity;
+      this.loadLock = new ReentrantLock();
+      this.loadedRanges = new TreeMap<>();
+      this.relations = new TreeMap<>();
+    }
+
+    Set<Relation> getRelations(long start, long end, Predicate<Relation> filter) {
+      if (start >= end) {
+        return Collections.emptySet();
+      }
+      load(alignStart(start), alignEnd(end));
+
+      Set<Relation> result = new HashSet<>();
+      synchronized (this) {
+        for (Set<Relation> runRelations : relations.subMap(start, true, end, false).values()) {
+          for (Relation relation : runRelations) {
+            if (filter.test(relation)) {
+              result.add(relation);
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    synchronized void add(Relation relation) {
+      long runStartTime = getRunStartTime(relation);
+      if (isLoaded(runStartTime)) {
+        addRelation(runStartTime, relation);
+      }
+    }
+
+    /**
+     * Loads the parts of the given time range that are not in memory yet, with one scan for each part.
+     * The ranges are marked as loaded before the scan, so that accesses added while the scan is in progress
+     * are not lost.
+     */
+    private void load(long start, long end) {
+      loadLock.lock();
+      try {
+        List<long[]> missingRanges;
+        synchronized (this) {
+          missingRanges = getMissingRanges(start, end);
+          for (long[] range : missingRanges) {
+            addLoadedRange(range[0], range[1]);
+          }
+        }
+
+        for (int i = 0; i < missingRanges.size(); i++) {
+          long rangeStart = missingRanges.get(i)[0];
+          long rangeEnd = missingRanges.get(i)[1];
+          Set<Relation> scanned;
+          try {
+            scanned = scan(rangeStart, rangeEnd);
+          } catch (RuntimeException e) {
+            // remove all the ranges that have not been loaded, so that they are loaded again next time
+            synchronized (this) {
+              for (long[] range : missingRanges.subList(i, missingRanges.size())) {
+                removeLoadedRange(range[0], range[1]);
+              }
+            }
+            throw e;
+          }
+          LOG.trace("Loaded {} relations of {} for time range [{}, {})", scanned.size(), entity, rangeStart, rangeEnd);
+          synchronized (this) {
+            for (Relation relation : scanned) {
+              long runStartTime = getRunStartTime(relation);
+              if (runStartTime >= rangeStart && runStartTime < rangeEnd) {
+                addRelation(runStartTime, relation);
+              }
+            }
+          }
+        }
+      } finally {
+        loadLock.unlock();
+      }
+    }
+
+    private void addRelation(long runStartTime, Relation relation) {
+      Set<Relation> runRelations = relations.get(runStartTime);
+      if (runRelations == null) {
+        runRelations = new HashSet<>();
+        relations.put(runStartTime, runRelations);
+      }
+      runRelations.add(relation);
+    }
+
+    private boolean isLoaded(long time) {
+      Map.Entry<Long, Long> range = loadedRanges.floorEntry(time);
+      return range != null && time < range.getValue();
+    }
+
+    /**
+     * Returns the parts of the given time range that are not covered by the loaded ranges.
+     */
+    private List<long[]> getMissingRanges(long start, long end) {
+      List<long[]> missingRanges = new ArrayList<>();
+      long current = start;
+      Map.Entry<Long, Long> range = loadedRanges.floorEntry(start);
+      if (range != null && range.getValue() > current) {
+        current = range.getValue();
+      }
+      for (Map.Entry<Long, Long> next : loadedRanges.subMap(start, false, end, false).entrySet()) {
+        if (next.getKey() > current) {
+          missingRanges.add(new long[] { current, next.getKey() });
+        }
+        current = Math.max(current, next.getValue());
+      }
+      if (current < end) {
+        missingRanges.add(new long[] { current, end });
+      }
+      return missingRanges;
+    }
+
+    /**
+     * Adds a range that does not overlap with any loaded range, merging it with the adjacent ranges.
+     */
+    private void addLoadedRange(long start, long end) {
+      Map.Entry<Long, Long> before = loadedRanges.floorEntry(start);
+      if (before != null && before.getValue() == start) {
+        start = before.getKey();
+      }
+      Long after = loadedRanges.remove(end);
+      if (after != null) {
+        end = after;
+      }
+      loadedRanges.put(start, end);
+    }
+
+    /**
+     * Removes a range that is fully covered by a loaded range, splitting the loaded range if needed.
+     */
+    private void removeLoadedRange(long start, long end) {
+      Map.Entry<Long, Long> range = loadedRanges.floorEntry(start);
+      if (range == null || range.getValue() < end) {
+        return;
+      }
+      loadedRanges.remove(range.getKey());
+      if (range.getKey() < start) {
+        loadedRanges.put(range.getKey(), start);
+      }
+      if (end < range.getValue()) {
+        loadedRanges.put(end, range.getValue());
+      }
+      relations.subMap(start, true, end, false).clear();
+    }
+
+    /**
+     * Returns the number of loaded time ranges and of distinct run start times in memory.
+     */
+    synchronized int size() {
+      return loadedRanges.size() + relations.size();
+    }
+
+    private Set<Relation> scan(long start, long end) {
+      if (entity instanceof DatasetId) {
+        return lineageStoreReader.getRelations((DatasetId) entity, start, end, relation -> true);
+      }
+      return lineageStoreReader.getRelations((ProgramId) entity, start, end, relation -> true);
+    }
+  }
+}
@@ -18,28 +18,49 @@
 package io.cdap.cdap.data2.metadata.lineage.field;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import io.cdap.cdap.api.lineage.field.EndPoint;
 import io.cdap.cdap.api.lineage.field.Operation;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.proto.metadata.lineage.ProgramRunOperations;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * Implementation of {@link FieldLineageReader} for reading the field lineage information
- * from {@link FieldLineageTable}.
+ * from {@link FieldLineageTable}. The summaries are stored once per checksum of the field lineage information,
+ * and most program runs of a dataset share the same checksum. The summaries of recently used checksums are
+ * cached, so that computing summaries only needs to scan the checksums of the program runs in the time range.
  */
+@Singleton
 public class DefaultFieldLineageReader implements FieldLineageReader {
   private final TransactionRunner transactionRunner;
+  private final Cache<SummaryKey, Map<String, Set<EndPointField>>> summaryCache;
 
-  @Inject
   @VisibleForTesting
   public DefaultFieldLineageReader(TransactionRunner transactionRunner) {
+    this(CConfiguration.create(), transactionRunner);
+  }
+
+  @Inject
+  DefaultFieldLineageReader(CConfiguration cConf, TransactionRunner transactionRunner) {
     this.transactionRunner = transactionRunner;
+    this.summaryCache = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getLong(Constants.Metadata.FIELD_LINEAGE_SUMMARY_CACHE_SIZE))
+      .build();
   }
 
   @Override
@@ -52,17 +73,48 @@ public class DefaultFieldLineageReader implements FieldLineageReader {
 
   @Override
   public Set<EndPointField> getIncomingSummary(EndPointField endPointField, long start, long end) {
-    return TransactionRunners.run(transactionRunner, context -> {
-      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
-      return fieldLineageTable.getIncomingSummary(endPointField, start, end);
-    });
+    return getSummaries(true, endPointField.getEndPoint(), start, end)
+      .getOrDefault(endPointField.getField(), Collections.emptySet());
   }
 
   @Override
   public Set<EndPointField> getOutgoingSummary(EndPointField endPointField, long start, long end) {
+    return getSummaries(false, endPointField.getEndPoint(), start, end)
+      .getOrDefault(endPointField.getField(), Collections.emptySet());
+  }
+
+  @Override
+  public Map<String, Set<EndPointField>> getIncomingSummaries(EndPoint endPoint, long start, long end) {
+    return getSummaries(true, endPoint, start, end);
+  }
+
+  @Override
+  public Map<String, Set<EndPointField>> getOutgoingSummaries(EndPoint endPoint, long start, long end) {
+    return getSummaries(false, endPoint, start, end);
+  }
+
+  private Map<String, Set<EndPointField>> getSummaries(boolean incoming, EndPoint endPoint, long start, long end) {
     return TransactionRunners.run(transactionRunner, context -> {
       FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
-      return fieldLineageTable.getOutgoingSummary(endPointField, start, end);
+      Set<Long> checksums = incoming ? fieldLineageTable.getIncomingChecksums(endPoint, start, end)
+        : fieldLineageTable.getOutgoingChecksums(endPoint, start, end);
+
+      Map<String, Set<EndPointField>> result = new HashMap<>();
+      for (long checksum : checksums) {
+        // the summaries of a checksum never change once stored, hence they can be cached without invalidation
+        SummaryKey key = new SummaryKey(checksum, incoming, endPoint);
+        Map<String, Set<EndPointField>> summaries = summaryCache.getIfPresent(key);
+        if (summaries == null) {
+          summaries = Collections.unmodifiableMap(
+            incoming ? fieldLineageTable.getIncomingSummaries(checksum, endPoint)
+              : fieldLineageTable.getOutgoingSummaries(checksum, endPoint));
+          summaryCache.put(key, summaries);
+        }
+        for (Map.Entry<String, Set<EndPointField>> entry : summaries.entrySet()) {
+          result.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+        }
+      }
+      return result;
     });
   }
 
@@ -100,4 +152,37 @@ public class DefaultFieldLineageReader implements FieldLineageReader {
     }
     return endPointFieldOperations;
   }
+
+  /**
+   * Key of the summary cache, which identifies the summaries of one direction of one EndPoint in the field
+   * lineage information with a given checksum.
+   */
+  private static final class SummaryKey {
+    private final long checksum;
+    private final boolean incoming;
+    private final EndPoint endPoint;
+
+    SummaryKey(long checksum, boolean incoming, EndPoint endPoint) {
+      this.checksum = checksum;
+      this.incoming = incoming;
+      this.endPoint = endPoint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SummaryKey that = (SummaryKey) o;
+      return checksum == that.checksum && incoming == that.incoming && Objects.equals(endPoint, that.endPoint);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(checksum, incoming, endPoint);
+    }
+  }
 }
@@ -20,7 +20,9 @@ import io.cdap.cdap.api.lineage.field.EndPoint;
 import io.cdap.cdap.api.lineage.field.WriteOperation;
 import io.cdap.cdap.proto.metadata.lineage.ProgramRunOperations;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -62,6 +64,40 @@ public interface FieldLineageReader {
    */
   Set<EndPointField> getOutgoingSummary(EndPointField endPointField, long start, long end);
 
+  /**
+   * Get the incoming summaries of all the fields of the specified EndPoint over a given time range.
+   *
+   * @param endPoint the EndPoint for which incoming summaries to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the map from field name to the incoming summary of that field
+   * @see #getIncomingSummary(EndPointField, long, long)
+   */
+  default Map<String, Set<EndPointField>> getIncomingSummaries(EndPoint endPoint, long start, long end) {
+    Map<String, Set<EndPointField>> summaries = new HashMap<>();
+    for (String field : getFields(endPoint, start, end)) {
+      summaries.put(field, getIncomingSummary(new EndPointField(endPoint, field), start, end));
+    }
+    return summaries;
+  }
+
+  /**
+   * Get the outgoing summaries of all the fields of the specified EndPoint over a given time range.
+   *
+   * @param endPoint the EndPoint for which outgoing summaries to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the map from field name to the outgoing summary of that field
+   * @see #getOutgoingSummary(EndPointField, long, long)
+   */
+  default Map<String, Set<EndPointField>> getOutgoingSummaries(EndPoint endPoint, long start, long end) {
+    Map<String, Set<EndPointField>> summaries = new HashMap<>();
+    for (String field : getFields(endPoint, start, end)) {
+      summaries.put(field, getOutgoingSummary(new EndPointField(endPoint, field), start, end));
+    }
+    return summaries;
+  }
+
   /**
    * Get the list of operations which were responsible for computing the given field
    * of the specified EndPoint over a given time range. Along with the operations, program
@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -306,6 +307,82 @@ public class FieldLineageTable {
     return getSummary(OUTGOING_DIRECTION_MARKER, endPointField, start, end);
   }
 
+  /**
+   * Get the checksums of the field lineage information of the program runs that computed the fields of the
+   * specified EndPoint over a given time range.
+   *
+   * @param endPoint the EndPoint for which checksums are to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the set of checksums
+   */
+  public Set<Long> getIncomingChecksums(EndPoint endPoint, long start, long end) throws IOException {
+    return getChecksumsWithProgramRunsInRange(INCOMING_DIRECTION_MARKER, endPoint, start, end).keySet();
+  }
+
+  /**
+   * Get the checksums of the field lineage information of the program runs that computed fields from the
+   * specified EndPoint over a given time range.
+   *
+   * @param endPoint the EndPoint for which checksums are to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the set of checksums
+   */
+  public Set<Long> getOutgoingChecksums(EndPoint endPoint, long start, long end) throws IOException {
+    return getChecksumsWithProgramRunsInRange(OUTGOING_DIRECTION_MARKER, endPoint, start, end).keySet();
+  }
+
+  /**
+   * Get the incoming summaries of all the fields of the specified EndPoint, that are stored for the field
+   * lineage information with the given checksum. Since the summaries of a checksum never change once stored,
+   * the result can be cached by the caller.
+   *
+   * @param checksum the checksum of the field lineage information
+   * @param endPoint the EndPoint for which incoming summaries to be returned
+   * @return the map from field name to the incoming summary of that field
+   */
+  public Map<String, Set<EndPointField>> getIncomingSummaries(long checksum, EndPoint endPoint) throws IOException {
+    return getSummaries(checksum, INCOMING_DIRECTION_MARKER, endPoint);
+  }
+
+  /**
+   * Get the outgoing summaries of all the fields of the specified EndPoint, that are stored for the field
+   * lineage information with the given checksum. Since the summaries of a checksum never change once stored,
+   * the result can be cached by the caller.
+   *
+   * @param checksum the checksum of the field lineage information
+   * @param endPoint the EndPoint for which outgoing summaries to be returned
+   * @return the map from field name to the outgoing summary of that field
+   */
+  public Map<String, Set<EndPointField>> getOutgoingSummaries(long checksum, EndPoint endPoint) throws IOException {
+    return getSummaries(checksum, OUTGOING_DIRECTION_MARKER, endPoint);
+  }
+
+  private Map<String, Set<EndPointField>> getSummaries(long checksum, String direction, EndPoint endPoint)
+    throws IOException {
+    Map<String, Set<EndPointField>> result = new HashMap<>();
+    List<Field<?>> prefix = getSummaryPrefix(checksum, direction, endPoint);
+    try (CloseableIterator<StructuredRow> iterator =
+      getSummaryFieldsTable().scan(Range.singleton(prefix), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        String value = row.getString(StoreDefinition.FieldLineageStore.DESTINATION_DATA_FIELD);
+        Set<EndPointField> endPointFields;
+        try {
+          endPointFields = GSON.fromJson(value, SET_ENDPOINT_FIELD_TYPE);
+        } catch (JsonSyntaxException e) {
+          LOG.warn(String.format("Failed to parse json from checksum %d.", checksum));
+          continue;
+        }
+        if (endPointFields != null) {
+          result.put(row.getString(StoreDefinition.FieldLineageStore.ENDPOINT_FIELD), endPointFields);
+        }
+      }
+    }
+    return result;
+  }
+
   private Set<EndPointField> getSummary(String direction, EndPointField endPointField, long start, long end)
     throws IOException {
     Set<Long> checksums = getChecksumsWithProgramRunsInRange(direction, endPointField.getEndPoint(),
@@ -19,6 +19,7 @@ package io.cdap.cdap.data2.metadata.writer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import io.cdap.cdap.data2.metadata.lineage.AccessType;
+import io.cdap.cdap.data2.metadata.lineage.LineageGraph;
 import io.cdap.cdap.data2.metadata.lineage.LineageTable;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageInfo;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageTable;
@@ -42,11 +43,18 @@ public class BasicLineageWriter implements LineageWriter, FieldLineageWriter {
   private static final Logger LOG = LoggerFactory.getLogger(BasicLineageWriter.class);
 
   private final TransactionRunner transactionRunner;
+  @Nullable
+  private final LineageGraph lineageGraph;
 
   @VisibleForTesting
-  @Inject
   public BasicLineageWriter(TransactionRunner transactionRunner) {
+    this(transactionRunner, null);
+  }
+
+  @Inject
+  BasicLineageWriter(TransactionRunner transactionRunner, LineageGraph lineageGraph) {
     this.transactionRunner = transactionRunner;
+    this.lineageGraph = lineageGraph;
   }
 
   @Override
@@ -61,6 +69,9 @@ public class BasicLineageWriter implements LineageWriter, FieldLineageWriter {
         .create(context)
         .addAccess(run, datasetId, accessType, accessTime);
     });
+    if (lineageGraph != null) {
+      lineageGraph.addAccess(run, datasetId, accessType);
+    }
   }
 
   @Override
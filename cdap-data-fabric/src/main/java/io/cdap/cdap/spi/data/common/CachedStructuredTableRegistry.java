@@ -20,6 +20,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
@@ -67,6 +68,13 @@ public class CachedStructuredTableRegistry implements StructuredTableRegistry {
     specCache.invalidate(specification.getTableId());
   }
 
+  @Override
+  public void updateSpecification(StructuredTableSpecification specification)
+    throws IOException, TableNotFoundException {
+    delegate.updateSpecification(specification);
+    specCache.invalidate(specification.getTableId());
+  }
+
   @Override
   @Nullable
   public StructuredTableSpecification getSpecification(StructuredTableId tableId) {
@@ -23,6 +23,7 @@ import io.cdap.cdap.spi.data.InvalidFieldException;
 import io.cdap.cdap.spi.data.StructuredRow;
 import io.cdap.cdap.spi.data.StructuredTable;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
+import io.cdap.cdap.spi.data.table.StructuredTableSchema;
 import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Range;
 
@@ -66,6 +67,24 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiUpsert(Collection<Collection<Field<?>>> multiFields) throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.multiUpsert(multiFields);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.multiUpsert(multiFields);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multiUpsert.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multiUpsert.count", 1L);
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multiUpsert.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     try {
@@ -107,6 +126,27 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public Collection<StructuredRow> multiRead(Collection<Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    try {
+      Collection<StructuredRow> result;
+      if (!emitTimeMetrics) {
+        result = structuredTable.multiRead(multiKeys);
+      } else {
+        long curTime = System.nanoTime();
+        result = structuredTable.multiRead(multiKeys);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multiRead.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multiRead.count", 1L);
+      return result;
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multiRead.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public CloseableIterator<StructuredRow> scan(Range keyRange, int limit) throws InvalidFieldException, IOException {
     try {
@@ -205,6 +245,24 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<Collection<Field<?>>> multiKeys) throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.multiDelete(multiKeys);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.multiDelete(multiKeys);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multiDelete.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multiDelete.count", 1L);
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multiDelete.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     try {
@@ -223,6 +281,11 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public StructuredTableSchema getSchema() {
+    return structuredTable.getSchema();
+  }
+
   @Override
   public void close() throws IOException {
     structuredTable.close();
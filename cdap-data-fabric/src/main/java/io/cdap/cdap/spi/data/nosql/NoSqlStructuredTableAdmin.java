@@ -29,6 +29,7 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
@@ -84,6 +85,18 @@ public final class NoSqlStructuredTableAdmin implements StructuredTableAdmin {
     return registry.getSpecification(tableId);
   }
 
+  @Override
+  public void upgrade(StructuredTableSpecification spec) throws IOException, TableNotFoundException {
+    StructuredTableSpecification existing = registry.getSpecification(spec.getTableId());
+    if (existing == null) {
+      throw new TableNotFoundException(spec.getTableId());
+    }
+    // All tables are stored in the same indexed table, hence the added fields only need to be registered
+    LOG.info("Upgrading table {} in namespace {} with fields {}", spec.getTableId().getName(), NamespaceId.SYSTEM,
+             spec.getAddedFields(existing));
+    registry.updateSpecification(spec);
+  }
+
   @Override
   public void drop(StructuredTableId tableId) throws IOException {
     LOG.info("Dropping table {} in namespace {}", tableId.getName(), NamespaceId.SYSTEM);
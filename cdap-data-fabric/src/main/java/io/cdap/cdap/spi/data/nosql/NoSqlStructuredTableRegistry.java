@@ -32,6 +32,7 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
@@ -93,6 +94,26 @@ public class NoSqlStructuredTableRegistry implements StructuredTableRegistry {
     }
   }
 
+  @Override
+  public void updateSpecification(StructuredTableSpecification specification)
+    throws IOException, TableNotFoundException {
+    LOG.debug("Updating table specification {}", specification);
+    StructuredTableId tableId = specification.getTableId();
+    MetricsTable table = getRegistryTable();
+    try {
+      byte[] rowKeyBytes = getRowKeyBytes(tableId);
+      byte[] serialized = table.get(rowKeyBytes, SCHEMA_COL_BYTES);
+      if (serialized == null) {
+        throw new TableNotFoundException(tableId);
+      }
+      if (!table.swap(rowKeyBytes, SCHEMA_COL_BYTES, serialized, Bytes.toBytes(GSON.toJson(specification)))) {
+        throw new IOException(String.format("Specification of table %s was changed concurrently", tableId));
+      }
+    } finally {
+      closeRegistryTable(table);
+    }
+  }
+
   @Nullable
   @Override
   public StructuredTableSpecification getSpecification(StructuredTableId tableId) {
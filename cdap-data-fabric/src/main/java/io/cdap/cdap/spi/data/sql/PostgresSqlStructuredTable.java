@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data.sql;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.spi.data.InvalidFieldException;
@@ -44,6 +45,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -57,6 +59,8 @@ import javax.annotation.Nullable;
  */
 public class PostgresSqlStructuredTable implements StructuredTable {
   private static final Logger LOG = LoggerFactory.getLogger(PostgresSqlStructuredTable.class);
+  // maximum number of primary keys in one multi read or multi delete query, to stay within the bind parameter limit
+  private static final int MAX_KEYS_PER_QUERY = 1000;
 
   private final Connection connection;
   private final StructuredTableSchema tableSchema;
@@ -71,15 +75,39 @@ public class PostgresSqlStructuredTable implements StructuredTable {
   @Override
   public void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Write fields {}", tableSchema.getTableId(), fields);
-    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
-    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
-      throw new InvalidFieldException(tableSchema.getTableId(), fields,
-                                      String.format("Given fields %s do not contain all the " +
-                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
-    }
+    validateAllPrimaryKeys(fields);
     upsertInternal(fields);
   }
 
+  @Override
+  public void multiUpsert(Collection<Collection<Field<?>>> multiFields) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple fields {}", tableSchema.getTableId(), multiFields);
+    // group the rows by the write query, so that rows with the same fields are written with one batch statement
+    Map<String, List<Collection<Field<?>>>> batches = new LinkedHashMap<>();
+    for (Collection<Field<?>> fields : multiFields) {
+      validateAllPrimaryKeys(fields);
+      batches.computeIfAbsent(getWriteSqlQuery(fields, null), k -> new ArrayList<>()).add(fields);
+    }
+
+    for (Map.Entry<String, List<Collection<Field<?>>>> batch : batches.entrySet()) {
+      try (PreparedStatement statement = connection.prepareStatement(batch.getKey())) {
+        for (Collection<Field<?>> fields : batch.getValue()) {
+          int index = 1;
+          for (Field<?> field : fields) {
+            setField(statement, field, index);
+            index++;
+          }
+          statement.addBatch();
+        }
+        LOG.trace("SQL statement: {}", statement);
+        statement.executeBatch();
+      } catch (SQLException e) {
+        throw new IOException(String.format("Failed to write to table %s with multiple fields %s",
+                                            tableSchema.getTableId().getName(), batch.getValue()), e);
+      }
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     return readRow(keys, null);
@@ -98,6 +126,36 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     return readRow(keys, columnFields);
   }
 
+  @Override
+  public Collection<StructuredRow> multiRead(Collection<Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Read with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    List<StructuredRow> result = new ArrayList<>(multiKeys.size());
+    for (List<Collection<Field<?>>> keysBatch : Iterables.partition(multiKeys, MAX_KEYS_PER_QUERY)) {
+      String readQuery = "SELECT * FROM " + tableSchema.getTableId().getName() +
+        " WHERE " + getPrimaryKeyInClause(keysBatch.size()) + ";";
+      try (PreparedStatement statement = connection.prepareStatement(readQuery)) {
+        setPrimaryKeys(statement, keysBatch);
+        LOG.trace("SQL statement: {}", statement);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ResultSetMetaData metaData = resultSet.getMetaData();
+          int numCols = metaData.getColumnCount();
+          while (resultSet.next()) {
+            Map<String, Object> row = new HashMap<>();
+            for (int i = 1; i <= numCols; i++) {
+              row.put(metaData.getColumnName(i), resultSet.getObject(i));
+            }
+            result.add(new SqlStructuredRow(tableSchema, row));
+          }
+        }
+      } catch (SQLException e) {
+        throw new IOException(String.format("Failed to read from table %s with multiple keys %s",
+                                            tableSchema.getTableId().getName(), keysBatch), e);
+      }
+    }
+    return result;
+  }
+
   @Override
   public CloseableIterator<StructuredRow> scan(Range keyRange, int limit) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Scan range {} with limit {}", tableSchema.getTableId(), keyRange, limit);
@@ -266,6 +324,23 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<Collection<Field<?>>> multiKeys) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    for (List<Collection<Field<?>>> keysBatch : Iterables.partition(multiKeys, MAX_KEYS_PER_QUERY)) {
+      String sqlQuery = String.format("DELETE FROM %s WHERE %s;", tableSchema.getTableId().getName(),
+                                      getPrimaryKeyInClause(keysBatch.size()));
+      try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+        setPrimaryKeys(statement, keysBatch);
+        LOG.trace("SQL statement: {}", statement);
+        statement.executeUpdate();
+      } catch (SQLException e) {
+        throw new IOException(String.format("Failed to delete the rows from table %s with multiple keys %s",
+                                            tableSchema.getTableId().getName(), keysBatch), e);
+      }
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -294,6 +369,11 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public StructuredTableSchema getSchema() {
+    return tableSchema;
+  }
+
   @Override
   public void close() throws IOException {
     try {
@@ -303,6 +383,32 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  private void validateAllPrimaryKeys(Collection<Field<?>> fields) throws InvalidFieldException {
+    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+      throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                      String.format("Given fields %s do not contain all the " +
+                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+    }
+  }
+
+  /**
+   * Sets the values of the given primary keys as parameters of a statement with a clause created by
+   * {@link #getPrimaryKeyInClause(int)}, starting from the first parameter.
+   */
+  private void setPrimaryKeys(PreparedStatement statement,
+                              Collection<Collection<Field<?>>> multiKeys) throws SQLException, InvalidFieldException {
+    int index = 1;
+    for (Collection<Field<?>> keys : multiKeys) {
+      // the validation makes sure the keys are in the same order as the primary keys of the schema
+      fieldValidator.validatePrimaryKeys(keys, false);
+      for (Field<?> key : keys) {
+        setField(statement, key, index);
+        index++;
+      }
+    }
+  }
+
   private void upsertInternal(Collection<Field<?>> fields) throws IOException {
     String sqlQuery = getWriteSqlQuery(fields, null);
     try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
@@ -507,6 +613,28 @@ public class PostgresSqlStructuredTable implements StructuredTable {
       .append(valueJoiner.toString());
   }
 
+  /**
+   * Get the clause to match any of the given number of primary keys. For example, if "simpletable" has primary keys
+   * (key1, key2), the clause for two primary keys is:
+   * (key1,key2) IN ((?,?),(?,?))
+   *
+   * @param numKeys number of primary keys to match
+   * @return the in clause
+   */
+  private String getPrimaryKeyInClause(int numKeys) {
+    StringJoiner keyJoiner = new StringJoiner(",", "(", ")");
+    StringJoiner valueJoiner = new StringJoiner(",", "(", ")");
+    for (String key : tableSchema.getPrimaryKeys()) {
+      keyJoiner.add(key);
+      valueJoiner.add("?");
+    }
+    StringJoiner inJoiner = new StringJoiner(",", keyJoiner.toString() + " IN (", ")");
+    for (int i = 0; i < numKeys; i++) {
+      inJoiner.add(valueJoiner.toString());
+    }
+    return inJoiner.toString();
+  }
+
   private String getDeleteQuery(Collection<Field<?>> keys) {
     return String.format("DELETE FROM %s WHERE %s;", tableSchema.getTableId().getName(), getEqualsClause(keys));
   }
@@ -21,6 +21,7 @@ import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
@@ -92,6 +93,28 @@ public class PostgresSqlStructuredTableAdmin implements StructuredTableAdmin {
     return registry.getSpecification(tableId);
   }
 
+  @Override
+  public void upgrade(StructuredTableSpecification spec) throws IOException, TableNotFoundException {
+    StructuredTableSpecification existing = registry.getSpecification(spec.getTableId());
+    if (existing == null) {
+      throw new TableNotFoundException(spec.getTableId());
+    }
+    List<FieldType> addedFields = spec.getAddedFields(existing);
+    try (Connection connection = dataSource.getConnection()) {
+      try (Statement statement = connection.createStatement()) {
+        // The columns are only added if they don't exist, so that a failed upgrade can be retried
+        for (FieldType field : addedFields) {
+          String alterStatement = getAddColumnStatement(spec.getTableId(), field);
+          LOG.info("Upgrading table {}: {}", spec.getTableId(), alterStatement);
+          statement.execute(alterStatement);
+        }
+      }
+      registry.updateSpecification(spec);
+    } catch (SQLException e) {
+      throw new IOException(String.format("Error upgrading table %s", spec.getTableId()), e);
+    }
+  }
+
   // TODO: CDAP-15068 - make drop table idempotent
   @Override
   public void drop(StructuredTableId tableId) throws IOException {
@@ -168,6 +191,11 @@ public class PostgresSqlStructuredTableAdmin implements StructuredTableAdmin {
     return statements;
   }
 
+  private String getAddColumnStatement(StructuredTableId tableId, FieldType field) {
+    return String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS %s %s", tableId.getName(), field.getName(),
+                         getPostgresSqlType(field));
+  }
+
   private String getDeleteStatement(String tableName) {
     return "DROP TABLE " + tableName + ";";
   }
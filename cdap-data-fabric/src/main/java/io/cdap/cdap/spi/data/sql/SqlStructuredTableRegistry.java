@@ -24,6 +24,7 @@ import io.cdap.cdap.spi.data.StructuredRow;
 import io.cdap.cdap.spi.data.StructuredTable;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
@@ -90,6 +91,24 @@ public class SqlStructuredTableRegistry implements StructuredTableRegistry {
     }, TableAlreadyExistsException.class);
   }
 
+  @Override
+  public void updateSpecification(StructuredTableSpecification specification) throws TableNotFoundException {
+    TransactionRunners.run(transactionRunner, context -> {
+      StructuredTable registry = context.getTable(REGISTRY);
+      StructuredTableId tableId = specification.getTableId();
+      Optional<StructuredRow> optional =
+        registry.read(Collections.singleton(Fields.stringField(TABLE_NAME_FIELD, tableId.getName())));
+      if (!optional.isPresent()) {
+        throw new TableNotFoundException(tableId);
+      }
+      LOG.debug("Updating table specification {}", specification);
+      registry.upsert(
+        Arrays.asList(Fields.stringField(TABLE_NAME_FIELD, tableId.getName()),
+                      Fields.stringField(TABLE_SPEC_FIELD, GSON.toJson(specification)))
+      );
+    }, TableNotFoundException.class);
+  }
+
   @Nullable
   public StructuredTableSpecification getSpecification(StructuredTableId tableId) {
     return TransactionRunners.run(transactionRunner, context -> {
@@ -140,6 +159,11 @@ public class SqlStructuredTableRegistry implements StructuredTableRegistry {
         // Do nothing
       }
 
+      @Override
+      public void updateSpecification(StructuredTableSpecification specification) {
+        throw exception;
+      }
+
       @Nullable
       @Override
       public StructuredTableSpecification getSpecification(StructuredTableId tableId) {
@@ -186,6 +210,11 @@ public class SqlStructuredTableRegistry implements StructuredTableRegistry {
           return SPEC;
         }
 
+        @Override
+        public void upgrade(StructuredTableSpecification spec) {
+          throw exception;
+        }
+
         @Override
         public void drop(StructuredTableId tableId) {
           throw exception;
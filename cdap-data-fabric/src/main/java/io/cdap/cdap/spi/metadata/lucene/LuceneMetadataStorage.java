@@ -0,0 +1,810 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.metadata.lucene;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.metadata.Cursor;
+import io.cdap.cdap.common.metadata.MetadataUtil;
+import io.cdap.cdap.common.metadata.QueryParser;
+import io.cdap.cdap.common.metadata.QueryTerm;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataChange;
+import io.cdap.cdap.spi.metadata.MetadataCodec;
+import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.MetadataDirective;
+import io.cdap.cdap.spi.metadata.MetadataKind;
+import io.cdap.cdap.spi.metadata.MetadataMutation;
+import io.cdap.cdap.spi.metadata.MetadataRecord;
+import io.cdap.cdap.spi.metadata.MetadataStorage;
+import io.cdap.cdap.spi.metadata.MutationOptions;
+import io.cdap.cdap.spi.metadata.Read;
+import io.cdap.cdap.spi.metadata.ScopedName;
+import io.cdap.cdap.spi.metadata.ScopedNameOfKind;
+import io.cdap.cdap.spi.metadata.SearchRequest;
+import io.cdap.cdap.spi.metadata.SearchResponse;
+import io.cdap.cdap.spi.metadata.Sorting;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A metadata storage provider that maintains an embedded Lucene index on the local file system,
+ * for deployments that do not have an Elasticsearch cluster. The index is only accessible by a single
+ * process, hence this is only suitable if the metadata service runs as a single instance.
+ *
+ * Search semantics are the same as for the Elasticsearch metadata storage: the query terms are matched
+ * against an inverted index of the tag names and property values, results are ranked by relevance,
+ * or sorted by entity name or creation time. Cursors encode the sort values of the last result returned,
+ * such that the next page is found by seeking in the index rather than by skipping all previous results.
+ *
+ * Mutations read the current metadata of an entity, apply the mutation and replace the entity's document
+ * in the index. Each call to {@link #batch(List, MutationOptions)} commits all its changes at once, and
+ * concurrent mutations of the same entity are serialized by a lock per entity.
+ */
+public class LuceneMetadataStorage implements MetadataStorage {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LuceneMetadataStorage.class);
+
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Metadata.class, new MetadataCodec()).create();
+  private static final Type LIST_STRING_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Set<String> LOAD_FIELDS = ImmutableSet.of(MetadataDocument.ID_FIELD,
+                                                                 MetadataDocument.METADATA_FIELD);
+
+  private static final boolean KEEP = true;
+  private static final boolean DISCARD = false;
+
+  // these are the only fields that are supported for sorting
+  private static final Map<String, String> SORT_KEY_MAP = ImmutableMap.of(
+    "entity-name", MetadataDocument.NAME_FIELD,
+    "creation-time", MetadataDocument.CREATED_FIELD
+  );
+  private static final String SUPPORTED_SORT_KEYS = SORT_KEY_MAP.keySet().stream().collect(Collectors.joining(", "));
+
+  private final File indexDir;
+  private final MetadataAnalyzer analyzer;
+  private final Striped<Lock> entityLocks;
+  private volatile LocalIndex index;
+
+  @Inject
+  public LuceneMetadataStorage(CConfiguration cConf) {
+    this.indexDir = new File(cConf.get(Constants.Metadata.STORAGE_LUCENE_INDEX_DIR));
+    this.analyzer = new MetadataAnalyzer();
+    this.entityLocks = Striped.lock(256);
+  }
+
+  @Override
+  public void createIndex() throws IOException {
+    getIndex();
+  }
+
+  @Override
+  public void dropIndex() throws IOException {
+    LocalIndex index = getIndex();
+    index.writer.deleteAll();
+    index.commit();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (index != null) {
+      index.close();
+      index = null;
+    }
+  }
+
+  @Override
+  public MetadataChange apply(MetadataMutation mutation, MutationOptions options) throws IOException {
+    return batch(Collections.singletonList(mutation), options).get(0);
+  }
+
+  @Override
+  public List<MetadataChange> batch(List<? extends MetadataMutation> mutations,
+                                    MutationOptions options) throws IOException {
+    if (mutations.isEmpty()) {
+      return Collections.emptyList();
+    }
+    LocalIndex index = getIndex();
+    // lock all entities of the batch. The locks are always acquired in the same order, hence there are no deadlocks
+    Set<String> ids = mutations.stream().map(m -> toDocumentId(m.getEntity())).collect(Collectors.toSet());
+    List<Lock> locks = new ArrayList<>();
+    try {
+      for (Lock lock : entityLocks.bulkGet(ids)) {
+        lock.lock();
+        locks.add(lock);
+      }
+      return doBatch(index, mutations);
+    } finally {
+      for (ListIterator<Lock> iterator = locks.listIterator(locks.size()); iterator.hasPrevious(); ) {
+        iterator.previous().unlock();
+      }
+    }
+  }
+
+  /**
+   * Applies the mutations to the current metadata of their entities, then replaces the documents of
+   * all affected entities in the index and commits. Must be called with all the entities locked.
+   * If there are multiple mutations for the same entity, each of them applies to the metadata produced
+   * by the previous one.
+   */
+  private List<MetadataChange> doBatch(LocalIndex index, List<? extends MetadataMutation> mutations)
+    throws IOException {
+    List<MetadataChange> changes = new ArrayList<>(mutations.size());
+    // the metadata of each entity after the mutations, or null if it was dropped
+    Map<String, Metadata> current = new HashMap<>();
+    Map<String, MetadataEntity> entities = new LinkedHashMap<>();
+    IndexSearcher searcher = index.searcherManager.acquire();
+    try {
+      for (MetadataMutation mutation : mutations) {
+        String id = toDocumentId(mutation.getEntity());
+        Metadata before = current.containsKey(id) ? current.get(id) : readFromIndex(searcher, id);
+        Metadata after = applyMutation(before, mutation);
+        LOG.trace("Applied mutation {} to entity {} with metadata {}", mutation, mutation.getEntity(), before);
+        current.put(id, after);
+        entities.put(id, mutation.getEntity());
+        changes.add(new MetadataChange(mutation.getEntity(),
+                                       before == null ? Metadata.EMPTY : before,
+                                       after == null ? Metadata.EMPTY : after));
+      }
+    } finally {
+      index.searcherManager.release(searcher);
+    }
+
+    for (Map.Entry<String, MetadataEntity> entry : entities.entrySet()) {
+      String id = entry.getKey();
+      Metadata metadata = current.get(id);
+      Term idTerm = new Term(MetadataDocument.ID_FIELD, id);
+      if (metadata == null) {
+        LOG.trace("Deleting document with id: {}", id);
+        index.writer.deleteDocuments(idTerm);
+      } else {
+        LOG.trace("Indexing document for {} with metadata {}", id, metadata);
+        index.writer.updateDocument(idTerm, MetadataDocument.of(id, entry.getValue(), metadata,
+                                                                GSON.toJson(metadata, Metadata.class)));
+      }
+    }
+    index.commit();
+    return changes;
+  }
+
+  /**
+   * Computes the metadata of an entity after applying a mutation.
+   *
+   * @param before the metadata before the change, or null if the entity does not exist in the index
+   * @param mutation the mutation to apply
+   *
+   * @return the metadata after the change, or null if the entity is dropped from the index
+   */
+  @Nullable
+  private Metadata applyMutation(@Nullable Metadata before, MetadataMutation mutation) {
+    switch (mutation.getType()) {
+      case CREATE:
+        return create(before, (MetadataMutation.Create) mutation);
+      case DROP:
+        return null;
+      case UPDATE:
+        return update(before == null ? Metadata.EMPTY : before, ((MetadataMutation.Update) mutation).getUpdates());
+      case REMOVE:
+        MetadataMutation.Remove remove = (MetadataMutation.Remove) mutation;
+        return filterMetadata(before == null ? Metadata.EMPTY : before, DISCARD,
+                              remove.getKinds(), remove.getScopes(), remove.getRemovals());
+      default:
+        throw new IllegalStateException(
+          String.format("Unknown mutation type '%s' for %s", mutation.getType(), mutation));
+    }
+  }
+
+  /**
+   * Computes the metadata after an entity creation or update.
+   * See {@link MetadataMutation.Create} for detailed semantics.
+   */
+  private Metadata create(@Nullable Metadata before, MetadataMutation.Create create) {
+    // if the entity did not exist before, none of the directives apply and this is equivalent to update()
+    if (before == null) {
+      return update(Metadata.EMPTY, create.getMetadata());
+    }
+    Metadata meta = create.getMetadata();
+    Map<ScopedNameOfKind, MetadataDirective> directives = create.getDirectives();
+    // determine the scopes that this mutation applies to (scopes that do not occur in the metadata are no changed)
+    Set<MetadataScope> scopes = Stream.concat(meta.getTags().stream(), meta.getProperties().keySet().stream())
+      .map(ScopedName::getScope).collect(Collectors.toSet());
+    // compute what previously existing tags and properties have to be preserved (all others are replaced)
+    Set<ScopedName> existingTagsToKeep = new HashSet<>();
+    Map<ScopedName, String> existingPropertiesToKeep = new HashMap<>();
+    // all tags and properties that are in a scope not affected by this mutation
+    Sets.difference(MetadataScope.ALL, scopes).forEach(
+      scope -> {
+        before.getTags().stream()
+          .filter(tag -> tag.getScope().equals(scope))
+          .forEach(existingTagsToKeep::add);
+        before.getProperties().entrySet().stream()
+          .filter(entry -> entry.getKey().getScope().equals(scope))
+          .forEach(entry -> existingPropertiesToKeep.put(entry.getKey(), entry.getValue()));
+      });
+    // tags and properties in affected scopes that must be kept or preserved
+    directives.entrySet().stream()
+      .filter(entry -> scopes.contains(entry.getKey().getScope()))
+      .forEach(entry -> {
+        ScopedNameOfKind key = entry.getKey();
+        if (key.getKind() == MetadataKind.TAG
+          && (entry.getValue() == MetadataDirective.PRESERVE || entry.getValue() == MetadataDirective.KEEP)) {
+          ScopedName tag = new ScopedName(key.getScope(), key.getName());
+          if (!meta.getTags().contains(tag) && before.getTags().contains(tag)) {
+            existingTagsToKeep.add(tag);
+          }
+        } else if (key.getKind() == MetadataKind.PROPERTY) {
+          ScopedName property = new ScopedName(key.getScope(), key.getName());
+          String existingValue = before.getProperties().get(property);
+          String newValue = meta.getProperties().get(property);
+          if (existingValue != null
+            && (entry.getValue() == MetadataDirective.PRESERVE && !existingValue.equals(newValue)
+            || entry.getValue() == MetadataDirective.KEEP && newValue == null)) {
+            existingPropertiesToKeep.put(property, existingValue);
+          }
+        }
+      });
+    // compute the new tags and properties
+    Set<ScopedName> newTags =
+      existingTagsToKeep.isEmpty() ? meta.getTags() : Sets.union(meta.getTags(), existingTagsToKeep);
+    Map<ScopedName, String> newProperties = meta.getProperties();
+    if (!existingPropertiesToKeep.isEmpty()) {
+      newProperties = new HashMap<>(newProperties);
+      newProperties.putAll(existingPropertiesToKeep);
+    }
+    return new Metadata(newTags, newProperties);
+  }
+
+  /**
+   * Computes the metadata after adding or updating tags and properties.
+   */
+  private Metadata update(Metadata before, Metadata updates) {
+    Set<ScopedName> tags = new HashSet<>(before.getTags());
+    tags.addAll(updates.getTags());
+    Map<ScopedName, String> properties = new HashMap<>(before.getProperties());
+    properties.putAll(updates.getProperties());
+    return new Metadata(tags, properties);
+  }
+
+  @Override
+  public Metadata read(Read read) throws IOException {
+    LocalIndex index = getIndex();
+    IndexSearcher searcher = index.searcherManager.acquire();
+    try {
+      Metadata metadata = readFromIndex(searcher, toDocumentId(read.getEntity()));
+      return filterMetadata(metadata == null ? Metadata.EMPTY : metadata, KEEP,
+                            read.getKinds(), read.getScopes(), read.getSelection());
+    } finally {
+      index.searcherManager.release(searcher);
+    }
+  }
+
+  /**
+   * Reads the existing metadata for an entity from the index.
+   *
+   * @return the existing metadata, or null if the entity does not exist in the index
+   */
+  @Nullable
+  private Metadata readFromIndex(IndexSearcher searcher, String id) throws IOException {
+    TopDocs topDocs = searcher.search(new TermQuery(new Term(MetadataDocument.ID_FIELD, id)), 1);
+    if (topDocs.scoreDocs.length == 0) {
+      return null;
+    }
+    Document document = searcher.doc(topDocs.scoreDocs[0].doc, LOAD_FIELDS);
+    return GSON.fromJson(document.get(MetadataDocument.METADATA_FIELD), Metadata.class);
+  }
+
+  @Override
+  public SearchResponse search(SearchRequest request) throws IOException {
+    // a cursor supersedes the offset, limit and all search parameters of the request
+    Cursor cursor = request.getCursor() == null || request.getCursor().isEmpty()
+      ? null : Cursor.fromString(request.getCursor());
+    SearchRequest actualRequest = cursor == null ? request : createRequestFromCursor(request, cursor);
+    int offset = actualRequest.getOffset();
+    int limit = actualRequest.getLimit();
+    Query query = createQuery(actualRequest);
+    Sort sort = createSort(actualRequest.getSorting());
+
+    LocalIndex index = getIndex();
+    IndexSearcher searcher = index.searcherManager.acquire();
+    try {
+      int maxDoc = searcher.getIndexReader().maxDoc();
+      if (maxDoc == 0) {
+        return new SearchResponse(request, null, offset, limit, 0, Collections.emptyList());
+      }
+      LOG.debug("Executing search query {} sorted by {}", query, sort);
+      // fetch one more hit than needed to find out whether there are more results after this page
+      TopDocs topDocs;
+      ScoreDoc[] hits;
+      if (cursor == null) {
+        int numHits = (int) Math.min((long) offset + limit + 1, maxDoc);
+        topDocs = searcher.search(query, numHits, sort);
+        hits = offset >= topDocs.scoreDocs.length
+          ? new ScoreDoc[0] : Arrays.copyOfRange(topDocs.scoreDocs, offset, topDocs.scoreDocs.length);
+      } else {
+        FieldDoc after = decodeCursor(cursor.getActualCursor(), sort, maxDoc);
+        topDocs = searcher.searchAfter(after, query, (int) Math.min((long) limit + 1, maxDoc), sort);
+        hits = topDocs.scoreDocs;
+      }
+      boolean hasMore = hits.length > limit;
+      if (hasMore) {
+        hits = Arrays.copyOf(hits, limit);
+      }
+
+      List<MetadataRecord> results = new ArrayList<>(hits.length);
+      for (ScoreDoc hit : hits) {
+        Document document = searcher.doc(hit.doc, LOAD_FIELDS);
+        results.add(new MetadataRecord(toMetadataEntity(document.get(MetadataDocument.ID_FIELD)),
+                                       GSON.fromJson(document.get(MetadataDocument.METADATA_FIELD),
+                                                     Metadata.class)));
+      }
+      String newCursor = null;
+      if (request.isCursorRequested() && hasMore && hits.length > 0) {
+        newCursor = new Cursor(offset + hits.length, limit, actualRequest.isShowHidden(), actualRequest.getScope(),
+                               actualRequest.getNamespaces(), actualRequest.getTypes(),
+                               actualRequest.getSorting() == null ? null : actualRequest.getSorting().toString(),
+                               encodeCursor((FieldDoc) hits[hits.length - 1]), actualRequest.getQuery()).toString();
+      }
+      return new SearchResponse(request, newCursor, offset, limit, (int) topDocs.totalHits, results);
+    } finally {
+      index.searcherManager.release(searcher);
+    }
+  }
+
+  private static SearchRequest createRequestFromCursor(SearchRequest request, Cursor cursor) {
+    SearchRequest.Builder builder = SearchRequest.of(cursor.getQuery())
+      .setOffset(cursor.getOffset())
+      .setLimit(cursor.getLimit())
+      .setShowHidden(cursor.isShowHidden())
+      .setScope(cursor.getScope())
+      .setCursorRequested(request.isCursorRequested());
+    if (cursor.getSorting() != null) {
+      builder.setSorting(Sorting.of(cursor.getSorting()));
+    }
+    if (cursor.getNamespaces() != null) {
+      cursor.getNamespaces().forEach(builder::addNamespace);
+    }
+    if (cursor.getTypes() != null) {
+      cursor.getTypes().forEach(builder::addType);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Encodes the sort values of the last result of a page, from which the next page starts.
+   * The result is URL-safe and does not contain the separator of the {@link Cursor} fields.
+   */
+  private static String encodeCursor(FieldDoc last) {
+    List<String> values = Arrays.stream(last.fields)
+      .map(value -> value instanceof BytesRef ? ((BytesRef) value).utf8ToString() : String.valueOf(value))
+      .collect(Collectors.toList());
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(GSON.toJson(values).getBytes(Charsets.UTF_8));
+  }
+
+  /**
+   * Decodes the sort values encoded by {@link #encodeCursor(FieldDoc)}. Because every sort ends with the
+   * document id, no other document has the same sort values, and the returned {@link FieldDoc} has the highest
+   * possible doc id such that the search continues after all documents with the same sort values.
+   */
+  private static FieldDoc decodeCursor(String encoded, Sort sort, int maxDoc) {
+    SortField[] sortFields = sort.getSort();
+    List<String> values;
+    try {
+      values = GSON.fromJson(new String(Base64.getUrlDecoder().decode(encoded), Charsets.UTF_8), LIST_STRING_TYPE);
+    } catch (IllegalArgumentException | JsonParseException e) {
+      throw new IllegalArgumentException("Invalid cursor '" + encoded + "'", e);
+    }
+    if (values == null || values.size() != sortFields.length) {
+      throw new IllegalArgumentException("Invalid cursor '" + encoded + "' for sort " + sort);
+    }
+    Object[] fields = new Object[sortFields.length];
+    for (int i = 0; i < sortFields.length; i++) {
+      switch (sortFields[i].getType()) {
+        case SCORE:
+          fields[i] = Float.parseFloat(values.get(i));
+          break;
+        case LONG:
+          fields[i] = Long.parseLong(values.get(i));
+          break;
+        default:
+          fields[i] = new BytesRef(values.get(i));
+      }
+    }
+    return new FieldDoc(maxDoc - 1, Float.NaN, fields);
+  }
+
+  /**
+   * Creates the sort order for a search. All sort orders end with the document id, such that
+   * the order is stable and cursors can identify the position of the last result.
+   */
+  private static Sort createSort(@Nullable Sorting sorting) {
+    SortField idField = new SortField(MetadataDocument.ID_FIELD, SortField.Type.STRING);
+    if (sorting == null) {
+      return new Sort(SortField.FIELD_SCORE, idField);
+    }
+    String field = mapSortKey(sorting.getKey().toLowerCase());
+    boolean reverse = sorting.getOrder() == Sorting.Order.DESC;
+    SortField sortField;
+    if (MetadataDocument.CREATED_FIELD.equals(field)) {
+      sortField = new SortField(field, SortField.Type.LONG, reverse);
+      // entities without creation time come last in both orders
+      sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+    } else {
+      sortField = new SortField(field, SortField.Type.STRING, reverse);
+    }
+    return new Sort(sortField, idField);
+  }
+
+  private static String mapSortKey(String key) {
+    String newKey = SORT_KEY_MAP.get(key);
+    if (newKey != null) {
+      return newKey;
+    }
+    throw new IllegalArgumentException(String.format(
+      "Field '%s' cannot be used as a sort key. Only the following are supported: %s.",
+      key, SUPPORTED_SORT_KEYS));
+  }
+
+  /**
+   * Creates a Lucene query from a search request. In essence, this returns
+   *
+   * <pre>
+   *   (field1:term1 OR ... OR p.scope.name:term ...)
+   * [ AND (namespace:ns1 OR ... OR namespace:nsK) ]
+   * [ AND (type:type1 OR ... OR type:typeM) ]
+   * [ AND hidden:false ]
+   * </pre>
+   *
+   * The field for each field:term is as selected by the request's scope (user, system, or text).
+   * The property subqueries expect the term to occur in a property with the name field as name,
+   * and optionally the scope of the search request as its scope. The conditions do not contribute
+   * to the score of the results.
+   */
+  private Query createQuery(SearchRequest request) {
+    Query mainQuery = createMainQuery(request);
+
+    List<Query> conditions = new ArrayList<>();
+    if (request.getTypes() != null && !request.getTypes().isEmpty()) {
+      conditions.add(createTermsQuery(MetadataDocument.TYPE_FIELD, request.getTypes()));
+    }
+    if (request.getNamespaces() != null) {
+      conditions.add(createTermsQuery(MetadataDocument.NAMESPACE_FIELD, request.getNamespaces()));
+    }
+    if (!request.isShowHidden()) {
+      conditions.add(new TermQuery(new Term(MetadataDocument.HIDDEN_FIELD, Boolean.FALSE.toString())));
+    }
+    if (conditions.isEmpty()) {
+      return mainQuery;
+    }
+    BooleanQuery.Builder builder = new BooleanQuery.Builder().add(mainQuery, BooleanClause.Occur.MUST);
+    conditions.forEach(condition -> builder.add(condition, BooleanClause.Occur.FILTER));
+    return builder.build();
+  }
+
+  private static Query createTermsQuery(String field, Collection<String> values) {
+    return new TermInSetQuery(field, values.stream().map(value -> new BytesRef(value.toLowerCase()))
+      .collect(Collectors.toList()));
+  }
+
+  /**
+   * Creates the (sub-)query from the terms in the query string.
+   */
+  private Query createMainQuery(SearchRequest request) {
+    if (request.getQuery().equals("*")) {
+      return new MatchAllDocsQuery();
+    }
+    // the indexed document contains three text fields: one for each scope and for all scopes combined.
+    // all terms must occur in the text field as selected by the scope in the search request.
+    String textField = request.getScope() == null
+      ? MetadataDocument.TEXT_FIELD : request.getScope().name().toLowerCase();
+
+    List<QueryTerm> queryTerms = QueryParser.parse(request.getQuery());
+    if (queryTerms.isEmpty()) {
+      return new MatchAllDocsQuery();
+    }
+    if (queryTerms.size() == 1) {
+      return createTermQuery(queryTerms.get(0), textField, request);
+    }
+
+    // if optional terms are the only terms available, at least one optional term is required
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    for (QueryTerm queryTerm : queryTerms) {
+      builder.add(createTermQuery(queryTerm, textField, request),
+                  queryTerm.getQualifier() == QueryTerm.Qualifier.REQUIRED
+                    ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Create a sub-query for a single term in the query string.
+   *
+   * @param queryTerm the formatted query term, with all relevant search information
+   * @param textField the default text field to search if the term does not have a field
+   */
+  private Query createTermQuery(QueryTerm queryTerm, String textField, SearchRequest request) {
+    String term = queryTerm.getTerm().trim().toLowerCase();
+    // Create a query on the term as is. This would include a field: prefix if the term has one.
+    // This is important for the case of schema search: If the schema contains a field f of type t,
+    // then we index "f:t" in the plain text as well as in the "schema" property. If the query is
+    // just "f:t", we must search the plain text field for that.
+    Query plainQuery = createTextQuery(textField, term);
+    if (!term.contains(MetadataConstants.KEYVALUE_SEPARATOR)) {
+      return plainQuery;
+    }
+    // split the search term in two parts on first occurrence of KEYVALUE_SEPARATOR and trim the key and value
+    String[] split = term.split(MetadataConstants.KEYVALUE_SEPARATOR, 2);
+    String field = split[0].trim();
+    term = split[1].trim();
+    if (MetadataConstants.TTL_KEY.equals(field)
+      && (request.getScope() == null || MetadataScope.SYSTEM == request.getScope())) {
+      try {
+        return DoublePoint.newExactQuery(MetadataDocument.numericField(MetadataScope.SYSTEM, field),
+                                         Double.parseDouble(term));
+      } catch (NumberFormatException e) {
+        // ignore - the follow-on code will create a regular term query for this
+      }
+    }
+    Collection<MetadataScope> scopes = request.getScope() == null
+      ? MetadataScope.ALL : Collections.singleton(request.getScope());
+    BooleanQuery.Builder propertyQuery = new BooleanQuery.Builder();
+    for (MetadataScope scope : scopes) {
+      propertyQuery.add(queryTerm.getSearchType() == QueryTerm.SearchType.NUMERIC
+                          ? createNumericQuery(queryTerm, MetadataDocument.numericField(scope, field), term)
+                          : createTextQuery(MetadataDocument.propertyField(scope, field), term),
+                        BooleanClause.Occur.SHOULD);
+    }
+
+    // match either a plain term of the form "f:t" or the word "t" in property "f"
+    return new BooleanQuery.Builder()
+      .add(plainQuery, BooleanClause.Occur.SHOULD)
+      .add(propertyQuery.build(), BooleanClause.Occur.SHOULD)
+      .build();
+  }
+
+  /**
+   * Create a range query for a numeric term in a given field.
+   */
+  private static Query createNumericQuery(QueryTerm queryTerm, String field, String term) {
+    double value;
+    try {
+      value = Double.parseDouble(QueryParser.extractTermValue(term));
+    } catch (NumberFormatException e) {
+      return new MatchNoDocsQuery();
+    }
+    switch (queryTerm.getComparison()) {
+      case GREATER:
+        return DoublePoint.newRangeQuery(field, Math.nextUp(value), Double.POSITIVE_INFINITY);
+      case GREATER_OR_EQUAL:
+        return DoublePoint.newRangeQuery(field, value, Double.POSITIVE_INFINITY);
+      case LESS:
+        return DoublePoint.newRangeQuery(field, Double.NEGATIVE_INFINITY, Math.nextDown(value));
+      case LESS_OR_EQUAL:
+        return DoublePoint.newRangeQuery(field, Double.NEGATIVE_INFINITY, value);
+      case EQUALS:
+        return DoublePoint.newExactQuery(field, value);
+      default:
+        throw new IllegalStateException("Invalid comparison type: " + queryTerm.getComparison());
+    }
+  }
+
+  /**
+   * Create a query for a single term in a given text field.
+   *
+   * @return a wildcard query if the term contains * or ?, or a query that requires all words of the term otherwise
+   */
+  private Query createTextQuery(String field, String term) {
+    if (term.contains("*") || term.contains("?")) {
+      return new WildcardQuery(new Term(field, term));
+    }
+    // the term should not get split in to multiple words, but in case it does, let's require all words
+    Query query = new QueryBuilder(analyzer).createBooleanQuery(field, term, BooleanClause.Occur.MUST);
+    return query == null ? new MatchNoDocsQuery() : query;
+  }
+
+  /**
+   * Filter the metadata based on the given scopes, kinds, and selection.
+   * Based on the value of {@param keep}, this can be used to keep or to
+   * discard the matching tags and properties.
+   *
+   * @param keep if true, only matching metadata elements are kept; otherwise only non-matching elements are kept.
+   */
+  @SuppressWarnings("ConstantConditions")
+  private static Metadata filterMetadata(Metadata metadata, boolean keep, Set<MetadataKind> kinds,
+                                         Set<MetadataScope> scopes, Set<ScopedNameOfKind> selection) {
+    if (selection != null) {
+      return new Metadata(
+        Sets.filter(metadata.getTags(), tag ->
+          keep == selection.contains(new ScopedNameOfKind(MetadataKind.TAG, tag.getScope(), tag.getName()))),
+        Maps.filterKeys(metadata.getProperties(), key ->
+          keep == selection.contains(new ScopedNameOfKind(MetadataKind.PROPERTY, key.getScope(), key.getName())))
+      );
+    }
+    return new Metadata(
+      Sets.filter(metadata.getTags(), tag ->
+        keep == (kinds.contains(MetadataKind.TAG) && scopes.contains(tag.getScope()))),
+      Maps.filterKeys(metadata.getProperties(), key ->
+        keep == (kinds.contains(MetadataKind.PROPERTY) && scopes.contains(key.getScope()))));
+  }
+
+  /**
+   * Translate a metadata entity into a documemt id in the index.
+   */
+  private static String toDocumentId(MetadataEntity entity) {
+    StringBuilder builder = new StringBuilder(entity.getType());
+    char sep = ':';
+    for (MetadataEntity.KeyValue kv : entity) {
+      // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
+      // if it is a versioned entity then ignore the version
+      if (MetadataUtil.isVersionedEntityType(entity.getType()) &&
+        MetadataEntity.VERSION.equalsIgnoreCase(kv.getKey())) {
+        continue;
+      }
+      builder.append(sep).append(kv.getKey()).append('=').append(kv.getValue());
+      sep = ',';
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Translate a document id in the index into a metadata entity.
+   */
+  private static MetadataEntity toMetadataEntity(String documentId) {
+    int index = documentId.indexOf(':');
+    if (index < 0) {
+      throw new IllegalArgumentException("Document Id must be of the form 'type:k=v,...' but is " + documentId);
+    }
+    String type = documentId.substring(0, index);
+    MetadataEntity.Builder builder = MetadataEntity.builder();
+    for (String part : documentId.substring(index + 1).split(",")) {
+      String[] parts = part.split("=", 2);
+      if (parts[0].equals(type)) {
+        builder.appendAsType(parts[0], parts[1]);
+      } else {
+        builder.append(parts[0], parts[1]);
+      }
+    }
+    // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
+    // if it is a versioned entity then add the default version
+    return MetadataUtil.addVersionIfNeeded(builder.build());
+  }
+
+  private LocalIndex getIndex() throws IOException {
+    LocalIndex index = this.index;
+    if (index != null) {
+      return index;
+    }
+    synchronized (this) {
+      if (this.index == null) {
+        this.index = new LocalIndex(indexDir, analyzer);
+      }
+      return this.index;
+    }
+  }
+
+  /**
+   * The Lucene index with its writer and the manager of the searchers that see the latest changes.
+   */
+  private static final class LocalIndex implements Closeable {
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    LocalIndex(File indexDir, MetadataAnalyzer analyzer) throws IOException {
+      DirUtils.mkdirs(indexDir);
+      LOG.info("Opening metadata index in {}", indexDir);
+      Directory directory = FSDirectory.open(indexDir.toPath());
+      IndexWriter writer = null;
+      try {
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+          .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+      } catch (IOException e) {
+        closeQuietly(writer);
+        closeQuietly(directory);
+        throw e;
+      }
+      this.directory = directory;
+      this.writer = writer;
+    }
+
+    /**
+     * Commits all changes made through the writer and waits until they are visible to new searchers.
+     */
+    void commit() throws IOException {
+      writer.commit();
+      searcherManager.maybeRefreshBlocking();
+    }
+
+    @Override
+    public void close() {
+      closeQuietly(searcherManager);
+      closeQuietly(writer);
+      closeQuietly(directory);
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+      if (closeable == null) {
+        return;
+      }
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close {}", closeable, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.metadata.lucene;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaWalker;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.ScopedName;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the documents that are indexed in the Lucene metadata index. The fields are the same as the ones
+ * of the Elasticsearch metadata document, except that properties are indexed as one field per scope and
+ * property name, instead of nested documents:
+ * <ul>
+ *   <li>{@link #ID_FIELD}, the document id, which is also used as tie-breaker for sorting;</li>
+ *   <li>{@link #METADATA_FIELD}, the stored metadata in JSON;</li>
+ *   <li>{@link #NAMESPACE_FIELD}, {@link #TYPE_FIELD} and {@link #HIDDEN_FIELD} for filtering;</li>
+ *   <li>{@link #NAME_FIELD} and {@link #CREATED_FIELD} for sorting;</li>
+ *   <li>{@link #USER_FIELD}, {@link #SYSTEM_FIELD} and {@link #TEXT_FIELD}, with the text of all tags and
+ *     property values in the user scope, the system scope and in all scopes;</li>
+ *   <li>one text field per property, see {@link #propertyField(MetadataScope, String)}, and one numeric field
+ *     for each property with a numeric value, see {@link #numericField(MetadataScope, String)}.</li>
+ * </ul>
+ */
+final class MetadataDocument {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataDocument.class);
+
+  static final String ID_FIELD = "id";
+  static final String METADATA_FIELD = "metadata";
+  static final String NAMESPACE_FIELD = "namespace";
+  static final String TYPE_FIELD = "type";
+  static final String NAME_FIELD = "name";
+  static final String CREATED_FIELD = "created";
+  static final String HIDDEN_FIELD = "hidden";
+  static final String USER_FIELD = "user";
+  static final String SYSTEM_FIELD = "system";
+  static final String TEXT_FIELD = "text";
+
+  private static final ScopedName SCHEMA_KEY = new ScopedName(MetadataScope.SYSTEM, MetadataConstants.SCHEMA_KEY);
+  private static final ScopedName CREATION_TIME_KEY = new ScopedName(MetadataScope.SYSTEM,
+                                                                     MetadataConstants.CREATION_TIME_KEY);
+
+  private final MetadataEntity entity;
+  private final Document document;
+  private final StringBuilder userText = new StringBuilder();
+  private final StringBuilder systemText = new StringBuilder();
+  private final List<String> userTags = new ArrayList<>();
+  private final List<String> systemTags = new ArrayList<>();
+  private final List<String> userPropertyNames = new ArrayList<>();
+  private final List<String> systemPropertyNames = new ArrayList<>();
+
+  private MetadataDocument(MetadataEntity entity) {
+    this.entity = entity;
+    this.document = new Document();
+  }
+
+  /**
+   * Returns the name of the text field for a property.
+   */
+  static String propertyField(MetadataScope scope, String name) {
+    return "p." + scope.name() + "." + name;
+  }
+
+  /**
+   * Returns the name of the numeric field for a property.
+   */
+  static String numericField(MetadataScope scope, String name) {
+    return "n." + scope.name() + "." + name;
+  }
+
+  /**
+   * Creates the document to index for an entity.
+   *
+   * @param id the document id of the entity
+   * @param entity the entity
+   * @param metadata the metadata of the entity
+   * @param json the JSON representation of the metadata, which is stored in the document
+   */
+  static Document of(String id, MetadataEntity entity, Metadata metadata, String json) {
+    return new MetadataDocument(entity).build(id, metadata, json);
+  }
+
+  private Document build(String id, Metadata metadata, String json) {
+    document.add(new StringField(ID_FIELD, id, Field.Store.YES));
+    document.add(new SortedDocValuesField(ID_FIELD, new BytesRef(id)));
+    document.add(new StoredField(METADATA_FIELD, json));
+
+    //noinspection ConstantConditions
+    String name = entity.getValue(entity.getType()).toLowerCase();
+    String type = entity.getType().toLowerCase();
+    if (entity.containsKey(MetadataEntity.NAMESPACE)) {
+      //noinspection ConstantConditions
+      document.add(new StringField(NAMESPACE_FIELD, entity.getValue(MetadataEntity.NAMESPACE).toLowerCase(),
+                                   Field.Store.NO));
+    }
+    document.add(new StringField(TYPE_FIELD, type, Field.Store.NO));
+    document.add(new StringField(HIDDEN_FIELD, Boolean.toString(name.startsWith("_")), Field.Store.NO));
+    document.add(new SortedDocValuesField(NAME_FIELD, new BytesRef(name)));
+
+    append(MetadataScope.SYSTEM, type);
+    append(MetadataScope.SYSTEM, name);
+    addProperty(MetadataScope.SYSTEM, type, name);
+
+    metadata.getTags().forEach(this::addTag);
+    metadata.getProperties().forEach(this::addProperty);
+
+    addProperty(MetadataScope.USER, MetadataConstants.TAGS_KEY, String.join(" ", userTags));
+    addProperty(MetadataScope.SYSTEM, MetadataConstants.TAGS_KEY, String.join(" ", systemTags));
+    addProperty(MetadataScope.USER, MetadataConstants.PROPERTIES_KEY, String.join(" ", userPropertyNames));
+    addProperty(MetadataScope.SYSTEM, MetadataConstants.PROPERTIES_KEY, String.join(" ", systemPropertyNames));
+
+    document.add(new TextField(USER_FIELD, userText.toString(), Field.Store.NO));
+    document.add(new TextField(SYSTEM_FIELD, systemText.toString(), Field.Store.NO));
+    document.add(new TextField(TEXT_FIELD, userText + " " + systemText, Field.Store.NO));
+    return document;
+  }
+
+  private void append(MetadataScope scope, String text) {
+    (MetadataScope.USER == scope ? userText : systemText).append(' ').append(text);
+  }
+
+  private void addTag(ScopedName tag) {
+    String name = tag.getName().toLowerCase();
+    append(tag.getScope(), name);
+    (MetadataScope.USER == tag.getScope() ? userTags : systemTags).add(name);
+  }
+
+  private void addProperty(ScopedName key, String value) {
+    String name = key.getName().toLowerCase();
+    value = value.toLowerCase();
+    if (SCHEMA_KEY.equals(key)) {
+      value = parseSchema(entity, value);
+    }
+    append(key.getScope(), value);
+    addProperty(key.getScope(), name, value);
+    (MetadataScope.USER == key.getScope() ? userPropertyNames : systemPropertyNames).add(name);
+    if (CREATION_TIME_KEY.equals(key)) {
+      try {
+        document.add(new NumericDocValuesField(CREATED_FIELD, Long.parseLong(value)));
+      } catch (NumberFormatException e) {
+        LOG.warn("Unable to parse property {} as long. Skipping indexing of {} for entity {}.",
+                 key, key.getName(), entity, e);
+      }
+    }
+  }
+
+  private void addProperty(MetadataScope scope, String name, String value) {
+    document.add(new TextField(propertyField(scope, name), value, Field.Store.NO));
+    try {
+      document.add(new DoublePoint(numericField(scope, name), Double.parseDouble(value)));
+    } catch (NumberFormatException e) {
+      // not a numeric value, it is only indexed as text
+    }
+  }
+
+  /**
+   * Transforms a schema into the text to index: for each field "f" of type "t", this contains "f f:t".
+   * If the schema cannot be parsed, it is indexed as plain text.
+   */
+  private static String parseSchema(MetadataEntity entity, String schemaStr) {
+    try {
+      Schema schema = Schema.parseJson(schemaStr);
+      StringBuilder builder = new StringBuilder();
+      SchemaWalker.walk(schema, (field, subSchema) -> {
+        if (field != null) {
+          String type = (subSchema.isNullable() ? subSchema.getNonNullable() : subSchema).getType().toString();
+          builder.append(field).append(' ')
+            .append(field).append(MetadataConstants.KEYVALUE_SEPARATOR).append(type).append(' ');
+        }
+      });
+      return builder.toString();
+    } catch (Exception e) {
+      LOG.warn("Unable to parse schema '{}' for entity {}. Indexing as plain text.", schemaStr, entity);
+      return schemaStr;
+    }
+  }
+}
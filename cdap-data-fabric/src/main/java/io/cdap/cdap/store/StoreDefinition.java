@@ -380,6 +380,8 @@ public final class StoreDefinition {
     public static final StructuredTableId APPLICATION_SPECIFICATIONS = new StructuredTableId("application_specs");
     public static final StructuredTableId WORKFLOW_NODE_STATES = new StructuredTableId("workflow_node_states");
     public static final StructuredTableId RUN_RECORDS = new StructuredTableId("run_records");
+    public static final StructuredTableId RUN_RECORDS_STOP_TIME_INDEX =
+      new StructuredTableId("run_records_stop_time_index");
     public static final StructuredTableId WORKFLOWS = new StructuredTableId("workflows");
     public static final StructuredTableId PROGRAM_COUNTS = new StructuredTableId("program_counts");
     // TODO: CDAP-14876 Move this table into it's own store, along with associated methods
@@ -397,6 +399,12 @@ public final class StoreDefinition {
     public static final String RUN_STATUS = "run_status";
     public static final String RUN_START_TIME = "run_start_time";
     public static final String RUN_RECORD_DATA = "run_record_data";
+    // Fields of the run record that are projected into their own columns, so that they can be filtered on
+    // without deserializing the run record data
+    public static final String PROGRAM_RUN_STATUS = "program_run_status";
+    public static final String RUN_STOP_TIME = "run_stop_time";
+    public static final String PROFILE_FIELD = "profile";
+    public static final String TWILL_RUN_ID = "twill_run_id";
     public static final String WORKFLOW_DATA = "workflow_data";
     public static final String COUNT_TYPE = "count_type";
     public static final String COUNTS = "counts";
@@ -441,11 +449,32 @@ public final class StoreDefinition {
                     Fields.stringType(PROGRAM_FIELD),
                     Fields.longType(RUN_START_TIME),
                     Fields.stringType(RUN_FIELD),
-                    Fields.stringType(RUN_RECORD_DATA))
+                    Fields.stringType(RUN_RECORD_DATA),
+                    Fields.stringType(PROGRAM_RUN_STATUS),
+                    Fields.longType(RUN_STOP_TIME),
+                    Fields.stringType(PROFILE_FIELD),
+                    Fields.stringType(TWILL_RUN_ID))
         .withPrimaryKeys(RUN_STATUS, NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD, PROGRAM_TYPE_FIELD,
                          PROGRAM_FIELD, RUN_START_TIME, RUN_FIELD)
         .build();
 
+    // Index of the completed run records, ordered by the stop time in each namespace
+    public static final StructuredTableSpecification RUN_RECORDS_STOP_TIME_INDEX_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(RUN_RECORDS_STOP_TIME_INDEX)
+        .withFields(Fields.stringType(NAMESPACE_FIELD),
+                    Fields.longType(RUN_STOP_TIME),
+                    Fields.stringType(APPLICATION_FIELD),
+                    Fields.stringType(VERSION_FIELD),
+                    Fields.stringType(PROGRAM_TYPE_FIELD),
+                    Fields.stringType(PROGRAM_FIELD),
+                    Fields.longType(RUN_START_TIME),
+                    Fields.stringType(RUN_FIELD),
+                    Fields.stringType(PROGRAM_RUN_STATUS))
+        .withPrimaryKeys(NAMESPACE_FIELD, RUN_STOP_TIME, APPLICATION_FIELD, VERSION_FIELD, PROGRAM_TYPE_FIELD,
+                         PROGRAM_FIELD, RUN_START_TIME, RUN_FIELD)
+        .build();
+
     public static final StructuredTableSpecification WORKFLOWS_SPEC =
       new StructuredTableSpecification.Builder()
         .withId(WORKFLOWS)
@@ -491,8 +520,15 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(WORKFLOW_NODE_STATES) == null) {
         tableAdmin.create(WORKFLOW_NODE_STATES_SPEC);
       }
-      if (overWrite || tableAdmin.getSpecification(RUN_RECORDS) == null) {
+      StructuredTableSpecification runRecordsSpec = tableAdmin.getSpecification(RUN_RECORDS);
+      if (overWrite || runRecordsSpec == null) {
         tableAdmin.create(RUN_RECORDS_SPEC);
+      } else if (!RUN_RECORDS_SPEC.equals(runRecordsSpec)) {
+        // Add the projected run record columns to a table that was created before they existed
+        tableAdmin.upgrade(RUN_RECORDS_SPEC);
+      }
+      if (overWrite || tableAdmin.getSpecification(RUN_RECORDS_STOP_TIME_INDEX) == null) {
+        tableAdmin.create(RUN_RECORDS_STOP_TIME_INDEX_SPEC);
       }
       if (overWrite || tableAdmin.getSpecification(WORKFLOWS) == null) {
         tableAdmin.create(WORKFLOWS_SPEC);
@@ -42,6 +42,7 @@ import io.cdap.cdap.api.dataset.table.TableProperties;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.namespace.NamespacePathLocator;
 import io.cdap.cdap.data2.dataset2.DatasetFrameworkTestUtil;
+import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.test.SlowTests;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -184,6 +185,43 @@ public class PartitionedFileSetTest {
     PartitionedFileSetDataset.parseRowKey(rowKey, PARTITIONING_2);
   }
 
+  @Test
+  public void testFuzzyFilter() {
+    // no fuzzy filter if there are no conditions after the leading fields of the row key
+    Assert.assertNull(PartitionedFileSetDataset.generateFuzzyFilter(
+      PartitionFilter.builder().addValueCondition("s", "x").addRangeCondition("i", 1, 7).build(), PARTITIONING_1));
+    // no fuzzy filter if the field follows a string field that is not fixed
+    Assert.assertNull(PartitionedFileSetDataset.generateFuzzyFilter(
+      PartitionFilter.builder().addValueCondition("l", 17L).build(), PARTITIONING_1));
+
+    FuzzyRowFilter filter = PartitionedFileSetDataset.generateFuzzyFilter(
+      PartitionFilter.builder().addValueCondition("s", "x").addValueCondition("l", 17L).build(), PARTITIONING_1);
+    Assert.assertNotNull(filter);
+    Assert.assertEquals(FuzzyRowFilter.ReturnCode.INCLUDE, filter.filterRow(
+      PartitionedFileSetDataset.generateRowKey(PARTITION_KEY, PARTITIONING_1)));
+    Assert.assertEquals(FuzzyRowFilter.ReturnCode.INCLUDE, filter.filterRow(
+      PartitionedFileSetDataset.generateRowKey(
+        PartitionKey.builder().addStringField("s", "x").addIntField("i", 42).addLongField("l", 17L).build(),
+        PARTITIONING_1)));
+    Assert.assertEquals(FuzzyRowFilter.ReturnCode.SEEK_NEXT_USING_HINT, filter.filterRow(
+      PartitionedFileSetDataset.generateRowKey(
+        PartitionKey.builder().addStringField("s", "x").addIntField("i", 42).addLongField("l", 18L).build(),
+        PARTITIONING_1)));
+
+    // a string field with a single value also has a fixed length
+    filter = PartitionedFileSetDataset.generateFuzzyFilter(
+      PartitionFilter.builder().addValueCondition("s", "x").addValueCondition("x", "y").build(), PARTITIONING_2);
+    Assert.assertNotNull(filter);
+    Assert.assertEquals(FuzzyRowFilter.ReturnCode.INCLUDE, filter.filterRow(
+      PartitionedFileSetDataset.generateRowKey(
+        PartitionKey.builder().addStringField("s", "x").addIntField("i", 1).addLongField("l", 2L)
+          .addStringField("x", "y").build(), PARTITIONING_2)));
+    Assert.assertNotEquals(FuzzyRowFilter.ReturnCode.INCLUDE, filter.filterRow(
+      PartitionedFileSetDataset.generateRowKey(
+        PartitionKey.builder().addStringField("s", "x").addIntField("i", 1).addLongField("l", 2L)
+          .addStringField("x", "z").build(), PARTITIONING_2)));
+  }
+
   @Test
   public void testMetadataForNonexistentPartition() throws Exception {
     PartitionedFileSet pfs = dsFrameworkUtil.getInstance(pfsInstance);
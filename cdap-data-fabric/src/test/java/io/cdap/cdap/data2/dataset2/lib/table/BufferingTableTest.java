@@ -35,6 +35,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -502,6 +503,165 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testReadCache() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startShort();
+      BufferingTable table1 = getTable(CONTEXT1, MY_TABLE);
+      table1.startTx(tx1);
+      table1.put(R1, a(C1, C2), a(V1, V2));
+      Assert.assertTrue(table1.commitTx());
+      txClient.commitOrThrow(tx1);
+      table1.postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      DelegatingBufferingTable table2 = new DelegatingBufferingTable(
+        getTable(CONTEXT1, MY_TABLE), Collections.singletonMap(BufferingTable.READ_CACHE_MAX_ROWS, "100"));
+      table2.startTx(tx2);
+
+      // repeated gets of the same columns only go to the persisted store once
+      TableAssert.assertRow(a(C1, V1), table2.get(R1, a(C1)));
+      TableAssert.assertRow(a(C1, V1), table2.get(R1, a(C1)));
+      Assert.assertEquals(1, table2.getReadCount());
+      // only the column that is not cached yet is fetched
+      TableAssert.assertRow(a(C1, V1, C2, V2), table2.get(R1, a(C1, C2)));
+      Assert.assertEquals(2, table2.getReadCount());
+      // once the whole row is fetched, any get of the row is served from the cache
+      TableAssert.assertRow(a(C1, V1, C2, V2), table2.get(R1));
+      TableAssert.assertRow(a(C2, V2), table2.get(R1, a(C2)));
+      TableAssert.assertRow(a(C1, V1, C2, V2), table2.get(R1));
+      Assert.assertEquals(3, table2.getReadCount());
+      // non-existing columns are cached too
+      TableAssert.assertRow(a(), table2.get(R2, a(C1)));
+      TableAssert.assertRow(a(), table2.get(R2, a(C1)));
+      Assert.assertEquals(4, table2.getReadCount());
+
+      // modifying returned values does not affect the cache
+      table2.get(R1, a(C1)).getColumns().get(C1)[0]++;
+      TableAssert.assertRow(a(C1, V1), table2.get(R1, a(C1)));
+
+      // buffered writes are applied on top of cached values
+      table2.put(R1, C1, V3);
+      TableAssert.assertRow(a(C1, V3), table2.get(R1, a(C1)));
+      TableAssert.assertRow(a(C1, V3, C2, V2), table2.get(R1));
+      Assert.assertEquals(4, table2.getReadCount());
+
+      txClient.canCommitOrThrow(tx2, table2.getTxChanges());
+      Assert.assertTrue(table2.commitTx());
+      txClient.commitOrThrow(tx2);
+      table2.postTxCommit();
+
+      // cache does not survive the transaction
+      Transaction tx3 = txClient.startShort();
+      table2.startTx(tx3);
+      TableAssert.assertRow(a(C1, V3), table2.get(R1, a(C1)));
+      Assert.assertEquals(5, table2.getReadCount());
+      txClient.commitOrThrow(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testPersistingBufferBeforeCommit() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startShort();
+      DelegatingBufferingTable table1 = new DelegatingBufferingTable(
+        getTable(CONTEXT1, MY_TABLE), Collections.singletonMap(BufferingTable.WRITE_BUFFER_MAX_BYTES, "1"));
+      table1.startTx(tx1);
+      table1.put(R1, a(C1, C2), a(V1, V2));
+      table1.put(R2, a(C2), a(V2));
+      Assert.assertEquals(2, table1.getPersistCount());
+
+      // changes are persisted with the write pointer of the transaction, so they are visible to other
+      // table instances in the same transaction
+      BufferingTable table2 = getTable(CONTEXT1, MY_TABLE);
+      table2.startTx(tx1);
+      TableAssert.assertRow(a(C1, V1, C2, V2), table2.get(R1));
+
+      // verify can see changes inside tx, including deletes of persisted changes
+      TableAssert.assertRow(a(C1, V1, C2, V2), table1.get(R1));
+      table1.delete(R1, a(C2));
+      TableAssert.assertRow(a(C1, V1), table1.get(R1));
+      TableAssert.assertRow(a(C2, V2), table1.get(R2, a(C2)));
+      Assert.assertEquals(2, table1.getTxChanges().size());
+
+      // rolling back undoes the persisted changes
+      Assert.assertTrue(table1.rollbackTx());
+      txClient.abort(tx1);
+
+      Transaction tx2 = txClient.startShort();
+      table1.startTx(tx2);
+      TableAssert.assertRow(a(), table1.get(R1));
+      TableAssert.assertRow(a(), table1.get(R2));
+
+      table1.put(R1, a(C1), a(V1));
+      table1.put(R2, a(C2), a(V2));
+      txClient.canCommitOrThrow(tx2, table1.getTxChanges());
+      Assert.assertTrue(table1.commitTx());
+      txClient.commitOrThrow(tx2);
+      table1.postTxCommit();
+
+      Transaction tx3 = txClient.startShort();
+      BufferingTable table3 = getTable(CONTEXT1, MY_TABLE);
+      table3.startTx(tx3);
+      TableAssert.assertRow(a(C1, V1), table3.get(R1));
+      TableAssert.assertRow(a(C2, V2), table3.get(R2));
+      txClient.commitOrThrow(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testPersistingBufferOnDeletesAndIncrements() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      // each delete of one column buffers 4 bytes, and each increment of one column buffers 12 bytes
+      Transaction tx1 = txClient.startShort();
+      DelegatingBufferingTable table1 = new DelegatingBufferingTable(
+        getTable(CONTEXT1, MY_TABLE), Collections.singletonMap(BufferingTable.WRITE_BUFFER_MAX_BYTES, "64"));
+      table1.startTx(tx1);
+      for (int i = 0; i < 15; i++) {
+        table1.delete(R1, new byte[][] {C1});
+      }
+      Assert.assertEquals(0, table1.getPersistCount());
+      table1.delete(R1, new byte[][] {C1});
+      Assert.assertEquals(1, table1.getPersistCount());
+
+      for (int i = 0; i < 5; i++) {
+        table1.incrementAndGet(R2, new byte[][] {C2}, new long[] {1L});
+      }
+      Assert.assertEquals(1, table1.getPersistCount());
+      table1.incrementAndGet(R2, new byte[][] {C2}, new long[] {1L});
+      Assert.assertEquals(2, table1.getPersistCount());
+
+      // increments after persisting the buffer start from the persisted value
+      for (int i = 0; i < 4; i++) {
+        table1.incrementAndGet(R2, new byte[][] {C2}, new long[] {1L});
+      }
+      Assert.assertEquals(10L, Bytes.toLong(table1.get(R2, C2)));
+      txClient.canCommitOrThrow(tx1, table1.getTxChanges());
+      Assert.assertTrue(table1.commitTx());
+      txClient.commitOrThrow(tx1);
+      table1.postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      BufferingTable table2 = getTable(CONTEXT1, MY_TABLE);
+      table2.startTx(tx2);
+      Assert.assertEquals(10L, Bytes.toLong(table2.get(R2, C2)));
+      Assert.assertNull(table2.get(R1, C1));
+      txClient.commitOrThrow(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -598,4 +758,60 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  /**
+   * A {@link BufferingTable} with the given properties that uses the persisted store of the delegate table
+   * and counts the point reads and persists.
+   */
+  public static class DelegatingBufferingTable extends BufferingTable {
+    private final BufferingTable delegate;
+    private int readCount;
+    private int persistCount;
+
+    public DelegatingBufferingTable(BufferingTable delegate, Map<String, String> properties) {
+      super(delegate.getTableName(), false, properties);
+      this.delegate = delegate;
+    }
+
+    int getReadCount() {
+      return readCount;
+    }
+
+    int getPersistCount() {
+      return persistCount;
+    }
+
+    @Override
+    protected void persist(NavigableMap<byte[], NavigableMap<byte[], Update>> buff) throws Exception {
+      persistCount++;
+      delegate.persist(buff);
+    }
+
+    @Override
+    protected void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) throws Exception {
+      delegate.undo(persisted);
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[][] columns) throws Exception {
+      readCount++;
+      return delegate.getPersisted(row, columns);
+    }
+
+    @Override
+    protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
+      throws Exception {
+      return delegate.getPersisted(row, startColumn, stopColumn, limit);
+    }
+
+    @Override
+    protected Scanner scanPersisted(Scan scan) throws Exception {
+      return delegate.scanPersisted(scan);
+    }
+
+    @Override
+    public void startTx(Transaction tx) {
+      super.startTx(tx);
+      delegate.startTx(tx);
+    }
+  }
 }
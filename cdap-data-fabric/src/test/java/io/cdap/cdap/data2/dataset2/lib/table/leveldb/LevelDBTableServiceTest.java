@@ -37,7 +37,15 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -110,6 +118,55 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    String tableName = "cdap_default.increments";
+    service.ensureTableExists(tableName);
+
+    int threads = 4;
+    int rows = 10;
+    int iterations = 500;
+    byte[] column = Bytes.toBytes("c");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        // Each thread uses its own core instance, as different dataset instances do
+        LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < iterations; i++) {
+            // Alternate between single row and multi rows increments
+            if (i % 2 == 0) {
+              table.increment(Bytes.toBytes(i / 2 % rows), Collections.singletonMap(column, 1L));
+            } else {
+              NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+              for (int row = 0; row < rows; row++) {
+                NavigableMap<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+                increments.put(column, 1L);
+                updates.put(Bytes.toBytes(row), increments);
+              }
+              table.increment(updates);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Each thread increments every row once for each odd iteration, and one row for each even iteration
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    for (int row = 0; row < rows; row++) {
+      long expected = threads * (iterations / 2 + iterations / 2 / rows);
+      byte[] value = table.getRow(Bytes.toBytes(row), new byte[][] { column }, null, null, -1, null).get(column);
+      Assert.assertEquals(expected, Bytes.toLong(value));
+    }
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
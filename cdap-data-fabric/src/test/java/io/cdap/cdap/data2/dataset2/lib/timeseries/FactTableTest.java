@@ -631,6 +631,44 @@ public class FactTableTest {
     }
   }
 
+  @Test
+  public void testBatchCoalescing() throws Exception {
+    String tableName = "testCoalescingTable";
+    String entityTableName = "testCoalescingEntityTable";
+    InMemoryTableService.create(tableName);
+    InMemoryTableService.create(entityTableName);
+    int resolution = 5;
+    // each row holds two resolution buckets
+    int rollTime = 10;
+
+    FactTable table = new FactTable(new InMemoryMetricsTable(tableName),
+                                    new EntityTable(new InMemoryMetricsTable(entityTableName)), resolution, rollTime);
+    FactTableMetricsCollector metricsCollector = new FactTableMetricsCollector(resolution);
+    table.setMetricsCollector(metricsCollector);
+
+    long ts = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / rollTime * rollTime;
+    List<DimensionValue> dims = dimValues("dim1", "value1");
+
+    // Many measurements of the same series across three resolution buckets that span two rows
+    List<Fact> facts = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      long factTs = ts + (i % 3) * resolution + (i % resolution);
+      facts.add(new Fact(factTs, dims, new Measurement("counter", MeasureType.COUNTER, 1)));
+      facts.add(new Fact(factTs, dims, new Measurement("gauge", MeasureType.GAUGE, i)));
+    }
+    table.add(facts);
+
+    // Counters are summed and gauges keep the last value in each resolution bucket
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dims, timeValues(ts, resolution, 34, 33, 33));
+    expected.put("gauge", dims, timeValues(ts, resolution, 99, 97, 98));
+    assertScan(table, expected, new FactScan(ts, ts + 3 * resolution, dims));
+
+    // Each series spans two rows
+    Assert.assertEquals(2, metricsCollector.getLastIncrementSize());
+    Assert.assertEquals(2, metricsCollector.getLastGaugeSize());
+  }
+
   private List<TimeValue> timeValues(long ts, int resolution, long... values) {
     List<TimeValue> timeValues = Lists.newArrayList();
     for (int i = 0; i < values.length; i++) {
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.metadata.lineage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.common.app.RunIds;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.proto.ProgramType;
+import io.cdap.cdap.proto.id.DatasetId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.NamespacedEntityId;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ProgramRunId;
+import org.apache.twill.api.RunId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link LineageGraph}.
+ */
+public class LineageGraphTest {
+
+  private static final long BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final DatasetId dataset1 = NamespaceId.DEFAULT.dataset("dataset1");
+  private final DatasetId dataset2 = NamespaceId.DEFAULT.dataset("dataset2");
+  private final ProgramId program1 = NamespaceId.DEFAULT.app("app1").program(ProgramType.SPARK, "spark1");
+  private final ProgramId program2 = NamespaceId.DEFAULT.app("app2").program(ProgramType.WORKER, "worker2");
+
+  private InMemoryLineageStoreReader store;
+  private LineageGraph graph;
+
+  @Before
+  public void before() {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setLong(Constants.Metadata.LINEAGE_GRAPH_BUCKET_SECONDS, TimeUnit.MILLISECONDS.toSeconds(BUCKET_MILLIS));
+    store = new InMemoryLineageStoreReader();
+    graph = new LineageGraph(cConf, store);
+  }
+
+  @Test
+  public void testLoadOnce() {
+    ProgramRunId run1 = program1.run(RunIds.generate(BUCKET_MILLIS * 10 + 5));
+    ProgramRunId run2 = program1.run(RunIds.generate(BUCKET_MILLIS * 12 + 5));
+    ProgramRunId run3 = program2.run(RunIds.generate(BUCKET_MILLIS * 20));
+    Relation relation1 = store.addAccess(run1, dataset1, AccessType.READ);
+    Relation relation2 = store.addAccess(run2, dataset1, AccessType.WRITE);
+    Relation relation3 = store.addAccess(run3, dataset1, AccessType.READ);
+
+    // only the runs started in the requested range are returned, even if the buckets are larger
+    Assert.assertEquals(ImmutableSet.of(relation1),
+                        graph.getRelations(dataset1, BUCKET_MILLIS * 10, BUCKET_MILLIS * 10 + 6, x -> true));
+    Assert.assertEquals(ImmutableSet.of(),
+                        graph.getRelations(dataset1, BUCKET_MILLIS * 10 + 6, BUCKET_MILLIS * 11, x -> true));
+    Assert.assertEquals(1, store.getScanCount());
+
+    // the missing buckets are loaded with one scan, the loaded ones are served from memory
+    Assert.assertEquals(ImmutableSet.of(relation1, relation2, relation3),
+                        graph.getRelations(dataset1, BUCKET_MILLIS * 5, BUCKET_MILLIS * 21, x -> true));
+    Assert.assertEquals(3, store.getScanCount());
+    Assert.assertEquals(ImmutableSet.of(relation2),
+                        graph.getRelations(dataset1, BUCKET_MILLIS * 5, BUCKET_MILLIS * 21,
+                                           relation -> relation.getAccess() == AccessType.WRITE));
+    Assert.assertEquals(3, store.getScanCount());
+  }
+
+  @Test
+  public void testAddAccess() {
+    long start = BUCKET_MILLIS * 100;
+    long end = BUCKET_MILLIS * 102;
+    ProgramRunId run1 = program1.run(RunIds.generate(start + 1));
+    Relation relation1 = store.addAccess(run1, dataset1, AccessType.READ);
+    Assert.assertEquals(ImmutableSet.of(relation1), graph.getRelations(dataset1, start, end, x -> true));
+    Assert.assertEquals(ImmutableSet.of(relation1), graph.getRelations(program1, start, end, x -> true));
+    int scans = store.getScanCount();
+
+    // accesses added to the graph are visible without reading from the store again
+    Relation relation2 = store.addAccess(run1, dataset2, AccessType.WRITE);
+    graph.addAccess(run1, dataset2, AccessType.WRITE);
+    Assert.assertEquals(ImmutableSet.of(relation1, relation2), graph.getRelations(program1, start, end, x -> true));
+    Assert.assertEquals(scans, store.getScanCount());
+
+    // dataset2 was not in memory, so it gets loaded from the store
+    Assert.assertEquals(ImmutableSet.of(relation2), graph.getRelations(dataset2, start, end, x -> true));
+    Assert.assertEquals(scans + 1, store.getScanCount());
+  }
+
+  @Test
+  public void testParallelExpansion() {
+    long start = BUCKET_MILLIS * 200;
+    long end = BUCKET_MILLIS * 201;
+    ProgramRunId run1 = program1.run(RunIds.generate(start + 10));
+    ProgramRunId run2 = program2.run(RunIds.generate(start + 20));
+    Relation relation1 = store.addAccess(run1, dataset1, AccessType.READ);
+    Relation relation2 = store.addAccess(run1, dataset2, AccessType.WRITE);
+    Relation relation3 = store.addAccess(run2, dataset2, AccessType.READ);
+
+    Assert.assertEquals(ImmutableSet.of(relation1, relation2, relation3),
+                        graph.getRelations(ImmutableList.of(dataset1, dataset2), start, end, x -> true));
+    Assert.assertEquals(ImmutableSet.of(relation2, relation3),
+                        graph.getRelations(ImmutableList.of(program1, program2), start, end,
+                                           relation -> relation.getData().equals(dataset2)));
+    Assert.assertEquals(4, store.getScanCount());
+  }
+
+  @Test
+  public void testLongRange() {
+    // about 55 years of one hour buckets
+    long end = BUCKET_MILLIS * 24 * 365 * 55;
+    ProgramRunId run1 = program1.run(RunIds.generate(BUCKET_MILLIS * 1000 + 1));
+    ProgramRunId run2 = program2.run(RunIds.generate(end - 1));
+    Relation relation1 = store.addAccess(run1, dataset1, AccessType.READ);
+    Relation relation2 = store.addAccess(run2, dataset1, AccessType.WRITE);
+
+    Assert.assertEquals(ImmutableSet.of(relation1, relation2), graph.getRelations(dataset1, 0L, end, x -> true));
+    Assert.assertEquals(1, store.getScanCount());
+    // the memory used only depends on the number of loaded ranges and relations, not on the length of the range
+    Assert.assertEquals(3, graph.getNodeSize(dataset1));
+
+    // ranges within the loaded range are served from memory
+    Assert.assertEquals(ImmutableSet.of(relation1),
+                        graph.getRelations(dataset1, BUCKET_MILLIS, BUCKET_MILLIS * 2000, x -> true));
+    Assert.assertEquals(1, store.getScanCount());
+
+    // the range after the loaded range is loaded and merged with it
+    ProgramRunId run3 = program1.run(RunIds.generate(end + BUCKET_MILLIS));
+    Relation relation3 = store.addAccess(run3, dataset1, AccessType.READ);
+    Assert.assertEquals(ImmutableSet.of(relation1, relation2, relation3),
+                        graph.getRelations(dataset1, 0L, end + BUCKET_MILLIS * 2, x -> true));
+    Assert.assertEquals(2, store.getScanCount());
+    Assert.assertEquals(4, graph.getNodeSize(dataset1));
+  }
+
+  /**
+   * A {@link LineageStoreReader} that keeps relations in memory and counts the number of scans.
+   */
+  private static final class InMemoryLineageStoreReader implements LineageStoreReader {
+
+    private final Set<Relation> relations = new CopyOnWriteArraySet<>();
+    private final AtomicInteger scanCount = new AtomicInteger();
+
+    Relation addAccess(ProgramRunId run, DatasetId dataset, AccessType accessType) {
+      Relation relation = new Relation(dataset, run.getParent(), accessType, RunIds.fromString(run.getRun()));
+      relations.add(relation);
+      return relation;
+    }
+
+    int getScanCount() {
+      return scanCount.get();
+    }
+
+    @Override
+    public Set<NamespacedEntityId> getEntitiesForRun(ProgramRunId run) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<Relation> getRelations(DatasetId datasetInstance, long start, long end, Predicate<Relation> filter) {
+      return scan(relation -> relation.getData().equals(datasetInstance), start, end, filter);
+    }
+
+    @Override
+    public Set<Relation> getRelations(ProgramId program, long start, long end, Predicate<Relation> filter) {
+      return scan(relation -> relation.getProgram().equals(program), start, end, filter);
+    }
+
+    private Set<Relation> scan(Predicate<Relation> entityFilter, long start, long end, Predicate<Relation> filter) {
+      scanCount.incrementAndGet();
+      return relations.stream().filter(entityFilter.and(filter)).filter(relation -> {
+        RunId runId = relation.getRun();
+        long time = RunIds.getTime(runId, TimeUnit.MILLISECONDS);
+        return time >= start && time < end;
+      }).collect(Collectors.toSet());
+    }
+  }
+}
@@ -37,8 +37,10 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -225,6 +227,67 @@ public abstract class FieldLineageTableTest {
     });
   }
 
+  @Test
+  public void testDatasetSummaries() {
+    ProgramId program = new ProgramId("default", "app1", ProgramType.WORKFLOW, "workflow1");
+    ProgramRunId programRun1 = program.run(RunIds.generate(10000).getId());
+    ProgramRunId programRun2 = program.run(RunIds.generate(11000).getId());
+    ProgramRunId programRun3 = program.run(RunIds.generate(12000).getId());
+
+    FieldLineageInfo info1 = new FieldLineageInfo(generateOperations(false));
+    FieldLineageInfo info2 = new FieldLineageInfo(generateOperations(true));
+    TransactionRunners.run(transactionRunner, context -> {
+      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      fieldLineageTable.addFieldLineageInfo(programRun1, info1);
+      fieldLineageTable.addFieldLineageInfo(programRun2, info2);
+      // same operations as the first run
+      fieldLineageTable.addFieldLineageInfo(programRun3, info1);
+    });
+
+    EndPoint source = EndPoint.of("ns1", "endpoint1");
+    EndPoint destination = EndPoint.of("myns", "another_file");
+    DefaultFieldLineageReader reader = new DefaultFieldLineageReader(transactionRunner);
+    TransactionRunners.run(transactionRunner, context -> {
+      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      Assert.assertEquals(Collections.singleton(info1.getChecksum()),
+                          fieldLineageTable.getIncomingChecksums(destination, 11500, 12001));
+      Assert.assertEquals(new HashSet<>(Arrays.asList(info1.getChecksum(), info2.getChecksum())),
+                          fieldLineageTable.getOutgoingChecksums(source, 0, 12001));
+    });
+
+    // the summaries of all fields are the same as the summaries of the individual fields read from the table,
+    // and "file_name" is only written by the second run. Each range is read twice, such that the second read
+    // is served from the summaries cached by the first one.
+    for (long[] range : new long[][] { { 0, 10001, 0 }, { 0, 12001, 1 }, { 11000, 11001, 1 }, { 0, 12001, 1 } }) {
+      for (int i = 0; i < 2; i++) {
+        Map<String, Set<EndPointField>> incoming = reader.getIncomingSummaries(destination, range[0], range[1]);
+        Map<String, Set<EndPointField>> outgoing = reader.getOutgoingSummaries(source, range[0], range[1]);
+        TransactionRunners.run(transactionRunner, context -> {
+          FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+          Map<String, Set<EndPointField>> expectedIncoming = new HashMap<>();
+          for (String field : fieldLineageTable.getFields(destination, range[0], range[1])) {
+            Set<EndPointField> summary =
+              fieldLineageTable.getIncomingSummary(new EndPointField(destination, field), range[0], range[1]);
+            if (!summary.isEmpty()) {
+              expectedIncoming.put(field, summary);
+            }
+          }
+          Map<String, Set<EndPointField>> expectedOutgoing = new HashMap<>();
+          for (String field : fieldLineageTable.getFields(source, range[0], range[1])) {
+            Set<EndPointField> summary =
+              fieldLineageTable.getOutgoingSummary(new EndPointField(source, field), range[0], range[1]);
+            if (!summary.isEmpty()) {
+              expectedOutgoing.put(field, summary);
+            }
+          }
+          Assert.assertEquals(expectedIncoming, incoming);
+          Assert.assertEquals(expectedOutgoing, outgoing);
+        });
+        Assert.assertEquals(range[2] == 1, incoming.containsKey("file_name"));
+      }
+    }
+  }
+
   private List<Operation> generateOperations(boolean addAditionalField) {
     // read: file -> (offset, body)
     // parse: (body) -> (first_name, last_name)
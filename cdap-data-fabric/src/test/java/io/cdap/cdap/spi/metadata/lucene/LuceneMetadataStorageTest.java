@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.metadata.lucene;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.metadata.Cursor;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.MetadataMutation;
+import io.cdap.cdap.spi.metadata.MetadataRecord;
+import io.cdap.cdap.spi.metadata.MetadataStorage;
+import io.cdap.cdap.spi.metadata.MetadataStorageTest;
+import io.cdap.cdap.spi.metadata.MutationOptions;
+import io.cdap.cdap.spi.metadata.Read;
+import io.cdap.cdap.spi.metadata.SearchRequest;
+import io.cdap.cdap.spi.metadata.SearchResponse;
+import io.cdap.cdap.spi.metadata.Sorting;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link LuceneMetadataStorage}.
+ */
+public class LuceneMetadataStorageTest extends MetadataStorageTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static CConfiguration cConf;
+  private static LuceneMetadataStorage storage;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    cConf = CConfiguration.create();
+    cConf.set(Constants.Metadata.STORAGE_LUCENE_INDEX_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
+    storage = new LuceneMetadataStorage(cConf);
+    storage.createIndex();
+  }
+
+  @AfterClass
+  public static void teardown() throws IOException {
+    storage.dropIndex();
+    Closeables.closeQuietly(storage);
+  }
+
+  @Override
+  protected MetadataStorage getMetadataStorage() {
+    return storage;
+  }
+
+  @Override
+  protected void validateCursor(String cursor, int expectedOffset, int expectedPageSize) {
+    Cursor c = Cursor.fromString(cursor);
+    Assert.assertEquals(expectedOffset, c.getOffset());
+    Assert.assertEquals(expectedPageSize, c.getLimit());
+  }
+
+  @Override
+  protected List<String> getAdditionalTTLQueries() {
+    return ImmutableList.of("ttl:0003600", "TtL:03600", "TtL:03600.00");
+  }
+
+  @Test
+  public void testCursorAfterUpdates() throws IOException {
+    MetadataStorage mds = getMetadataStorage();
+    List<MetadataRecord> records = IntStream.range(0, 20).boxed().map(i -> new MetadataRecord(
+      MetadataEntity.ofDataset("ns" + i, "ds" + i),
+      new Metadata(MetadataScope.USER, tags("tag", "t" + i), props("p", "v" + i)))).collect(Collectors.toList());
+    mds.batch(records.stream().map(r -> new MetadataMutation.Update(r.getEntity(), r.getMetadata()))
+                .collect(Collectors.toList()), MutationOptions.DEFAULT);
+
+    Sorting sorting = new Sorting(MetadataConstants.ENTITY_NAME_KEY, Sorting.Order.ASC);
+    SearchResponse response = mds.search(SearchRequest.of("tag").setSorting(sorting)
+                                           .setCursorRequested(true).setLimit(8).build());
+    Assert.assertEquals(8, response.getResults().size());
+    Set<MetadataEntity> seen = response.getResults().stream()
+      .map(MetadataRecord::getEntity).collect(Collectors.toCollection(HashSet::new));
+
+    // entities that are dropped after the first page must not shift the following pages
+    List<MetadataRecord> firstPage = response.getResults();
+    mds.batch(firstPage.stream().map(r -> new MetadataMutation.Drop(r.getEntity())).collect(Collectors.toList()),
+              MutationOptions.DEFAULT);
+    while (response.getCursor() != null) {
+      response = mds.search(SearchRequest.of("tag").setSorting(sorting)
+                              .setCursorRequested(true).setCursor(response.getCursor()).build());
+      for (MetadataRecord record : response.getResults()) {
+        Assert.assertTrue(seen.add(record.getEntity()));
+      }
+    }
+    Assert.assertEquals(records.size(), seen.size());
+
+    // the index survives closing and reopening the storage
+    Closeables.closeQuietly(storage);
+    storage = new LuceneMetadataStorage(cConf);
+    MetadataRecord last = records.get(records.size() - 1);
+    Assert.assertEquals(last.getMetadata(), storage.read(new Read(last.getEntity())));
+
+    mds = getMetadataStorage();
+    mds.batch(records.stream().map(r -> new MetadataMutation.Drop(r.getEntity())).collect(Collectors.toList()),
+              MutationOptions.DEFAULT);
+  }
+}
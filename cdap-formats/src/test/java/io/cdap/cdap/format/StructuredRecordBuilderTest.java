@@ -285,4 +285,31 @@ public class StructuredRecordBuilderTest {
     Schema schema = Schema.recordOf("test", Schema.Field.of("d", Schema.decimalOf(5, 2)));
     StructuredRecord.builder(schema).setDecimal("d", new BigDecimal(new BigInteger("12341324"), 2)).build();
   }
+
+  @Test
+  public void testFieldOrderIndependence() {
+    Schema schema = Schema.recordOf("x",
+                                    Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("c", Schema.of(Schema.Type.LONG)));
+    Assert.assertEquals(0, schema.getFieldIndex("a"));
+    Assert.assertEquals(2, schema.getFieldIndex("c"));
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("c", 2L).set("a", 1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("a", 1).set("b", null).set("c", 2L).build();
+    Assert.assertEquals(record1, record2);
+    Assert.assertEquals(record1.hashCode(), record2.hashCode());
+    Assert.assertNull(record1.get("b"));
+    Assert.assertNull(record1.get("d"));
+    Assert.assertEquals(2L, (long) record1.get("c"));
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testMissingNonNullableField() {
+    Schema schema = Schema.recordOf("x",
+                                    Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord.builder(schema).set("b", "b").build();
+  }
 }
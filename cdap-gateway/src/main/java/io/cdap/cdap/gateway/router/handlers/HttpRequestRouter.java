@@ -20,6 +20,7 @@ import io.cdap.cdap.common.HandlerException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.discovery.EndpointStrategy;
+import io.cdap.cdap.common.discovery.LatencyAwareEndpointStrategy;
 import io.cdap.cdap.common.http.Channels;
 import io.cdap.cdap.gateway.router.RouterServiceLookup;
 import io.netty.bootstrap.Bootstrap;
@@ -60,9 +61,7 @@ import java.io.Flushable;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -72,6 +71,10 @@ import javax.net.ssl.SSLException;
  * A {@link ChannelInboundHandler} for forwarding incoming request to appropriate CDAP service endpoint
  * based on the request. This class doesn't need to be thread safe as Netty will make sure there is no
  * concurrent calls to ChannelHandler and each call always have a happens-before relationship to the previous call.
+ *
+ * Connections to the service endpoints are taken from and returned to the {@link UpstreamConnectionPool}, so that
+ * they can be reused by other inbound connections. Pipelined requests are processed one at a time, in the order
+ * they are received, after the response of the previous request is completed.
  */
 public class HttpRequestRouter extends ChannelDuplexHandler {
 
@@ -80,65 +83,38 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
 
   private final CConfiguration cConf;
   private final RouterServiceLookup serviceLookup;
-  private final Map<Discoverable, Queue<MessageSender>> messageSenders;
-  private int inflightRequests;
+  private final UpstreamConnectionPool connectionPool;
+  // Messages received while the current request is completely read but its response is not yet completed
+  private final Queue<Object> pipelinedMessages;
+  // True from receiving a request until its response is completely written
+  private boolean requestInProgress;
+  // True if the request in progress is completely read
+  private boolean requestCompleted;
   private MessageSender currentMessageSender;
+  // For reporting the latency of the current request to the endpoint strategy
+  private LatencyAwareEndpointStrategy.Request currentEndpointRequest;
+  private boolean currentRequestFailed;
   private ChannelFutureListener failureResponseListener;
 
-  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup) {
+  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup,
+                           UpstreamConnectionPool connectionPool) {
     this.cConf = cConf;
     this.serviceLookup = serviceLookup;
-    this.messageSenders = new HashMap<>();
+    this.connectionPool = connectionPool;
+    this.pipelinedMessages = new LinkedList<>();
   }
 
   @Override
   public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
     try {
-      final Channel inboundChannel = ctx.channel();
-      ChannelFutureListener writeCompletedListener = getFailureResponseListener(inboundChannel);
-
-      if (msg instanceof HttpRequest) {
-        HttpRequest request = (HttpRequest) msg;
-
-        // For "/" request, response with 200. This is for load balancer health check
-        if ("/".equals(request.uri())) {
-          HttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
-          HttpUtil.setContentLength(response, 0L);
-          inboundChannel.writeAndFlush(response);
-          return;
-        }
-
-        inflightRequests++;
-        if (inflightRequests != 1) {
-          // This means there is concurrent request via HTTP pipelining.
-          // Simply return
-          // At the end of the first response, we'll respond to all the other requests as well
-          return;
-        }
-
-        // Disable read until sending of this request object is completed successfully
-        // This is for handling the initial connection delay
-        inboundChannel.config().setAutoRead(false);
-        writeCompletedListener = new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            if (future.isSuccess()) {
-              inboundChannel.config().setAutoRead(true);
-            } else {
-              getFailureResponseListener(inboundChannel).operationComplete(future);
-            }
-          }
-        };
-
-        currentMessageSender = getMessageSender(
-          inboundChannel, getDiscoverable(request)
-        );
-      }
-
-      if (inflightRequests == 1 && currentMessageSender != null) {
-        ReferenceCountUtil.retain(msg);
-        currentMessageSender.send(msg, writeCompletedListener);
+      if ((requestInProgress && requestCompleted) || !pipelinedMessages.isEmpty()) {
+        // This means there is another request via HTTP pipelining. Buffer it until the response of the current
+        // request is completed, and stop reading from the inbound channel until then.
+        ctx.channel().config().setAutoRead(false);
+        pipelinedMessages.add(ReferenceCountUtil.retain(msg));
+        return;
       }
+      processMessage(ctx, msg);
     } finally {
       ReferenceCountUtil.release(msg);
     }
@@ -154,24 +130,30 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
 
   @Override
   public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (requestInProgress && msg instanceof HttpResponse) {
+      currentRequestFailed = ((HttpResponse) msg).status().code() >= HttpResponseStatus.INTERNAL_SERVER_ERROR.code();
+    }
     ctx.writeAndFlush(msg, promise);
 
-    // When the response for the first request is completed, write N failure responses for pipelining requests (if any).
-    if (msg instanceof LastHttpContent) {
-      for (int i = 0; i < inflightRequests - 1; i++) {
-        ctx.writeAndFlush(createPipeliningNotSupported());
-      }
-      inflightRequests = 0;
-
-      // Recycle the message sender
+    // When the response for the current request is completed, release the message sender and
+    // process the pipelined requests (if any).
+    if (requestInProgress && msg instanceof LastHttpContent) {
+      requestInProgress = false;
+      completeEndpointRequest(currentRequestFailed);
       if (currentMessageSender != null) {
-        messageSenders.get(currentMessageSender.getDiscoverable()).add(currentMessageSender);
+        currentMessageSender.release();
+        currentMessageSender = null;
+      }
+      if (!pipelinedMessages.isEmpty()) {
+        // Process them in a separate task, since this method can be called while the outbound channel is reading
+        ctx.executor().execute(() -> processPipelinedMessages(ctx));
       }
     }
   }
 
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    completeEndpointRequest(true);
     HttpResponse response = cause instanceof HandlerException
       ? ((HandlerException) cause).createFailureResponse()
       : createErrorResponse(cause);
@@ -181,17 +163,99 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
 
   @Override
   public void channelInactive(ChannelHandlerContext ctx) {
+    completeEndpointRequest(true);
     if (currentMessageSender != null) {
       currentMessageSender.close();
+      currentMessageSender = null;
     }
-    for (Map.Entry<Discoverable, Queue<MessageSender>> entry : messageSenders.entrySet()) {
-      for (MessageSender sender : entry.getValue()) {
-        sender.close();
-      }
+    Object msg = pipelinedMessages.poll();
+    while (msg != null) {
+      ReferenceCountUtil.release(msg);
+      msg = pipelinedMessages.poll();
     }
     ctx.fireChannelInactive();
   }
 
+  /**
+   * Processes a message from the inbound channel by sending it to the endpoint of the request.
+   */
+  private void processMessage(ChannelHandlerContext ctx, Object msg) {
+    final Channel inboundChannel = ctx.channel();
+    ChannelFutureListener writeCompletedListener = getFailureResponseListener(inboundChannel);
+
+    if (msg instanceof HttpRequest) {
+      HttpRequest request = (HttpRequest) msg;
+
+      // For "/" request, response with 200. This is for load balancer health check
+      if ("/".equals(request.uri())) {
+        HttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
+        HttpUtil.setContentLength(response, 0L);
+        inboundChannel.writeAndFlush(response);
+        return;
+      }
+
+      // Disable read until sending of this request object is completed successfully
+      // This is for handling the initial connection delay
+      inboundChannel.config().setAutoRead(false);
+      writeCompletedListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+          if (future.isSuccess()) {
+            // Keep read disabled if there are pipelined requests to be processed
+            if (pipelinedMessages.isEmpty()) {
+              inboundChannel.config().setAutoRead(true);
+            }
+          } else {
+            getFailureResponseListener(inboundChannel).operationComplete(future);
+          }
+        }
+      };
+
+      EndpointStrategy strategy = getEndpointStrategy(request);
+      Discoverable discoverable = getDiscoverable(strategy, request);
+      currentMessageSender = new MessageSender(cConf, inboundChannel, discoverable, connectionPool);
+      if (strategy instanceof LatencyAwareEndpointStrategy) {
+        currentEndpointRequest = ((LatencyAwareEndpointStrategy) strategy).start(discoverable);
+      }
+      currentRequestFailed = false;
+      requestInProgress = true;
+      requestCompleted = false;
+    }
+
+    if (requestInProgress && currentMessageSender != null) {
+      if (msg instanceof LastHttpContent) {
+        requestCompleted = true;
+      }
+      ReferenceCountUtil.retain(msg);
+      currentMessageSender.send(msg, writeCompletedListener);
+    }
+  }
+
+  /**
+   * Processes the buffered pipelined messages until the next request is completely read.
+   */
+  private void processPipelinedMessages(ChannelHandlerContext ctx) {
+    while (!(requestInProgress && requestCompleted) && !pipelinedMessages.isEmpty()) {
+      Object msg = pipelinedMessages.poll();
+      try {
+        processMessage(ctx, msg);
+      } catch (Exception e) {
+        exceptionCaught(ctx, e);
+      } finally {
+        ReferenceCountUtil.release(msg);
+      }
+    }
+
+    if (currentMessageSender != null) {
+      currentMessageSender.flush();
+    }
+    // Resume reading if all pipelined requests are processed. If there is a request in progress,
+    // read will be resumed when the request is sent.
+    if (!requestInProgress && pipelinedMessages.isEmpty()) {
+      ctx.channel().config().setAutoRead(true);
+    }
+  }
+
   private ChannelFutureListener getFailureResponseListener(final Channel inboundChannel) {
     if (failureResponseListener == null) {
       failureResponseListener = new ChannelFutureListener() {
@@ -209,14 +273,37 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   }
 
   /**
-   * Finds the {@link Discoverable} for the given {@link HttpRequest} to route to.
+   * Reports the completion of the current request to the endpoint strategy.
+   */
+  private void completeEndpointRequest(boolean failed) {
+    LatencyAwareEndpointStrategy.Request endpointRequest = currentEndpointRequest;
+    if (endpointRequest == null) {
+      return;
+    }
+    currentEndpointRequest = null;
+    if (failed) {
+      endpointRequest.failed();
+    } else {
+      endpointRequest.completed();
+    }
+  }
+
+  /**
+   * Finds the {@link EndpointStrategy} for picking the endpoint of the given {@link HttpRequest}.
    */
-  private Discoverable getDiscoverable(HttpRequest httpRequest) {
+  private EndpointStrategy getEndpointStrategy(HttpRequest httpRequest) {
     EndpointStrategy strategy = serviceLookup.getDiscoverable(httpRequest);
     if (strategy == null) {
       throw new HandlerException(HttpResponseStatus.SERVICE_UNAVAILABLE,
                                  "No endpoint strategy found for request " + getRequestLine(httpRequest));
     }
+    return strategy;
+  }
+
+  /**
+   * Finds the {@link Discoverable} for the given {@link HttpRequest} to route to.
+   */
+  private Discoverable getDiscoverable(EndpointStrategy strategy, HttpRequest httpRequest) {
     // Do a non-blocking pick first. If the service has been discovered before, this should return an endpoint
     // immediately.
     Discoverable discoverable = strategy.pick();
@@ -234,39 +321,10 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
     return discoverable;
   }
 
-  /**
-   * Returns the {@link MessageSender} for writing messages to the endpoint represented by the given
-   * {@link Discoverable}.
-   */
-  private MessageSender getMessageSender(Channel inboundChannel,
-                                         Discoverable discoverable) {
-    Queue<MessageSender> senders = messageSenders.computeIfAbsent(discoverable, k -> new LinkedList<>());
-
-    MessageSender sender = senders.poll();
-
-    // Found a MessageSender to reuse, return it
-    if (sender != null) {
-      LOG.trace("Reuse message sender for {}", discoverable);
-      return sender;
-    }
-
-    // Create new MessageSender
-    sender = new MessageSender(cConf, inboundChannel, discoverable);
-    LOG.trace("Create new message sender for {}", discoverable);
-    return sender;
-  }
-
   private String getRequestLine(HttpRequest request) {
     return request.method() + " " + request.uri() + " " + request.protocolVersion();
   }
 
-  private HttpResponse createPipeliningNotSupported() {
-    FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_IMPLEMENTED);
-    response.content().writeCharSequence("HTTP pipelining is not supported", StandardCharsets.UTF_8);
-    HttpUtil.setContentLength(response, response.content().readableBytes());
-    return response;
-  }
-
   private static HttpResponse createErrorResponse(Throwable cause) {
     FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
                                                             HttpResponseStatus.INTERNAL_SERVER_ERROR);
@@ -278,25 +336,34 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   }
 
   /**
-   * For sending messages to outbound channel while maintaining the order of messages according to
-   * the order that {@link #send(Object, ChannelFutureListener)} method is called.
+   * For sending messages of a request to outbound channel while maintaining the order of messages according to
+   * the order that {@link #send(Object, ChannelFutureListener)} method is called. The outbound channel is either
+   * taken from the {@link UpstreamConnectionPool} or newly connected, and is returned to the pool by
+   * {@link #release()} when the response is completed.
    */
   private static final class MessageSender implements Flushable, Closeable {
 
+    private static volatile SslContext sslContext;
+
     private final Discoverable discoverable;
+    private final Channel inboundChannel;
+    private final UpstreamConnectionPool connectionPool;
     private final Queue<OutboundMessage> pendingMessages;
     private final Bootstrap clientBootstrap;
-    private volatile SslContext sslContext;
+    private final ChannelFutureListener onCloseResetListener;
     private Channel outboundChannel;
     private boolean closed;
     private boolean connecting;
 
-    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable) {
+    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable,
+                          UpstreamConnectionPool connectionPool) {
       this.discoverable = discoverable;
+      this.inboundChannel = inboundChannel;
+      this.connectionPool = connectionPool;
       this.pendingMessages = new LinkedList<>();
 
       // A channel listener for resetting the state of this message sender on closing of outbound channel
-      final ChannelFutureListener onCloseResetListener = new ChannelFutureListener() {
+      this.onCloseResetListener = new ChannelFutureListener() {
         @Override
         public void operationComplete(ChannelFuture future) {
           outboundChannel = null;
@@ -314,7 +381,6 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
         .handler(new ChannelInitializer<SocketChannel>() {
           @Override
           protected void initChannel(SocketChannel ch) throws Exception {
-            ch.closeFuture().addListener(onCloseResetListener);
             ChannelPipeline pipeline = ch.pipeline();
 
             SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
@@ -349,6 +415,22 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
         return;
       }
 
+      // Reuse an idle connection if there is one
+      Channel pooledChannel = connectionPool.acquire(inboundChannel.eventLoop(), discoverable);
+      if (pooledChannel != null) {
+        LOG.trace("Reuse connection {} to {}", pooledChannel, discoverable);
+        pooledChannel.pipeline().get(OutboundHandler.class).setInboundChannel(inboundChannel);
+        pooledChannel.closeFuture().addListener(onCloseResetListener);
+        outboundChannel = pooledChannel;
+
+        OutboundMessage message = pendingMessages.poll();
+        while (message != null) {
+          message.write(pooledChannel);
+          message = pendingMessages.poll();
+        }
+        return;
+      }
+
       // Make a new connection
       ChannelFuture connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
       connectFuture.addListener(new ChannelFutureListener() {
@@ -360,10 +442,14 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
           connecting = false;
 
           if (future.isSuccess()) {
+            outboundChannel.closeFuture().addListener(onCloseResetListener);
             // If this sender is closed (because inbound channel is closed), just close the outbound channel
             if (closed) {
               Channels.closeOnFlush(outboundChannel);
             }
+          } else {
+            // The endpoint is not reachable, don't reuse any idle connection to it
+            connectionPool.invalidate(inboundChannel.eventLoop(), discoverable);
           }
           OutboundMessage message = pendingMessages.poll();
           while (message != null) {
@@ -396,8 +482,24 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
     }
 
-    Discoverable getDiscoverable() {
-      return discoverable;
+    /**
+     * Releases the outbound channel to the {@link UpstreamConnectionPool} if it can be reused, otherwise closes it.
+     * This sender cannot be used after this method returns.
+     */
+    void release() {
+      Channel channel = outboundChannel;
+      OutboundHandler handler = channel == null ? null : channel.pipeline().get(OutboundHandler.class);
+      if (closed || connecting || !pendingMessages.isEmpty() || handler == null
+        || !channel.isActive() || !handler.isReusable()) {
+        close();
+        return;
+      }
+
+      closed = true;
+      outboundChannel = null;
+      channel.closeFuture().removeListener(onCloseResetListener);
+      handler.setInboundChannel(null);
+      connectionPool.release(discoverable, channel);
     }
 
     /**
@@ -407,7 +509,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
      * @return the {@link SslContext} or {@code null} if SSL is not needed
      */
     @Nullable
-    private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
+    private static SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
       if (!Arrays.equals(HTTPS_SCHEME_BYTES, discoverable.getPayload())) {
         return null;
       }
@@ -415,7 +517,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       if (context != null) {
         return context.newHandler(alloc);
       }
-      synchronized (this) {
+      synchronized (MessageSender.class) {
         context = sslContext;
         if (context == null) {
           sslContext = context = SslContextBuilder.forClient()
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.gateway.router.handlers;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import org.apache.twill.discovery.Discoverable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of idle keep-alive connections to the internal service endpoints, which allows connections to be reused
+ * across inbound connections. Connections are pooled per {@link EventLoop}, such that a pooled connection is only
+ * used by inbound channels of the same event loop as the connection. This keeps all callbacks of the inbound and
+ * outbound channels in the same thread, hence the pool of each event loop doesn't need to be thread safe.
+ *
+ * Pooled connections are closed by the idle state handler of the connection when they are not used for the
+ * configured idle timeout, and closed connections are never handed out.
+ */
+public final class UpstreamConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UpstreamConnectionPool.class);
+
+  private final int maxIdleConnections;
+  private final ConcurrentMap<EventLoop, Map<Discoverable, Deque<Channel>>> pools;
+
+  public UpstreamConnectionPool(CConfiguration cConf) {
+    this.maxIdleConnections = cConf.getInt(Constants.Router.UPSTREAM_POOL_MAX_IDLE_CONNECTIONS);
+    this.pools = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Takes an idle connection to the given endpoint from the pool. This method must be called from the given
+   * {@link EventLoop}.
+   *
+   * @return a connected {@link Channel} or {@code null} if there is no idle connection available
+   */
+  @Nullable
+  Channel acquire(EventLoop eventLoop, Discoverable discoverable) {
+    Map<Discoverable, Deque<Channel>> pool = getPool(eventLoop);
+    Deque<Channel> channels = pool.get(discoverable);
+    if (channels == null) {
+      return null;
+    }
+
+    // Use the most recently used connection first, such that excess connections can get closed by idle timeout
+    Channel channel = channels.pollLast();
+    while (channel != null && !channel.isActive()) {
+      channel = channels.pollLast();
+    }
+    if (channels.isEmpty()) {
+      pool.remove(discoverable);
+    }
+    return channel;
+  }
+
+  /**
+   * Returns an idle connection to the pool. The connection is closed if the pool is full. This method must be
+   * called from the event loop of the given {@link Channel}.
+   */
+  void release(Discoverable discoverable, Channel channel) {
+    Deque<Channel> channels = getPool(channel.eventLoop()).computeIfAbsent(discoverable, k -> new ArrayDeque<>());
+    channels.removeIf(c -> !c.isActive());
+
+    if (!channel.isActive() || channels.size() >= maxIdleConnections) {
+      channel.close();
+      return;
+    }
+    LOG.trace("Release connection {} to {} to the pool", channel, discoverable);
+    channels.addLast(channel);
+  }
+
+  /**
+   * Closes all idle connections to the given endpoint. It is called when the endpoint appears to be unhealthy,
+   * such that the pooled connections are not used anymore. This method must be called from the given
+   * {@link EventLoop}.
+   */
+  void invalidate(EventLoop eventLoop, Discoverable discoverable) {
+    Deque<Channel> channels = getPool(eventLoop).remove(discoverable);
+    if (channels == null) {
+      return;
+    }
+    LOG.trace("Closing {} idle connections to {}", channels.size(), discoverable);
+    for (Channel channel : channels) {
+      channel.close();
+    }
+  }
+
+  private Map<Discoverable, Deque<Channel>> getPool(EventLoop eventLoop) {
+    return pools.computeIfAbsent(eventLoop, k -> new HashMap<>());
+  }
+}
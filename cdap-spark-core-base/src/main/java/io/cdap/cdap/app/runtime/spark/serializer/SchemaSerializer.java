@@ -21,15 +21,22 @@ import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.cdap.cdap.api.data.schema.Schema;
 
 import java.io.IOException;
 
 /**
  * A Kryo {@link Serializer} for {@link Schema}.
+ *
+ * The schema is always written in full, since each serialized object must be readable on its own.
+ * On the read side, parsed schemas are cached by their json, so that the same schema is only parsed once.
  */
 public class SchemaSerializer extends Serializer<Schema> {
 
+  private static final Cache<String, Schema> SCHEMA_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
   @Override
   public void write(Kryo kryo, Output output, Schema schema) {
     output.writeString(schema.toString());
@@ -37,8 +44,15 @@ public class SchemaSerializer extends Serializer<Schema> {
 
   @Override
   public Schema read(Kryo kryo, Input input, Class<Schema> type) {
+    String json = input.readString();
+    Schema schema = SCHEMA_CACHE.getIfPresent(json);
+    if (schema != null) {
+      return schema;
+    }
     try {
-      return Schema.parseJson(input.readString());
+      schema = Schema.parseJson(json);
+      SCHEMA_CACHE.put(json, schema);
+      return schema;
     } catch (IOException e) {
       throw new KryoException("Fail to deserialize Schema", e);
     }
@@ -23,12 +23,15 @@ import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Unit tests for various Kryo serializers in CDAP.
@@ -87,6 +90,61 @@ public class KryoSerializerTest {
                         StructuredRecordStringConverter.toJsonString(newRecord));
   }
 
+  @Test
+  public void testStructuredRecordSeparateWrites() throws IOException {
+    Schema schema = createSchema();
+
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      records.add(StructuredRecord.builder(schema)
+                    .set("boolean", i % 2 == 0)
+                    .set("int", i)
+                    .set("long", (long) i)
+                    .set("float", 1.5f)
+                    .set("double", 2.25d)
+                    .set("string", "Hello " + i)
+                    .set("bytes", new byte[] { (byte) i })
+                    .set("enum", "b")
+                    .set("array", new int[] { i })
+                    .set("map", ImmutableMap.of("1", i))
+                    .set("union", "u" + i).build());
+    }
+
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    kryo.addDefaultSerializer(StructuredRecord.class, StructuredRecordSerializer.class);
+
+    ByteArrayOutputStream schemaBytes = new ByteArrayOutputStream();
+    try (Output output = new Output(schemaBytes)) {
+      kryo.writeObject(output, schema);
+    }
+
+    // Each record is written as a separate top-level object, the same way as in the Spark shuffle.
+    // It must only contain the schema and the record data, without any extra bytes.
+    Schema decodedSchema = null;
+    for (StructuredRecord record : records) {
+      ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+      try (Output output = new Output(recordBytes)) {
+        kryo.writeObject(output, record);
+      }
+      ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+      try (Output output = new Output(dataBytes)) {
+        new StructuredRecordDatumWriter().encode(record, new KryoEncoder(output));
+      }
+      Assert.assertEquals(schemaBytes.size() + dataBytes.size(), recordBytes.size());
+
+      StructuredRecord newRecord = kryo.readObject(new Input(recordBytes.toByteArray()), StructuredRecord.class);
+      Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record),
+                          StructuredRecordStringConverter.toJsonString(newRecord));
+
+      // The schema is only parsed once
+      if (decodedSchema != null) {
+        Assert.assertSame(decodedSchema, newRecord.getSchema());
+      }
+      decodedSchema = newRecord.getSchema();
+    }
+  }
+
   private Schema createSchema() {
     return Schema.recordOf("record",
       Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
@@ -18,6 +18,7 @@ package io.cdap.cdap.spi.data;
 
 import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.spi.data.table.StructuredTableSchema;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
 import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Range;
@@ -46,6 +47,17 @@ public interface StructuredTable extends Closeable {
    */
   void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException;
 
+  /**
+   * Insert or replace multiple rows in the table. This has the same effect as calling {@link #upsert(Collection)}
+   * for each of the rows, but the implementation can batch the writes.
+   *
+   * @param multiFields a collection of fields to write, one for each row
+   * @throws InvalidFieldException if any of the fields are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error writing to the table
+   */
+  void multiUpsert(Collection<Collection<Field<?>>> multiFields) throws InvalidFieldException, IOException;
+
   /**
    * Read a single row with all the columns from the table.
    *
@@ -73,6 +85,20 @@ public interface StructuredTable extends Closeable {
   Optional<StructuredRow> read(Collection<Field<?>> keys,
                                Collection<String> columns) throws InvalidFieldException, IOException;
 
+  /**
+   * Read multiple rows with all the columns from the table. This has the same effect as calling
+   * {@link #read(Collection)} for each of the primary keys, but the implementation can batch the reads.
+   *
+   * @param multiKeys a collection of primary keys of the rows to read
+   * @return the rows that exist in the table, in no particular order. Rows that are missing in the table are not
+   *         included in the result
+   * @throws InvalidFieldException if any of the keys are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error reading from the table
+   */
+  Collection<StructuredRow> multiRead(Collection<Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException;
+
   /**
    * Read a set of rows from the table matching the key range.
    * The rows returned will be sorted on the primary key order.
@@ -138,6 +164,17 @@ public interface StructuredTable extends Closeable {
    */
   void delete(Collection<Field<?>> keys) throws InvalidFieldException, IOException;
 
+  /**
+   * Delete multiple rows from the table. This has the same effect as calling {@link #delete(Collection)}
+   * for each of the primary keys, but the implementation can batch the deletes.
+   *
+   * @param multiKeys a collection of primary keys of the rows to delete
+   * @throws InvalidFieldException if any of the keys are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error deleting from the table
+   */
+  void multiDelete(Collection<Collection<Field<?>>> multiKeys) throws InvalidFieldException, IOException;
+
   /**
    * Delete a range of rows from the table.
    *
@@ -147,4 +184,12 @@ public interface StructuredTable extends Closeable {
    * @throws IOException if there is an error reading or deleting from the table
    */
   void deleteAll(Range keyRange) throws InvalidFieldException, IOException;
+
+  /**
+   * Get the schema of the table, which is the one of the {@link StructuredTableSpecification} that is registered
+   * for the table when the table instance is created.
+   *
+   * @return the schema of the table
+   */
+  StructuredTableSchema getSchema();
 }
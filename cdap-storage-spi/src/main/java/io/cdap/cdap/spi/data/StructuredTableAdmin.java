@@ -46,6 +46,18 @@ public interface StructuredTableAdmin {
   @Nullable
   StructuredTableSpecification getSpecification(StructuredTableId tableId);
 
+  /**
+   * Upgrade an existing StructuredTable to the {@link StructuredTableSpecification}. The specification can only add
+   * new fields to the table, see {@link StructuredTableSpecification#getAddedFields(StructuredTableSpecification)}.
+   * The added fields have no value in the existing rows of the table.
+   *
+   * @param spec the new table specification
+   * @throws IOException if there is an error upgrading the table
+   * @throws TableNotFoundException if the table does not exist
+   * @throws IllegalArgumentException if the table cannot be upgraded to the given specification
+   */
+  void upgrade(StructuredTableSpecification spec) throws IOException, TableNotFoundException;
+
   /**
    * Drop the StructuredTable synchronously. After this method is called, the existing table will get deleted. If the
    * table does not exist, no operation will be done.
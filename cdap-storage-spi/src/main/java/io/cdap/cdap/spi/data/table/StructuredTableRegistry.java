@@ -18,6 +18,7 @@ package io.cdap.cdap.spi.data.table;
 
 import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 
 import java.io.IOException;
 import javax.annotation.Nullable;
@@ -44,6 +45,15 @@ public interface StructuredTableRegistry {
   void registerSpecification(StructuredTableSpecification specification)
     throws IOException, TableAlreadyExistsException;
 
+  /**
+   * Replace the registered specification of a table.
+   *
+   * @param specification the new table specification
+   * @throws IOException if not able to write to the underlying storage
+   * @throws TableNotFoundException if the table is not registered
+   */
+  void updateSpecification(StructuredTableSpecification specification) throws IOException, TableNotFoundException;
+
   /**
    * Get the specification of a table if it exists in the registry.
    *
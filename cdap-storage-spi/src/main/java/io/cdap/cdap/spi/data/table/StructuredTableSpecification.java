@@ -91,6 +91,33 @@ public final class StructuredTableSpecification {
     return indexes;
   }
 
+  /**
+   * Returns the fields of this specification that are not in the given specification of the same table. A table
+   * can only be upgraded to a specification that keeps the primary keys, the indexes and all the existing fields
+   * unchanged, and only adds new fields.
+   *
+   * @param existing the specification to upgrade from
+   * @return the fields that the upgrade adds, in the order of this specification
+   * @throws IllegalArgumentException if the table cannot be upgraded from the existing specification to this one
+   */
+  public List<FieldType> getAddedFields(StructuredTableSpecification existing) {
+    if (!tableId.equals(existing.getTableId())) {
+      throw new IllegalArgumentException(String.format("Cannot upgrade table %s to the specification of table %s",
+                                                       existing.getTableId(), tableId));
+    }
+    if (!primaryKeys.equals(existing.getPrimaryKeys()) || !indexes.equals(existing.getIndexes())) {
+      throw new IllegalArgumentException(
+        String.format("Cannot change the primary keys or indexes of table %s from %s, %s to %s, %s", tableId,
+                      existing.getPrimaryKeys(), existing.getIndexes(), primaryKeys, indexes));
+    }
+    if (!fieldTypes.containsAll(existing.getFieldTypes())) {
+      throw new IllegalArgumentException(
+        String.format("Cannot remove or change the type of fields of table %s from %s to %s", tableId,
+                      existing.getFieldTypes(), fieldTypes));
+    }
+    return fieldTypes.stream().filter(f -> !existing.getFieldTypes().contains(f)).collect(Collectors.toList());
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -445,6 +446,131 @@ public abstract class StructuredTableTest {
     });
   }
 
+  @Test
+  public void testMultiReadUpsertDelete() throws Exception {
+    int max = 10;
+    List<Collection<Field<?>>> expected = new ArrayList<>();
+    List<Collection<Field<?>>> allKeys = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      // give some rows fewer columns to test writing rows with different fields
+      List<Field<?>> fields = new ArrayList<>(Arrays.asList(Fields.intField(KEY, i),
+                                                            Fields.longField(KEY2, (long) i),
+                                                            Fields.stringField(STRING_COL, VAL + i)));
+      if (i % 2 == 0) {
+        fields.add(Fields.longField(LONG_COL, (long) i));
+      }
+      expected.add(fields);
+      allKeys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.multiUpsert(expected);
+    });
+
+    // read existing and non-existing keys
+    List<Collection<Field<?>>> keys = new ArrayList<>(allKeys.subList(2, 6));
+    keys.add(Arrays.asList(Fields.intField(KEY, max), Fields.longField(KEY2, (long) max)));
+    Assert.assertEquals(expected.subList(2, 6), multiReadSimpleStructuredRows(keys));
+    Assert.assertEquals(expected, multiReadSimpleStructuredRows(allKeys));
+    Assert.assertEquals(Collections.emptyList(), multiReadSimpleStructuredRows(Collections.emptyList()));
+
+    // delete some of the rows
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.multiDelete(allKeys.subList(0, 3));
+    });
+    Assert.assertEquals(expected.subList(3, max), multiReadSimpleStructuredRows(allKeys));
+
+    // keys must contain all the primary keys
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try {
+        table.multiRead(Collections.singleton(Collections.singleton(Fields.intField(KEY, 1))));
+        Assert.fail("Expected InvalidFieldException for reading with partial primary keys");
+      } catch (InvalidFieldException e) {
+        // Expected
+      }
+    });
+  }
+
+  @Test
+  public void testUpgrade() throws Exception {
+    StructuredTableId tableId = new StructuredTableId("upgradeTable");
+    StructuredTableSpecification oldSpec = new StructuredTableSpecification.Builder()
+      .withId(tableId)
+      .withFields(Fields.intType(KEY), Fields.stringType(STRING_COL))
+      .withPrimaryKeys(KEY)
+      .build();
+    StructuredTableSpecification newSpec = new StructuredTableSpecification.Builder(oldSpec)
+      .withFields(Fields.intType(KEY), Fields.stringType(STRING_COL), Fields.longType(LONG_COL))
+      .build();
+
+    StructuredTableAdmin admin = getStructuredTableAdmin();
+    admin.create(oldSpec);
+    try {
+      getTransactionRunner().run(context -> {
+        StructuredTable table = context.getTable(tableId);
+        Assert.assertNull(table.getSchema().getType(LONG_COL));
+        table.upsert(Arrays.asList(Fields.intField(KEY, 1), Fields.stringField(STRING_COL, VAL + 1)));
+        try {
+          table.upsert(Arrays.asList(Fields.intField(KEY, 2), Fields.longField(LONG_COL, 2L)));
+          Assert.fail("Expected InvalidFieldException for writing a field that is not in the table");
+        } catch (InvalidFieldException e) {
+          // Expected
+        }
+      });
+
+      // Fields can only be added by an upgrade
+      try {
+        admin.upgrade(new StructuredTableSpecification.Builder(oldSpec)
+                        .withFields(Fields.intType(KEY), Fields.longType(STRING_COL))
+                        .build());
+        Assert.fail("Expected IllegalArgumentException for changing the type of a field");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+
+      admin.upgrade(newSpec);
+      Assert.assertEquals(newSpec, admin.getSpecification(tableId));
+
+      getTransactionRunner().run(context -> {
+        StructuredTable table = context.getTable(tableId);
+        Assert.assertEquals(FieldType.Type.LONG, table.getSchema().getType(LONG_COL));
+        table.upsert(Arrays.asList(Fields.intField(KEY, 2), Fields.stringField(STRING_COL, VAL + 2),
+                                   Fields.longField(LONG_COL, 2L)));
+
+        // The existing row has no value for the added field
+        StructuredRow row = table.read(Collections.singleton(Fields.intField(KEY, 1))).get();
+        Assert.assertEquals(VAL + 1, row.getString(STRING_COL));
+        Assert.assertNull(row.getLong(LONG_COL));
+        row = table.read(Collections.singleton(Fields.intField(KEY, 2))).get();
+        Assert.assertEquals(VAL + 2, row.getString(STRING_COL));
+        Assert.assertEquals(2L, (long) row.getLong(LONG_COL));
+      });
+    } finally {
+      admin.drop(tableId);
+    }
+  }
+
+  private List<Collection<Field<?>>> multiReadSimpleStructuredRows(Collection<Collection<Field<?>>> keys)
+    throws Exception {
+    List<Collection<Field<?>>> actual = new ArrayList<>();
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      for (StructuredRow row : table.multiRead(keys)) {
+        List<Field<?>> fields = convertRowToFields(row, Arrays.asList(KEY, KEY2, STRING_COL));
+        if (row.getLong(LONG_COL) != null) {
+          fields.add(Fields.longField(LONG_COL, row.getLong(LONG_COL)));
+        }
+        actual.add(fields);
+      }
+    });
+    // rows are returned in no particular order
+    actual.sort(Comparator.comparing(fields -> (Integer) fields.iterator().next().getValue()));
+    return actual;
+  }
+
   private List<Collection<Field<?>>> writeSimpleStructuredRows(int max, String suffix) throws Exception {
     List<Collection<Field<?>>> expected = new ArrayList<>(max);
     // Write rows in reverse order to test sorting
@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data.table;
 
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
+import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.table.field.FieldType;
 import io.cdap.cdap.spi.data.table.field.Fields;
 import org.junit.After;
@@ -105,4 +106,27 @@ public abstract class StructuredTableRegistryTest {
     registry.removeSpecification(TABLE2);
     Assert.assertTrue(registry.isEmpty());
   }
+
+  @Test
+  public void testUpdateSpecification() throws Exception {
+    StructuredTableRegistry registry = getStructuredTableRegistry();
+    registry.initialize();
+
+    StructuredTableSpecification updated = new StructuredTableSpecification.Builder(SPEC1)
+      .withFields(KEY_FIELD, STR_FIELD, LONG_FIELD, Fields.floatType("f"))
+      .build();
+
+    // Updating a table that is not registered should fail
+    try {
+      registry.updateSpecification(updated);
+      Assert.fail("Expected update of a non-existing table to fail");
+    } catch (TableNotFoundException e) {
+      // Expected
+    }
+    Assert.assertNull(registry.getSpecification(TABLE1));
+
+    registry.registerSpecification(SPEC1);
+    registry.updateSpecification(updated);
+    Assert.assertEquals(updated, registry.getSpecification(TABLE1));
+  }
 }
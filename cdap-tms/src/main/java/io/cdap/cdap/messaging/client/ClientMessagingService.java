@@ -25,7 +25,6 @@ import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
@@ -49,10 +48,8 @@ import io.cdap.common.http.HttpRequestConfig;
 import io.cdap.common.http.HttpResponse;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
@@ -368,15 +365,9 @@ public final class ClientMessagingService implements MessagingService {
   private final class ClientMessageFetcher extends MessageFetcher {
 
     private final TopicId topicId;
-    private final DatumReader<GenericRecord> messageReader;
-    private GenericRecord messageRecord;
 
     private ClientMessageFetcher(TopicId topicId) {
       this.topicId = topicId;
-
-      // These are for reading individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageReader = new GenericDatumReader<>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
     }
 
     @Override
@@ -398,10 +389,23 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
+      // If poll timeout is set, the server will hold the response until new messages are available
+      // or the timeout expired. The read timeout is extended by the poll timeout.
+      long pollTimeoutMillis = getPollTimeoutMillis();
+      String path = createTopicPath(topicId) + "/poll";
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      if (pollTimeoutMillis > 0) {
+        path += "?timeout=" + pollTimeoutMillis;
+        // A read timeout of 0 means infinite, hence no need to extend it
+        if (readTimeout > 0) {
+          readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout + pollTimeoutMillis);
+        }
+      }
+
+      URL url = remoteClient.resolve(path);
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      urlConn.setReadTimeout(readTimeout);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       urlConn.setDoInput(true);
@@ -457,13 +461,11 @@ public final class ClientMessagingService implements MessagingService {
 
             itemCount--;
 
-            // Use DatumReader to decode individual message
-            // This provides greater flexibility on schema evolution.
-            // The response will likely always be an array, but the element schema can evolve.
-            messageRecord = messageReader.read(messageRecord, decoder);
-
-            return new RawMessage(Bytes.toBytes((ByteBuffer) messageRecord.get("id")),
-                                  Bytes.toBytes((ByteBuffer) messageRecord.get("payload")));
+            // Decode the id and payload fields of the message record directly into byte arrays
+            // to avoid the intermediate GenericRecord and ByteBuffer copies.
+            byte[] id = readBytes(decoder);
+            byte[] payload = readBytes(decoder);
+            return new RawMessage(id, payload);
           } catch (IOException e) {
             throw Throwables.propagate(e);
           }
@@ -476,5 +478,18 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+
+    /**
+     * Reads an avro bytes value into a new byte array.
+     */
+    private byte[] readBytes(Decoder decoder) throws IOException {
+      long length = decoder.readLong();
+      if (length < 0 || length > Integer.MAX_VALUE) {
+        throw new IOException("Invalid length of bytes in response: " + length);
+      }
+      byte[] bytes = new byte[(int) length];
+      decoder.readFixed(bytes);
+      return bytes;
+    }
   }
 }
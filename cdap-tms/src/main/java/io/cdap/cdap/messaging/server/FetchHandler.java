@@ -35,26 +35,25 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +64,17 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -86,19 +92,35 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
+  private final long maxPollTimeoutMillis;
+  private final ExecutorService pollExecutor;
   private int messageChunkSize;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_MAX_POLL_TIMEOUT_MS);
+
+    // Creates a executor that will shrink to 0 threads if left idle.
+    // Requests that wait for new messages are executed in this executor to avoid blocking the http server threads.
+    // When all threads are busy, requests will not wait.
+    int pollThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_POLL_THREADS);
+    this.pollExecutor = new ThreadPoolExecutor(0, pollThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                                               Threads.createDaemonThreadFactory("messaging-fetch-poller-%d"));
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    pollExecutor.shutdownNow();
   }
 
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -112,10 +134,15 @@ public final class FetchHandler extends AbstractHttpHandler {
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    MessageFetcher fetcher = createFetcher(datumReader.read(null, decoder), topicId);
+    CloseableIterator<RawMessage> iterator = fetcher.fetch();
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      long pollTimeoutMillis = Math.min(timeoutMillis, maxPollTimeoutMillis);
+      if (pollTimeoutMillis > 0 && !iterator.hasNext() && pollAsync(fetcher, pollTimeoutMillis, topicId, responder)) {
+        iterator.close();
+        return;
+      }
+      sendMessages(iterator, responder);
     } catch (Throwable t) {
       iterator.close();
       throw t;
@@ -123,10 +150,52 @@ public final class FetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Waits for new messages in the poll executor and sends the response from there.
+   *
+   * @return {@code true} if the poll request was accepted by the executor, {@code false} otherwise
+   */
+  private boolean pollAsync(MessageFetcher fetcher, long pollTimeoutMillis,
+                            TopicId topicId, HttpResponder responder) {
+    try {
+      pollExecutor.execute(() -> {
+        CloseableIterator<RawMessage> iterator;
+        try {
+          iterator = fetcher.setPollTimeout(pollTimeoutMillis, TimeUnit.MILLISECONDS).fetch();
+        } catch (TopicNotFoundException e) {
+          responder.sendString(HttpResponseStatus.NOT_FOUND, e.getMessage());
+          return;
+        } catch (Exception e) {
+          LOG.warn("Exception raised when fetching messages from topic {}", topicId, e);
+          responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+          return;
+        }
+        try {
+          sendMessages(iterator, responder);
+        } catch (Throwable t) {
+          iterator.close();
+          SAMPLING_LOG.warn("Exception raised when sending messages back to client", t);
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      LOG.trace("No thread available for waiting for new messages from topic {}", topicId);
+      return false;
+    }
+  }
+
+  /**
+   * Streams messages from the given {@link CloseableIterator} as the response.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private void sendMessages(CloseableIterator<RawMessage> iterator, HttpResponder responder) {
+    responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                          new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+  }
+
+  /**
+   * Creates a {@link MessageFetcher} based on the given fetch request.
+   */
+  private MessageFetcher createFetcher(GenericRecord fetchRequest,
+                                       TopicId topicId) throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
 
     Object startFrom = fetchRequest.get("startFrom");
@@ -153,45 +222,32 @@ public final class FetchHandler extends AbstractHttpHandler {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
     }
 
-    return fetcher.fetch();
+    return fetcher;
   }
 
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
-   * all messages in memory before sending out.
+   * all messages in memory before sending out. The avro framing is written to pooled buffers, while large message
+   * payloads are wrapped as components of a {@link CompositeByteBuf} without copying.
    */
   private static class MessagesBodyProducer extends BodyProducer {
 
+    // Byte arrays smaller than this size are copied into the framing buffer instead of being wrapped,
+    // since a component in CompositeByteBuf has higher overhead than copying a small array.
+    private static final int WRAP_THRESHOLD = 1024;
+
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
+    private final ByteBufAllocator allocator;
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
+      this.allocator = PooledByteBufAllocator.DEFAULT;
     }
 
     @Override
@@ -201,13 +257,6 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
       // Try to buffer up to buffer size
       int size = 0;
       messages.clear();
@@ -221,30 +270,65 @@ public final class FetchHandler extends AbstractHttpHandler {
         size += message.getId().length + message.getPayload().length + 8;
       }
 
-      encoder.setItemCount(messages.size());
-      for (RawMessage message : messages) {
-        encoder.startItem();
+      CompositeByteBuf chunk = allocator.compositeBuffer(Integer.MAX_VALUE);
+      ByteBuf buffer = allocator.buffer(Math.min(size, messageChunkSize) + 16);
+      try {
+        // The response is an avro array of records with two bytes fields, id and payload.
+        // An array is encoded as blocks, each with the item count followed by the items. The array ends with
+        // a block of zero item count.
+        if (!messages.isEmpty()) {
+          writeLong(buffer, messages.size());
+        }
+        for (RawMessage message : messages) {
+          buffer = writeBytes(chunk, buffer, message.getId());
+          buffer = writeBytes(chunk, buffer, message.getPayload());
+        }
+
+        if (!iterator.hasNext()) {
+          arrayEnded = true;
+          writeLong(buffer, 0L);
+        }
 
-        // Write individual message (array element) with DatumWrite.
-        // This provides greater flexibility on schema evolution.
-        // The response will likely always be an array, but the element schema can evolve.
-        messageRecord.put("id", message.getId());
-        messageRecord.put("payload", message.getPayload());
-        messageWriter.write(messageRecord, encoder);
+        chunk.addComponent(true, buffer);
+        return chunk;
+      } catch (Throwable t) {
+        buffer.release();
+        chunk.release();
+        throw t;
       }
+    }
 
-      if (!iterator.hasNext()) {
-        arrayEnded = true;
-        encoder.writeArrayEnd();
+    /**
+     * Writes an avro bytes value. Large arrays are added as a wrapped component to the given
+     * {@link CompositeByteBuf}, in which case the current buffer is added to the composite buffer first
+     * and a new buffer is returned for writing subsequent data.
+     */
+    private ByteBuf writeBytes(CompositeByteBuf chunk, ByteBuf buffer, byte[] bytes) {
+      writeLong(buffer, bytes.length);
+      if (bytes.length < WRAP_THRESHOLD) {
+        buffer.writeBytes(bytes);
+        return buffer;
       }
+      chunk.addComponent(true, buffer);
+      chunk.addComponent(true, Unpooled.wrappedBuffer(bytes));
+      return allocator.buffer();
+    }
 
-      return chunk.copy();
+    /**
+     * Writes a long in avro zig-zag variable length encoding.
+     */
+    private void writeLong(ByteBuf buffer, long value) {
+      long n = (value << 1) ^ (value >> 63);
+      while ((n & ~0x7FL) != 0) {
+        buffer.writeByte((int) ((n & 0x7F) | 0x80));
+        n >>>= 7;
+      }
+      buffer.writeByte((int) n);
     }
 
     @Override
     public void finished() throws Exception {
       iterator.close();
-      chunk.release();
     }
 
     @Override
@@ -26,48 +26,60 @@ import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Class to support writing to message/payload tables with high concurrency.
  *
- * It uses a non-blocking algorithm to batch writes from concurrent threads. The algorithm is the same as
- * the one used in ConcurrentStreamWriter.
- *
- * The algorithm is like this:
+ * It uses group commit to batch writes from concurrent threads. The algorithm is like this:
  *
  * When a thread that received a request, performs the following:
  *
  * <pre>
- * 1. Constructs a PendingStoreRequest locally and enqueue it to a ConcurrentLinkedQueue.
- * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
- * 5. The message table store method will consume the Iterator until it is empty
+ * 1. Constructs a PendingStoreRequest locally and enqueue it to a bounded queue. If the queue is full,
+ *    the thread blocks until there is space in the queue.
+ * 2. Waits until either the request is COMPLETED, or no other thread is writing.
+ * 3. If the request is COMPLETED, returns the result.
+ * 4. Otherwise this thread becomes the writer. It drains up to max batch size of PendingStoreRequest from the queue,
+ *    optionally waiting up to the max linger time for the batch to fill up.
+ * 5. The message table store method will consume the batch.
  * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 7. Releases the writer role and wakes up all waiting threads, then go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * Waiting threads are parked instead of spinning. Since every waiting thread has its request in the queue, the
+ * queue will be drained as long as there are waiting threads.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+  static final long DEFAULT_MAX_LINGER_MILLIS = 0L;
+  static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+  // Upper bounds of the histogram buckets for the batch size and commit latency metrics
+  private static final long[] BATCH_SIZE_BUCKETS = { 1, 10, 100, 1000 };
+  private static final long[] COMMIT_LATENCY_MS_BUCKETS = { 1, 5, 10, 50, 100, 500, 1000 };
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
-  private final AtomicBoolean writerFlag;
+  private final Object writerLock;
   private final AtomicBoolean closed;
 
+  @GuardedBy("writerLock")
+  private boolean writing;
+
   /**
    * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
    */
@@ -76,17 +88,38 @@ final class ConcurrentMessageWriter implements Closeable {
     this(messagesWriter, new NoopMetricsContext());
   }
 
+  /**
+   * Constructor with default batching configurations. This constructor should only be used in unit-testing.
+   */
+  @VisibleForTesting
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LINGER_MILLIS, DEFAULT_MAX_QUEUE_SIZE);
+  }
+
   /**
    * Constructor.
    *
    * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param maxBatchSize maximum number of {@link StoreRequest} to persist in one batch
+   * @param maxLingerMillis maximum time in milliseconds to wait for a batch to fill up before persisting it
+   * @param maxQueueSize maximum number of pending {@link StoreRequest} before blocking callers
    */
-  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          int maxBatchSize, long maxLingerMillis, int maxQueueSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+    }
+    if (maxLingerMillis < 0) {
+      throw new IllegalArgumentException("Max linger time must not be negative: " + maxLingerMillis);
+    }
+    if (maxQueueSize <= 0) {
+      throw new IllegalArgumentException("Max queue size must be positive: " + maxQueueSize);
+    }
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
-    this.writerFlag = new AtomicBoolean();
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, maxBatchSize, maxLingerMillis, maxQueueSize);
+    this.writerLock = new Object();
     this.closed = new AtomicBoolean();
   }
 
@@ -107,13 +140,19 @@ final class ConcurrentMessageWriter implements Closeable {
     }
 
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
-    pendingStoreQueue.enqueue(pendingStoreRequest);
+    try {
+      pendingStoreQueue.enqueue(pendingStoreRequest);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to enqueue write request to "
+                                         + storeRequest.getTopicId());
+    }
 
     metricsCollector.increment("persist.requested", 1L);
 
     while (!pendingStoreRequest.isCompleted()) {
-      if (!tryWrite()) {
-        Thread.yield();
+      if (awaitWriter(pendingStoreRequest)) {
+        write();
       }
     }
 
@@ -134,21 +173,51 @@ final class ConcurrentMessageWriter implements Closeable {
   }
 
   /**
-   * Tries to acquire the writer flag and persist the pending requests.
+   * Parks the current thread until either the given request is completed or no other thread is writing.
+   * Since the request is already in the queue, the wait cannot be abandoned, hence interrupts are deferred
+   * until this method returns.
    *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
-   *         otherwise {@code false} will be returned.
+   * @param request the request to wait for, or {@code null} to wait for the writer role unconditionally
+   * @return {@code true} if the current thread acquired the writer role and must call {@link #write()};
+   *         {@code false} if the request is completed.
    */
-  private boolean tryWrite() {
-    if (!writerFlag.compareAndSet(false, true)) {
-      return false;
+  private boolean awaitWriter(@Nullable PendingStoreRequest request) {
+    boolean interrupted = false;
+    try {
+      synchronized (writerLock) {
+        while (writing && (request == null || !request.isCompleted())) {
+          try {
+            writerLock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (request != null && request.isCompleted()) {
+          return false;
+        }
+        writing = true;
+        return true;
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
+  }
+
+  /**
+   * Persists one batch of pending requests, then releases the writer role and wakes up all waiting threads.
+   * This method must be called after acquiring the writer role through {@link #awaitWriter(PendingStoreRequest)}.
+   */
+  private void write() {
     try {
       pendingStoreQueue.persist(messagesWriter);
     } finally {
-      writerFlag.set(false);
+      synchronized (writerLock) {
+        writing = false;
+        writerLock.notifyAll();
+      }
     }
-    return true;
   }
 
   @Override
@@ -157,68 +226,125 @@ final class ConcurrentMessageWriter implements Closeable {
       return;
     }
     // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
-      Thread.yield();
+    // No new request can be enqueued through the persist method since the closed flag was already set to true.
+    while (!pendingStoreQueue.isEmpty()) {
+      awaitWriter(null);
+      write();
+    }
+    // Wait for the last writer to finish before closing the underlying writer
+    awaitWriter(null);
+    try {
+      messagesWriter.close();
+    } finally {
+      synchronized (writerLock) {
+        writing = false;
+        writerLock.notifyAll();
+      }
     }
-    messagesWriter.close();
   }
 
   /**
-   * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * A bounded queue to provide batches of {@link StoreRequest} to {@link StoreRequestWriter}.
+   * Except the {@link #enqueue(PendingStoreRequest)} and {@link #isEmpty()} methods, all methods on this class
+   * can only be called while holding the writer role.
    */
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
-    private final Queue<PendingStoreRequest> writeQueue;
+    private final BlockingQueue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final Histogram batchSizeHistogram;
+    private final Histogram commitLatencyHistogram;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector,
+                              int maxBatchSize, long maxLingerMillis, int maxQueueSize) {
       this.metricsCollector = metricsCollector;
-      this.writeQueue = new ConcurrentLinkedQueue<>();
-      this.inflightRequests = new ArrayList<>(100);
+      this.writeQueue = new ArrayBlockingQueue<>(maxQueueSize);
+      this.inflightRequests = new ArrayList<>(Math.min(maxBatchSize, 100));
+      this.maxBatchSize = maxBatchSize;
+      this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+      this.batchSizeHistogram = new Histogram("persist.batch.size", BATCH_SIZE_BUCKETS);
+      this.commitLatencyHistogram = new Histogram("persist.commit.latency.ms", COMMIT_LATENCY_MS_BUCKETS);
+    }
+
+    /**
+     * Puts the given {@link PendingStoreRequest} to the queue, blocking if the queue is full.
+     */
+    void enqueue(PendingStoreRequest storeRequest) throws InterruptedException {
+      if (!writeQueue.offer(storeRequest)) {
+        metricsCollector.increment("persist.queue.full", 1L);
+        writeQueue.put(storeRequest);
+      }
     }
 
     /**
-     * Puts the given {@link PendingStoreRequest} to the concurrent queue.
+     * Returns {@code true} if there is no pending request in the queue.
      */
-    void enqueue(PendingStoreRequest storeRequest) {
-      writeQueue.add(storeRequest);
+    boolean isEmpty() {
+      return writeQueue.isEmpty();
     }
 
     /**
-     * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     * Persists up to max batch size of {@link PendingStoreRequest} currently in the queue with the given writer.
      */
     void persist(StoreRequestWriter<?> writer) {
-      // Capture all current events.
-      // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
+      // Capture the current events instead of using a live iterator to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
-      // The number of requests in the queue is bounded by the number of threads that call this method.
-      // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
-      // the thread pool size used by the http service.
       inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
-      while (request != null) {
-        inflightRequests.add(request);
-        request = writeQueue.poll();
+      writeQueue.drainTo(inflightRequests, maxBatchSize);
+      linger();
+
+      if (inflightRequests.isEmpty()) {
+        return;
       }
 
-      metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      int batchSize = inflightRequests.size();
+      metricsCollector.gauge("persist.queue.size", batchSize);
+      metricsCollector.increment("persist.batches", 1L);
+      batchSizeHistogram.update(metricsCollector, batchSize);
 
+      long startTime = System.nanoTime();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+      } finally {
+        commitLatencyHistogram.update(metricsCollector,
+                                      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      }
+    }
+
+    /**
+     * Waits up to the max linger time for the batch to fill up.
+     */
+    private void linger() {
+      if (maxLingerNanos <= 0L || inflightRequests.size() >= maxBatchSize) {
+        return;
+      }
+      long deadline = System.nanoTime() + maxLingerNanos;
+      try {
+        long remaining = maxLingerNanos;
+        while (remaining > 0L && inflightRequests.size() < maxBatchSize) {
+          PendingStoreRequest request = writeQueue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (request == null) {
+            break;
+          }
+          inflightRequests.add(request);
+          writeQueue.drainTo(inflightRequests, maxBatchSize - inflightRequests.size());
+          remaining = deadline - System.nanoTime();
+        }
+      } catch (InterruptedException e) {
+        // Stop lingering and write whatever is collected
+        Thread.currentThread().interrupt();
       }
     }
 
     /**
      * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
-     * This method must be called while holding the writer flag.
+     * This method must be called while holding the writer role.
      */
     void completeAll(@Nullable Throwable failureCause) {
       Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
@@ -229,6 +355,33 @@ final class ConcurrentMessageWriter implements Closeable {
     }
   }
 
+  /**
+   * Emits the distribution of a value as counters, one for each bucket. The metric for a bucket is named as
+   * {@code [name].[upper bound]}, with the last one being {@code [name].inf}.
+   */
+  private static final class Histogram {
+
+    private final long[] buckets;
+    private final String[] metricNames;
+
+    Histogram(String name, long[] buckets) {
+      this.buckets = buckets;
+      this.metricNames = new String[buckets.length + 1];
+      for (int i = 0; i < buckets.length; i++) {
+        metricNames[i] = name + "." + buckets[i];
+      }
+      metricNames[buckets.length] = name + ".inf";
+    }
+
+    void update(MetricsCollector metricsCollector, long value) {
+      int idx = 0;
+      while (idx < buckets.length && value > buckets[idx]) {
+        idx++;
+      }
+      metricsCollector.increment(metricNames[idx], 1L);
+    }
+  }
+
   /**
    * Straightforward implementation of {@link RollbackDetail}
    */
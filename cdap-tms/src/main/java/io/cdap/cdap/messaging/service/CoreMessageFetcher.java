@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -44,17 +45,56 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long pollTimeoutMillis = getPollTimeoutMillis();
+    if (pollTimeoutMillis <= 0) {
+      return createIterator();
+    }
+
+    // Long polling. Keep fetching until there is message available or the timeout expired.
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + pollTimeoutMillis;
+    while (true) {
+      // Capture the generation before fetching, so that any publish happening after it will wake up the wait.
+      long generation = publishNotifier.getGeneration(topicId);
+      CloseableIterator<RawMessage> iterator = createIterator();
+      long remaining = deadline - System.currentTimeMillis();
+      try {
+        if (remaining <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        closeQuietly(iterator);
+        throw t;
+      }
+      closeQuietly(iterator);
+
+      try {
+        publishNotifier.await(topicId, generation, remaining, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for messages from " + topicId);
+      }
+    }
+  }
+
+  /**
+   * Creates a new {@link CloseableIterator} for iterating over messages in the topic.
+   */
+  private CloseableIterator<RawMessage> createIterator() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
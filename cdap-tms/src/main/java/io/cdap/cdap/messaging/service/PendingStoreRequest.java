@@ -30,7 +30,7 @@ final class PendingStoreRequest extends StoreRequest {
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
 
-  private boolean completed;
+  private volatile boolean completed;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -65,8 +65,10 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
+    // The failure cause must be set before the volatile write, such that it is visible to threads that see
+    // the request completed without holding any lock.
     this.failureCause = failureCause;
+    completed = true;
   }
 
   void setStartTimestamp(long startTimestamp) {
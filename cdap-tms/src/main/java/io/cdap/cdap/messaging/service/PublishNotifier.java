@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks message publishing on topics so that consumers can wait for new messages instead of polling.
+ * Each topic has a generation number that is incremented on every publish. A consumer captures the generation
+ * before fetching and, if nothing was fetched, waits for the generation to change.
+ */
+final class PublishNotifier {
+
+  private final ConcurrentMap<TopicId, Generation> generations = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current publish generation of the given topic.
+   */
+  long getGeneration(TopicId topicId) {
+    return getOrCreate(topicId).get();
+  }
+
+  /**
+   * Signals that new messages were published to the given topic. Only topics that have been waited on are tracked.
+   */
+  void published(TopicId topicId) {
+    Generation generation = generations.get(topicId);
+    if (generation != null) {
+      generation.increment();
+    }
+  }
+
+  /**
+   * Waits until the publish generation of the given topic is different from the given one or the timeout expired.
+   *
+   * @return {@code true} if the generation has changed, {@code false} if timeout expired
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  boolean await(TopicId topicId, long generation, long timeout, TimeUnit unit) throws InterruptedException {
+    return getOrCreate(topicId).await(generation, unit.toNanos(timeout));
+  }
+
+  /**
+   * Stops tracking the given topic. It is called when the topic is deleted.
+   */
+  void remove(TopicId topicId) {
+    Generation generation = generations.remove(topicId);
+    if (generation != null) {
+      // Wake up all the waiting consumers
+      generation.increment();
+    }
+  }
+
+  private Generation getOrCreate(TopicId topicId) {
+    return generations.computeIfAbsent(topicId, k -> new Generation());
+  }
+
+  /**
+   * The publish generation of a topic.
+   */
+  private static final class Generation {
+
+    private long value;
+
+    synchronized long get() {
+      return value;
+    }
+
+    synchronized void increment() {
+      value++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long generation, long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      long remaining = timeoutNanos;
+      while (value == generation && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return value != generation;
+    }
+  }
+}
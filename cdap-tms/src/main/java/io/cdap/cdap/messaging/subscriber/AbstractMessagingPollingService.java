@@ -30,6 +30,7 @@ import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.common.service.AbstractRetryableScheduledService;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.messaging.context.LongPollingMessageFetcher;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.slf4j.Logger;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -150,14 +152,13 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   }
 
   /**
-   * Fetching messages from TMS.
+   * Fetching messages from TMS. If the {@link MessageFetcher} supports long polling, the fetch waits
+   * up to the empty fetch delay for new messages if there is no message available.
    */
   protected List<Message> fetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
-    MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+    try (CloseableIterator<Message> iterator = fetch(getMessagingContext().getMessageFetcher(), messageId)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -208,6 +209,20 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return 0L;
   }
 
+  /**
+   * Fetches messages from the topic using the given {@link MessageFetcher}.
+   */
+  private CloseableIterator<Message> fetch(MessageFetcher messageFetcher,
+                                           @Nullable String messageId) throws TopicNotFoundException, IOException {
+    if (messageFetcher instanceof LongPollingMessageFetcher && emptyFetchDelayMillis > 0) {
+      // Wait for new messages instead of sleeping for the empty fetch delay
+      LongPollingMessageFetcher fetcher = (LongPollingMessageFetcher) messageFetcher;
+      return fetcher.fetch(topicId.getNamespace(), topicId.getTopic(), fetchSize,
+                           messageId, emptyFetchDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    return messageFetcher.fetch(topicId.getNamespace(), topicId.getTopic(), fetchSize, messageId);
+  }
+
   /**
    * Returns the publish time encoded in the given message id.
    *
@@ -31,6 +31,7 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
@@ -58,7 +59,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -442,6 +448,107 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testConsumeEncoding() throws Exception {
+    // This test is to verify the response encoded by the body producer is decoded by the client correctly
+    // for different message sizes relative to the chunk size
+    TopicId topicId = new NamespaceId("ns1").topic("testConsumeEncoding");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetching from an empty topic should get an empty response
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+
+    // Payloads smaller, equal and larger than the chunk size, including ones that fill up a chunk exactly,
+    // and ones around the size that get sent without copying
+    int chunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    int chunkFillSize = chunkSize - MessageId.RAW_ID_SIZE - 8;
+    Random random = new Random(0);
+    List<byte[]> payloads = new ArrayList<>();
+    for (int size : Arrays.asList(1, chunkFillSize - 1, chunkFillSize, chunkFillSize + 1, chunkSize - 1, chunkSize,
+                                  chunkSize + 1, 1023, 1024, 1025, chunkSize * 10, 100000, 1)) {
+      payloads.add(randomBytes(random, size));
+    }
+    client.publish(StoreRequestBuilder.of(topicId).addPayloads(payloads).build());
+    List<RawMessage> messages = fetchAll(client.prepareFetch(topicId));
+    assertPayloads(payloads, messages);
+
+    // Fetching after the last message should get an empty response
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setStartMessage(messages.get(messages.size() - 1).getId(), false).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+
+    // Many messages, which are split into many chunks
+    List<byte[]> manyPayloads = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      manyPayloads.add(randomBytes(random, 1 + (i * 37) % (chunkSize * 3)));
+    }
+    client.publish(StoreRequestBuilder.of(topicId).addPayloads(manyPayloads).build());
+    List<RawMessage> manyMessages = fetchAll(client.prepareFetch(topicId)
+                                               .setStartMessage(messages.get(messages.size() - 1).getId(), false));
+    assertPayloads(manyPayloads, manyMessages);
+
+    // Transactional fetch, which reads the messages stored in the payload table
+    List<byte[]> txPayloads = new ArrayList<>();
+    for (int size : Arrays.asList(1, chunkSize, 1024, 100000, chunkFillSize)) {
+      txPayloads.add(randomBytes(random, size));
+    }
+    client.storePayload(StoreRequestBuilder.of(topicId).addPayloads(txPayloads).setTransaction(10L).build());
+    client.publish(StoreRequestBuilder.of(topicId).setTransaction(10L).build());
+    // Messages of an invalid transaction should not be fetched
+    client.publish(StoreRequestBuilder.of(topicId).addPayloads(payloads).setTransaction(11L).build());
+
+    // Fetch everything in one response, in which the transactional messages come last
+    Transaction transaction = new Transaction(12L, 12L, new long[] {11L}, new long[0], 0L);
+    List<RawMessage> txMessages = fetchAll(client.prepareFetch(topicId).setTransaction(transaction));
+    List<byte[]> allPayloads = new ArrayList<>(payloads);
+    allPayloads.addAll(manyPayloads);
+    allPayloads.addAll(txPayloads);
+    assertPayloads(allPayloads, txMessages);
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Poll on an empty topic should return empty after the timeout
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setPollTimeout(200, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+
+    // Publish a message from a separate thread while the fetch is waiting
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = executor.submit(() -> {
+        TimeUnit.MILLISECONDS.sleep(500);
+        return client.publish(StoreRequestBuilder.of(topicId).addPayload("m1").build());
+      });
+
+      long startTime = System.nanoTime();
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(60, TimeUnit.SECONDS).fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime) < 60);
+      future.get();
+
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -596,4 +703,26 @@ public class MessagingHttpServiceTest {
                           .map(RawMessage::getPayload)
                           .map(Bytes::toString).collect(Collectors.toList()));
   }
+
+  private byte[] randomBytes(Random random, int size) {
+    byte[] bytes = new byte[size];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  private List<RawMessage> fetchAll(MessageFetcher fetcher) throws Exception {
+    List<RawMessage> messages = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+      Iterators.addAll(messages, iterator);
+    }
+    return messages;
+  }
+
+  private void assertPayloads(List<byte[]> expected, List<RawMessage> messages) {
+    Assert.assertEquals(expected.size(), messages.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(MessageId.RAW_ID_SIZE, messages.get(i).getId().length);
+      Assert.assertArrayEquals(expected.get(i), messages.get(i).getPayload());
+    }
+  }
 }
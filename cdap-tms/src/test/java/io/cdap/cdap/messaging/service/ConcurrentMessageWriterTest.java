@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -41,11 +42,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -268,6 +273,136 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testBoundedBatch() throws Exception {
+    int threadCount = 10;
+    int requestPerThread = 10;
+    int maxBatchSize = 3;
+    int maxQueueSize = 4;
+
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 5L);
+
+    // Collects all the counter metrics emitted by the writer, and the max value of each gauge
+    ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    ConcurrentMap<String, AtomicLong> maxGauges = new ConcurrentHashMap<>();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        counters.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        maxGauges.computeIfAbsent(metricName, k -> new AtomicLong()).accumulateAndGet(value, Math::max);
+      }
+    }, maxBatchSize, 10L, maxQueueSize);
+
+    // Block the writes until the queue is full, such that the callers have to wait for space in the queue
+    CountDownLatch writeGate = new CountDownLatch(1);
+    testWriter.setWriteGate(writeGate);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(() -> {
+        for (int j = 0; j < requestPerThread; j++) {
+          writer.persist(new TestStoreRequest(topicId, Arrays.asList("a", "b")), metadata);
+        }
+        return null;
+      }));
+    }
+
+    // Only the requests in the blocked batch and in the queue are accepted, the other callers are blocked
+    Tasks.waitFor(true, () -> counters.containsKey("persist.queue.full"), 10, TimeUnit.SECONDS);
+    long requested = counters.get("persist.requested").get();
+    Assert.assertTrue("Accepted " + requested + " requests while the writer is blocked",
+                      requested <= maxBatchSize + maxQueueSize);
+    Assert.assertFalse(counters.containsKey("persist.success"));
+    writeGate.countDown();
+
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    // Any failure in persisting fails the test
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    int requestCount = threadCount * requestPerThread;
+    Assert.assertEquals(requestCount * 2, testWriter.getMessages().get(topicId).size());
+    Assert.assertEquals(requestCount, counters.get("persist.success").get());
+
+    // No batch can be larger than the max batch size. The size of each batch is emitted as a gauge.
+    long maxBatch = maxGauges.get("persist.queue.size").get();
+    Assert.assertTrue("Batch size " + maxBatch + " is larger than " + maxBatchSize, maxBatch <= maxBatchSize);
+    Assert.assertTrue(maxBatch > 0);
+
+    long batches = counters.get("persist.batches").get();
+    Assert.assertTrue(batches >= (requestCount + maxBatchSize - 1) / maxBatchSize);
+    long batchSizeCount = counters.entrySet().stream()
+      .filter(e -> e.getKey().startsWith("persist.batch.size."))
+      .mapToLong(e -> e.getValue().get())
+      .sum();
+    Assert.assertEquals(batches, batchSizeCount);
+    long histogramCount = counters.entrySet().stream()
+      .filter(e -> e.getKey().startsWith("persist.commit.latency.ms."))
+      .mapToLong(e -> e.getValue().get())
+      .sum();
+    Assert.assertEquals(batches, histogramCount);
+  }
+
+  @Test
+  public void testWriteFailure() throws Exception {
+    int threadCount = 10;
+    int requestPerThread = 10;
+
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 1L);
+    IOException failure = new IOException("Write failure");
+    testWriter.setWriteFailure(failure);
+
+    ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        counters.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // No-op
+      }
+    }, 5, 1L, 10);
+
+    // Every caller must get the failure, whether it wrote the batch itself or waited for another writer
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(() -> {
+        int failures = 0;
+        for (int j = 0; j < requestPerThread; j++) {
+          try {
+            writer.persist(new TestStoreRequest(topicId, Arrays.asList("a", "b")), metadata);
+          } catch (IOException e) {
+            Assert.assertSame(failure, e);
+            failures++;
+          }
+        }
+        return failures;
+      }));
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    for (Future<Integer> future : futures) {
+      Assert.assertEquals(requestPerThread, future.get().intValue());
+    }
+    Assert.assertEquals(threadCount * requestPerThread, counters.get("persist.failure").get());
+    Assert.assertFalse(counters.containsKey("persist.success"));
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -275,6 +410,8 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private volatile CountDownLatch writeGate;
+    private volatile IOException writeFailure;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -295,8 +432,32 @@ public class ConcurrentMessageWriterTest {
                            sequenceId, payload);
     }
 
+    /**
+     * Sets a latch that every write waits for before storing the entries.
+     */
+    void setWriteGate(CountDownLatch writeGate) {
+      this.writeGate = writeGate;
+    }
+
+    /**
+     * Sets the failure that every write throws after the write delay.
+     */
+    void setWriteFailure(IOException writeFailure) {
+      this.writeFailure = writeFailure;
+    }
+
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      CountDownLatch gate = writeGate;
+      if (gate != null) {
+        Uninterruptibles.awaitUninterruptibly(gate);
+      }
+      if (writeFailure != null) {
+        if (writeDelayMillis > 0) {
+          Uninterruptibles.sleepUninterruptibly(writeDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        throw writeFailure;
+      }
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
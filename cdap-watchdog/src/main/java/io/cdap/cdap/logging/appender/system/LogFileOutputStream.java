@@ -22,6 +22,7 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.io.Syncable;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogTimeIndex;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -41,15 +42,21 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * A {@link LogTimeIndex} of the file is written when the file is closed.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
+  // Minimum number of bytes covered by each entry in the time index
+  private static final long INDEX_INTERVAL_BYTES = 64 * 1024;
 
   private final Location location;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final String filePermissions;
+  private final LogTimeIndex.Builder indexBuilder;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
@@ -60,6 +67,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     this.location = location;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.filePermissions = filePermissions;
 
     Schema schema = serializer.getAvroSchema();
     try {
@@ -70,6 +78,8 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
+      // No data block is written yet, hence sync returns the position right after the header
+      this.indexBuilder = new LogTimeIndex.Builder(dataFileWriter.sync());
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -82,6 +92,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    indexBuilder.addEvent(event.getTimeStamp());
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
@@ -115,6 +126,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    indexBuilder.sync(fileSize, INDEX_INTERVAL_BYTES);
   }
 
   @Override
@@ -131,9 +143,23 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
-      dataFileWriter.close();
+      try {
+        flush();
+      } finally {
+        dataFileWriter.close();
+      }
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  private void writeIndex() {
+    try {
+      indexBuilder.write(location, fileSize, filePermissions);
+    } catch (IOException e) {
+      // The index is only an optimization for reading, log files without it can still be read
+      LOG.warn("Failed to write time index for log file {}", location, e);
+    }
+  }
 }
@@ -99,7 +99,7 @@ public class LogBufferWriter implements Flushable, Closeable {
     while (events.hasNext()) {
       byte[] event = events.next();
       LogBufferFileOffset offset = write(event);
-      offsets.add(new LogBufferEvent(logEventSerializer.fromBytes(ByteBuffer.wrap(event)), event.length, offset));
+      offsets.add(new LogBufferEvent(logEventSerializer.fromBytesLazily(ByteBuffer.wrap(event)), event.length, offset));
     }
     currOutputStream.flush();
     return offsets;
@@ -156,7 +156,7 @@ public class LogBufferReader implements Closeable {
       int length = inputStream.readInt();
       byte[] eventBytes = new byte[length];
       inputStream.read(eventBytes);
-      LogBufferEvent event = new LogBufferEvent(serializer.fromBytes(ByteBuffer.wrap(eventBytes)),
+      LogBufferEvent event = new LogBufferEvent(serializer.fromBytesLazily(ByteBuffer.wrap(eventBytes)),
                                                 eventBytes.length, new LogBufferFileOffset(fileId, pos));
       // update curr position to point to next event
       pos = pos + Bytes.SIZEOF_INT + length;
@@ -626,7 +626,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
         metricsContext.increment("kafka.bytes.read", message.message().payloadSize());
 
         try {
-          ILoggingEvent loggingEvent = serializer.fromBytes(message.message().payload());
+          ILoggingEvent loggingEvent = serializer.fromBytesLazily(message.message().payload());
           nextEntry = new ProcessorEvent<>(loggingEvent, message.message().payloadSize(),
                                            new KafkaOffset(message.nextOffset(), loggingEvent.getTimeStamp()));
           skipped = false;
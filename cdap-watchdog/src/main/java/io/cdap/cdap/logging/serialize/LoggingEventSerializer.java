@@ -36,6 +36,9 @@ import org.apache.avro.io.EncoderFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -46,7 +49,9 @@ import javax.annotation.concurrent.NotThreadSafe;
 public final class LoggingEventSerializer {
 
   private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  private final GenericDatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(getAvroSchema());
   private BinaryDecoder decoder;
+  private BinaryEncoder encoder;
 
   /**
    * Returns the {@link Schema} for logging event, which is the same as {@link LogSchema.LoggingEvent#SCHEMA}.
@@ -60,10 +65,9 @@ public final class LoggingEventSerializer {
    */
   public byte[] toBytes(ILoggingEvent event) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    encoder = EncoderFactory.get().directBinaryEncoder(out, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      datumWriter.write(toGenericRecord(event), encoder);
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
@@ -83,6 +87,49 @@ public final class LoggingEventSerializer {
     return new LoggingEvent(toGenericRecord(buffer), buffer);
   }
 
+  /**
+   * Decodes the content of the given {@link ByteBuffer} into {@link ILoggingEvent}, based on the
+   * schema returned by the {@link #getAvroSchema()} method. Only the timestamp, level, MDC and logger name,
+   * which are needed for routing and filtering the event in the log pipeline, are decoded by this method.
+   * All other fields are skipped over, and are only decoded when the returned event is asked for any of them.
+   *
+   * @param buffer the buffer to decode
+   * @return a new instance of {@link ILoggingEvent} decoded from the buffer
+   * @throws IOException if fail to decode
+   */
+  public ILoggingEvent fromBytesLazily(ByteBuffer buffer) throws IOException {
+    BinaryDecoder decoder = getDecoder(buffer);
+
+    Long timestamp = null;
+    Integer level = null;
+    Map<String, String> mdc = null;
+    String loggerName = null;
+    for (Schema.Field field : getAvroSchema().getFields()) {
+      switch (field.name()) {
+        case "timestamp":
+          timestamp = decoder.readLong();
+          break;
+        case "level":
+          level = decoder.readInt();
+          break;
+        case "mdc":
+          mdc = decodeMDC(field.schema(), decoder);
+          break;
+        case "loggerName":
+          loggerName = decodeNullableString(field.schema(), decoder);
+          break;
+        default:
+          // The remaining fields are still skipped over to make sure the encoded event is complete
+          skip(field.schema(), decoder);
+      }
+    }
+    if (timestamp == null || level == null) {
+      // If reached here, meaning the schema doesn't have the fields, which shouldn't happen.
+      throw new IOException("Missing timestamp or level field in the LoggingEvent schema");
+    }
+    return new LoggingEvent(buffer, timestamp, Level.toLevel(level), mdc, loggerName);
+  }
+
   /**
    * Decodes the timestamp of a {@link ILoggingEvent} encoded in the given {@link ByteBuffer} with the schema
    * returned by the {@link #getAvroSchema()} method.
@@ -168,6 +215,37 @@ public final class LoggingEventSerializer {
     return datum;
   }
 
+  /**
+   * Decodes the MDC map, which is a nullable map with nullable string values.
+   */
+  private Map<String, String> decodeMDC(Schema schema, Decoder decoder) throws IOException {
+    Schema mapSchema = schema.getTypes().get(decoder.readIndex());
+    if (mapSchema.getType() == Schema.Type.NULL) {
+      decoder.readNull();
+      return LoggingUtil.decodeMDC(null);
+    }
+    Map<String, String> map = new HashMap<>();
+    for (long i = decoder.readMapStart(); i != 0; i = decoder.mapNext()) {
+      for (long j = 0; j < i; j++) {
+        String key = decoder.readString(null).toString();
+        map.put(key, decodeNullableString(mapSchema.getValueType(), decoder));
+      }
+    }
+    return LoggingUtil.decodeMDC(map);
+  }
+
+  /**
+   * Decodes a nullable string, which is a union of null and string.
+   */
+  @Nullable
+  private String decodeNullableString(Schema schema, Decoder decoder) throws IOException {
+    if (schema.getTypes().get(decoder.readIndex()).getType() == Schema.Type.NULL) {
+      decoder.readNull();
+      return null;
+    }
+    return decoder.readString(null).toString();
+  }
+
   /**
    * Skips data from the decoder based on the schema.
    */
@@ -197,7 +275,7 @@ public final class LoggingEventSerializer {
         }
         break;
       case UNION:
-        decoder.readIndex();
+        skip(schema.getTypes().get(decoder.readIndex()), decoder);
         break;
       case FIXED:
         decoder.skipFixed(schema.getFixedSize());
@@ -50,6 +50,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -159,6 +160,13 @@ public class LogLocation {
           return ImmutableList.of();
         }
 
+        LogTimeIndex index = readIndex();
+        if (index != null) {
+          count = readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents, logSegments);
+          int skip = count >= maxEvents ? count - maxEvents : 0;
+          return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+        }
+
         // Calculate skipLen based on fileLength
         long length = location.length();
         LOG.trace("File length {} {}", location, length);
@@ -206,6 +214,32 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads log events backwards using the time index of the file. Starting from the last indexed range that has
+   * events not later than {@code fromTimeMs}, each range is read from its sync position to the start of the next
+   * range, until {@code maxEvents} events are collected.
+   *
+   * @return number of log events added to {@code logSegments}
+   */
+  private int readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogTimeIndex index, Filter logFilter,
+                          long fromTimeMs, int maxEvents, Deque<Collection<LogEvent>> logSegments) throws IOException {
+    int count = 0;
+    int idx = index.findLast(fromTimeMs);
+    while (idx >= 0 && count < maxEvents) {
+      long endPosition = idx + 1 < index.size() ? index.getPosition(idx + 1) : -1;
+      dataFileReader.seek(index.getPosition(idx));
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+      if (!logSegment.isEmpty()) {
+        logSegments.addFirst(logSegment);
+        count += logSegment.size();
+      }
+      LOG.trace("Read log events {} from indexed position {} to endPosition {}",
+                count, index.getPosition(idx), endPosition);
+      idx--;
+    }
+    return count;
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -276,7 +310,15 @@ public class LogLocation {
 
       try {
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        LogTimeIndex index = readIndex();
+        if (index != null) {
+          // Seek directly to the first range that can contain events at or after fromTimeMs.
+          // If there is none, all events are before fromTimeMs, hence seek to the last range.
+          int idx = index.findFirst(fromTimeMs);
+          long position = index.getPosition(idx < 0 ? index.size() - 1 : idx);
+          LOG.trace("Seek to indexed pos {}", position);
+          dataFileReader.seek(position);
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -371,6 +413,34 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogTimeIndex} of this log file.
+   *
+   * @return the index or {@code null} if the file is not indexed or the index cannot be used
+   */
+  @Nullable
+  private LogTimeIndex readIndex() {
+    // Files written by the old framework version are never indexed
+    if (VERSION_0.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      LogTimeIndex index = LogTimeIndex.read(location);
+      if (index == null || index.size() == 0) {
+        return null;
+      }
+      // Guard against index that doesn't match the file content
+      if (index.getPosition(index.size() - 1) >= location.length()) {
+        READ_FAILURE_LOG.warn("Ignoring time index of log file {} that points beyond the end of file", location);
+        return null;
+      }
+      return index;
+    } catch (Exception e) {
+      READ_FAILURE_LOG.warn("Failed to read time index of log file {}. Log file will be scanned.", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import io.cdap.cdap.common.io.Locations;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A sidecar index of an Avro log file. Each entry covers a range of the file, starting at an Avro sync position,
+ * and records the minimum and maximum event timestamp in that range. The index is written next to the log file when
+ * the file is closed, and is used by {@link LogLocation} to seek directly to the range containing a given time.
+ */
+public final class LogTimeIndex {
+
+  private static final String SUFFIX = ".idx";
+  private static final int VERSION = 1;
+
+  private final long[] positions;
+  private final long[] minTimestamps;
+  private final long[] maxTimestamps;
+  private final int size;
+
+  private LogTimeIndex(long[] positions, long[] minTimestamps, long[] maxTimestamps, int size) {
+    this.positions = positions;
+    this.minTimestamps = minTimestamps;
+    this.maxTimestamps = maxTimestamps;
+    this.size = size;
+  }
+
+  /**
+   * Returns the {@link Location} of the index file for the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    if (parent == null) {
+      throw new IllegalArgumentException("Log file location " + logLocation + " has no parent");
+    }
+    return parent.append(logLocation.getName() + SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @return the {@link LogTimeIndex} or {@code null} if there is no index for the log file
+   * @throws IOException if failed to read the index
+   */
+  @Nullable
+  public static LogTimeIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      int version = is.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported log index version " + version + " in " + indexLocation);
+      }
+      int size = is.readInt();
+      long[] positions = new long[size];
+      long[] minTimestamps = new long[size];
+      long[] maxTimestamps = new long[size];
+      for (int i = 0; i < size; i++) {
+        positions[i] = is.readLong();
+        minTimestamps[i] = is.readLong();
+        maxTimestamps[i] = is.readLong();
+      }
+      return new LogTimeIndex(positions, minTimestamps, maxTimestamps, size);
+    }
+  }
+
+  /**
+   * Returns the number of entries in this index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the file position where the entry at the given index starts.
+   */
+  public long getPosition(int idx) {
+    return positions[idx];
+  }
+
+  /**
+   * Returns the index of the first entry that may contain events with timestamp greater than or equal to the given
+   * timestamp, or {@code -1} if there is no such entry. All events in the file before the position of the returned
+   * entry have timestamp smaller than the given timestamp.
+   */
+  public int findFirst(long timestamp) {
+    for (int i = 0; i < size; i++) {
+      if (maxTimestamps[i] >= timestamp) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last entry that contains events with timestamp smaller than or equal to the given
+   * timestamp, or {@code -1} if there is no such entry.
+   */
+  public int findLast(long timestamp) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (minTimestamps[i] <= timestamp) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Builder for {@link LogTimeIndex} that tracks the range of the log file currently being written.
+   */
+  public static final class Builder {
+    private long[] positions = new long[16];
+    private long[] minTimestamps = new long[16];
+    private long[] maxTimestamps = new long[16];
+    private int size;
+
+    private long rangeStart;
+    private long rangeMin = Long.MAX_VALUE;
+    private long rangeMax = Long.MIN_VALUE;
+
+    /**
+     * Creates a builder with the first range starting at the given position, which must be an Avro sync position.
+     */
+    public Builder(long startPosition) {
+      this.rangeStart = startPosition;
+    }
+
+    /**
+     * Records the timestamp of an event appended to the current range.
+     */
+    public void addEvent(long timestamp) {
+      rangeMin = Math.min(rangeMin, timestamp);
+      rangeMax = Math.max(rangeMax, timestamp);
+    }
+
+    /**
+     * Ends the current range if it has at least {@code minRangeSize} bytes and starts a new one at the given position,
+     * which must be an Avro sync position.
+     */
+    public void sync(long position, long minRangeSize) {
+      if (rangeMin > rangeMax) {
+        // Nothing was written since the range start, simply move the range start
+        rangeStart = position;
+        return;
+      }
+      if (position - rangeStart < minRangeSize) {
+        return;
+      }
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+        minTimestamps = Arrays.copyOf(minTimestamps, size * 2);
+        maxTimestamps = Arrays.copyOf(maxTimestamps, size * 2);
+      }
+      positions[size] = rangeStart;
+      minTimestamps[size] = rangeMin;
+      maxTimestamps[size] = rangeMax;
+      size++;
+
+      rangeStart = position;
+      rangeMin = Long.MAX_VALUE;
+      rangeMax = Long.MIN_VALUE;
+    }
+
+    /**
+     * Ends the current range and writes the index for the given log file.
+     *
+     * @param logLocation location of the log file
+     * @param endPosition the end position of the log file
+     * @param filePermissions permissions of the index file, or empty string to use the default
+     */
+    public void write(Location logLocation, long endPosition, String filePermissions) throws IOException {
+      sync(endPosition, 0L);
+
+      Location indexLocation = getIndexLocation(logLocation);
+      try (OutputStream os = filePermissions.isEmpty() ? indexLocation.getOutputStream()
+                                                       : indexLocation.getOutputStream(filePermissions);
+           DataOutputStream output = new DataOutputStream(new BufferedOutputStream(os))) {
+        output.writeInt(VERSION);
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+          output.writeLong(positions[i]);
+          output.writeLong(minTimestamps[i]);
+          output.writeLong(maxTimestamps[i]);
+        }
+      } catch (IOException e) {
+        Locations.deleteQuietly(indexLocation);
+        throw e;
+      }
+    }
+  }
+}
@@ -83,21 +83,14 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final Schema metricSchema;
   private final MetricStore metricStore;
   private final Map<String, String> metricsContextMap;
-  private final int fetcherLimit;
   private final long maxDelayMillis;
-  private final int queueSize;
-  private final BlockingDeque<MetricValues> metricsFromAllTopics;
-  private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
-  private final AtomicBoolean persistingFlag;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics, the max sleep time
   // is 1 min
   private final long metricsProcessIntervalMillis;
+  private final List<MetricsPipeline> pipelines;
   private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
   private final String metricsPrefixForDelayMetrics;
-  private long metricsProcessedCount;
-
-  private MetricsConsumerMetaTable metaTable;
 
   private volatile boolean stopping;
 
@@ -132,6 +125,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
     String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
     this.metricsTopics = topicNumbers.stream()
+      .sorted()
       .map(n -> NamespaceId.SYSTEM.topic(topicPrefix + n))
       .collect(Collectors.toList());
     this.messagingService = messagingService;
@@ -145,20 +139,28 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricStore = metricStore;
     this.metricStore.setMetricsContext(metricsContext);
     this.maxDelayMillis = cConf.getLong(Constants.Metrics.PROCESSOR_MAX_DELAY_MS);
-    this.queueSize = cConf.getInt(Constants.Metrics.QUEUE_SIZE);
-    this.fetcherLimit = Math.max(1, queueSize / topicNumbers.size()); // fetcherLimit is at least one
     this.metricsContextMap = metricsContext.getTags();
     this.processMetricsThreads = new ArrayList<>();
-    this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
-    this.topicProcessMetaMap = new ConcurrentHashMap<>();
-    this.persistingFlag = new AtomicBoolean();
     // the max sleep time will be 1 min
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
     this.processMetricName = String.format("metrics.%s.process.count", instanceId);
+
+    // Topics are assigned to pipelines in round robin. Each pipeline has its own queue and checkpoints its topics
+    // independently. The total queue size is shared among all pipelines.
+    int numPipelines = Math.max(1, Math.min(cConf.getInt(Constants.Metrics.PROCESSOR_PIPELINES, 1),
+                                            metricsTopics.size()));
+    int queueSize = Math.max(1, cConf.getInt(Constants.Metrics.QUEUE_SIZE) / numPipelines);
+    this.pipelines = new ArrayList<>(numPipelines);
+    for (int i = 0; i < numPipelines; i++) {
+      // number of topics assigned to this pipeline
+      int numTopics = (metricsTopics.size() - i + numPipelines - 1) / numPipelines;
+      pipelines.add(new MetricsPipeline(queueSize, Math.max(1, queueSize / Math.max(1, numTopics))));
+    }
   }
 
-  private MetricsConsumerMetaTable getMetaTable() {
+  private MetricsConsumerMetaTable createMetaTable() {
+    MetricsConsumerMetaTable metaTable = null;
     while (metaTable == null) {
       if (stopping) {
         LOG.info("We are shutting down, giving up on acquiring consumer metaTable.");
@@ -181,22 +183,28 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
   @Override
   protected void run() {
-    LOG.info("Start running MessagingMetricsProcessorService");
-    MetricsConsumerMetaTable metaTable = getMetaTable();
-    if (metaTable == null) {
-      LOG.info("Could not get MetricsConsumerMetaTable, seems like we are being shut down");
-      return;
+    LOG.info("Start running MessagingMetricsProcessorService with {} pipelines", pipelines.size());
+    // Each pipeline checkpoints the topics assigned to it with its own meta table instance,
+    // since the table is not thread safe
+    for (MetricsPipeline pipeline : pipelines) {
+      pipeline.metaTable = createMetaTable();
+      if (pipeline.metaTable == null) {
+        LOG.info("Could not get MetricsConsumerMetaTable, seems like we are being shut down");
+        return;
+      }
     }
 
-    for (TopicId topic : metricsTopics) {
+    for (int i = 0; i < metricsTopics.size(); i++) {
+      TopicId topic = metricsTopics.get(i);
+      MetricsPipeline pipeline = pipelines.get(i % pipelines.size());
       TopicProcessMeta topicProcessMeta = null;
       TopicIdMetaKey topicRowKey = new TopicIdMetaKey(topic);
       try {
-        topicProcessMeta = metaTable.getTopicProcessMeta(topicRowKey);
+        topicProcessMeta = pipeline.metaTable.getTopicProcessMeta(topicRowKey);
       } catch (Exception e) {
         LOG.warn("Cannot retrieve last processed MessageId for topic: {}", topic, e);
       }
-      processMetricsThreads.add(new ProcessMetricsThread(topicRowKey, topicProcessMeta));
+      processMetricsThreads.add(new ProcessMetricsThread(pipeline, topicRowKey, topicProcessMeta));
     }
 
     if (!isRunning()) {
@@ -216,9 +224,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
 
-    // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
-    // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    // Persist metrics and messageId's of each pipeline after all ProcessMetricsThread's complete.
+    // No need to make a copy of the queue and topicProcessMetaMap because no thread is writing to them
+    for (MetricsPipeline pipeline : pipelines) {
+      pipeline.persistMetricsAndTopicProcessMeta(pipeline.metricsQueue, pipeline.topicProcessMetaMap);
+    }
   }
 
   @Override
@@ -232,69 +242,137 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   }
 
   /**
-   * Persist metrics from all topics into metric store and messageId's of the last persisted metrics of each topic
-   * into metrics meta table
-   *
-   * @param metricValues a deque of {@link MetricValues}
-   * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic
-   *                            and {@link TopicProcessMeta} which has info on messageId and processing stats
+   * A group of topics whose metrics are queued and checkpointed together, independently from other pipelines.
+   * All pipelines write to the same {@link MetricStore}, since pipelines write to the same series, e.g. the
+   * aggregates of a namespace, and the store caches the last time bucket written for each counter series in order
+   * to turn the first increment of a bucket into a put.
    */
-  private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
-                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
-    try {
-      if (!metricValues.isEmpty()) {
-        persistMetrics(metricValues, topicProcessMetaMap);
+  private final class MetricsPipeline {
+    private final int queueSize;
+    private final int fetcherLimit;
+    private final BlockingDeque<MetricValues> metricsQueue;
+    private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
+    private final AtomicBoolean persistingFlag;
+    private MetricsConsumerMetaTable metaTable;
+    private long metricsProcessedCount;
+
+    MetricsPipeline(int queueSize, int fetcherLimit) {
+      this.queueSize = queueSize;
+      this.fetcherLimit = fetcherLimit;
+      this.metricsQueue = new LinkedBlockingDeque<>(queueSize);
+      this.topicProcessMetaMap = new ConcurrentHashMap<>();
+      this.persistingFlag = new AtomicBoolean();
+    }
+
+    /**
+     * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
+     * for this pipeline
+     */
+    void tryPersist() {
+      // Ensure there's only one thread can persist metricsQueue and messageId's of this pipeline.
+      // This is because the underlying metrics meta table is not thread safe.
+      // If persistingFlag is false, set it to true and start persisting. Otherwise, log and return.
+      if (!persistingFlag.compareAndSet(false, true)) {
+        LOG.trace("There is another thread performing persisting. No need to persist in this thread.");
+        return;
+      }
+      try {
+        // Make a copy of topicProcessMetaMap before copying metrics from metricsQueue to ensure that
+        // topicMessageIdsCopy will not contain new MessageId's in metricsQueue but not in metricsCopy.
+        // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
+        Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
+        // Remove at most queueSize of metrics from metricsQueue and put into metricsCopy to limit
+        // the number of metrics being persisted each time
+        Deque<MetricValues> metricsCopy = new LinkedList<>();
+        Iterator<MetricValues> iterator = metricsQueue.iterator();
+        // Though the blocking queue(metricsQueue) has upper bound on its size (which is the "queueSize")
+        // there can be a scenario, as the current thread is removing entries from blocking queue
+        // and adding it to a copy list, other threads are simultaneously adding entries to the queue and
+        // the current list might become very big causing out of memory issues, we avoid this
+        // by making the copy list size also to be limited by the max queue size.
+        while (iterator.hasNext() && metricsCopy.size() < queueSize) {
+          metricsCopy.add(iterator.next());
+          iterator.remove();
+        }
+        // Persist the copy of metrics and MessageId's
+        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
+      } catch (Exception e) {
+        LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
+      } finally {
+        // Set persistingFlag back to false after persisting completes.
+        persistingFlag.set(false);
       }
-      persistTopicProcessMeta(topicProcessMetaMap);
-    } catch (Exception e) {
-      LOG.warn("Failed to persist metrics.", e);
     }
-  }
 
-  private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
-    try {
-      // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
-      // and haven't updated messageId's of the corresponding topics
-      if (!messageIds.isEmpty()) {
-        metaTable.saveMetricsProcessorStats(messageIds);
+    /**
+     * Persist metrics from all topics of this pipeline into metric store and messageId's of the last persisted
+     * metrics of each topic into metrics meta table
+     *
+     * @param metricValues a deque of {@link MetricValues}
+     * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic
+     *                            and {@link TopicProcessMeta} which has info on messageId and processing stats
+     */
+    void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
+                                           Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+      try {
+        if (!metricValues.isEmpty()) {
+          persistMetrics(metricValues, topicProcessMetaMap);
+        }
+        persistTopicProcessMeta(topicProcessMetaMap);
+      } catch (Exception e) {
+        LOG.warn("Failed to persist metrics.", e);
       }
-    } catch (Exception e) {
-      LOG.warn("Failed to update processing stats of consumed messages.", e);
     }
-  }
 
-  /**
-   * Persist metrics into metric store
-   *
-   * @param metricValues a non-empty deque of {@link MetricValues}
-   */
-  private void persistMetrics(Deque<MetricValues> metricValues,
-                              Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
-    long now = System.currentTimeMillis();
-    long lastMetricTime = metricValues.peekLast().getTimestamp();
-    List<MetricValue> topicLevelDelays = new ArrayList<>();
-
-    //add topic level delay metrics
-    for (Map.Entry<TopicIdMetaKey, TopicProcessMeta> entry : topicProcessMetaMap.entrySet()) {
-      TopicProcessMeta topicProcessMeta = entry.getValue();
-      long delay = now - TimeUnit.SECONDS.toMillis(topicProcessMeta.getOldestMetricsTimestamp());
-      topicLevelDelays.add(new MetricValue(topicProcessMeta.getOldestMetricsTimestampMetricName(),
-                                           MetricType.GAUGE, delay));
-      delay = now - TimeUnit.SECONDS.toMillis(topicProcessMeta.getLatestMetricsTimestamp());
-      topicLevelDelays.add(new MetricValue(topicProcessMeta.getLatestMetricsTimestampMetricName(),
-                                           MetricType.GAUGE, delay));
+    private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
+      try {
+        // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
+        // and haven't updated messageId's of the corresponding topics
+        if (!messageIds.isEmpty()) {
+          metaTable.saveMetricsProcessorStats(messageIds);
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to update processing stats of consumed messages.", e);
+      }
+    }
+
+    /**
+     * Persist metrics into metric store
+     *
+     * @param metricValues a non-empty deque of {@link MetricValues}
+     */
+    private void persistMetrics(Deque<MetricValues> metricValues,
+                                Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+      long now = System.currentTimeMillis();
+      long lastMetricTime = metricValues.peekLast().getTimestamp();
+      List<MetricValue> topicLevelDelays = new ArrayList<>();
+
+      //add topic level delay metrics
+      for (Map.Entry<TopicIdMetaKey, TopicProcessMeta> entry : topicProcessMetaMap.entrySet()) {
+        TopicProcessMeta topicProcessMeta = entry.getValue();
+        long delay = now - TimeUnit.SECONDS.toMillis(topicProcessMeta.getOldestMetricsTimestamp());
+        topicLevelDelays.add(new MetricValue(topicProcessMeta.getOldestMetricsTimestampMetricName(),
+                                             MetricType.GAUGE, delay));
+        delay = now - TimeUnit.SECONDS.toMillis(topicProcessMeta.getLatestMetricsTimestamp());
+        topicLevelDelays.add(new MetricValue(topicProcessMeta.getLatestMetricsTimestampMetricName(),
+                                             MetricType.GAUGE, delay));
+      }
+      List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
+      processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
+
+      metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
+      // The metric store is not thread safe, hence writes from different pipelines are serialized
+      synchronized (metricStore) {
+        metricStore.add(metricValues);
+      }
+      metricsProcessedCount += metricValues.size();
+      PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
+                         metricsProcessedCount, lastMetricTime);
     }
-    List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
-    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
-
-    metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
-    metricStore.add(metricValues);
-    metricsProcessedCount += metricValues.size();
-    PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
-                       metricsProcessedCount, lastMetricTime);
   }
 
   private class ProcessMetricsThread extends Thread {
+    private final MetricsPipeline pipeline;
     private final TopicIdMetaKey topicIdMetaKey;
     private final PayloadInputStream payloadInput;
     private final BinaryDecoder decoder;
@@ -302,7 +380,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     private final String latestTsMetricName;
     private long lastMetricTimeSecs;
 
-    ProcessMetricsThread(TopicIdMetaKey topicIdMetaKey, @Nullable TopicProcessMeta topicProcessMeta) {
+    ProcessMetricsThread(MetricsPipeline pipeline, TopicIdMetaKey topicIdMetaKey,
+                         @Nullable TopicProcessMeta topicProcessMeta) {
       super(String.format("ProcessMetricsThread-%s", topicIdMetaKey.getTopicId()));
       setDaemon(true);
       oldestTsMetricName = String.format("%s.topic.%s.oldest.delay.ms",
@@ -313,13 +392,14 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         // message-id already for this topic in metaTable, we create a new TopicProcessMeta with existing values,
         // add metric names and put it in map
         byte[] persistedMessageId = topicProcessMeta.getMessageId();
-        topicProcessMetaMap.put(topicIdMetaKey,
-                                new TopicProcessMeta(persistedMessageId, topicProcessMeta.getOldestMetricsTimestamp(),
-                                                     topicProcessMeta.getLatestMetricsTimestamp(),
-                                                     topicProcessMeta.getMessagesProcessed(),
-                                                     topicProcessMeta.getLastProcessedTimestamp(),
-                                                     oldestTsMetricName, latestTsMetricName));
+        pipeline.topicProcessMetaMap.put(
+          topicIdMetaKey, new TopicProcessMeta(persistedMessageId, topicProcessMeta.getOldestMetricsTimestamp(),
+                                               topicProcessMeta.getLatestMetricsTimestamp(),
+                                               topicProcessMeta.getMessagesProcessed(),
+                                               topicProcessMeta.getLastProcessedTimestamp(),
+                                               oldestTsMetricName, latestTsMetricName));
       }
+      this.pipeline = pipeline;
       this.topicIdMetaKey = topicIdMetaKey;
       this.payloadInput = new PayloadInputStream();
       this.decoder = new BinaryDecoder(payloadInput);
@@ -352,8 +432,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       long startTime = System.currentTimeMillis();
       try {
         MessageFetcher fetcher = messagingService.prepareFetch(topicIdMetaKey.getTopicId());
-        fetcher.setLimit(fetcherLimit);
-        TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topicIdMetaKey);
+        fetcher.setLimit(pipeline.fetcherLimit);
+        TopicProcessMeta persistMetaInfo = pipeline.topicProcessMetaMap.get(topicIdMetaKey);
         byte[] lastMessageId = null;
 
         if (persistMetaInfo != null) {
@@ -377,7 +457,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
             try {
               payloadInput.reset(input.getPayload());
               MetricValues metricValues = metricReader.read(decoder, metricSchema);
-              if (!metricsFromAllTopics.offer(metricValues)) {
+              if (!pipeline.metricsQueue.offer(metricValues)) {
                 break;
               }
               lastMetricTimeSecs = metricValues.getTimestamp();
@@ -396,10 +476,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
           // local topic meta for the topic
           localTopicProcessMeta.updateLastProcessedTimestamp();
-          topicProcessMetaMap.put(topicIdMetaKey, localTopicProcessMeta);
+          pipeline.topicProcessMetaMap.put(topicIdMetaKey, localTopicProcessMeta);
         }
         // Try to persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
-        tryPersist();
+        pipeline.tryPersist();
 
         long endTime = System.currentTimeMillis();
         // use currentMessageId != null to ensure that the current fetching is not empty and
@@ -418,45 +498,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
       return metricsProcessIntervalMillis;
     }
-
-    /**
-     * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
-     */
-    private void tryPersist() {
-      // Ensure there's only one thread can persist metricsFromAllTopics and messageId's.
-      // This is because the underlying metrics table is not thread safe.
-      // If persistingFlag is false, set it to true and start persisting. Otherwise, log and return.
-      if (!persistingFlag.compareAndSet(false, true)) {
-        LOG.trace("There is another thread performing persisting. No need to persist in this thread.");
-        return;
-      }
-      try {
-        // Make a copy of topicProcessMetaMap before copying metrics from metricsFromAllTopics to ensure that
-        // topicMessageIdsCopy will not contain new MessageId's in metricsFromAllTopics but not in metricsCopy.
-        // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
-        Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
-        // Remove at most queueSize of metrics from metricsFromAllTopics and put into metricsCopy to limit
-        // the number of metrics being persisted each time
-        Deque<MetricValues> metricsCopy = new LinkedList<>();
-        Iterator<MetricValues> iterator = metricsFromAllTopics.iterator();
-        // Though the blocking queue(metricsFromAllTopics) has upper bound on its size (which is the "queueSize")
-        // there can be a scenario, as the current thread is removing entries from blocking queue
-        // and adding it to a copy list, other threads are simultaneously adding entries to the queue and
-        // the current list might become very big causing out of memory issues, we avoid this
-        // by making the copy list size also to be limited by the max queue size.
-        while (iterator.hasNext() && metricsCopy.size() < queueSize) {
-          metricsCopy.add(iterator.next());
-          iterator.remove();
-        }
-        // Persist the copy of metrics and MessageId's
-        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
-      } catch (Exception e) {
-        LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
-      } finally {
-        // Set persistingFlag back to false after persisting completes.
-        persistingFlag.set(false);
-      }
-    }
   }
 
   private class PayloadInputStream extends ByteArrayInputStream {
@@ -19,9 +19,11 @@ package io.cdap.cdap.logging.appender.system;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.LoggingEvent;
+import com.google.common.base.Strings;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -34,8 +36,12 @@ import io.cdap.cdap.data.runtime.DataSetsModules;
 import io.cdap.cdap.data.runtime.StorageModule;
 import io.cdap.cdap.data.runtime.SystemDatasetRuntimeModule;
 import io.cdap.cdap.logging.LoggingConfiguration;
+import io.cdap.cdap.logging.filter.Filter;
 import io.cdap.cdap.logging.guice.LocalLogAppenderModule;
 import io.cdap.cdap.logging.meta.FileMetaDataWriter;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.write.LogLocation;
+import io.cdap.cdap.logging.write.LogTimeIndex;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
@@ -51,6 +57,8 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.tephra.TransactionManager;
 import org.apache.tephra.runtime.TransactionModules;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -60,6 +68,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class LogFileManagerTest {
@@ -139,6 +149,59 @@ public class LogFileManagerTest {
     Assert.assertNotEquals(outputStream.getLocation(), newLogOutStream.getLocation());
   }
 
+  @Test
+  public void testTimeIndex() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1.avro");
+    LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, System.currentTimeMillis(),
+                                                               () -> { });
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    String message = Strings.repeat("m", 1000);
+    // Each flush writes more than 64K, so that there is one index entry per flush
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 100; j++) {
+        LoggingEvent event = getLoggingEvent("io.cdap.Test", logger, Level.INFO, message);
+        event.setTimeStamp(i * 1000L + j * 10L);
+        outputStream.append(event);
+      }
+      outputStream.flush();
+    }
+    outputStream.close();
+
+    LogTimeIndex index = LogTimeIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertEquals(100, index.size());
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 0L, 0L, location, "default", null);
+    assertTimeRange(logLocation, 55000L, 100);
+    Location indexLocation = LogTimeIndex.getIndexLocation(location);
+    Assert.assertTrue(indexLocation.delete());
+    // Reading without the index should give the same result
+    assertTimeRange(logLocation, 55000L, 100);
+  }
+
+  private void assertTimeRange(LogLocation logLocation, long fromTimeMs, int maxEvents) throws Exception {
+    List<Long> timestamps = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(Filter.EMPTY_FILTER, fromTimeMs,
+                                                                    Long.MAX_VALUE, maxEvents)) {
+      while (iterator.hasNext()) {
+        timestamps.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+    Assert.assertEquals(maxEvents, timestamps.size());
+    for (int i = 0; i < maxEvents; i++) {
+      Assert.assertEquals(fromTimeMs + i * 10L, timestamps.get(i).longValue());
+    }
+
+    timestamps.clear();
+    for (LogEvent logEvent : logLocation.readLogPrev(Filter.EMPTY_FILTER, fromTimeMs, maxEvents)) {
+      timestamps.add(logEvent.getLoggingEvent().getTimeStamp());
+    }
+    Assert.assertEquals(maxEvents, timestamps.size());
+    for (int i = 0; i < maxEvents; i++) {
+      Assert.assertEquals(fromTimeMs - (maxEvents - 1 - i) * 10L, timestamps.get(i).longValue());
+    }
+  }
+
   private LoggingEvent getLoggingEvent(String fqcn, Logger logger, Level level, String message) {
     return new LoggingEvent(fqcn, logger, level, message, null, null);
   }
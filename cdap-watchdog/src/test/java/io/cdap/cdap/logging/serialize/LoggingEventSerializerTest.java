@@ -116,6 +116,9 @@ public class LoggingEventSerializerTest {
     ILoggingEvent actualEvent = serializer.fromBytes(ByteBuffer.wrap(serializedBytes));
     System.out.println(actualEvent);
     assertLoggingEventEquals(iLoggingEvent, actualEvent);
+
+    // De-serialize lazily
+    assertLoggingEventEquals(iLoggingEvent, serializer.fromBytesLazily(ByteBuffer.wrap(serializedBytes)));
   }
 
 
@@ -162,6 +165,7 @@ public class LoggingEventSerializerTest {
 
     iLoggingEvent.setLevel(Level.ERROR);
     assertLoggingEventEquals(iLoggingEvent, actualEvent);
+    assertLoggingEventEquals(iLoggingEvent, serializer.fromBytesLazily(ByteBuffer.wrap(serializedBytes)));
   }
 
   @Test
@@ -182,6 +186,38 @@ public class LoggingEventSerializerTest {
     Assert.assertEquals(timestamp, serializer.decodeEventTimestamp(ByteBuffer.wrap(bytes)));
   }
 
+  @Test
+  public void testDecodeLazily() throws IOException {
+    ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent();
+    event.setLevel(Level.WARN);
+    event.setLoggerName("test.logger");
+    event.setMessage("Some test");
+    event.setThrowableProxy(new ThrowableProxy(new Exception("Test Exception")));
+    event.setMDCPropertyMap(ImmutableMap.of("mdc1", "mdc-val1"));
+    event.setTimeStamp(1234567890L);
+
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    byte[] bytes = serializer.toBytes(event);
+
+    // The fields needed for routing are decoded without the full record
+    LoggingEvent decoded = (LoggingEvent) serializer.fromBytesLazily(ByteBuffer.wrap(bytes));
+    Assert.assertEquals(1234567890L, decoded.getTimeStamp());
+    Assert.assertEquals(Level.WARN, decoded.getLevel());
+    Assert.assertEquals("test.logger", decoded.getLoggerName());
+    Assert.assertEquals(ImmutableMap.of("mdc1", "mdc-val1"), decoded.getMDCPropertyMap());
+    Assert.assertEquals(ByteBuffer.wrap(bytes), decoded.getEncoded());
+    Assert.assertEquals("Some test", decoded.getMessage());
+    Assert.assertEquals("Test Exception", decoded.getThrowableProxy().getMessage());
+
+    // An incomplete event fails to decode, even though the fields needed for routing are present
+    try {
+      serializer.fromBytesLazily(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+      Assert.fail("Expected an incomplete event to fail decoding");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
   static void assertLoggingEventEquals(ILoggingEvent expected, ILoggingEvent actual) {
     expected.getMDCPropertyMap().putAll(
       ImmutableMap.of(".namespaceId", "TEST_ACCT_ID1", ".applicationId", "TEST_APP_ID1", ".runId", "RUN1",
@@ -27,6 +27,7 @@ import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
 import io.cdap.cdap.api.metrics.MetricType;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.data2.datafabric.dataset.service.DatasetService;
@@ -144,6 +145,81 @@ public class MetricsProcessorServiceTest extends MetricsProcessorServiceTestBase
     metricStore.deleteAll();
   }
 
+  @Test
+  public void testMetricsProcessorWithPipelines() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    StructuredTableRegistry structuredTableRegistry = injector.getInstance(StructuredTableRegistry.class);
+    structuredTableRegistry.initialize();
+    StoreDefinition.createAllTables(injector.getInstance(StructuredTableAdmin.class), structuredTableRegistry);
+    injector.getInstance(DatasetOpExecutorService.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+
+    MetricStore metricStore = injector.getInstance(MetricStore.class);
+
+    int numTopics = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < numTopics; i++) {
+      partitions.add(i);
+    }
+
+    // One pipeline per topic
+    CConfiguration pipelinesConf = CConfiguration.copy(cConf);
+    pipelinesConf.setInt(Constants.Metrics.PROCESSOR_PIPELINES, numTopics);
+    MessagingMetricsProcessorService messagingMetricsProcessorService =
+      new MessagingMetricsProcessorService(pipelinesConf, injector.getInstance(MetricDatasetFactory.class),
+                                           messagingService, injector.getInstance(SchemaGenerator.class),
+                                           injector.getInstance(DatumReaderFactory.class), metricStore,
+                                           partitions, new NoopMetricsContext(), 50, 0);
+    messagingMetricsProcessorService.startAndWait();
+
+    // The counters are published to all topics, hence all pipelines write to the same series. The first counter
+    // written to a new time bucket of a series is stored with a put, based on the last bucket written to the series.
+    // Publish to the first minute such that the last bucket written is known for every series, then to the second
+    // minute, to which the counters of all pipelines must be added up.
+    long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    try {
+      for (int i = 0; i < 60; i++) {
+        publishMessagingMetrics(i, startTime, METRICS_CONTEXT, expected, SYSTEM_METRIC_PREFIX, MetricType.COUNTER);
+      }
+      Tasks.waitFor(60L, () -> getCounterSum(metricStore, 0), 15, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+
+      int rounds = 10;
+      for (int round = 0; round < rounds; round++) {
+        for (int i = 60; i < 120; i++) {
+          publishMessagingMetrics(i, startTime, METRICS_CONTEXT, expected, SYSTEM_METRIC_PREFIX, MetricType.COUNTER);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+      Tasks.waitFor(rounds * 60L, () -> getCounterSum(metricStore, 60), 15, TimeUnit.SECONDS,
+                    100, TimeUnit.MILLISECONDS);
+      messagingMetricsProcessorService.stopAndWait();
+
+      // The counts are still correct after the remaining metrics are persisted on stop
+      Assert.assertEquals(60L, getCounterSum(metricStore, 0));
+      Assert.assertEquals(rounds * 60L, getCounterSum(metricStore, 60));
+    } finally {
+      messagingMetricsProcessorService.stopAndWait();
+      metricStore.deleteAll();
+    }
+  }
+
+  /**
+   * Returns the sum of the counter metric in the minute starting at the given time.
+   */
+  private long getCounterSum(MetricStore metricStore, long minuteStartTime) {
+    MetricDataQuery query = new MetricDataQuery(minuteStartTime, minuteStartTime + 59, 60, Integer.MAX_VALUE,
+                                                ImmutableMap.of(SYSTEM_METRIC_PREFIX + COUNTER_METRIC_NAME,
+                                                                AggregationFunction.SUM),
+                                                METRICS_CONTEXT, ImmutableList.<String>of(), null);
+    long sum = 0L;
+    for (MetricTimeSeries timeSeries : metricStore.query(query)) {
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        sum += timeValue.getValue();
+      }
+    }
+    return sum;
+  }
+
   /**
    * Checks whether all expected metrics can be obtained with query
    */